@@ -1,19 +1,39 @@
 package com.safetypin.authentication.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 
+/**
+ * Executors for @Async work. With spring.threads.virtual.enabled, which also moves Tomcat and the scheduler to
+ * virtual threads, every task gets its own virtual thread and a concurrency limit takes the place of the pool size:
+ * callers past the limit wait for a slot instead of queueing, the way CallerRunsPolicy holds them back today.
+ */
 @Configuration
 @EnableAsync
 public class AsyncConfig {
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads = false;
+
+    // jakarta.mail synchronizes on the transport while it talks to the server, so each send pins its carrier thread
+    @Value("${async.email.virtual-concurrency-limit:5}")
+    private int emailConcurrencyLimit = 5;
+
+    @Value("${async.virtual-concurrency-limit:1000}")
+    private int asyncConcurrencyLimit = 1000;
+
     @Bean(name = "emailTaskExecutor")
     public Executor taskExecutor() {
+        if (virtualThreads) {
+            return virtualThreadExecutor("EmailThread-", emailConcurrencyLimit);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(2);
         executor.setMaxPoolSize(5);
@@ -25,6 +45,9 @@ public class AsyncConfig {
 
     @Bean(name = "asyncExecutor")
     public Executor asyncExecutor() {
+        if (virtualThreads) {
+            return virtualThreadExecutor("async-", asyncConcurrencyLimit);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(2);
         executor.setMaxPoolSize(4);
@@ -34,4 +57,11 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        return executor;
+    }
 }
@@ -1,19 +0,0 @@
-package com.safetypin.authentication.config;
-
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-
-@Configuration
-public class KeyConfig {
-
-    @Bean
-    public KeyPair rsaKeyPair() throws NoSuchAlgorithmException {
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-        keyPairGenerator.initialize(2048); // Recommended key size for RSA
-        return keyPairGenerator.generateKeyPair();
-    }
-}
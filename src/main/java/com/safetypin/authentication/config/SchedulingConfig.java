@@ -0,0 +1,13 @@
+package com.safetypin.authentication.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the @Scheduled jobs on Spring Boot's task scheduler, sized with spring.task.scheduling.pool.size
+ * so the jobs that block do not hold back the others
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -3,16 +3,24 @@ package com.safetypin.authentication.controller;
 import com.safetypin.authentication.dto.*;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.PendingVerificationException;
+import com.safetypin.authentication.exception.RateLimitExceededException;
+import com.safetypin.authentication.exception.ServiceOverloadedException;
 import com.safetypin.authentication.exception.UserAlreadyExistsException;
+import com.safetypin.authentication.security.AuthenticatedUser;
 import com.safetypin.authentication.service.AuthenticationService;
 import com.safetypin.authentication.service.GoogleAuthService;
 import com.safetypin.authentication.service.JwtService;
+import com.safetypin.authentication.service.jwt.VerificationMode;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/auth")
 public class AuthenticationController {
@@ -38,9 +46,14 @@ public class AuthenticationController {
             return ResponseEntity.ok().body(new AuthResponse(true, "OK", tokens));
         } catch (PendingVerificationException e) {
             // Handle case where user exists but is unverified (EMAIL provider)
-            AuthResponse response = new AuthResponse(false, e.getMessage(), null);
+            AuthResponse response = new AuthResponse(false, e.getMessage(),
+                    new OtpStatusHandleResponse(e.getOtpStatusHandle()));
             // Use CONFLICT status to indicate the user exists but needs verification
             return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (RateLimitExceededException e) {
+            return tooManyRequests(e);
+        } catch (ServiceOverloadedException e) {
+            return serviceUnavailable(e);
         } catch (IllegalArgumentException | UserAlreadyExistsException e) {
             // Handle other registration errors (underage, already verified, social
             // provider)
@@ -72,6 +85,8 @@ public class AuthenticationController {
         } catch (InvalidCredentialsException e) {
             AuthResponse response = new AuthResponse(false, e.getMessage(), null);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (ServiceOverloadedException e) {
+            return serviceUnavailable(e);
         }
 
     }
@@ -90,13 +105,23 @@ public class AuthenticationController {
         }
     }
 
+    // Whether the OTP mail went out, FAILED or NONE means the client should offer a resend.
+    // Looked up by the handle returned with the OTP, an email address would tell anyone who requested one
+    @GetMapping("/otp-status")
+    public ResponseEntity<AuthResponse> getOtpStatus(@RequestParam String handle) {
+        OtpDeliveryStatus status = authenticationService.getOtpDeliveryStatus(handle);
+        return ResponseEntity.ok(new AuthResponse(true, "OK", status));
+    }
+
     // Endpoint for forgot password (only for email users)
     @PostMapping("/forgot-password")
     public ResponseEntity<AuthResponse> forgotPassword(@Valid @RequestBody PasswordResetRequest request) {
         try {
-            authenticationService.forgotPassword(request.getEmail());
+            String otpStatusHandle = authenticationService.forgotPassword(request.getEmail());
             return ResponseEntity.ok(new AuthResponse(true,
-                    "Password reset OTP has been sent to your email", null));
+                    "Password reset OTP has been sent to your email", new OtpStatusHandleResponse(otpStatusHandle)));
+        } catch (RateLimitExceededException e) {
+            return tooManyRequests(e);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new AuthResponse(false, e.getMessage(), null));
@@ -132,13 +157,18 @@ public class AuthenticationController {
         } catch (InvalidCredentialsException | IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(new AuthResponse(false, e.getMessage(), null));
+        } catch (ServiceOverloadedException e) {
+            return serviceUnavailable(e);
         }
     }
 
+    // mode=CLAIMS_ONLY answers from the signed claims without a database lookup
     @PostMapping("/verify-jwt")
-    public ResponseEntity<AuthResponse> verifyJwtToken(@RequestParam String token) {
+    public ResponseEntity<AuthResponse> verifyJwtToken(
+            @RequestParam String token,
+            @RequestParam(defaultValue = "AUTHORITATIVE") VerificationMode mode) {
         try {
-            UserResponse userResponse = jwtService.getUserFromJwtToken(token);
+            UserResponse userResponse = jwtService.getUserFromJwtToken(token, mode);
             return ResponseEntity.ok(new AuthResponse(true, "OK", userResponse));
         } catch (InvalidCredentialsException e) {
             AuthResponse response = new AuthResponse(false, e.getMessage(), null);
@@ -146,6 +176,24 @@ public class AuthenticationController {
         }
     }
 
+    // Verify many tokens in one call, the result map is keyed by token
+    @PostMapping("/verify-jwt/batch")
+    public ResponseEntity<AuthResponse> verifyJwtTokens(
+            @RequestBody JwtBatchVerificationRequest request,
+            @RequestParam(defaultValue = "AUTHORITATIVE") VerificationMode mode) {
+        if (request.getTokens() == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new AuthResponse(false, "tokens is required", null));
+        }
+        try {
+            Map<String, JwtVerificationResult> results = jwtService.verifyTokens(request.getTokens(), mode);
+            return ResponseEntity.ok(new AuthResponse(true, "OK", results));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new AuthResponse(false, e.getMessage(), null));
+        }
+    }
+
     @PostMapping("/refresh-token")
     public ResponseEntity<AuthResponse> renewRefreshToken(@RequestParam String token) {
         try {
@@ -157,10 +205,33 @@ public class AuthenticationController {
         }
     }
 
+    // End every session of the caller, on all devices
+    @PostMapping("/logout-all")
+    public ResponseEntity<AuthResponse> logoutAll(@AuthenticationPrincipal AuthenticatedUser currentUser) {
+        try {
+            int sessions = authenticationService.logoutAll(currentUser.id());
+            return ResponseEntity.ok(new AuthResponse(true, "OK", Map.of("revokedSessions", sessions)));
+        } catch (IllegalArgumentException e) {
+            AuthResponse response = new AuthResponse(false, e.getMessage(), null);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+
     // On successful login, return an empty map as a placeholder for future reports
     @GetMapping("/dashboard")
     public String dashboard() {
         return "{}";
     }
 
+    private ResponseEntity<AuthResponse> tooManyRequests(RateLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new AuthResponse(false, e.getMessage(), null));
+    }
+
+    private ResponseEntity<AuthResponse> serviceUnavailable(ServiceOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new AuthResponse(false, e.getMessage(), null));
+    }
 }
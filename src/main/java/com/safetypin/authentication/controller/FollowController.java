@@ -1,11 +1,12 @@
 package com.safetypin.authentication.controller;
 
 import com.safetypin.authentication.dto.*;
+import com.safetypin.authentication.security.AuthenticatedUser;
 import com.safetypin.authentication.service.FollowService;
-import com.safetypin.authentication.service.JwtService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -14,24 +15,19 @@ import java.util.UUID;
 @RestController
 @RequestMapping("/api/follow")
 public class FollowController {
-    private static final String BEARER_PREFIX = "Bearer ";
     private static final String STATUS_SUCCESS = "success";
     private final FollowService followService;
-    private final JwtService jwtService;
 
     @Autowired
-    public FollowController(FollowService followService, JwtService jwtService) {
+    public FollowController(FollowService followService) {
         this.followService = followService;
-        this.jwtService = jwtService;
     }
 
     @PostMapping("/{userIdToFollow}")
     public ResponseEntity<Void> followUser(
             @PathVariable UUID userIdToFollow,
-            @RequestHeader("Authorization") String authHeader) {
-        String token = authHeader.replace(BEARER_PREFIX, "");
-        UserResponse user = jwtService.getUserFromJwtToken(token);
-        UUID currentUserId = user.getId();
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        UUID currentUserId = currentUser.id();
 
         followService.followUser(currentUserId, userIdToFollow);
         return ResponseEntity.status(HttpStatus.CREATED).build();
@@ -40,11 +36,8 @@ public class FollowController {
     @DeleteMapping("/{userIdToUnfollow}")
     public ResponseEntity<Void> unfollowUser(
             @PathVariable UUID userIdToUnfollow,
-            @RequestHeader("Authorization") String authHeader) {
-
-        String token = authHeader.replace(BEARER_PREFIX, "");
-        UserResponse user = jwtService.getUserFromJwtToken(token);
-        UUID currentUserId = user.getId();
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        UUID currentUserId = currentUser.id();
 
         followService.unfollowUser(currentUserId, userIdToUnfollow);
         return ResponseEntity.noContent().build();
@@ -53,11 +46,8 @@ public class FollowController {
     @GetMapping("/followers/{userId}")
     public ResponseEntity<ApiResponse<List<UserFollowResponse>>> getFollowers(
             @PathVariable UUID userId,
-            @RequestHeader("Authorization") String authHeader) {
-
-        String token = authHeader.replace(BEARER_PREFIX, "");
-        UserResponse currentUser = jwtService.getUserFromJwtToken(token);
-        UUID viewerId = currentUser.getId();
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        UUID viewerId = currentUser.id();
 
         List<UserFollowResponse> followers = followService.getFollowers(userId, viewerId);
         ApiResponse<List<UserFollowResponse>> response = ApiResponse.<List<UserFollowResponse>>builder()
@@ -72,11 +62,8 @@ public class FollowController {
     @GetMapping("/following/{userId}")
     public ResponseEntity<ApiResponse<List<UserFollowResponse>>> getFollowing(
             @PathVariable UUID userId,
-            @RequestHeader("Authorization") String authHeader) {
-
-        String token = authHeader.replace(BEARER_PREFIX, "");
-        UserResponse currentUser = jwtService.getUserFromJwtToken(token);
-        UUID viewerId = currentUser.getId();
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        UUID viewerId = currentUser.id();
 
         List<UserFollowResponse> following = followService.getFollowing(userId, viewerId);
         ApiResponse<List<UserFollowResponse>> response = ApiResponse.<List<UserFollowResponse>>builder()
@@ -91,19 +78,10 @@ public class FollowController {
     @GetMapping("/stats/{userId}")
     public ResponseEntity<ApiResponse<FollowStats>> getFollowStats(
             @PathVariable UUID userId,
-            @RequestHeader(value = "Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser viewer) {
 
-        boolean isFollowing = false;
-
-        try {
-            String token = authHeader.replace(BEARER_PREFIX, "");
-            UserResponse user = jwtService.getUserFromJwtToken(token);
-            UUID currentUserId = user.getId();
-
-            isFollowing = followService.isFollowing(currentUserId, userId);
-        } catch (Exception e) {
-            // Invalid token, keep isFollowing as false
-        }
+        // Anonymous visitors, including those with an invalid token, never follow anyone
+        boolean isFollowing = viewer != null && followService.isFollowing(viewer.id(), userId);
 
         FollowStats stats = FollowStats.builder()
                 .followersCount(followService.getFollowersCount(userId))
@@ -122,16 +100,13 @@ public class FollowController {
     /**
      * Get recent followers from the last 30 days for the current authenticated user
      *
-     * @param authHeader Authorization header containing the JWT token
+     * @param currentUser the authenticated caller
      * @return List of recent followers with information about when they followed
      */
     @GetMapping("/notifications/recent-followers")
     public ResponseEntity<List<FollowerNotificationDTO>> getRecentFollowers(
-            @RequestHeader("Authorization") String authHeader) {
-
-        String token = authHeader.replace(BEARER_PREFIX, "");
-        UserResponse user = jwtService.getUserFromJwtToken(token);
-        UUID currentUserId = user.getId();
+            @AuthenticationPrincipal AuthenticatedUser currentUser) {
+        UUID currentUserId = currentUser.id();
 
         List<FollowerNotificationDTO> recentFollowers = followService.getRecentFollowers(currentUserId);
         return ResponseEntity.ok(recentFollowers);
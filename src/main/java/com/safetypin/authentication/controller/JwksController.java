@@ -0,0 +1,30 @@
+package com.safetypin.authentication.controller;
+
+import com.safetypin.authentication.service.jwt.JwtKeyRing;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+// Publishes the public signing keys so other services can verify access tokens without calling us
+@RestController
+public class JwksController {
+    private static final Duration MAX_AGE = Duration.ofMinutes(15);
+
+    private final JwtKeyRing keyRing;
+
+    public JwksController(JwtKeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, List<Map<String, Object>>>> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(MAX_AGE).cachePublic())
+                .body(Map.of("keys", keyRing.publicJwks()));
+    }
+}
@@ -4,11 +4,12 @@ import com.safetypin.authentication.dto.*;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.ResourceNotFoundException;
 import com.safetypin.authentication.model.Role;
-import com.safetypin.authentication.service.JwtService;
+import com.safetypin.authentication.security.AuthenticatedUser;
 import com.safetypin.authentication.service.ProfileService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -20,26 +21,16 @@ import java.util.UUID;
 public class ProfileController {
     private final ProfileService profileService;
 
-    private final JwtService jwtService;
-
     @Autowired
-    public ProfileController(ProfileService profileService, JwtService jwtService) {
+    public ProfileController(ProfileService profileService) {
         this.profileService = profileService;
-        this.jwtService = jwtService;
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<AuthResponse> getProfile(@PathVariable UUID id,
-                                                   @RequestHeader("Authorization") String authHeader) {
-        UUID viewerId;
-        try {
-            // Extract viewer ID from JWT token
-            UserResponse viewer = parseUserResponseFromAuthHeader(authHeader);
-            viewerId = viewer.getId();
-        } catch (Exception e) {
-            viewerId = null;
-            /* If token is not present or invalid, viewerId remains null */
-        }
+                                                   @AuthenticationPrincipal AuthenticatedUser viewer) {
+        // If token is not present or invalid, viewerId remains null
+        UUID viewerId = viewer != null ? viewer.id() : null;
 
         try {
             ProfileResponse profile = profileService.getProfile(id, viewerId);
@@ -54,17 +45,12 @@ public class ProfileController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<AuthResponse> getMyProfile(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<AuthResponse> getMyProfile(@AuthenticationPrincipal AuthenticatedUser user) {
         try {
-            // Extract user ID from JWT token
-            UserResponse user = parseUserResponseFromAuthHeader(authHeader);
-            UUID id = user.getId();
+            UUID id = user.id();
 
             ProfileResponse profile = profileService.getProfile(id, id);
             return ResponseEntity.ok(new AuthResponse(true, "Profile retrieved successfully", profile));
-        } catch (InvalidCredentialsException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new AuthResponse(false, e.getMessage(), null));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new AuthResponse(false, e.getMessage(), null));
@@ -77,17 +63,13 @@ public class ProfileController {
     @PutMapping("/me")
     public ResponseEntity<AuthResponse> updateMyProfile(
             @RequestBody UpdateProfileRequest request,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser user) {
 
         try {
-            UserResponse user = parseUserResponseFromAuthHeader(authHeader);
-            UUID id = user.getId();
+            UUID id = user.id();
 
             ProfileResponse updatedProfile = profileService.updateProfile(id, request);
             return ResponseEntity.ok(new AuthResponse(true, "Profile updated successfully", updatedProfile));
-        } catch (InvalidCredentialsException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new AuthResponse(false, e.getMessage(), null));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new AuthResponse(false, e.getMessage(), null));
@@ -98,14 +80,14 @@ public class ProfileController {
     }
 
     @GetMapping("/me/views")
-    public ResponseEntity<AuthResponse> getProfileViews(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<AuthResponse> getProfileViews(@AuthenticationPrincipal AuthenticatedUser user) {
         try {
-            UserResponse user = parseUserResponseFromAuthHeader(authHeader);
-            UUID userId = user.getId();
+            UUID userId = user.id();
 
             List<ProfileViewDTO> profileViews = profileService.getProfileViews(userId);
             return ResponseEntity.ok(new AuthResponse(true, "Profile views retrieved successfully", profileViews));
         } catch (InvalidCredentialsException e) {
+            // Profile views are for premium users only
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new AuthResponse(false, e.getMessage(), null));
         } catch (ResourceNotFoundException e) {
@@ -122,18 +104,12 @@ public class ProfileController {
         return profileService.getUsersBatch(userIds);
     }
 
+    // Only authenticated callers may look up roles, enforced by SecurityConfig
     @GetMapping("/{id}/role")
-    public ResponseEntity<AuthResponse> getUserRole(@PathVariable UUID id,
-                                                    @RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<AuthResponse> getUserRole(@PathVariable UUID id) {
         try {
-            // Authenticate user from JWT token
-            parseUserResponseFromAuthHeader(authHeader);
-
             Role role = profileService.getUserRole(id);
             return ResponseEntity.ok(new AuthResponse(true, "User role retrieved successfully", role));
-        } catch (InvalidCredentialsException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new AuthResponse(false, e.getMessage(), null));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new AuthResponse(false, e.getMessage(), null));
@@ -142,15 +118,4 @@ public class ProfileController {
                     .body(new AuthResponse(false, "Error retrieving user role: " + e.getMessage(), null));
         }
     }
-
-    private UserResponse parseUserResponseFromAuthHeader(String authHeader) throws InvalidCredentialsException {
-        String token = authHeader.replace("Bearer ", "");
-        try {
-            return jwtService.getUserFromJwtToken(token);
-        } catch (InvalidCredentialsException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new InvalidCredentialsException("Invalid token");
-        }
-    }
 }
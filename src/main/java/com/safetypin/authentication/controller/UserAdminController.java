@@ -1,15 +1,14 @@
 package com.safetypin.authentication.controller;
 
 import com.safetypin.authentication.dto.ApiResponse;
-import com.safetypin.authentication.dto.UserResponse;
-import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.ResourceNotFoundException;
 import com.safetypin.authentication.exception.UnauthorizedAccessException;
-import com.safetypin.authentication.service.JwtService;
+import com.safetypin.authentication.security.AuthenticatedUser;
 import com.safetypin.authentication.service.UserAdminService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.UUID;
@@ -18,16 +17,13 @@ import java.util.UUID;
 @RequestMapping("/api/admin/users")
 public class UserAdminController {
 
-    private static final String BEARER_PREFIX = "Bearer ";
     private static final String STATUS_SUCCESS = "success";
     private static final String STATUS_ERROR = "error";
     private final UserAdminService userAdminService;
-    private final JwtService jwtService;
 
     @Autowired
-    public UserAdminController(UserAdminService userAdminService, JwtService jwtService) {
+    public UserAdminController(UserAdminService userAdminService) {
         this.userAdminService = userAdminService;
-        this.jwtService = jwtService;
     }
 
     /**
@@ -35,21 +31,17 @@ public class UserAdminController {
      * This endpoint can only be accessed by users with MODERATOR role
      *
      * @param userId     ID of the user to delete
-     * @param authHeader Authorization header with JWT token
+     * @param moderator the authenticated moderator
      * @return Response with success or error message
      */
     @DeleteMapping("/{userId}")
     public ResponseEntity<ApiResponse<String>> deleteUser(
             @PathVariable UUID userId,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal AuthenticatedUser moderator) {
 
         try {
-            // Extract token from auth header
-            String token = authHeader.replace(BEARER_PREFIX, "");
-
-            // Get moderator info from JWT token
-            UserResponse moderator = jwtService.getUserFromJwtToken(token);
-            UUID moderatorId = moderator.getId();
+            // The role in the token is re-checked against the database by UserAdminService
+            UUID moderatorId = moderator.id();
 
             // Delete the user
             userAdminService.deleteUser(moderatorId, userId);
@@ -59,12 +51,6 @@ public class UserAdminController {
                     .status(STATUS_SUCCESS)
                     .message("User deleted successfully")
                     .build());
-        } catch (InvalidCredentialsException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(ApiResponse.<String>builder()
-                            .status(STATUS_ERROR)
-                            .message(e.getMessage())
-                            .build());
         } catch (UnauthorizedAccessException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(ApiResponse.<String>builder()
@@ -1,7 +1,9 @@
 package com.safetypin.authentication.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.Setter;
 
 import java.util.UUID;
 
@@ -11,4 +13,12 @@ public class AuthToken {
     private UUID userId;
     private String accessToken;
     private String refreshToken;
+    // Set on registration, to look up the delivery of the verification OTP
+    @Setter
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String otpStatusHandle;
+
+    public AuthToken(UUID userId, String accessToken, String refreshToken) {
+        this(userId, accessToken, refreshToken, null);
+    }
 }
@@ -0,0 +1,14 @@
+package com.safetypin.authentication.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JwtBatchVerificationRequest {
+    private List<String> tokens;
+}
@@ -0,0 +1,23 @@
+package com.safetypin.authentication.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+// Outcome for one token of a batch verification, user is null when the token was rejected
+public class JwtVerificationResult {
+    private boolean valid;
+    private String message;
+    private UserResponse user;
+
+    public static JwtVerificationResult valid(UserResponse user) {
+        return new JwtVerificationResult(true, "OK", user);
+    }
+
+    public static JwtVerificationResult invalid(String message) {
+        return new JwtVerificationResult(false, message, null);
+    }
+}
@@ -0,0 +1,14 @@
+package com.safetypin.authentication.dto;
+
+/**
+ * Whether the mail carrying an OTP went out, looked up by the status handle returned when it was requested
+ */
+public enum OtpDeliveryStatus {
+    // Queued, the mail server has not answered yet
+    PENDING,
+    SENT,
+    // Sending failed, request a new OTP
+    FAILED,
+    // The OTP was already used, replaced by a newer one or has expired, or the handle is unknown
+    NONE
+}
@@ -0,0 +1,16 @@
+package com.safetypin.authentication.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+public class OtpStatusHandleResponse {
+    // Pass to /otp-status to see whether the OTP mail went out
+    private String otpStatusHandle;
+
+    public OtpStatusHandleResponse(String otpStatusHandle) {
+        this.otpStatusHandle = otpStatusHandle;
+    }
+
+}
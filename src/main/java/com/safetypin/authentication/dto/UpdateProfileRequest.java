@@ -16,4 +16,5 @@ public class UpdateProfileRequest {
     private String discord;
     private String profilePicture;
     private String profileBanner;
+    private Boolean followerDigestEnabled;
 }
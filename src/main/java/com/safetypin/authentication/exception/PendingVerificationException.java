@@ -1,7 +1,15 @@
 package com.safetypin.authentication.exception;
 
 public class PendingVerificationException extends RuntimeException {
-    public PendingVerificationException(String message) {
+    // Handle of the OTP sent again, to look up its delivery
+    private final String otpStatusHandle;
+
+    public PendingVerificationException(String message, String otpStatusHandle) {
         super(message);
+        this.otpStatusHandle = otpStatusHandle;
+    }
+
+    public String getOtpStatusHandle() {
+        return otpStatusHandle;
     }
 }
@@ -4,15 +4,27 @@ import com.safetypin.authentication.repository.RefreshTokenRepository;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Estimates the number of non-expired refresh tokens without querying the database on every scrape.
+ * Tokens are counted in one-minute buckets by expiry time: created and deleted tokens adjust their bucket,
+ * and a bucket is dropped once its minute has passed. The buckets are periodically rebuilt from the database,
+ * which picks up tokens created or deleted by other instances and by bulk deletes.
+ */
 @Component
 public class RefreshTokenMetrics {
+    private static final long BUCKET_SECONDS = 60;
 
     private final RefreshTokenRepository refreshTokenRepository;
     private final MeterRegistry meterRegistry;
+    // Live tokens keyed by the end of their expiry bucket, in epoch seconds
+    private volatile ConcurrentSkipListMap<Long, LongAdder> expiryBuckets = new ConcurrentSkipListMap<>();
 
 
     public RefreshTokenMetrics(RefreshTokenRepository refreshTokenRepository, MeterRegistry meterRegistry) {
@@ -23,12 +35,52 @@ public class RefreshTokenMetrics {
     @PostConstruct
     public void init() {
         Gauge.builder("refresh_tokens_not_expired_total", this, RefreshTokenMetrics::getTotalTokens)
-                .description("Total number of non-expired refresh tokens in Database, aka the number of users logged in")
+                .description("Estimated number of non-expired refresh tokens in Database, aka the number of users logged in")
                 .register(meterRegistry);
     }
 
+    public void tokenCreated(Instant expiryTime) {
+        expiryBuckets.computeIfAbsent(bucketOf(expiryTime), bucket -> new LongAdder()).increment();
+    }
+
+    public void tokenDeleted(Instant expiryTime) {
+        LongAdder bucket = expiryBuckets.get(bucketOf(expiryTime));
+        // Without a bucket the token has already expired and stopped counting
+        if (bucket != null) {
+            bucket.decrement();
+        }
+    }
+
     // Micrometer calls this method to get the latest value
     public double getTotalTokens() {
-        return refreshTokenRepository.countByExpiryTimeAfter(Instant.now());
+        ConcurrentSkipListMap<Long, LongAdder> buckets = expiryBuckets;
+        buckets.headMap(Instant.now().getEpochSecond(), true).clear();
+        long total = 0;
+        for (LongAdder bucket : buckets.values()) {
+            total += bucket.sum();
+        }
+        return Math.max(total, 0);
+    }
+
+    /**
+     * Rebuild the buckets from the database.
+     * Tokens created or deleted while the query runs are only picked up by the next reconciliation.
+     */
+    @Scheduled(fixedDelayString = "${refresh-token.metrics.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        ConcurrentSkipListMap<Long, LongAdder> buckets = new ConcurrentSkipListMap<>();
+        // Counted by the database, one row per bucket instead of one per token
+        for (Object[] row : refreshTokenRepository.countByExpiryBucketAfter(Instant.now())) {
+            LongAdder count = new LongAdder();
+            count.add(((Number) row[1]).longValue());
+            buckets.put(((Number) row[0]).longValue() * BUCKET_SECONDS, count);
+        }
+        expiryBuckets = buckets;
+    }
+
+    // The next bucket boundary after the whole second, so a token stops counting at most one bucket after it
+    // expired, never before. Only whole seconds, so countByExpiryBucketAfter can group the same way in SQL
+    private static long bucketOf(Instant expiryTime) {
+        return (Math.floorDiv(expiryTime.getEpochSecond(), BUCKET_SECONDS) + 1) * BUCKET_SECONDS;
     }
 }
@@ -0,0 +1,111 @@
+package com.safetypin.authentication.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier, read from the JDK's own flight recorder events.
+ * A pinned virtual thread blocks its carrier, and with one carrier per core a handful of them stall every request.
+ * Each pinning site is logged once with its stack so it can be fixed; later ones only count.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadMetrics.class);
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+    private static final String SUBMIT_FAILED = "jdk.VirtualThreadSubmitFailed";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Duration pinnedThreshold;
+    private final Timer pinnedTimer;
+    private final Counter submitFailedCounter;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream recording;
+
+    public VirtualThreadMetrics(MeterRegistry meterRegistry,
+                                @Value("${virtual-threads.pinned-threshold-ms:20}") long pinnedThresholdMillis) {
+        this.pinnedThreshold = Duration.ofMillis(pinnedThresholdMillis);
+        this.pinnedTimer = Timer.builder("virtual_threads_pinned")
+                .description("Virtual threads that blocked while pinned to their carrier, and for how long")
+                .register(meterRegistry);
+        this.submitFailedCounter = Counter.builder("virtual_threads_submit_failed_total")
+                .description("Virtual threads that could not be started or unparked on a carrier")
+                .register(meterRegistry);
+        Gauge.builder("virtual_threads_carrier_parallelism", VirtualThreadMetrics::carrierParallelism)
+                .description("Carrier threads available to run virtual threads")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        RecordingStream stream = new RecordingStream();
+        stream.enable(PINNED).withThreshold(pinnedThreshold).withStackTrace();
+        stream.enable(SUBMIT_FAILED);
+        stream.onEvent(PINNED, this::onPinned);
+        stream.onEvent(SUBMIT_FAILED, event -> {
+            submitFailedCounter.increment();
+            logger.warn("Virtual thread submit failed: {}", event.getString("exceptionMessage"));
+        });
+        stream.startAsync();
+        recording = stream;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    void onPinned(RecordedEvent event) {
+        pinnedTimer.record(event.getDuration());
+        String stack = describe(event.getStackTrace());
+        if (reportedSites.add(stack)) {
+            logger.warn("Virtual thread pinned to its carrier for {} ms at\n{}", event.getDuration().toMillis(), stack);
+        }
+    }
+
+    static int carrierParallelism() {
+        // The JDK's default, unless overridden at startup
+        String configured = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        if (configured != null) {
+            try {
+                return Integer.parseInt(configured);
+            } catch (NumberFormatException e) {
+                // Ignored by the JDK as well
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\t(no stack trace)";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        return frames.stream()
+                .limit(LOGGED_FRAMES)
+                .map(frame -> "\t" + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+}
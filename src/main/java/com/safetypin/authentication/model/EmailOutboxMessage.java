@@ -0,0 +1,57 @@
+package com.safetypin.authentication.model;
+
+import com.safetypin.authentication.service.email.EmailTemplateType;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A mail waiting to be sent, deleted once the mail server accepted it or it is no longer worth sending.
+ * <p>
+ * The table holds live secrets: {@link #code} is the plaintext OTP, which the mail needs and which verifies the
+ * recipient's address or resets their password until it expires. Grant access to email_outbox, its backups and
+ * replicas as you would to credentials. A row never outlives its code: it is deleted when the mail is delivered,
+ * given up on, replaced by a newer one for the recipient, or by the first dispatch run after {@link #expiresAt}.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_email_outbox_next_attempt_at", columnList = "next_attempt_at"),
+        @Index(name = "idx_email_outbox_recipient", columnList = "recipient")
+})
+public class EmailOutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    // The OTP itself in plaintext, kept out of logs
+    @ToString.Exclude
+    @Column(nullable = false, length = 64)
+    private String code;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private EmailTemplateType templateType;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Also serves as the claim: a dispatcher moves it past its lease before sending
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    // The code is useless afterwards, so the mail is dropped instead of sent
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
@@ -0,0 +1,38 @@
+package com.safetypin.authentication.model;
+
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The pending OTP of an email and the delivery of the mail carrying it, used when otp.store.type is jdbc
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "otp_codes", indexes = {
+        @Index(name = "idx_otp_codes_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_otp_codes_status_handle_hash", columnList = "status_handle_hash")
+})
+public class OtpCode {
+    @Id
+    private String email;
+
+    @ToString.Exclude
+    @Column(nullable = false, length = 16)
+    private String otp;
+
+    // Hex SHA-256 digest of the handle the requester looks up the delivery by
+    @Column(name = "status_handle_hash", length = 64)
+    private String statusHandleHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OtpDeliveryStatus deliveryStatus;
+
+    // Epoch millis
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+}
@@ -0,0 +1,28 @@
+package com.safetypin.authentication.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A password reset token issued after OTP verification, used when otp.store.type is jdbc
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "password_reset_tokens", indexes = {
+        @Index(name = "idx_password_reset_tokens_expires_at", columnList = "expires_at")
+})
+public class PasswordResetToken {
+    // Hex SHA-256 digest, the plaintext token is only known to the user
+    @Id
+    @Column(length = 64)
+    private String tokenHash;
+
+    @Column(nullable = false)
+    private String email;
+
+    // Epoch millis
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+}
@@ -3,6 +3,7 @@ package com.safetypin.authentication.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -10,15 +11,26 @@ import java.util.UUID;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_expiry_time", columnList = "expiry_time"),
+        @Index(name = "idx_refresh_tokens_user_id", columnList = "user_id")
+})
 public class RefreshToken {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @Column(nullable = false, unique = true)
+    // The plaintext token is only known when it is issued, the database keeps its SHA-256 digest
+    @Transient
+    @ToString.Exclude
     private String token;
 
+    @ToString.Exclude
+    @Column(name = "token_hash", unique = true, length = 32)
+    private byte[] tokenHash;
+
+    // Kept out of toString so logging a token never triggers a lazy load of its user
+    @ToString.Exclude
     @JoinColumn(name = "user_id", nullable = false)
     @ManyToOne(fetch = FetchType.LAZY)
     private User user;
@@ -0,0 +1,28 @@
+package com.safetypin.authentication.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A deleted user whose access tokens must keep failing verification on every instance until they have expired
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "revoked_users", indexes = {
+        @Index(name = "idx_revoked_users_revoked_at", columnList = "revoked_at")
+})
+public class RevokedUser {
+    // Not a foreign key, the user row is gone
+    @Id
+    private UUID userId;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+}
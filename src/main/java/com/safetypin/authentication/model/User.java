@@ -7,7 +7,9 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
@@ -82,6 +84,28 @@ public class User {
     @Getter
     private String profileBanner; // used for jwt
 
+    // Access tokens carrying an older version are rejected, bumped to revoke every outstanding token
+    @Setter
+    @Getter
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int tokenVersion = 0;
+
+    // When tokenVersion was last bumped, so a restarted instance only reloads recent revocations
+    @Setter
+    @Getter
+    private Instant tokensRevokedAt;
+
+    // Opt-in to a periodic mail listing new followers
+    @Setter
+    @Getter
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean followerDigestEnabled = false;
+
+    // Follows up to this time were covered by a digest
+    @Setter
+    @Getter
+    private LocalDateTime followerDigestSentAt;
+
     public UserResponse generateUserResponse() {
         return UserResponse.builder()
                 .email(email)
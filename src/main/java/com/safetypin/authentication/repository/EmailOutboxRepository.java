@@ -0,0 +1,52 @@
+package com.safetypin.authentication.repository;
+
+import com.safetypin.authentication.model.EmailOutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, UUID> {
+    @Query("select m from EmailOutboxMessage m where m.nextAttemptAt <= :now order by m.nextAttemptAt")
+    List<EmailOutboxMessage> findDue(@Param("now") Instant now, Pageable page);
+
+    // Succeeds for one dispatcher only, the others see the moved attempt time and skip the message
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxMessage m set m.nextAttemptAt = :leaseUntil "
+            + "where m.id = :id and m.nextAttemptAt = :nextAttemptAt")
+    int claim(@Param("id") UUID id, @Param("nextAttemptAt") Instant nextAttemptAt,
+              @Param("leaseUntil") Instant leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxMessage m set m.attempts = :attempts, m.nextAttemptAt = :nextAttemptAt "
+            + "where m.id = :id")
+    int reschedule(@Param("id") UUID id, @Param("attempts") int attempts,
+                   @Param("nextAttemptAt") Instant nextAttemptAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from EmailOutboxMessage m where m.id = :id")
+    int deleteMessageById(@Param("id") UUID id);
+
+    @Modifying
+    @Query("delete from EmailOutboxMessage m where m.recipient = :recipient")
+    int deleteByRecipient(@Param("recipient") String recipient);
+
+    @Transactional
+    @Modifying
+    @Query("delete from EmailOutboxMessage m where m.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+
+    @Query("select min(m.createdAt) from EmailOutboxMessage m")
+    Instant findOldestCreatedAt();
+}
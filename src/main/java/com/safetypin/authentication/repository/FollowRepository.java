@@ -1,8 +1,10 @@
 package com.safetypin.authentication.repository;
 
 import com.safetypin.authentication.model.Follow;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -40,4 +42,28 @@ public interface FollowRepository extends JpaRepository<Follow, UUID> {
      */
     @Query("SELECT f.followingId as userId, COUNT(f.followerId) as count FROM Follow f WHERE f.followingId IN :followingIds GROUP BY f.followingId")
     List<Object[]> countFollowersByUserIds(List<UUID> followingIds);
-}
\ No newline at end of file
+
+    /**
+     * Users opted in to the follower digest who gained followers since their last digest, at most one per period
+     *
+     * @param since      oldest follow that still counts
+     * @param until      newest follow that counts, the end of this run's window
+     * @param sentBefore users whose last digest is newer are skipped
+     * @param after      keyset, only users with a larger id
+     * @return rows of user id, email, name, last digest time and follower count
+     */
+    @Query("SELECT u.id, u.email, u.name, u.followerDigestSentAt, COUNT(f) FROM Follow f, User u "
+            + "WHERE u.id = f.followingId AND u.followerDigestEnabled = true "
+            + "AND f.createdAt > :since AND f.createdAt <= :until "
+            + "AND (u.followerDigestSentAt IS NULL OR (u.followerDigestSentAt < :sentBefore "
+            + "AND f.createdAt > u.followerDigestSentAt)) "
+            + "AND u.id > :after "
+            + "GROUP BY u.id, u.email, u.name, u.followerDigestSentAt ORDER BY u.id")
+    List<Object[]> findFollowerDigestCandidates(@Param("since") LocalDateTime since,
+                                                @Param("until") LocalDateTime until,
+                                                @Param("sentBefore") LocalDateTime sentBefore,
+                                                @Param("after") UUID after, Pageable page);
+
+    List<Follow> findTop3ByFollowingIdAndCreatedAtAfterAndCreatedAtLessThanEqualOrderByCreatedAtDesc(
+            UUID followingId, LocalDateTime after, LocalDateTime until);
+}
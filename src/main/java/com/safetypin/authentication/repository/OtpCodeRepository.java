@@ -0,0 +1,53 @@
+package com.safetypin.authentication.repository;
+
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
+import com.safetypin.authentication.model.OtpCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface OtpCodeRepository extends JpaRepository<OtpCode, String> {
+    @Transactional
+    @Modifying
+    @Query("update OtpCode o set o.otp = :otp, o.statusHandleHash = :statusHandleHash, "
+            + "o.deliveryStatus = :deliveryStatus, o.expiresAt = :expiresAt where o.email = :email")
+    int replace(@Param("email") String email, @Param("otp") String otp,
+                @Param("statusHandleHash") String statusHandleHash,
+                @Param("deliveryStatus") OtpDeliveryStatus deliveryStatus, @Param("expiresAt") long expiresAt);
+
+    // A plain insert, so a concurrent one for the same email fails on the key instead of merging
+    @Transactional
+    @Modifying
+    @Query("insert into OtpCode (email, otp, statusHandleHash, deliveryStatus, expiresAt) "
+            + "values (:email, :otp, :statusHandleHash, :deliveryStatus, :expiresAt)")
+    int insert(@Param("email") String email, @Param("otp") String otp,
+               @Param("statusHandleHash") String statusHandleHash,
+               @Param("deliveryStatus") OtpDeliveryStatus deliveryStatus, @Param("expiresAt") long expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("update OtpCode o set o.deliveryStatus = :deliveryStatus where o.email = :email and o.otp = :otp")
+    int updateDeliveryStatus(@Param("email") String email, @Param("otp") String otp,
+                             @Param("deliveryStatus") OtpDeliveryStatus deliveryStatus);
+
+    @Query("select o.deliveryStatus from OtpCode o "
+            + "where o.statusHandleHash = :statusHandleHash and o.expiresAt > :now")
+    Optional<OtpDeliveryStatus> findLiveDeliveryStatus(@Param("statusHandleHash") String statusHandleHash,
+                                                       @Param("now") long now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OtpCode o where o.email = :email and o.otp = :otp and o.expiresAt > :now")
+    int deleteLive(@Param("email") String email, @Param("otp") String otp, @Param("now") long now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OtpCode o where o.expiresAt <= :now")
+    int deleteExpired(@Param("now") long now);
+}
@@ -0,0 +1,28 @@
+package com.safetypin.authentication.repository;
+
+import com.safetypin.authentication.model.PasswordResetToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface PasswordResetTokenRepository extends JpaRepository<PasswordResetToken, String> {
+    @Transactional
+    @Modifying
+    @Query("insert into PasswordResetToken (tokenHash, email, expiresAt) values (:tokenHash, :email, :expiresAt)")
+    int insert(@Param("tokenHash") String tokenHash, @Param("email") String email, @Param("expiresAt") long expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PasswordResetToken t "
+            + "where t.tokenHash = :tokenHash and t.email = :email and t.expiresAt > :now")
+    int deleteLive(@Param("tokenHash") String tokenHash, @Param("email") String email, @Param("now") long now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PasswordResetToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") long now);
+}
@@ -1,19 +1,62 @@
 package com.safetypin.authentication.repository;
 
 import com.safetypin.authentication.model.RefreshToken;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
-    RefreshToken findByToken(String token);
+    RefreshToken findByTokenHash(byte[] tokenHash);
 
-    // maybe don't use? or call this periodically
+    // The owner is fetched in the same statement, rotation needs it to sign the new access token
+    @Query("select r from RefreshToken r join fetch r.user where r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findWithUserByTokenHash(@Param("tokenHash") byte[] tokenHash);
+
+    // Returns 0 when a concurrent request already deleted the token
+    @Modifying
+    @Query("delete from RefreshToken r where r.id = :id")
+    int deleteTokenById(@Param("id") UUID id);
+
+    // Unbounded, routine cleanup goes through RefreshTokenPurger in small batches instead
     void deleteAllByExpiryTimeBefore(Instant expiryTime);
 
+    // Oldest first, so a purge that stops early has still removed the longest expired tokens
+    @Query("select r.id from RefreshToken r where r.expiryTime < :now order by r.expiryTime")
+    List<UUID> findExpiredIds(@Param("now") Instant now, Pageable page);
+
+    // Each batch commits on its own, keeping row locks short
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken r where r.id in :ids")
+    int deleteTokensByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // Live tokens per RefreshTokenMetrics bucket, as {epoch minute the bucket ends at, count}
+    @Query("select floor(extract(epoch from r.expiryTime) / 60) + 1, count(r) from RefreshToken r "
+            + "where r.expiryTime > :now group by floor(extract(epoch from r.expiryTime) / 60) + 1")
+    List<Object[]> countByExpiryBucketAfter(@Param("now") Instant now);
+
+    @Query("select min(r.expiryTime) from RefreshToken r")
+    Instant findEarliestExpiryTime();
+
     // For monitoring purposes (active users)
     long countByExpiryTimeAfter(Instant expiryTime);
 
-    void deleteByUserId(UUID userId);
+    // One statement, a derived delete would load and remove every token separately
+    @Modifying
+    @Query("delete from RefreshToken r where r.user.id = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
+
+    // {id, expiryTime} of every token of the user, newest first: the sessions kept under the per-user limit
+    // come first, and the expiry times let deletions update RefreshTokenMetrics
+    @Query("select r.id, r.expiryTime from RefreshToken r where r.user.id = :userId order by r.expiryTime desc")
+    List<Object[]> findIdsAndExpiryTimesByUserId(@Param("userId") UUID userId);
 }
@@ -0,0 +1,23 @@
+package com.safetypin.authentication.repository;
+
+import com.safetypin.authentication.model.RevokedUser;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface RevokedUserRepository extends JpaRepository<RevokedUser, UUID> {
+    List<RevokedUser> findByRevokedAtAfter(Instant since);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedUser r where r.revokedAt < :before")
+    int deleteRevokedBefore(@Param("before") Instant before);
+}
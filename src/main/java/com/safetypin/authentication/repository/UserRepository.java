@@ -2,10 +2,19 @@ package com.safetypin.authentication.repository;
 
 import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -17,4 +26,27 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     List<User> findByNameContainingIgnoreCase(String name);
 
     List<User> findAllById(Iterable<UUID> ids);
+
+    List<User> findByTokensRevokedAtAfter(Instant since);
+
+    // Locks the user row until the calling transaction ends, e.g. so concurrent logins evict sessions one at a time
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u.id from User u where u.id = :id")
+    Optional<UUID> lockById(@Param("id") UUID id);
+
+    // Succeeds for one replica only, the others find the digest already sent and skip the user
+    @Transactional
+    @Modifying
+    @Query("update User u set u.followerDigestSentAt = :sentAt where u.id = :id "
+            + "and (u.followerDigestSentAt is null or u.followerDigestSentAt < :sentBefore)")
+    int claimFollowerDigest(@Param("id") UUID id, @Param("sentAt") LocalDateTime sentAt,
+                            @Param("sentBefore") LocalDateTime sentBefore);
+
+    // Gives a claimed digest whose mail failed back to the next window, unless another digest claimed it since
+    @Transactional
+    @Modifying
+    @Query("update User u set u.followerDigestSentAt = :previous "
+            + "where u.id = :id and u.followerDigestSentAt = :sentAt")
+    int releaseFollowerDigest(@Param("id") UUID id, @Param("sentAt") LocalDateTime sentAt,
+                              @Param("previous") LocalDateTime previous);
 }
@@ -0,0 +1,25 @@
+package com.safetypin.authentication.security;
+
+import com.safetypin.authentication.dto.UserResponse;
+import com.safetypin.authentication.model.Role;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The caller of the current request, built once from the bearer token by {@link JwtAuthenticationFilter}.
+ * Inject it with {@code @AuthenticationPrincipal}; it is null on endpoints that allow anonymous access.
+ */
+public record AuthenticatedUser(UUID id, String name, String email, Role role, boolean verified, String provider) {
+
+    public static AuthenticatedUser from(UserResponse user) {
+        return new AuthenticatedUser(user.getId(), user.getName(), user.getEmail(), user.getRole(),
+                user.isVerified(), user.getProvider());
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return role == null ? List.of() : List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+}
@@ -0,0 +1,171 @@
+package com.safetypin.authentication.security;
+
+import com.safetypin.authentication.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing and matching on a dedicated pool of one thread per core, so a login burst queues here
+ * instead of holding every request thread on BCrypt. The queue is bounded in length and in time: a request that
+ * would wait longer than the queue deadline is refused up front from the queued work and the average hash time,
+ * and one that still waited too long is dropped when its turn comes. Both surface as {@link ServiceOverloadedException}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+    private static final String ENCODE = "encode";
+    private static final String MATCHES = "matches";
+    // Weight of the latest hash in the running average
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final long queueDeadlineNanos;
+    private final LongSupplier nanoClock;
+    private final Timer queueWaitTimer;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejectedCounter;
+    // Running average of the hash time, seeded on the first hash
+    private final AtomicLong averageHashNanos = new AtomicLong();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry, int threads,
+                                  int queueCapacity, long queueDeadlineMillis) {
+        this(delegate, meterRegistry, threads, queueCapacity, queueDeadlineMillis, System::nanoTime);
+    }
+
+    BoundedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry, int threads, int queueCapacity,
+                           long queueDeadlineMillis, LongSupplier nanoClock) {
+        this.delegate = delegate;
+        this.threads = threads;
+        this.queueDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(queueDeadlineMillis);
+        this.nanoClock = nanoClock;
+        AtomicInteger threadCount = new AtomicInteger();
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.queueWaitTimer = Timer.builder("password_hash_queue_wait")
+                .description("Time password hashing waited for a free hashing thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.encodeTimer = hashTimer(meterRegistry, ENCODE);
+        this.matchesTimer = hashTimer(meterRegistry, MATCHES);
+        this.rejectedCounter = Counter.builder("password_hash_rejected_total")
+                .description("Password hashing refused because it would have waited past the queue deadline")
+                .register(meterRegistry);
+        Gauge.builder("password_hash_queue_depth", queue, BlockingQueue::size)
+                .description("Password hashing waiting for a free hashing thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> delegate.encode(rawPassword), encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T submit(Supplier<T> work, Timer hashTimer) {
+        // Only the work queued ahead counts, so an empty queue always admits and keeps the average current
+        long estimatedWait = executor.getQueue().size() * averageHashNanos.get() / threads;
+        if (estimatedWait > queueDeadlineNanos) {
+            throw reject();
+        }
+        long enqueuedAt = nanoClock.getAsLong();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(work, hashTimer, enqueuedAt, result));
+        } catch (RejectedExecutionException e) {
+            throw reject();
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> void run(Supplier<T> work, Timer hashTimer, long enqueuedAt, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            // The caller gave up
+            return;
+        }
+        long startedAt = nanoClock.getAsLong();
+        queueWaitTimer.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+        if (startedAt - enqueuedAt > queueDeadlineNanos) {
+            result.completeExceptionally(reject());
+            return;
+        }
+        // Timed before completing, so the caller sees its own hash in the metrics
+        T value;
+        try {
+            value = work.get();
+        } catch (RuntimeException e) {
+            recordHash(hashTimer, startedAt);
+            result.completeExceptionally(e);
+            return;
+        }
+        recordHash(hashTimer, startedAt);
+        result.complete(value);
+    }
+
+    private void recordHash(Timer hashTimer, long startedAt) {
+        long hashNanos = nanoClock.getAsLong() - startedAt;
+        hashTimer.record(hashNanos, TimeUnit.NANOSECONDS);
+        averageHashNanos.updateAndGet(average -> average == 0
+                ? hashNanos
+                : (long) (average + AVERAGE_WEIGHT * (hashNanos - average)));
+    }
+
+    private ServiceOverloadedException reject() {
+        rejectedCounter.increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(queueDeadlineNanos + 999_999_999));
+        return new ServiceOverloadedException("Too many sign-in requests, please try again shortly",
+                retryAfterSeconds);
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("password_hash_duration")
+                .description("Time spent hashing or matching a password")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
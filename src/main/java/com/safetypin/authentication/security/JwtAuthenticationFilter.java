@@ -0,0 +1,73 @@
+package com.safetypin.authentication.security;
+
+import com.safetypin.authentication.dto.UserResponse;
+import com.safetypin.authentication.exception.InvalidCredentialsException;
+import com.safetypin.authentication.service.JwtService;
+import com.safetypin.authentication.service.jwt.VerificationMode;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Verifies the bearer token once per request and stores the caller as an {@link AuthenticatedUser}.
+ * Requests with a missing or invalid token continue anonymously, the authorization rules in {@link SecurityConfig}
+ * decide whether that is enough.
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    // Why the token was rejected, picked up by the authentication entry point for the 401 message
+    public static final String AUTHENTICATION_ERROR_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".error";
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtService jwtService;
+
+    public JwtAuthenticationFilter(JwtService jwtService) {
+        this.jwtService = jwtService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith(BEARER_PREFIX)) {
+            authenticate(request, authHeader.substring(BEARER_PREFIX.length()).trim());
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void authenticate(HttpServletRequest request, String token) {
+        try {
+            UserResponse user = jwtService.getUserFromJwtToken(token, VerificationMode.CLAIMS_ONLY);
+            AuthenticatedUser principal = AuthenticatedUser.from(user);
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(
+                    new UsernamePasswordAuthenticationToken(principal, token, principal.authorities()));
+            SecurityContextHolder.setContext(context);
+        } catch (InvalidCredentialsException e) {
+            reject(request, e.getMessage());
+        } catch (ExpiredJwtException e) {
+            reject(request, "Token expired");
+        } catch (JwtException | IllegalArgumentException e) {
+            reject(request, "Invalid token");
+        }
+    }
+
+    private void reject(HttpServletRequest request, String message) {
+        logger.debug("JwtAuthenticationFilter:: rejected bearer token for {}: {}", request.getRequestURI(), message);
+        SecurityContextHolder.clearContext();
+        request.setAttribute(AUTHENTICATION_ERROR_ATTRIBUTE, message);
+    }
+}
@@ -1,5 +1,7 @@
 package com.safetypin.authentication.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -7,8 +9,20 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 public class PasswordEncoderConfig {
+    // 0 for one hashing thread per available core
+    @Value("${password.hash.threads:0}")
+    private int threads = 0;
+
+    @Value("${password.hash.queue-capacity:100}")
+    private int queueCapacity = 100;
+
+    @Value("${password.hash.queue-deadline-ms:2000}")
+    private long queueDeadlineMillis = 2000;
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry, poolSize, queueCapacity,
+                queueDeadlineMillis);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+package com.safetypin.authentication.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import static java.security.DrbgParameters.Capability.RESEED_ONLY;
+
+/**
+ * Random values for refresh tokens, OTPs and reset tokens.
+ * A single SecureRandom serializes every caller on its lock, so requests are spread over a power-of-two
+ * number of DRBG instances chosen by thread id. Reseeding happens on a schedule, off the request path.
+ */
+@Component
+public class SecureTokenGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(SecureTokenGenerator.class);
+    private static final byte[] URL_SAFE_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000,
+            100_000_000, 1_000_000_000};
+
+    private final SecureRandom[] stripes;
+    private final int mask;
+
+    public SecureTokenGenerator() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public SecureTokenGenerator(int minStripes) {
+        int count = minStripes <= 1 ? 1 : Integer.highestOneBit(minStripes - 1) << 1;
+        stripes = new SecureRandom[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = newDrbg(i);
+        }
+        mask = count - 1;
+    }
+
+    /**
+     * Random bytes encoded as unpadded base64url, safe in URLs, query parameters and headers
+     *
+     * @param numBytes bytes of randomness
+     * @return a string of ceil(numBytes * 4 / 3) characters
+     */
+    public String urlSafeToken(int numBytes) {
+        byte[] random = new byte[numBytes];
+        stripe().nextBytes(random);
+        byte[] encoded = new byte[(numBytes * 4 + 2) / 3];
+        encodeUrlSafe(random, encoded);
+        // Latin-1 strings keep one byte per char, so this is a plain copy
+        return new String(encoded, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * A uniformly random code of exactly the given number of decimal digits, leading zeros included
+     */
+    public String numericCode(int digits) {
+        if (digits < 1 || digits > 9) {
+            throw new IllegalArgumentException("digits must be between 1 and 9");
+        }
+        int value = stripe().nextInt(POWERS_OF_TEN[digits]);
+        byte[] code = new byte[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            code[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(code, StandardCharsets.ISO_8859_1);
+    }
+
+    public void nextBytes(byte[] bytes) {
+        stripe().nextBytes(bytes);
+    }
+
+    @Scheduled(fixedDelayString = "${security.random.reseed-interval-ms:3600000}")
+    public void reseed() {
+        for (SecureRandom stripe : stripes) {
+            try {
+                stripe.reseed();
+            } catch (UnsupportedOperationException e) {
+                // The fallback generator reseeds itself
+                return;
+            }
+        }
+        logger.debug("Reseeded {} random generators", stripes.length);
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Base64url without padding, from src straight into dst
+     */
+    static void encodeUrlSafe(byte[] src, byte[] dst) {
+        int s = 0;
+        int d = 0;
+        int whole = src.length - src.length % 3;
+        while (s < whole) {
+            int bits = (src[s++] & 0xff) << 16 | (src[s++] & 0xff) << 8 | (src[s++] & 0xff);
+            dst[d++] = URL_SAFE_ALPHABET[bits >>> 18];
+            dst[d++] = URL_SAFE_ALPHABET[bits >>> 12 & 0x3f];
+            dst[d++] = URL_SAFE_ALPHABET[bits >>> 6 & 0x3f];
+            dst[d++] = URL_SAFE_ALPHABET[bits & 0x3f];
+        }
+        int remaining = src.length - whole;
+        if (remaining > 0) {
+            int bits = (src[s] & 0xff) << 16 | (remaining == 2 ? (src[s + 1] & 0xff) << 8 : 0);
+            dst[d++] = URL_SAFE_ALPHABET[bits >>> 18];
+            dst[d++] = URL_SAFE_ALPHABET[bits >>> 12 & 0x3f];
+            if (remaining == 2) {
+                dst[d] = URL_SAFE_ALPHABET[bits >>> 6 & 0x3f];
+            }
+        }
+    }
+
+    private SecureRandom stripe() {
+        return stripes[(int) Thread.currentThread().threadId() & mask];
+    }
+
+    private static SecureRandom newDrbg(int index) {
+        // Personalization keeps the instances distinct even if they were seeded alike
+        byte[] personalization = ByteBuffer.allocate(Integer.BYTES + Long.BYTES)
+                .putInt(index).putLong(System.nanoTime()).array();
+        try {
+            return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(256, RESEED_ONLY, personalization));
+        } catch (NoSuchAlgorithmException e) {
+            logger.warn("DRBG not available, falling back to the default SecureRandom");
+            return new SecureRandom();
+        }
+    }
+}
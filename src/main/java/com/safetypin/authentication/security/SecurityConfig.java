@@ -1,23 +1,51 @@
 package com.safetypin.authentication.security;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.safetypin.authentication.dto.AuthResponse;
+import com.safetypin.authentication.service.JwtService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+
+import java.io.IOException;
 
 @Configuration
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtService jwtService,
+                                                   ObjectMapper objectMapper) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable) // NOSONAR
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/**").permitAll() // Allow all requests
+                        // Moderator role is re-checked against the database by UserAdminService
+                        .requestMatchers("/api/admin/**").hasRole("MODERATOR")
+                        // Follow stats and public profiles are shown to anonymous visitors too
+                        .requestMatchers("/api/follow/stats/**").permitAll()
+                        .requestMatchers("/api/follow/**").authenticated()
+                        .requestMatchers("/api/auth/logout-all").authenticated()
+                        .requestMatchers("/api/profiles/me", "/api/profiles/me/**", "/api/profiles/*/role")
+                        .authenticated()
+                        .anyRequest().permitAll()
+                )
+                .addFilterBefore(new JwtAuthenticationFilter(jwtService), UsernamePasswordAuthenticationFilter.class)
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint((request, response, e) -> {
+                            Object reason = request.getAttribute(JwtAuthenticationFilter.AUTHENTICATION_ERROR_ATTRIBUTE);
+                            writeError(objectMapper, response, HttpStatus.UNAUTHORIZED,
+                                    reason != null ? reason.toString() : "Authentication required");
+                        })
+                        .accessDeniedHandler((request, response, e) ->
+                                writeError(objectMapper, response, HttpStatus.FORBIDDEN, "Access denied"))
                 )
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)) // No
                 // session
@@ -32,4 +60,11 @@ public class SecurityConfig {
             throws Exception {
         return authenticationConfiguration.getAuthenticationManager();
     }
-}
\ No newline at end of file
+
+    private static void writeError(ObjectMapper objectMapper, HttpServletResponse response, HttpStatus status,
+                                   String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new AuthResponse(false, message, null));
+    }
+}
@@ -0,0 +1,34 @@
+package com.safetypin.authentication.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The lookup keys stored for refresh and password reset tokens, a leaked database dump does not reveal usable tokens
+ */
+public final class TokenHashing {
+
+    private TokenHashing() {
+    }
+
+    /**
+     * @param token the plaintext token
+     * @return its 32 byte SHA-256 digest
+     */
+    public static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return the SHA-256 digest as 64 lowercase hex characters
+     */
+    public static String sha256Hex(String token) {
+        return HexFormat.of().formatHex(sha256(token));
+    }
+}
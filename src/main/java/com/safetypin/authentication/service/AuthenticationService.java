@@ -1,13 +1,14 @@
 package com.safetypin.authentication.service;
 
 import com.safetypin.authentication.dto.AuthToken;
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
 import com.safetypin.authentication.dto.RegistrationRequest;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.PendingVerificationException;
 import com.safetypin.authentication.exception.UserAlreadyExistsException;
-import com.safetypin.authentication.model.RefreshToken;
 import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.service.email.EmailTemplateType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -16,28 +17,30 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.time.Period;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class AuthenticationService {
     public static final String EMAIL_PROVIDER = "EMAIL";
     private static final Logger logger = LoggerFactory.getLogger(AuthenticationService.class);
     private static final String PASSWORD_RESET_EMAIL_ERROR = "Password reset is only available for email-registered users.";
+    private static final String INVALID_RESET_TOKEN = "Invalid or expired reset token. Please request a new OTP.";
 
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
     private final OTPService otpService;
-    private final RefreshTokenService refreshTokenService;
-    private final JwtService jwtService;
+    private final TokenIssuanceService tokenIssuanceService;
+    private final TokenRevocationService tokenRevocationService;
 
     public AuthenticationService(
             UserService userService, PasswordEncoder passwordEncoder,
-            OTPService otpService, JwtService jwtService,
-            RefreshTokenService refreshTokenService) {
+            OTPService otpService, TokenIssuanceService tokenIssuanceService,
+            TokenRevocationService tokenRevocationService) {
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
         this.otpService = otpService;
-        this.jwtService = jwtService;
-        this.refreshTokenService = refreshTokenService;
+        this.tokenIssuanceService = tokenIssuanceService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     // Registration using email – includes birthdate and OTP generation
@@ -54,11 +57,12 @@ public class AuthenticationService {
             // Check if user exists, is unverified, and uses EMAIL provider
             if (EMAIL_PROVIDER.equals(existingUser.getProvider()) && !existingUser.isVerified()) {
                 // Resend OTP instead of throwing UserAlreadyExistsException
-                otpService.generateOTP(request.getEmail());
+                OTPService.IssuedOtp issued = otpService.issueOTP(request.getEmail(),
+                        EmailTemplateType.OTP_VERIFICATION);
                 logger.info("Existing unverified EMAIL user found. Resending OTP for email: {}", request.getEmail());
                 // Throw a specific exception to indicate pending verification
                 throw new PendingVerificationException(
-                        "User already exists but is not verified. A new OTP has been sent.");
+                        "User already exists but is not verified. A new OTP has been sent.", issued.statusHandle());
             } else {
                 // Throw original error for other cases (e.g., verified user, different
                 // provider)
@@ -79,14 +83,14 @@ public class AuthenticationService {
         user.setProvider(EMAIL_PROVIDER);
         user = userService.save(user);
 
-        otpService.generateOTP(request.getEmail());
+        OTPService.IssuedOtp issued = otpService.issueOTP(request.getEmail(), EmailTemplateType.OTP_VERIFICATION);
         logger.info("OTP generated for user at {}", java.time.LocalDateTime.now());
 
-        String accessToken = jwtService.generateToken(user.getId());
-        RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getId());
+        AuthToken tokens = tokenIssuanceService.issueTokens(user);
+        tokens.setOtpStatusHandle(issued.statusHandle());
 
         logger.info("User registered at {}", java.time.LocalDateTime.now());
-        return new AuthToken(user.getId(), accessToken, refreshToken.getToken());
+        return tokens;
     }
 
     // Email login with detailed error messages
@@ -103,11 +107,10 @@ public class AuthenticationService {
             logger.debug("Login failed: Incorrect password for email: {}", email);
             throw new InvalidCredentialsException("Invalid email or password");
         }
-        String accessToken = jwtService.generateToken(user.getId());
-        RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getId());
+        AuthToken tokens = tokenIssuanceService.issueTokens(user);
 
         logger.info("User logged in at {}", java.time.LocalDateTime.now());
-        return new AuthToken(user.getId(), accessToken, refreshToken.getToken());
+        return tokens;
     }
 
     // OTP verification – marks user as verified upon success
@@ -127,18 +130,23 @@ public class AuthenticationService {
         return result;
     }
 
-    // Forgot password – initiates password reset flow
-    public void forgotPassword(String email) {
+    // Delivery of the OTP mail sent on registration or password reset, by the handle returned with it
+    public OtpDeliveryStatus getOtpDeliveryStatus(String otpStatusHandle) {
+        return otpService.getDeliveryStatus(otpStatusHandle);
+    }
+
+    // Forgot password – initiates password reset flow, returns the handle to look up the OTP mail's delivery
+    public String forgotPassword(String email) {
         Optional<User> userOpt = userService.findByEmail(email);
         if (userOpt.isEmpty() || !EMAIL_PROVIDER.equals(userOpt.get().getProvider())) {
             throw new IllegalArgumentException(PASSWORD_RESET_EMAIL_ERROR);
         }
 
         // Generate OTP for password reset
-        String otp = otpService.generateOTP(email);
+        OTPService.IssuedOtp issued = otpService.issueOTP(email, EmailTemplateType.OTP_PASSWORD_RESET);
 
-        // In production, send the OTP via email
-        logger.info("Password reset OTP generated for email {} at {}: {}", email, java.time.LocalDateTime.now(), otp);
+        logger.info("Password reset OTP generated for email {} at {}", email, java.time.LocalDateTime.now());
+        return issued.statusHandle();
     }
 
     // Verify OTP for password reset and generate a reset token
@@ -168,36 +176,40 @@ public class AuthenticationService {
             throw new IllegalArgumentException(PASSWORD_RESET_EMAIL_ERROR);
         }
 
-        if (resetToken == null || !otpService.verifyResetToken(resetToken, email)) {
-            throw new InvalidCredentialsException("Invalid or expired reset token. Please request a new OTP.");
+        if (resetToken == null) {
+            throw new InvalidCredentialsException(INVALID_RESET_TOKEN);
+        }
+        // Hashed before the one-time token is consumed: when hashing sheds load the client can retry with it
+        String encodedPassword = passwordEncoder.encode(newPassword);
+        if (!otpService.verifyResetToken(resetToken, email)) {
+            throw new InvalidCredentialsException(INVALID_RESET_TOKEN);
         }
 
         User user = userOpt.get();
-        user.setPassword(passwordEncoder.encode(newPassword));
-        userService.save(user);
+        user.setPassword(encodedPassword);
+        // Saves the user and revokes access tokens issued with the old password
+        tokenRevocationService.revokeTokens(user);
 
         logger.info("Password reset successfully for {} at {}", email, java.time.LocalDateTime.now());
     }
 
     // Refresh access token, checking validity of token
     public AuthToken renewRefreshToken(String refreshToken) throws InvalidCredentialsException {
-        Optional<RefreshToken> optOldToken = refreshTokenService.getAndVerifyRefreshToken(refreshToken);
-        // Check token validity
-        if (optOldToken.isEmpty()) {
-            logger.warn("Invalid refresh token provided: {}", refreshToken);
-            throw new InvalidCredentialsException("Invalid token provided");
-        }
-
-        RefreshToken oldToken = optOldToken.get();
-        User user = oldToken.getUser();
+        AuthToken tokens = tokenIssuanceService.rotateTokens(refreshToken)
+                .orElseThrow(() -> new InvalidCredentialsException("Invalid token provided"));
 
-        String accessToken = jwtService.generateToken(user.getId());
-        RefreshToken newRefreshToken = refreshTokenService.createRefreshToken(user.getId());
+        logger.info("User with id: {}, refreshed new tokens", tokens.getUserId());
+        return tokens;
+    }
 
-        refreshTokenService.deleteRefreshToken(oldToken.getToken());
+    // Log out from all devices, returns the number of sessions ended
+    public int logoutAll(UUID userId) {
+        User user = userService.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        int sessions = tokenRevocationService.revokeAllSessions(user);
 
-        logger.info("User with id: {}, refreshed new tokens", user.getId());
-        return new AuthToken(user.getId(), accessToken, newRefreshToken.getToken());
+        logger.info("User with id: {}, logged out of {} sessions", userId, sessions);
+        return sessions;
     }
 
     private int calculateAge(LocalDate birthdate) {
@@ -1,5 +1,13 @@
 package com.safetypin.authentication.service;
 
+import com.safetypin.authentication.service.email.EmailTemplate;
+import com.safetypin.authentication.service.email.EmailTemplateType;
+import com.safetypin.authentication.service.email.EmailTemplates;
+import com.safetypin.authentication.service.email.SmtpTransportPool;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,23 +15,27 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 
 @Service
 public class EmailService {
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
-    private static final String SENDER = "noreply@safetyp.in";
+    private static final InternetAddress SENDER_ADDRESS = senderAddress();
     private final JavaMailSender mailSender;
+    private final EmailTemplates emailTemplates;
+    private final SmtpTransportPool transportPool;
 
 
     @Autowired
     public EmailService(
             JavaMailSender mailSender,
+            EmailTemplates emailTemplates,
+            SmtpTransportPool transportPool,
             @Value("${mail.proxy.host}") String proxyHost,
             @Value("${mail.proxy.port}") String proxyPort,
             @Value("${mail.proxy.enabled}") boolean proxyEnabled) {
@@ -36,56 +48,21 @@ public class EmailService {
         }
 
         this.mailSender = mailSender;
+        this.emailTemplates = emailTemplates;
+        this.transportPool = transportPool;
 
         logger.info("EmailService:: initialized with JavaMailSender: {}", mailSender);
     }
 
+    /**
+     * Send a code using the given template, on the email executor
+     *
+     * @return whether the mail server accepted the mail
+     */
     @Async("emailTaskExecutor")
-    public CompletableFuture<Boolean> sendOTPMail(String to, String otp) {
+    public CompletableFuture<Boolean> sendOTPMail(String to, String otp, EmailTemplateType templateType) {
         try {
-            MimeMessage mimeMessage = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, "utf-8");
-
-            helper.setFrom(SENDER);
-            helper.setTo(to);
-            helper.setSubject("OTP Code for SafetyPin");
-
-            String htmlContent =
-                    "<!DOCTYPE html>" +
-                            "<html>" +
-                            "<head>" +
-                            "    <style>" +
-                            "        body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }" +
-                            "        .container { max-width: 600px; margin: 0 auto; padding: 20px; border: 1px solid #ddd; border-radius: 5px; }" +
-                            "        .header { background-color: #4285f4; color: white; padding: 10px; text-align: center; border-radius: 5px 5px 0 0; }" +
-                            "        .content { padding: 20px; }" +
-                            "        .otp-code { font-size: 24px; font-weight: bold; text-align: center; margin: 20px 0; padding: 10px; background-color: #f0f0f0; border-radius: 4px; letter-spacing: 5px; }" +
-                            "        .footer { font-size: 12px; color: #777; text-align: center; margin-top: 20px; }" +
-                            "    </style>" +
-                            "</head>" +
-                            "<body>" +
-                            "    <div class='container'>" +
-                            "        <div class='header'>" +
-                            "            <h2>SafetyPin Security</h2>" +
-                            "        </div>" +
-                            "        <div class='content'>" +
-                            "            <p>Hello,</p>" +
-                            "            <p>Your one-time verification code is:</p>" +
-                            "            <div class='otp-code'>" + otp + "</div>" +
-                            "            <p>This code will expire in 2 minutes. Please do not share this code with anyone.</p>" +
-                            "            <p>If you didn't request this code, please ignore this email.</p>" +
-                            "        </div>" +
-                            "        <div class='footer'>" +
-                            "            <p>This is an automated message. Please do not reply.</p>" +
-                            "            <p>&copy; " + java.time.Year.now().getValue() + " SafetyPin. All rights reserved.</p>" +
-                            "        </div>" +
-                            "    </div>" +
-                            "</body>" +
-                            "</html>";
-
-            helper.setText(htmlContent, true); // true indicates HTML content
-
-            mailSender.send(mimeMessage);
+            sendMail(to, templateType, Map.of(EmailTemplate.CODE, otp));
             return CompletableFuture.completedFuture(true);
         } catch (Exception e) {
             logger.warn("EmailService.sendOTPMail:: Failed to send mail with error; {}", e.getMessage());
@@ -93,6 +70,25 @@ public class EmailService {
         }
     }
 
+    /**
+     * Send a templated mail on the calling thread
+     *
+     * @param values the template's placeholders
+     */
+    public void sendMail(String to, EmailTemplateType templateType, Map<String, String> values)
+            throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        mimeMessage.setFrom(SENDER_ADDRESS);
+        mimeMessage.setRecipient(Message.RecipientType.TO, new InternetAddress(to));
+        emailTemplates.get(templateType).writeTo(mimeMessage, values);
+
+        if (transportPool.isEnabled()) {
+            transportPool.send(mimeMessage);
+        } else {
+            mailSender.send(mimeMessage);
+        }
+    }
+
 
     public void testConnection() {
         try {
@@ -103,4 +99,12 @@ public class EmailService {
             logger.warn("EmailService:: Init Error:", e);
         }
     }
+
+    private static InternetAddress senderAddress() {
+        try {
+            return new InternetAddress("noreply@safetyp.in");
+        } catch (AddressException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,231 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.model.Follow;
+import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.repository.FollowRepository;
+import com.safetypin.authentication.repository.UserRepository;
+import com.safetypin.authentication.service.email.EmailOutbox;
+import com.safetypin.authentication.service.email.EmailTemplateType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mails users who opted in a summary of the followers they gained since their last digest, at most once per period.
+ * Digests only go out inside the off-peak window, one small batch per run, over the pooled SMTP connections,
+ * and a run is skipped while OTP mails are waiting in the outbox so digests never delay them.
+ * <p>
+ * Every replica runs this. Each user is claimed by a conditional update of their last digest time before the mail
+ * goes out, so only one replica mails them; a failed mail gives the claim back, a replica that dies mid-send
+ * leaves that user without a digest for one period. The mails are sent on the async
+ * executor, the scheduler thread only claims, and a run is skipped while the previous batch is still sending.
+ * <p>
+ * Only the window is read in follow.digest.zone. Follow times and the last digest time are local times of the
+ * JVM's zone, where {@code LocalDateTime.now()} writes them, so the period is measured in that zone too.
+ */
+@Service
+public class FollowerDigestService {
+    private static final Logger logger = LoggerFactory.getLogger(FollowerDigestService.class);
+    // Databases order UUIDs as unsigned bytes, so the nil UUID sorts first
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    private final FollowRepository followRepository;
+    private final UserRepository userRepository;
+    private final EmailService emailService;
+    private final EmailOutbox emailOutbox;
+    // In the zone follow times are written in
+    private final Clock clock;
+    private final Executor executor;
+    private final ZoneId windowZone;
+    private final LocalTime windowStart;
+    private final LocalTime windowEnd;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Users up to this id were handled in the current window, reset when a window starts
+    private UUID cursor = FIRST_ID;
+    private boolean inWindow;
+    private CompletableFuture<Void> sending = CompletableFuture.completedFuture(null);
+
+    @Value("${follow.digest.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${follow.digest.period-hours:24}")
+    private long periodHours = 24;
+
+    @Value("${follow.digest.batch-size:20}")
+    private int batchSize = 20;
+
+    @Autowired
+    public FollowerDigestService(FollowRepository followRepository, UserRepository userRepository,
+                                 EmailService emailService, EmailOutbox emailOutbox, MeterRegistry meterRegistry,
+                                 @Qualifier("asyncExecutor") Executor executor,
+                                 @Value("${follow.digest.zone:Asia/Jakarta}") ZoneId zone,
+                                 @Value("${follow.digest.window-start:02:00}") String windowStart,
+                                 @Value("${follow.digest.window-end:05:00}") String windowEnd) {
+        this(followRepository, userRepository, emailService, emailOutbox, meterRegistry, executor,
+                Clock.systemDefaultZone(), zone, LocalTime.parse(windowStart), LocalTime.parse(windowEnd));
+    }
+
+    FollowerDigestService(FollowRepository followRepository, UserRepository userRepository,
+                          EmailService emailService, EmailOutbox emailOutbox, MeterRegistry meterRegistry,
+                          Executor executor, Clock clock, ZoneId windowZone, LocalTime windowStart,
+                          LocalTime windowEnd) {
+        this.followRepository = followRepository;
+        this.userRepository = userRepository;
+        this.emailService = emailService;
+        this.emailOutbox = emailOutbox;
+        this.executor = executor;
+        this.clock = clock;
+        this.windowZone = windowZone;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.sentCounter = Counter.builder("follower_digest_sent_total")
+                .description("Follower digest mails sent")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("follower_digest_failed_total")
+                .description("Follower digest mails that could not be sent, retried in the next window")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claim the next batch of digests if inside the off-peak window and hand their mails to the executor.
+     * The interval between runs is the rate limit: at most batch-size mails per interval.
+     *
+     * @return the number of digests claimed by this replica
+     */
+    @Scheduled(fixedDelayString = "${follow.digest.batch-interval-ms:10000}")
+    public int sendNextBatch() {
+        // A lock rather than synchronized, a virtual thread blocked on the database inside a monitor pins its carrier
+        lock.lock();
+        try {
+            if (!sending.isDone()) {
+                logger.debug("Skipping follower digests while the previous batch is sending");
+                return 0;
+            }
+            // Millisecond precision survives every database, giving a claim back compares the stored value
+            Instant now = clock.instant().truncatedTo(ChronoUnit.MILLIS);
+            return sendBatch(LocalDateTime.ofInstant(now, clock.getZone()), LocalTime.ofInstant(now, windowZone));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int sendBatch(LocalDateTime now, LocalTime windowTime) {
+        if (!enabled || !isInWindow(windowTime)) {
+            inWindow = false;
+            return 0;
+        }
+        if (!inWindow) {
+            inWindow = true;
+            cursor = FIRST_ID;
+        }
+        if (emailOutbox.getDepth() > 0) {
+            logger.debug("Skipping follower digests while {} mails are queued", emailOutbox.getDepth());
+            return 0;
+        }
+
+        LocalDateTime since = now.minusHours(periodHours);
+        // A little slack so the next day's run is not skipped for starting a few seconds earlier
+        LocalDateTime sentBefore = since.plusMinutes(30);
+        List<Object[]> candidates = followRepository.findFollowerDigestCandidates(
+                since, now, sentBefore, cursor, PageRequest.of(0, batchSize));
+        List<CompletableFuture<Void>> mails = new ArrayList<>();
+        for (Object[] row : candidates) {
+            UUID userId = (UUID) row[0];
+            cursor = userId;
+            if (userRepository.claimFollowerDigest(userId, now, sentBefore) == 0) {
+                // Another replica got there first
+                continue;
+            }
+            LocalDateTime lastDigest = (LocalDateTime) row[3];
+            LocalDateTime from = lastDigest == null || lastDigest.isBefore(since) ? since : lastDigest;
+            long count = ((Number) row[4]).longValue();
+            mails.add(CompletableFuture.runAsync(
+                    () -> send(userId, (String) row[1], (String) row[2], from, now, count, lastDigest), executor));
+        }
+        sending = CompletableFuture.allOf(mails.toArray(CompletableFuture[]::new));
+        if (!mails.isEmpty()) {
+            logger.info("Sending {} follower digests", mails.size());
+        }
+        return mails.size();
+    }
+
+    private void send(UUID userId, String email, String name, LocalDateTime from, LocalDateTime until, long count,
+                      LocalDateTime lastDigest) {
+        try {
+            List<Follow> recent = followRepository
+                    .findTop3ByFollowingIdAndCreatedAtAfterAndCreatedAtLessThanEqualOrderByCreatedAtDesc(
+                            userId, from, until);
+            Map<UUID, String> names = new HashMap<>();
+            for (User follower : userRepository.findAllById(recent.stream().map(Follow::getFollowerId).toList())) {
+                names.put(follower.getId(), follower.getName());
+            }
+            List<String> followerNames = recent.stream()
+                    .map(follow -> names.get(follow.getFollowerId()))
+                    .filter(Objects::nonNull)
+                    .toList();
+            emailService.sendMail(email, EmailTemplateType.FOLLOWER_DIGEST,
+                    Map.of("name", name, "followers", describeFollowers(followerNames, count)));
+        } catch (MessagingException | RuntimeException e) {
+            failedCounter.increment();
+            logger.warn("Failed to send follower digest to {}: {}", email, e.getMessage());
+            userRepository.releaseFollowerDigest(userId, until, lastDigest);
+            return;
+        }
+        sentCounter.increment();
+    }
+
+    /**
+     * "Alice", "Alice and Bob", "Alice, Bob and Carol" or "Alice, Bob and 3 others"
+     */
+    static String describeFollowers(List<String> names, long count) {
+        if (names.isEmpty()) {
+            return count == 1 ? "Someone" : count + " people";
+        }
+        if (count == 1) {
+            return names.get(0);
+        }
+        if (count == 2 && names.size() >= 2) {
+            return names.get(0) + " and " + names.get(1);
+        }
+        if (count == 3 && names.size() >= 3) {
+            return names.get(0) + ", " + names.get(1) + " and " + names.get(2);
+        }
+        List<String> shown = names.subList(0, Math.min(2, names.size()));
+        long others = count - shown.size();
+        return String.join(", ", shown) + " and " + others + (others == 1 ? " other" : " others");
+    }
+
+    private boolean isInWindow(LocalTime time) {
+        if (windowStart.isBefore(windowEnd)) {
+            return !time.isBefore(windowStart) && time.isBefore(windowEnd);
+        }
+        // Window across midnight, e.g. 23:00 to 04:00
+        return !time.isBefore(windowStart) || time.isBefore(windowEnd);
+    }
+}
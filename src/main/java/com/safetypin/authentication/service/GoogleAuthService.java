@@ -15,7 +15,6 @@ import com.safetypin.authentication.dto.GoogleAuthDTO;
 import com.safetypin.authentication.exception.ApiException;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.UserAlreadyExistsException;
-import com.safetypin.authentication.model.RefreshToken;
 import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
 import org.slf4j.Logger;
@@ -46,22 +45,19 @@ public class GoogleAuthService {
     private static final String BIRTHDAY = "birthdays";
 
     private final UserService userService;
-    private final JwtService jwtService;
+    private final TokenIssuanceService tokenIssuanceService;
 
     private final String httpsProxy;
     private final String httpProxy;
 
-    private final RefreshTokenService refreshTokenService;
-
     @Value("${google.client.id:default}")
     private String googleClientId;
     @Value("${google.client.secret:default}")
     private String googleClientSecret;
 
-    public GoogleAuthService(UserService userService, JwtService jwtService, RefreshTokenService refreshTokenService) {
+    public GoogleAuthService(UserService userService, TokenIssuanceService tokenIssuanceService) {
         this.userService = userService;
-        this.jwtService = jwtService;
-        this.refreshTokenService = refreshTokenService;
+        this.tokenIssuanceService = tokenIssuanceService;
 
         // Cache proxy settings
         this.httpsProxy = getEnv("HTTPS_PROXY");
@@ -85,11 +81,10 @@ public class GoogleAuthService {
                     throw new UserAlreadyExistsException(
                             "An account with this email exists. Please sign in using " + userProvider);
                 }
-                String accessToken = jwtService.generateToken(user.getId());
-                RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getId());
+                AuthToken tokens = tokenIssuanceService.issueTokens(user);
 
                 logger.info("User logged in with Google Auth at {}", java.time.LocalDateTime.now());
-                return new AuthToken(user.getId(), accessToken, refreshToken.getToken());
+                return tokens;
             }
 
             String accessToken = getAccessToken(googleAuthDTO.getServerAuthCode());
@@ -120,10 +115,7 @@ public class GoogleAuthService {
             User user = userService.save(newUser);
             logger.info("New user registered via Google authentication: {}", email);
 
-            String jwtAccessToken = jwtService.generateToken(user.getId());
-            RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getId());
-
-            return new AuthToken(user.getId(), jwtAccessToken, refreshToken.getToken());
+            return tokenIssuanceService.issueTokens(user);
         } catch (UserAlreadyExistsException | IllegalArgumentException e) {
             throw e;
         } catch (Exception e) {
@@ -1,61 +1,148 @@
 package com.safetypin.authentication.service;
 
+import com.safetypin.authentication.dto.JwtVerificationResult;
 import com.safetypin.authentication.dto.UserResponse;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
+import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.service.jwt.Hs256TokenCodec;
+import com.safetypin.authentication.service.jwt.JwtKeyRing;
+import com.safetypin.authentication.service.jwt.SigningKey;
+import com.safetypin.authentication.service.jwt.TokenVersionRegistry;
+import com.safetypin.authentication.service.jwt.VerificationMode;
+import com.safetypin.authentication.service.jwt.VerifiedTokenCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class JwtService {
-    private static final long EXPIRATION_TIME = 1000L * 60 * 10; // 1000 milliseconds * 60 seconds * 10 minutes
+    static final long EXPIRATION_TIME = 1000L * 60 * 10; // 1000 milliseconds * 60 seconds * 10 minutes
 
-    private final Key key;
+    private static final String CLAIM_USER_ID = "userId";
+    private static final String CLAIM_NAME = "name";
+    private static final String CLAIM_IS_VERIFIED = "isVerified";
+    private static final String CLAIM_ROLE = "role";
+    private static final String CLAIM_EMAIL = "email";
+    private static final String CLAIM_PROVIDER = "provider";
+    private static final String CLAIM_TOKEN_VERSION = "tokenVersion";
+    private static final String TOKEN_REVOKED = "Token revoked";
+
+    private final JwtKeyRing keyRing;
+    // Built once, the parser is immutable and thread-safe; keys are looked up in the key ring by kid
+    private final JwtParser parser;
     private final UserService userService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+
+    // Claims-only verification falls back to a database lookup for tokens older than this, 0 disables the check
+    @Value("${jwt.claims-only.max-age-seconds:0}")
+    private long claimsOnlyMaxAgeSeconds;
+
+    // Initialized for instances created outside Spring, e.g. in unit tests
+    @Value("${jwt.verify.batch.max-size:500}")
+    private int batchMaxSize = 500;
 
-    public JwtService(@Value("${jwt.secret:biggerboysandstolensweethearts}") String secretKey,
-                      UserService userService) {
-        this.key = Keys.hmacShaKeyFor(secretKey.getBytes());
+    public JwtService(JwtKeyRing keyRing,
+                      UserService userService,
+                      VerifiedTokenCache verifiedTokenCache,
+                      TokenVersionRegistry tokenVersionRegistry) {
+        this.keyRing = keyRing;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(keyRing)
+                .build();
         this.userService = userService;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
     }
 
     public String generateToken(UUID userId) {
         User user = userService.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        return generateToken(userId, user);
+    }
+
+    /**
+     * Sign an access token for a user that is already loaded
+     */
+    public String generateToken(User user) {
+        return generateToken(user.getId(), user);
+    }
+
+    private String generateToken(UUID userId, User user) {
+        SigningKey signingKey = keyRing.getActiveKey();
+        long now = System.currentTimeMillis();
+        Hs256TokenCodec codec = keyRing.legacyCodec();
+        if (signingKey.kid() == null && codec != null) {
+            // Same claims as below, without building a map and serializing it through Jackson
+            Role role = user.getRole();
+            return codec.encode(userId.toString(), user.getName(), user.isVerified(),
+                    role != null ? role.name() : null, user.getEmail(), user.getProvider(), user.getTokenVersion(),
+                    now / 1000, (now + EXPIRATION_TIME) / 1000);
+        }
+
         Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", userId.toString());
-        claims.put("name", user.getName());
-        claims.put("isVerified", user.isVerified());
-        claims.put("role", user.getRole());
+        claims.put(CLAIM_USER_ID, userId.toString());
+        claims.put(CLAIM_NAME, user.getName());
+        claims.put(CLAIM_IS_VERIFIED, user.isVerified());
+        claims.put(CLAIM_ROLE, user.getRole());
+        claims.put(CLAIM_EMAIL, user.getEmail());
+        claims.put(CLAIM_PROVIDER, user.getProvider());
+        claims.put(CLAIM_TOKEN_VERSION, user.getTokenVersion());
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setClaims(claims)
                 .setSubject(userId.toString())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(key, SignatureAlgorithm.HS256)
-                .compact();
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + EXPIRATION_TIME))
+                .signWith(signingKey.signingKey(), signingKey.algorithm());
+        if (signingKey.kid() != null) {
+            builder.setHeaderParam("kid", signingKey.kid());
+        }
+        return builder.compact();
     }
 
     public Claims parseToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = verifiedTokenCache.get(token);
+        if (claims != null) {
+            return claims;
+        }
+        Hs256TokenCodec codec = keyRing.legacyCodec();
+        claims = codec != null ? codec.decode(token) : null;
+        if (claims == null) {
+            claims = parser.parseClaimsJws(token).getBody();
+        }
+        verifiedTokenCache.put(token, claims);
+        return claims;
     }
 
     public UserResponse getUserFromJwtToken(String token) throws InvalidCredentialsException {
+        return getUserFromJwtToken(token, VerificationMode.AUTHORITATIVE);
+    }
+
+    /**
+     * Verify a token and resolve the user it was issued to
+     *
+     * @param token the signed JWT
+     * @param mode  whether the signed claims are enough or the user must be loaded from the database
+     * @return the user described by the token
+     * @throws InvalidCredentialsException if the token is expired or the user no longer exists
+     */
+    public UserResponse getUserFromJwtToken(String token, VerificationMode mode) throws InvalidCredentialsException {
         Claims claims = parseToken(token);
 
         boolean isExpired = claims.getExpiration().before(new Date(System.currentTimeMillis()));
@@ -63,11 +150,111 @@ public class JwtService {
 
         if (isExpired) {
             throw new InvalidCredentialsException("Token expired");
-        } else {
-            User user = userService.findById(userId)
-                    .orElseThrow(() -> new InvalidCredentialsException("User not found"));
+        }
+
+        int tokenVersion = getTokenVersion(claims);
+        if (!tokenVersionRegistry.isCurrent(userId, tokenVersion)) {
+            throw new InvalidCredentialsException(TOKEN_REVOKED);
+        }
 
-            return user.generateUserResponse();
+        if (mode == VerificationMode.CLAIMS_ONLY && isFreshEnough(claims) && claims.get(CLAIM_ROLE) != null) {
+            return buildUserResponseFromClaims(userId, claims);
         }
+
+        User user = userService.findById(userId)
+                .orElseThrow(() -> new InvalidCredentialsException("User not found"));
+        // The stored version also catches revocations made on another instance
+        if (tokenVersion < user.getTokenVersion()) {
+            throw new InvalidCredentialsException(TOKEN_REVOKED);
+        }
+
+        return user.generateUserResponse();
+    }
+
+    /**
+     * Verify many tokens at once, users that must be loaded are fetched with a single query
+     *
+     * @param tokens the signed JWTs, duplicates are verified once
+     * @param mode   whether the signed claims are enough or the users must be loaded from the database
+     * @return a result for every distinct token, in request order
+     * @throws IllegalArgumentException if more than jwt.verify.batch.max-size tokens are given
+     */
+    public Map<String, JwtVerificationResult> verifyTokens(List<String> tokens, VerificationMode mode) {
+        if (tokens.size() > batchMaxSize) {
+            throw new IllegalArgumentException("At most " + batchMaxSize + " tokens can be verified at once");
+        }
+        Map<String, JwtVerificationResult> results = new LinkedHashMap<>();
+        Map<String, Claims> pending = new LinkedHashMap<>();
+        for (String token : tokens) {
+            if (results.containsKey(token)) {
+                continue;
+            }
+            Claims claims;
+            try {
+                claims = parseToken(token);
+            } catch (ExpiredJwtException e) {
+                results.put(token, JwtVerificationResult.invalid("Token expired"));
+                continue;
+            } catch (JwtException | IllegalArgumentException e) {
+                results.put(token, JwtVerificationResult.invalid("Invalid token"));
+                continue;
+            }
+            UUID userId = UUID.fromString(claims.getSubject());
+            int tokenVersion = getTokenVersion(claims);
+            if (!tokenVersionRegistry.isCurrent(userId, tokenVersion)) {
+                results.put(token, JwtVerificationResult.invalid(TOKEN_REVOKED));
+            } else if (mode == VerificationMode.CLAIMS_ONLY && isFreshEnough(claims) && claims.get(CLAIM_ROLE) != null) {
+                results.put(token, JwtVerificationResult.valid(buildUserResponseFromClaims(userId, claims)));
+            } else {
+                // Reserve the slot so the result map keeps request order
+                results.put(token, null);
+                pending.put(token, claims);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            List<UUID> userIds = pending.values().stream()
+                    .map(claims -> UUID.fromString(claims.getSubject()))
+                    .distinct()
+                    .toList();
+            Map<UUID, User> users = userService.findAllById(userIds).stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+            pending.forEach((token, claims) -> {
+                User user = users.get(UUID.fromString(claims.getSubject()));
+                if (user == null) {
+                    results.put(token, JwtVerificationResult.invalid("User not found"));
+                } else if (getTokenVersion(claims) < user.getTokenVersion()) {
+                    results.put(token, JwtVerificationResult.invalid(TOKEN_REVOKED));
+                } else {
+                    results.put(token, JwtVerificationResult.valid(user.generateUserResponse()));
+                }
+            });
+        }
+        return results;
+    }
+
+    // Tokens issued before versions existed carry no claim and count as version 0
+    private static int getTokenVersion(Claims claims) {
+        Object version = claims.get(CLAIM_TOKEN_VERSION);
+        return version instanceof Number number ? number.intValue() : 0;
+    }
+
+    private boolean isFreshEnough(Claims claims) {
+        if (claimsOnlyMaxAgeSeconds <= 0 || claims.getIssuedAt() == null) {
+            return true;
+        }
+        long ageMillis = System.currentTimeMillis() - claims.getIssuedAt().getTime();
+        return ageMillis <= claimsOnlyMaxAgeSeconds * 1000L;
+    }
+
+    private UserResponse buildUserResponseFromClaims(UUID userId, Claims claims) {
+        return UserResponse.builder()
+                .id(userId)
+                .name(claims.get(CLAIM_NAME, String.class))
+                .isVerified(Boolean.TRUE.equals(claims.get(CLAIM_IS_VERIFIED, Boolean.class)))
+                .role(Role.valueOf(claims.get(CLAIM_ROLE, String.class)))
+                .email(claims.get(CLAIM_EMAIL, String.class))
+                .provider(claims.get(CLAIM_PROVIDER, String.class))
+                .build();
     }
 }
@@ -1,71 +1,107 @@
 package com.safetypin.authentication.service;
 
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
 import com.safetypin.authentication.exception.OTPException;
+import com.safetypin.authentication.exception.RateLimitExceededException;
+import com.safetypin.authentication.security.SecureTokenGenerator;
+import com.safetypin.authentication.service.email.EmailDeliveryEvent;
+import com.safetypin.authentication.service.email.EmailOutbox;
+import com.safetypin.authentication.service.email.EmailTemplateType;
+import com.safetypin.authentication.service.otp.OtpRateLimiter;
+import com.safetypin.authentication.service.otp.OtpStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
-import java.time.LocalDateTime;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-
 @Service
 public class OTPService {
-    private static final long OTP_EXPIRATION_SECONDS = 120; // 2 minutes expiration
+    private static final long OTP_EXPIRATION_MILLIS = 120_000; // 2 minutes expiration
     private static final Logger log = LoggerFactory.getLogger(OTPService.class);
-    private static final long RESET_TOKEN_EXPIRATION_SECONDS = 180; // 3 minutes
-    private final EmailService emailService;
-    private final ConcurrentHashMap<String, OTPDetails> otpStorage = new ConcurrentHashMap<>();
-    private final SecureRandom random = new SecureRandom();
-    // Store reset tokens with their expiration time
-    private final ConcurrentHashMap<String, ResetTokenDetails> resetTokenStorage = new ConcurrentHashMap<>();
+    private static final long RESET_TOKEN_EXPIRATION_MILLIS = 180_000; // 3 minutes
+    private final EmailOutbox emailOutbox;
+    private final SecureTokenGenerator tokenGenerator;
+    private final OtpStore otpStore;
+    private final OtpRateLimiter rateLimiter;
 
     @Autowired
-    public OTPService(EmailService emailService) {
-        this.emailService = emailService;
+    public OTPService(EmailOutbox emailOutbox, SecureTokenGenerator tokenGenerator, OtpStore otpStore,
+                      OtpRateLimiter rateLimiter) {
+        this.emailOutbox = emailOutbox;
+        this.tokenGenerator = tokenGenerator;
+        this.otpStore = otpStore;
+        this.rateLimiter = rateLimiter;
     }
 
+    /**
+     * Send an OTP for verifying the email address, see {@link #generateOTP(String, EmailTemplateType)}
+     */
     public String generateOTP(String email) {
-        String otp = String.format("%06d", random.nextInt(1000000));
-        OTPDetails details = new OTPDetails(otp, LocalDateTime.now());
-        otpStorage.put(email, details);
+        return generateOTP(email, EmailTemplateType.OTP_VERIFICATION);
+    }
+
+    /**
+     * Send an OTP, see {@link #issueOTP(String, EmailTemplateType)}
+     *
+     * @return the OTP
+     */
+    public String generateOTP(String email, EmailTemplateType templateType) {
+        return issueOTP(email, templateType).otp();
+    }
 
-        try {
-            boolean status = emailService.sendOTPMail(email, otp).get();
-            if (!status) {
-                throw new OTPException("Failed to send OTP");
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-            throw new OTPException("Failed to send OTP: " + e.getMessage());
+    /**
+     * Store a new OTP for the email and put the mail carrying it in the outbox.
+     * Returns without waiting for the mail server, the outcome is reported by {@link #getDeliveryStatus} to whoever
+     * holds the returned status handle, so the endpoint cannot be used to probe which addresses requested an OTP.
+     *
+     * @param email        the address to send the OTP to
+     * @param templateType the mail carrying the OTP
+     * @return the OTP and its status handle
+     * @throws RateLimitExceededException if too many OTPs were requested for the email or overall
+     * @throws OTPException if too many OTPs are pending or the mail queue is full
+     */
+    public IssuedOtp issueOTP(String email, EmailTemplateType templateType) {
+        rateLimiter.acquire(email);
+        String otp = tokenGenerator.numericCode(6);
+        String statusHandle = tokenGenerator.urlSafeToken(16);
+        if (!otpStore.putOtp(email, otp, statusHandle, OTP_EXPIRATION_MILLIS)) {
+            log.warn("OTP store is full, rejected OTP for {}", email);
+            throw new OTPException("Too many pending verifications, please try again later");
+        }
+
+        if (!emailOutbox.enqueue(email, otp, templateType, OTP_EXPIRATION_MILLIS)) {
+            otpStore.recordDelivery(email, otp, OtpDeliveryStatus.FAILED);
+            throw new OTPException("Failed to send OTP: mail queue is full");
         }
 
-        log.info("Sending OTP {} to {}", otp, email);
-        return otp;
+        log.info("Queued OTP mail to {}", email);
+        return new IssuedOtp(otp, statusHandle);
+    }
+
+    /**
+     * Whether the mail with the OTP issued with the handle went out, so clients know when to offer a resend
+     */
+    public OtpDeliveryStatus getDeliveryStatus(String statusHandle) {
+        return otpStore.getDeliveryStatus(statusHandle);
+    }
+
+    // Only the mail of the current OTP changes the status, the store ignores replaced ones
+    @EventListener
+    public void onEmailDelivery(EmailDeliveryEvent event) {
+        if (!event.delivered()) {
+            log.warn("Failed to send OTP mail to {}", event.recipient());
+        }
+        otpStore.recordDelivery(event.recipient(), event.code(),
+                event.delivered() ? OtpDeliveryStatus.SENT : OtpDeliveryStatus.FAILED);
     }
 
     public boolean verifyOTP(String email, String otp) {
         if (otp == null) {
             throw new NullPointerException("OTP cannot be null");
         }
-
-        OTPDetails details = otpStorage.get(email);
-        if (details == null) {
-            return false;
-        }
-        // Check if OTP has expired
-        if (details.generatedAt().plusSeconds(OTP_EXPIRATION_SECONDS).isBefore(LocalDateTime.now())) {
-            otpStorage.remove(email);
-            return false;
-        }
-        if (details.otp().equals(otp)) {
-            otpStorage.remove(email);
-            return true;
-        }
-        return false;
+        // Expired OTPs are not found, a matching one is removed so it works only once
+        return otpStore.consumeOtp(email, otp);
     }
 
     /**
@@ -73,10 +109,15 @@ public class OTPService {
      *
      * @param email the email address
      * @return the reset token
+     * @throws OTPException if too many reset tokens are outstanding
      */
     public String generateResetToken(String email) {
-        String token = UUID.randomUUID().toString();
-        resetTokenStorage.put(token, new ResetTokenDetails(email, LocalDateTime.now()));
+        // 128 random bits, as much as a UUID carries minus its fixed version bits
+        String token = tokenGenerator.urlSafeToken(16);
+        if (!otpStore.putResetToken(token, email, RESET_TOKEN_EXPIRATION_MILLIS)) {
+            log.warn("Reset token store is full, rejected reset token for {}", email);
+            throw new OTPException("Too many pending password resets, please try again later");
+        }
         log.info("Generated reset token for {}", email);
         return token;
     }
@@ -89,34 +130,18 @@ public class OTPService {
      * @return true if valid, false otherwise
      */
     public boolean verifyResetToken(String token, String email) {
-        ResetTokenDetails details = resetTokenStorage.get(token);
-
-        if (details == null) {
-            log.warn("Reset token not found: {}", token);
-            return false;
+        // A valid token is removed in the same step, so it cannot be reused
+        boolean valid = otpStore.consumeResetToken(token, email);
+        if (!valid) {
+            log.warn("Reset token for {} not found, expired or issued for another email", email);
         }
-
-        // Check if token has expired
-        if (details.generatedAt.plusSeconds(RESET_TOKEN_EXPIRATION_SECONDS).isBefore(LocalDateTime.now())) {
-            log.warn("Reset token expired: {}", token);
-            resetTokenStorage.remove(token);
-            return false;
-        }
-
-        // Check if token matches the email
-        if (!details.email.equals(email)) {
-            log.warn("Email mismatch for token. Expected: {}, Actual: {}", details.email, email);
-            return false;
-        }
-
-        // Token is valid, remove it to prevent reuse
-        resetTokenStorage.remove(token);
-        return true;
+        return valid;
     }
 
-    private record OTPDetails(String otp, LocalDateTime generatedAt) {
-    }
-
-    private record ResetTokenDetails(String email, LocalDateTime generatedAt) {
+    /**
+     * @param otp          the code mailed to the user
+     * @param statusHandle random, returned to the requester only, to look up the delivery of the mail
+     */
+    public record IssuedOtp(String otp, String statusHandle) {
     }
 }
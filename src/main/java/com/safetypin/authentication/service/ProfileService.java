@@ -110,6 +110,9 @@ public class ProfileService {
         if (request.getProfileBanner() != null) {
             user.setProfileBanner(request.getProfileBanner());
         }
+        if (request.getFollowerDigestEnabled() != null) {
+            user.setFollowerDigestEnabled(request.getFollowerDigestEnabled());
+        }
 
         User savedUser = userService.save(user);
 
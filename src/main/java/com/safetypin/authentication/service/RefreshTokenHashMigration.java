@@ -0,0 +1,79 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.security.TokenHashing;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves refresh tokens stored in plaintext before hashing into refresh_tokens.token_hash.
+ * Runs on startup, before the web server accepts requests, and is a no-op once the plaintext column is empty.
+ * <p>
+ * This is a stop-the-world upgrade: the plaintext is cleared as it is hashed and new rows never write it, so an
+ * instance still on the old version no longer finds any token and logs everyone out on refresh. Replace every
+ * instance together. The emptied legacy token column is left in place; drop it by hand after the upgrade.
+ */
+@Component
+@DependsOn("entityManagerFactory") // token_hash is added by Hibernate's schema update
+public class RefreshTokenHashMigration {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenHashMigration.class);
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RefreshTokenHashMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        String nullable = legacyTokenColumnNullable();
+        if (nullable == null) {
+            return;
+        }
+        // New rows only carry the hash, the old NOT NULL constraint would reject them. Altered only once: on Postgres
+        // the ALTER locks the table exclusively, which every later deploy would otherwise pay for again.
+        if ("NO".equalsIgnoreCase(nullable)) {
+            try {
+                jdbcTemplate.execute("ALTER TABLE refresh_tokens ALTER COLUMN token DROP NOT NULL");
+                logger.info("Dropped NOT NULL from the legacy refresh_tokens.token column");
+            } catch (DataAccessException e) {
+                // Starting anyway would fail every login on the constraint
+                throw new IllegalStateException("Could not drop NOT NULL from refresh_tokens.token, "
+                        + "new refresh tokens cannot be stored until it is dropped", e);
+            }
+        }
+
+        int migrated = 0;
+        while (true) {
+            List<Object[]> batch = jdbcTemplate.query(
+                    "SELECT id, token FROM refresh_tokens WHERE token_hash IS NULL AND token IS NOT NULL LIMIT "
+                            + BATCH_SIZE,
+                    (rs, rowNum) -> new Object[]{
+                            TokenHashing.sha256(rs.getString("token")), rs.getObject("id")});
+            if (batch.isEmpty()) {
+                break;
+            }
+            jdbcTemplate.batchUpdate("UPDATE refresh_tokens SET token_hash = ?, token = NULL WHERE id = ?", batch);
+            migrated += batch.size();
+        }
+        if (migrated > 0) {
+            logger.info("Hashed {} plaintext refresh tokens", migrated);
+        }
+    }
+
+    // is_nullable of the plaintext token column, YES or NO, or null once the column has been dropped
+    private String legacyTokenColumnNullable() {
+        List<String> nullable = jdbcTemplate.queryForList(
+                "SELECT is_nullable FROM information_schema.columns "
+                        + "WHERE LOWER(table_name) = 'refresh_tokens' AND LOWER(column_name) = 'token'",
+                String.class);
+        return nullable.isEmpty() ? null : nullable.get(0);
+    }
+}
@@ -0,0 +1,108 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes expired refresh tokens in the background.
+ * Rows go in small batches that each commit on their own, with a pause in between, so a large backlog
+ * never holds locks for long and autovacuum can keep up instead of facing one huge delete.
+ * A run stops after max-batches; whatever is left is picked up by the next run and shows up in the lag gauge.
+ */
+@Component
+public class RefreshTokenPurger {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenPurger.class);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Counter purgedCounter;
+    // Seconds since the oldest token still in the table expired, 0 when nothing expired is left
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    @Value("${refresh-token.purge.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${refresh-token.purge.max-batches:100}")
+    private int maxBatches = 100;
+
+    @Value("${refresh-token.purge.pause-ms:100}")
+    private long pauseMillis = 100;
+
+    public RefreshTokenPurger(RefreshTokenRepository refreshTokenRepository, MeterRegistry meterRegistry) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.purgedCounter = Counter.builder("refresh_tokens_purged_total")
+                .description("Expired refresh tokens deleted by the background purger")
+                .register(meterRegistry);
+        Gauge.builder("refresh_tokens_purge_lag_seconds", lagSeconds, AtomicLong::get)
+                .description("How long the oldest expired refresh token left in the table has been expired")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Delete tokens that expired before this run started
+     *
+     * @return the number of tokens deleted
+     */
+    @Scheduled(initialDelayString = "${refresh-token.purge.initial-delay-ms:60000}",
+            fixedDelayString = "${refresh-token.purge.interval-ms:300000}")
+    public int purgeExpired() {
+        Instant cutoff = Instant.now();
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            List<UUID> ids = refreshTokenRepository.findExpiredIds(cutoff, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            int deleted = refreshTokenRepository.deleteTokensByIdIn(ids);
+            total += deleted;
+            purgedCounter.increment(deleted);
+            if (ids.size() < batchSize || !pause()) {
+                break;
+            }
+        }
+        updateLag();
+        if (total > 0) {
+            logger.info("Purged {} expired refresh tokens", total);
+        }
+        return total;
+    }
+
+    public long getLagSeconds() {
+        return lagSeconds.get();
+    }
+
+    private void updateLag() {
+        Instant earliest = refreshTokenRepository.findEarliestExpiryTime();
+        Instant now = Instant.now();
+        lagSeconds.set(earliest == null || !earliest.isBefore(now)
+                ? 0
+                : Duration.between(earliest, now).getSeconds());
+    }
+
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            // Shutting down, the rest waits for the next start
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,17 +1,21 @@
 package com.safetypin.authentication.service;
 
+import com.safetypin.authentication.metrics.RefreshTokenMetrics;
 import com.safetypin.authentication.model.RefreshToken;
 import com.safetypin.authentication.model.User;
 import com.safetypin.authentication.repository.RefreshTokenRepository;
 import com.safetypin.authentication.repository.UserRepository;
+import com.safetypin.authentication.security.SecureTokenGenerator;
+import com.safetypin.authentication.security.TokenHashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.security.SecureRandom;
 import java.time.Instant;
-import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -20,61 +24,124 @@ public class RefreshTokenService {
     private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
 
     private static final long EXPIRATION_TIME = 24 * 60 * 60L; // 1 day in seconds
-    private static final SecureRandom random = new SecureRandom();
+    private static final int TOKEN_BYTES = 87; // token length: 696 bits (116 chars), should be more than enough
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
+    private final RefreshTokenMetrics refreshTokenMetrics;
+    private final SecureTokenGenerator tokenGenerator;
+
+    // Sessions a user may hold at once, the oldest are evicted when a new one is issued; 0 or less for no limit
+    @Value("${refresh-token.max-per-user:10}")
+    private int maxTokensPerUser = 10;
 
     @Autowired
-    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository) {
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository,
+                               RefreshTokenMetrics refreshTokenMetrics, SecureTokenGenerator tokenGenerator) {
         this.refreshTokenRepository = refreshTokenRepository;
         this.userRepository = userRepository;
+        this.refreshTokenMetrics = refreshTokenMetrics;
+        this.tokenGenerator = tokenGenerator;
     }
 
-    public RefreshToken createRefreshToken(UUID userId) {
-        Optional<User> userOptional = userRepository.findById(userId);
-        if (userOptional.isEmpty()) {
-            throw new IllegalArgumentException("User not found");
-        }
+    @Transactional
+    public RefreshToken createRefreshToken(User user) {
+        evictOldestTokens(user.getId());
+        return saveNewToken(user);
+    }
+
+    /**
+     * Issue the replacement of a refresh token that rotation just consumed.
+     * One token was deleted for the one inserted, so the session count cannot grow and no eviction is needed.
+     */
+    @Transactional
+    public RefreshToken createRotatedRefreshToken(User user) {
+        return saveNewToken(user);
+    }
 
-        User user = userOptional.get();
+    private RefreshToken saveNewToken(User user) {
         RefreshToken refreshToken = new RefreshToken();
 
-        byte[] randomBytes = new byte[87]; // token length: 696 bits (116 chars), should be more than enough
-        random.nextBytes(randomBytes);
-        String encodedBytes = Base64.getEncoder().encodeToString(randomBytes);
+        // URL-safe, the token is sent back as a query parameter
+        String token = tokenGenerator.urlSafeToken(TOKEN_BYTES);
 
-        refreshToken.setToken(encodedBytes);
+        refreshToken.setToken(token);
+        refreshToken.setTokenHash(TokenHashing.sha256(token));
         refreshToken.setExpiryTime(Instant.now().plusSeconds(EXPIRATION_TIME));
         refreshToken.setUser(user);
 
-
-        return refreshTokenRepository.save(refreshToken);
+        RefreshToken saved = refreshTokenRepository.save(refreshToken);
+        refreshTokenMetrics.tokenCreated(saved.getExpiryTime());
+        return saved;
     }
 
-    public Optional<RefreshToken> getAndVerifyRefreshToken(String token) {
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(token);
-        // token doesn't exist
-        if (refreshToken == null) {
-            logger.warn("Refresh token not found: {}, found:", token);
-            return Optional.empty();
+    /**
+     * Make room for one more session by deleting the user's oldest tokens beyond the limit.
+     * Runs in the transaction that inserts the new token, so eviction and issuance commit together.
+     * Concurrent logins of the same user queue on the user row lock, so each counts the tokens the previous one left.
+     */
+    private void evictOldestTokens(UUID userId) {
+        if (maxTokensPerUser <= 0 || userId == null) {
+            return;
+        }
+        userRepository.lockById(userId);
+        int keep = maxTokensPerUser - 1;
+        List<Object[]> tokens = refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId);
+        if (tokens.size() <= keep) {
+            return;
+        }
+        List<Object[]> oldest = tokens.subList(keep, tokens.size());
+        int evicted = refreshTokenRepository.deleteTokensByIdIn(oldest.stream().map(row -> (UUID) row[0]).toList());
+        tokensDeleted(oldest, evicted);
+        if (evicted > 0) {
+            logger.info("Evicted {} oldest refresh tokens of user {}", evicted, userId);
         }
-        // Check expiry of refresh token
-        if (refreshToken.getExpiryTime().isAfter(Instant.now())) {
-            logger.info("Refresh token found: {}, found:", token);
-            logger.info("{}", refreshToken);
-            return Optional.of(refreshToken);
+    }
+
+    /**
+     * End every session of the user with a single delete
+     *
+     * @return the number of refresh tokens deleted
+     */
+    @Transactional
+    public int deleteAllRefreshTokens(UUID userId) {
+        List<Object[]> tokens = refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId);
+        int deleted = refreshTokenRepository.deleteByUserId(userId);
+        tokensDeleted(tokens, deleted);
+        return deleted;
+    }
+
+    private void tokensDeleted(List<Object[]> tokens, int deleted) {
+        // Otherwise some were rotated or issued meanwhile, which ones is unknown and the next reconcile corrects it
+        if (deleted == tokens.size()) {
+            tokens.forEach(row -> refreshTokenMetrics.tokenDeleted((Instant) row[1]));
         }
-        // Expired token, delete from database
-        logger.warn("Refresh token expired: {}, found:", token);
-        logger.info("{}", refreshToken);
-        refreshTokenRepository.delete(refreshToken);
-        return Optional.empty();
     }
 
-    public void deleteRefreshToken(String token) {
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(token);
-        if (refreshToken != null) {
-            refreshTokenRepository.delete(refreshToken);
+    /**
+     * Use up a refresh token so it can be exchanged exactly once.
+     * The token and its user are read in one query and removed with a conditional delete:
+     * when the same token is replayed concurrently, the delete only succeeds for one request.
+     *
+     * @param token the refresh token presented by the client
+     * @return the token's owner, empty if the token is unknown, expired or was already used
+     */
+    @Transactional
+    public Optional<User> consumeRefreshToken(String token) {
+        Optional<RefreshToken> found = refreshTokenRepository.findWithUserByTokenHash(TokenHashing.sha256(token));
+        if (found.isEmpty()) {
+            logger.warn("Refresh token not found or already used");
+            return Optional.empty();
+        }
+        RefreshToken refreshToken = found.get();
+        if (refreshTokenRepository.deleteTokenById(refreshToken.getId()) == 0) {
+            logger.warn("Refresh token {} was replayed concurrently", refreshToken.getId());
+            return Optional.empty();
+        }
+        refreshTokenMetrics.tokenDeleted(refreshToken.getExpiryTime());
+        if (!refreshToken.getExpiryTime().isAfter(Instant.now())) {
+            logger.warn("Refresh token {} expired", refreshToken.getId());
+            return Optional.empty();
         }
+        return Optional.of(refreshToken.getUser());
     }
 }
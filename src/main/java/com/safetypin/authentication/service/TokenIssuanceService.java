@@ -0,0 +1,48 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.dto.AuthToken;
+import com.safetypin.authentication.model.RefreshToken;
+import com.safetypin.authentication.model.User;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Mints the access and refresh token pair handed out on login, registration, Google sign-in and refresh.
+ * Callers pass the user they already loaded, so issuing tokens costs no further user lookups.
+ */
+@Service
+public class TokenIssuanceService {
+    private final JwtService jwtService;
+    private final RefreshTokenService refreshTokenService;
+
+    public TokenIssuanceService(JwtService jwtService, RefreshTokenService refreshTokenService) {
+        this.jwtService = jwtService;
+        this.refreshTokenService = refreshTokenService;
+    }
+
+    @Transactional
+    public AuthToken issueTokens(User user) {
+        String accessToken = jwtService.generateToken(user);
+        RefreshToken refreshToken = refreshTokenService.createRefreshToken(user);
+        return new AuthToken(user.getId(), accessToken, refreshToken.getToken());
+    }
+
+    /**
+     * Exchange a refresh token for a new token pair, in one transaction of three statements:
+     * load the token with its user, delete it, insert the new refresh token.
+     * Rotation replaces a session rather than adding one, so the session limit is not checked.
+     *
+     * @param refreshToken the refresh token presented by the client
+     * @return the new tokens, empty if the refresh token is unknown, expired or was already used
+     */
+    @Transactional
+    public Optional<AuthToken> rotateTokens(String refreshToken) {
+        return refreshTokenService.consumeRefreshToken(refreshToken).map(user -> {
+            String accessToken = jwtService.generateToken(user);
+            RefreshToken rotated = refreshTokenService.createRotatedRefreshToken(user);
+            return new AuthToken(user.getId(), accessToken, rotated.getToken());
+        });
+    }
+}
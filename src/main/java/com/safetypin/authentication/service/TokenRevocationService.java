@@ -0,0 +1,119 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.model.RevokedUser;
+import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.repository.RevokedUserRepository;
+import com.safetypin.authentication.repository.UserRepository;
+import com.safetypin.authentication.service.jwt.TokenVersionRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Revokes every access token issued to a user by bumping the user's token version.
+ * Verification compares the token's version against {@link TokenVersionRegistry}, so no query is needed.
+ * Revocations are stored in the database and polled by every instance, so replicas and restarted instances
+ * reject the same tokens within one poll interval.
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final UserRepository userRepository;
+    private final RevokedUserRepository revokedUserRepository;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final RefreshTokenService refreshTokenService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public TokenRevocationService(UserRepository userRepository, RevokedUserRepository revokedUserRepository,
+                                  TokenVersionRegistry tokenVersionRegistry, RefreshTokenService refreshTokenService,
+                                  ApplicationEventPublisher eventPublisher) {
+        this.userRepository = userRepository;
+        this.revokedUserRepository = revokedUserRepository;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.refreshTokenService = refreshTokenService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Revoke the user's outstanding access tokens, e.g. after a password change or logout from all devices.
+     * Saves the user; this instance rejects the old tokens once the surrounding transaction has committed.
+     *
+     * @param user the user, with any other pending changes
+     * @return the saved user
+     */
+    public User revokeTokens(User user) {
+        Instant now = Instant.now();
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        user.setTokensRevokedAt(now);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new TokensRevokedEvent(saved.getId(), saved.getTokenVersion(), revokedUntil(now)));
+        logger.info("Revoked access tokens of user {}, token version is now {}", saved.getId(), saved.getTokenVersion());
+        return saved;
+    }
+
+    /**
+     * Log the user out of every device: delete all refresh tokens and revoke the outstanding access tokens
+     *
+     * @param user the user
+     * @return the number of sessions ended
+     */
+    @Transactional
+    public int revokeAllSessions(User user) {
+        int sessions = refreshTokenService.deleteAllRefreshTokens(user.getId());
+        revokeTokens(user);
+        return sessions;
+    }
+
+    /**
+     * Reject every access token of a deleted user until the last one has expired.
+     * The user row is gone, so a tombstone keeps the revocation for the other instances.
+     */
+    @Transactional
+    public void revokeDeletedUser(UUID userId) {
+        Instant now = Instant.now();
+        revokedUserRepository.save(new RevokedUser(userId, now));
+        eventPublisher.publishEvent(new TokensRevokedEvent(userId, TokenVersionRegistry.REVOKED, revokedUntil(now)));
+    }
+
+    // Runs without a transaction too, e.g. when a password reset saves the user on its own
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTokensRevoked(TokensRevokedEvent event) {
+        tokenVersionRegistry.revoke(event.userId(), event.minVersion(), event.untilMillis());
+    }
+
+    // Revocations older than the access token lifetime only concern expired tokens, so only recent ones are loaded.
+    // Runs at startup and then every poll interval, picking up revocations made by other instances.
+    @Scheduled(fixedDelayString = "${jwt.revocation.poll-interval-ms:5000}")
+    public void loadRecentRevocations() {
+        Instant since = Instant.now().minusMillis(JwtService.EXPIRATION_TIME);
+        List<User> users = userRepository.findByTokensRevokedAtAfter(since);
+        users.forEach(user -> tokenVersionRegistry.revoke(user.getId(), user.getTokenVersion(),
+                revokedUntil(user.getTokensRevokedAt())));
+        List<RevokedUser> deleted = revokedUserRepository.findByRevokedAtAfter(since);
+        deleted.forEach(revoked -> tokenVersionRegistry.revoke(revoked.getUserId(), TokenVersionRegistry.REVOKED,
+                revokedUntil(revoked.getRevokedAt())));
+        logger.debug("Loaded {} recent token revocations and {} deleted users", users.size(), deleted.size());
+    }
+
+    // Tombstones only matter while a token issued before the deletion can still be unexpired
+    @Scheduled(fixedDelayString = "${jwt.revocation.prune-interval-ms:60000}")
+    public void pruneDeletedUsers() {
+        int pruned = revokedUserRepository.deleteRevokedBefore(Instant.now().minusMillis(JwtService.EXPIRATION_TIME));
+        if (pruned > 0) {
+            logger.debug("Pruned {} expired deleted user revocations", pruned);
+        }
+    }
+
+    private static long revokedUntil(Instant revokedAt) {
+        return revokedAt.toEpochMilli() + JwtService.EXPIRATION_TIME;
+    }
+}
@@ -0,0 +1,9 @@
+package com.safetypin.authentication.service;
+
+import java.util.UUID;
+
+/**
+ * Published by the {@link TokenRevocationService} once a user's access tokens were revoked, applied after commit
+ */
+public record TokensRevokedEvent(UUID userId, int minVersion, long untilMillis) {
+}
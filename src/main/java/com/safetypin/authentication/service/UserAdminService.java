@@ -34,6 +34,7 @@ public class UserAdminService {
     private final FollowRepository followRepository;
     private final RestTemplate restTemplate;
     private final JwtService jwtService; // Added JwtService
+    private final TokenRevocationService tokenRevocationService;
     @Value("${be-post}")
     private String postServiceUrl;
 
@@ -43,13 +44,15 @@ public class UserAdminService {
             ProfileViewRepository profileViewRepository,
             FollowRepository followRepository,
             RestTemplate restTemplate,
-            JwtService jwtService) { // Added JwtService to constructor
+            JwtService jwtService, // Added JwtService to constructor
+            TokenRevocationService tokenRevocationService) {
         this.userRepository = userRepository;
         this.refreshTokenRepository = refreshTokenRepository;
         this.profileViewRepository = profileViewRepository;
         this.followRepository = followRepository;
         this.restTemplate = restTemplate;
         this.jwtService = jwtService; // Initialize JwtService
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     /**
@@ -87,6 +90,8 @@ public class UserAdminService {
         followRepository.deleteByFollowingId(targetUserId);
         // Delete the user from the database
         userRepository.delete(targetUser);
+        // Access tokens already issued to the user stop verifying right away
+        tokenRevocationService.revokeDeletedUser(targetUserId);
 
         // Notify post microservice to delete all posts by this user
         try {
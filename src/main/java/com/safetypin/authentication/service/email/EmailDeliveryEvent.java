@@ -0,0 +1,7 @@
+package com.safetypin.authentication.service.email;
+
+/**
+ * Published by the {@link EmailOutbox} once a mail was accepted by the mail server or given up on
+ */
+public record EmailDeliveryEvent(String recipient, String code, EmailTemplateType templateType, boolean delivered) {
+}
@@ -0,0 +1,233 @@
+package com.safetypin.authentication.service.email;
+
+import com.safetypin.authentication.model.EmailOutboxMessage;
+import com.safetypin.authentication.repository.EmailOutboxRepository;
+import com.safetypin.authentication.service.EmailService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mails are written to the email_outbox table in the request and sent later by {@link #dispatch()},
+ * so SMTP is off the request path and nothing queued is lost on a restart.
+ * <p>
+ * Each run claims a batch of due messages by moving their attempt time past a lease, which also hands a
+ * message to another dispatcher if this one dies mid-send. The batch goes out in parallel on the email
+ * executor. A failed send is retried with exponential backoff and equal jitter until max-attempts or until
+ * its code expires. A new mail for a recipient replaces the ones still queued for them, since a new OTP
+ * invalidates the old one.
+ * <p>
+ * Queued rows carry the plaintext OTP, see {@link EmailOutboxMessage}. Every outcome deletes the row, so a code is
+ * kept only while its mail may still be sent.
+ */
+@Component
+public class EmailOutbox {
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutbox.class);
+
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter expiredCounter;
+    private final Counter exhaustedCounter;
+    // Refreshed by every dispatch run and on its own schedule, cheaper than counting on each enqueue
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong oldestAgeSeconds = new AtomicLong();
+
+    @Value("${mail.outbox.batch-size:20}")
+    private int batchSize = 20;
+
+    @Value("${mail.outbox.max-pending:10000}")
+    private int maxPending = 10000;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts = 8;
+
+    @Value("${mail.outbox.backoff-base-ms:2000}")
+    private long backoffBaseMillis = 2000;
+
+    @Value("${mail.outbox.backoff-max-ms:60000}")
+    private long backoffMaxMillis = 60000;
+
+    @Value("${mail.outbox.lease-ms:60000}")
+    private long leaseMillis = 60000;
+
+    public EmailOutbox(EmailOutboxRepository outboxRepository, EmailService emailService,
+                       ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.emailService = emailService;
+        this.eventPublisher = eventPublisher;
+        this.sentCounter = Counter.builder("email_outbox_sent_total")
+                .description("Outbox mails accepted by the mail server")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("email_outbox_retries_total")
+                .description("Outbox sends that failed and were rescheduled")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("email_outbox_dropped_total")
+                .description("Outbox mails given up on")
+                .tag("reason", "expired")
+                .register(meterRegistry);
+        this.exhaustedCounter = Counter.builder("email_outbox_dropped_total")
+                .description("Outbox mails given up on")
+                .tag("reason", "max_attempts")
+                .register(meterRegistry);
+        Gauge.builder("email_outbox_depth", depth, AtomicLong::get)
+                .description("Mails waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("email_outbox_oldest_age_seconds", oldestAgeSeconds, AtomicLong::get)
+                .description("How long the oldest mail in the outbox has been waiting")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a mail carrying the code, replacing the mails still queued for the recipient
+     *
+     * @param validForMillis how long the code is accepted, the mail is not sent after that
+     * @return false if the outbox is full
+     */
+    @Transactional
+    public boolean enqueue(String recipient, String code, EmailTemplateType templateType, long validForMillis) {
+        if (depth.get() >= maxPending) {
+            return false;
+        }
+        int superseded = outboxRepository.deleteByRecipient(recipient);
+        if (superseded > 0) {
+            logger.debug("Replaced {} queued mails to {}", superseded, recipient);
+        }
+        Instant now = now();
+        EmailOutboxMessage message = new EmailOutboxMessage();
+        message.setRecipient(recipient);
+        message.setCode(code);
+        message.setTemplateType(templateType);
+        message.setCreatedAt(now);
+        message.setNextAttemptAt(now);
+        message.setExpiresAt(now.plusMillis(validForMillis));
+        outboxRepository.save(message);
+        return true;
+    }
+
+    /**
+     * Send the due mails of one batch. A send that has not finished when its lease runs out counts as failed,
+     * so a hung connection cannot hold the dispatcher past the point where another replica sends the mail again.
+     *
+     * @return the number of mails accepted by the mail server
+     */
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:1000}")
+    public int dispatch() {
+        Instant now = now();
+        int expired = outboxRepository.deleteExpired(now);
+        expiredCounter.increment(expired);
+
+        List<Claimed> claimed = new ArrayList<>();
+        Instant leaseUntil = now.plusMillis(leaseMillis);
+        for (EmailOutboxMessage message : outboxRepository.findDue(now, PageRequest.of(0, batchSize))) {
+            if (outboxRepository.claim(message.getId(), message.getNextAttemptAt(), leaseUntil) == 1) {
+                claimed.add(new Claimed(message, send(message)));
+            }
+        }
+
+        int sent = 0;
+        for (Claimed claim : claimed) {
+            try {
+                if (complete(claim.message(), claim.result().join())) {
+                    sent++;
+                }
+            } catch (DataAccessException e) {
+                // The others are still completed, this row is sent again once its lease runs out
+                logger.warn("Failed to record the outcome of mail {}", claim.message().getId(), e);
+            }
+        }
+        refreshBacklog();
+        return sent;
+    }
+
+    public long getDepth() {
+        return depth.get();
+    }
+
+    private CompletableFuture<Boolean> send(EmailOutboxMessage message) {
+        try {
+            return emailService.sendOTPMail(message.getRecipient(), message.getCode(), message.getTemplateType())
+                    .orTimeout(leaseMillis, TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> false);
+        } catch (TaskRejectedException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    private boolean complete(EmailOutboxMessage message, boolean delivered) {
+        if (delivered) {
+            outboxRepository.deleteMessageById(message.getId());
+            sentCounter.increment();
+            publish(message, true);
+            return true;
+        }
+        int attempts = message.getAttempts() + 1;
+        Instant retryAt = now().plus(backoff(attempts));
+        if (attempts >= maxAttempts || !retryAt.isBefore(message.getExpiresAt())) {
+            outboxRepository.deleteMessageById(message.getId());
+            exhaustedCounter.increment();
+            logger.warn("Giving up on mail to {} after {} attempts", message.getRecipient(), attempts);
+            publish(message, false);
+            return false;
+        }
+        // No-op if the message was replaced meanwhile
+        outboxRepository.reschedule(message.getId(), attempts, retryAt);
+        retriedCounter.increment();
+        return false;
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half of the delay is fixed, the other half random,
+     * so retries after a throttling window do not all arrive at once
+     */
+    Duration backoff(int attempts) {
+        // Capping the exponent keeps the shift from overflowing
+        long delay = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(attempts - 1, 20));
+        long half = delay / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(delay - half + 1));
+    }
+
+    // Also runs on its own, so the max-pending check stays current while a dispatch run is stuck or failing
+    @Scheduled(fixedDelayString = "${mail.outbox.backlog-refresh-interval-ms:5000}")
+    public void refreshBacklog() {
+        depth.set(outboxRepository.count());
+        Instant oldest = outboxRepository.findOldestCreatedAt();
+        Instant now = now();
+        oldestAgeSeconds.set(oldest == null || !oldest.isBefore(now) ? 0 : Duration.between(oldest, now).getSeconds());
+    }
+
+    private void publish(EmailOutboxMessage message, boolean delivered) {
+        eventPublisher.publishEvent(new EmailDeliveryEvent(message.getRecipient(), message.getCode(),
+                message.getTemplateType(), delivered));
+    }
+
+    // Millisecond precision survives every database, the claim compares the stored value
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private record Claimed(EmailOutboxMessage message, CompletableFuture<Boolean> result) {
+    }
+}
@@ -0,0 +1,214 @@
+package com.safetypin.authentication.service.email;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.internet.MimeUtility;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.UnsupportedEncodingException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A mail with a few per-message values, like an OTP code, with an HTML body and a plain text alternative.
+ * Everything around the values is rendered once per calendar year (for the copyright line) and kept as literal
+ * fragments, so a send only concatenates strings. Values are HTML-escaped in the HTML body. When the rendered
+ * text is plain ASCII with short lines, the parts are marked 7bit up front and JavaMail skips scanning them to
+ * pick an encoding.
+ */
+public class EmailTemplate {
+    public static final String CODE = "code";
+    public static final String YEAR = "{{year}}";
+    private static final Pattern SLOT = Pattern.compile("\\{\\{([a-z]+)}}");
+    private static final String CHARSET = "UTF-8";
+    // RFC 5322 line limit, longer lines must not be sent as 7bit
+    private static final int MAX_LINE_LENGTH = 998;
+    // Lines are checked with every value this long, longer values are sent with an encoding JavaMail picks
+    private static final int MAX_SEVEN_BIT_VALUE_LENGTH = 64;
+
+    private final String encodedSubject;
+    private final List<String> slots;
+    private final String html;
+    private final String text;
+    private final LongSupplier clock;
+    private final ZoneId zone;
+    private volatile Rendered rendered;
+
+    public EmailTemplate(String subject, String html, String text, List<String> slots) {
+        this(subject, html, text, slots, System::currentTimeMillis, ZoneId.systemDefault());
+    }
+
+    public EmailTemplate(String subject, String html, String text, List<String> slots, LongSupplier clock,
+                         ZoneId zone) {
+        requireSlots(html, slots);
+        requireSlots(text, slots);
+        try {
+            this.encodedSubject = MimeUtility.fold(9, MimeUtility.encodeText(subject, CHARSET, null));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        this.slots = List.copyOf(slots);
+        this.html = html;
+        this.text = text;
+        this.clock = clock;
+        this.zone = zone;
+    }
+
+    public String renderHtml(Map<String, String> values) {
+        return current().html().render(escapeHtml(values(values)));
+    }
+
+    public String renderText(Map<String, String> values) {
+        return current().text().render(values(values));
+    }
+
+    /**
+     * Set the subject and the multipart/alternative body of the message
+     */
+    public void writeTo(MimeMessage message, Map<String, String> values) throws MessagingException {
+        Rendered current = current();
+        String[] textValues = values(values);
+        String[] htmlValues = escapeHtml(textValues);
+        MimeMultipart alternative = new MimeMultipart("alternative");
+        // Plain text first, clients show the last alternative they support
+        alternative.addBodyPart(part(current.text(), textValues, "plain"));
+        alternative.addBodyPart(part(current.html(), htmlValues, "html"));
+        message.setHeader("Subject", encodedSubject);
+        message.setContent(alternative);
+    }
+
+    private String[] values(Map<String, String> values) {
+        String[] ordered = new String[slots.size()];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = values.get(slots.get(i));
+            if (ordered[i] == null) {
+                throw new IllegalArgumentException("Missing value for " + slots.get(i));
+            }
+        }
+        return ordered;
+    }
+
+    private static String[] escapeHtml(String[] values) {
+        String[] escaped = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            escaped[i] = HtmlUtils.htmlEscape(values[i], CHARSET);
+        }
+        return escaped;
+    }
+
+    private Rendered current() {
+        long now = clock.getAsLong();
+        Rendered current = rendered;
+        if (current == null || now < current.validFrom() || now >= current.validUntil()) {
+            current = render(now);
+            rendered = current;
+        }
+        return current;
+    }
+
+    private Rendered render(long now) {
+        LocalDate today = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        ZonedDateTime yearStart = today.withDayOfYear(1).atStartOfDay(zone);
+        String year = String.valueOf(today.getYear());
+        return new Rendered(yearStart.toInstant().toEpochMilli(), yearStart.plusYears(1).toInstant().toEpochMilli(),
+                Fragments.of(html.replace(YEAR, year), slots), Fragments.of(text.replace(YEAR, year), slots));
+    }
+
+    private static MimeBodyPart part(Fragments fragments, String[] values, String subtype)
+            throws MessagingException {
+        MimeBodyPart part = new MimeBodyPart();
+        part.setText(fragments.render(values), CHARSET, subtype);
+        if (fragments.sevenBit() && areSevenBit(values)) {
+            part.setHeader("Content-Transfer-Encoding", "7bit");
+        }
+        return part;
+    }
+
+    private static boolean areSevenBit(String[] values) {
+        for (String value : values) {
+            if (value.length() > MAX_SEVEN_BIT_VALUE_LENGTH) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80 || c == '\r' || c == '\n' || c == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void requireSlots(String template, List<String> slots) {
+        Matcher matcher = SLOT.matcher(template.replace(YEAR, ""));
+        List<String> found = new ArrayList<>();
+        while (matcher.find()) {
+            if (!slots.contains(matcher.group(1))) {
+                throw new IllegalArgumentException("Unknown placeholder " + matcher.group());
+            }
+            found.add(matcher.group(1));
+        }
+        if (!found.containsAll(slots)) {
+            throw new IllegalArgumentException("Template must contain every placeholder of " + slots);
+        }
+    }
+
+    private record Rendered(long validFrom, long validUntil, Fragments html, Fragments text) {
+    }
+
+    /**
+     * A rendered body split around its placeholders: literals[0] value literals[1] value ... literals[n]
+     */
+    private record Fragments(String[] literals, int[] slotIndexes, int literalLength, boolean sevenBit) {
+        static Fragments of(String body, List<String> slots) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> slotIndexes = new ArrayList<>();
+            Matcher matcher = SLOT.matcher(body);
+            int from = 0;
+            while (matcher.find()) {
+                literals.add(body.substring(from, matcher.start()));
+                slotIndexes.add(slots.indexOf(matcher.group(1)));
+                from = matcher.end();
+            }
+            literals.add(body.substring(from));
+            int length = literals.stream().mapToInt(String::length).sum();
+            return new Fragments(literals.toArray(String[]::new),
+                    slotIndexes.stream().mapToInt(Integer::intValue).toArray(), length,
+                    isSevenBitText(SLOT.matcher(body).replaceAll("x".repeat(MAX_SEVEN_BIT_VALUE_LENGTH))));
+        }
+
+        String render(String[] values) {
+            StringBuilder out = new StringBuilder(literalLength + MAX_SEVEN_BIT_VALUE_LENGTH * slotIndexes.length);
+            out.append(literals[0]);
+            for (int i = 0; i < slotIndexes.length; i++) {
+                out.append(values[slotIndexes[i]]).append(literals[i + 1]);
+            }
+            return out.toString();
+        }
+
+        private static boolean isSevenBitText(String body) {
+            int lineLength = 0;
+            for (int i = 0; i < body.length(); i++) {
+                char c = body.charAt(i);
+                if (c >= 0x80 || c == 0) {
+                    return false;
+                }
+                lineLength = c == '\n' ? 0 : lineLength + 1;
+                if (lineLength > MAX_LINE_LENGTH) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.safetypin.authentication.service.email;
+
+import java.util.List;
+
+/**
+ * The mails we send, each backed by templates/email/&lt;name&gt;.html inside layout.html and a &lt;name&gt;.txt alternative
+ */
+public enum EmailTemplateType {
+    OTP_VERIFICATION("otp-verification", "OTP Code for SafetyPin", EmailTemplate.CODE),
+    OTP_PASSWORD_RESET("otp-password-reset", "Password reset OTP for SafetyPin", EmailTemplate.CODE),
+    FOLLOWER_DIGEST("follower-digest", "You have new followers on SafetyPin", "name", "followers");
+
+    private final String resourceName;
+    private final String subject;
+    private final List<String> slots;
+
+    EmailTemplateType(String resourceName, String subject, String... slots) {
+        this.resourceName = resourceName;
+        this.subject = subject;
+        this.slots = List.of(slots);
+    }
+
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    // The {{placeholders}} besides {{year}}, filled in for each mail
+    public List<String> getSlots() {
+        return slots;
+    }
+}
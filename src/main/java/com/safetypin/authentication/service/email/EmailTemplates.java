@@ -0,0 +1,43 @@
+package com.safetypin.authentication.service.email;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Loads every {@link EmailTemplateType} from the classpath at startup, so a missing or broken template fails the boot
+ * instead of a mail. The HTML of each template is the shared layout with the template's fragment as its content.
+ */
+@Component
+public class EmailTemplates {
+    private static final String LOCATION = "templates/email/";
+    private static final String CONTENT = "{{content}}";
+
+    private final Map<EmailTemplateType, EmailTemplate> templates = new EnumMap<>(EmailTemplateType.class);
+
+    public EmailTemplates() {
+        String layout = read("layout.html");
+        for (EmailTemplateType type : EmailTemplateType.values()) {
+            String html = layout.replace(CONTENT, read(type.getResourceName() + ".html"));
+            String text = read(type.getResourceName() + ".txt");
+            templates.put(type, new EmailTemplate(type.getSubject(), html, text, type.getSlots()));
+        }
+    }
+
+    public EmailTemplate get(EmailTemplateType type) {
+        return templates.get(type);
+    }
+
+    private static String read(String name) {
+        try (InputStream in = new ClassPathResource(LOCATION + name).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read email template " + name, e);
+        }
+    }
+}
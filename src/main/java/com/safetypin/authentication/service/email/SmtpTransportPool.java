@@ -0,0 +1,223 @@
+package com.safetypin.authentication.service.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps authenticated SMTP connections open between sends instead of connecting, negotiating STARTTLS and
+ * logging in for every mail like {@link JavaMailSenderImpl#send} does.
+ * Connections are taken most recently used first, so surplus ones sit idle until the evictor closes them.
+ * One that sat idle for a while is checked with a NOOP before use, and one is replaced after max-messages sends.
+ * A send that fails on a reused connection is retried once on a new one, the server may have dropped it.
+ * A connection that failed in any way is closed rather than returned.
+ * Connections use the session of the {@link JavaMailSenderImpl}, including the mail.proxy.* settings
+ * EmailService puts there, and are opened lazily so those settings are in place first.
+ * Socket timeouts the session leaves unset default to {@link #DEFAULT_SOCKET_TIMEOUT_MILLIS}: a pooled connection
+ * may have gone half-open while idle, and without a read timeout its NOOP would never return.
+ */
+@Component
+public class SmtpTransportPool {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+    static final String DEFAULT_SOCKET_TIMEOUT_MILLIS = "10000";
+
+    private final JavaMailSenderImpl mailSender;
+    private final boolean enabled;
+    private final int maxMessagesPerConnection;
+    private final long idleTimeoutMillis;
+    private final long validateAfterMillis;
+    private final long borrowTimeoutMillis;
+    private final LongSupplier clock;
+    // Most recently returned first
+    private final LinkedBlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    // One permit per connection that may be open
+    private final Semaphore permits;
+    private final Counter connectionsOpened;
+
+    @Autowired
+    public SmtpTransportPool(JavaMailSender mailSender, MeterRegistry meterRegistry,
+                             @Value("${mail.smtp.pool.enabled:true}") boolean enabled,
+                             @Value("${mail.smtp.pool.max-size:5}") int maxSize,
+                             @Value("${mail.smtp.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+                             @Value("${mail.smtp.pool.idle-timeout-ms:60000}") long idleTimeoutMillis,
+                             @Value("${mail.smtp.pool.validate-after-idle-ms:5000}") long validateAfterMillis,
+                             @Value("${mail.smtp.pool.borrow-timeout-ms:30000}") long borrowTimeoutMillis) {
+        this(mailSender, meterRegistry, enabled, maxSize, maxMessagesPerConnection, idleTimeoutMillis,
+                validateAfterMillis, borrowTimeoutMillis, System::currentTimeMillis);
+    }
+
+    public SmtpTransportPool(JavaMailSender mailSender, MeterRegistry meterRegistry, boolean enabled, int maxSize,
+                             int maxMessagesPerConnection, long idleTimeoutMillis, long validateAfterMillis,
+                             long borrowTimeoutMillis, LongSupplier clock) {
+        this.mailSender = mailSender instanceof JavaMailSenderImpl impl ? impl : null;
+        this.enabled = enabled && this.mailSender != null;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validateAfterMillis = validateAfterMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.clock = clock;
+        this.permits = new Semaphore(maxSize);
+        this.connectionsOpened = Counter.builder("smtp_pool_connections_opened_total")
+                .description("SMTP connections opened by the transport pool")
+                .register(meterRegistry);
+        Gauge.builder("smtp_pool_idle_connections", idle, LinkedBlockingDeque::size)
+                .description("Open SMTP connections waiting for the next mail")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether mails go through the pool, otherwise they should be sent with the JavaMailSender directly
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void send(MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+        PooledTransport pooled = borrow();
+        try {
+            pooled.transport().sendMessage(message, message.getAllRecipients());
+        } catch (MessagingException e) {
+            // A rejected mail would be rejected again, and a new connection already had its chance.
+            // A dropped connection can also surface as a send failure, without a server reply.
+            boolean rejected = e instanceof SendFailedException && pooled.transport().isConnected();
+            discard(pooled);
+            if (rejected || pooled.sent() == 0) {
+                throw e;
+            }
+            logger.debug("Send failed on a reused SMTP connection, retrying on a new one: {}", e.getMessage());
+            pooled = borrowNew();
+            try {
+                pooled.transport().sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException retryFailure) {
+                discard(pooled);
+                throw retryFailure;
+            }
+        }
+        release(pooled.afterSend(clock.getAsLong()));
+    }
+
+    /**
+     * Close the connections that have been idle longer than the idle timeout
+     */
+    @Scheduled(fixedDelayString = "${mail.smtp.pool.evict-interval-ms:30000}")
+    public void evictIdle() {
+        long now = clock.getAsLong();
+        List<PooledTransport> expired = new ArrayList<>();
+        idle.removeIf(pooled -> {
+            boolean stale = now - pooled.lastUsed() >= idleTimeoutMillis;
+            if (stale) {
+                expired.add(pooled);
+            }
+            return stale;
+        });
+        expired.forEach(this::discard);
+    }
+
+    public int idleConnections() {
+        return idle.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        for (PooledTransport pooled = idle.pollFirst(); pooled != null; pooled = idle.pollFirst()) {
+            discard(pooled);
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        long now = clock.getAsLong();
+        for (PooledTransport pooled = idle.pollFirst(); pooled != null; pooled = idle.pollFirst()) {
+            // Checking after a quiet period costs one round trip, far less than a new login
+            if (now - pooled.lastUsed() < validateAfterMillis || pooled.transport().isConnected()) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+        return borrowNew();
+    }
+
+    private PooledTransport borrowNew() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP connection available within " + borrowTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+        try {
+            Session session = mailSender.getSession();
+            // Resolved like JavaMailSenderImpl does
+            String protocol = mailSender.getProtocol();
+            if (protocol == null) {
+                protocol = session.getProperty("mail.transport.protocol");
+            }
+            protocol = protocol == null ? JavaMailSenderImpl.DEFAULT_PROTOCOL : protocol;
+            applyDefaultTimeouts(session, protocol);
+            Transport transport = session.getTransport(protocol);
+            transport.connect(mailSender.getHost(), mailSender.getPort(),
+                    mailSender.getUsername(), mailSender.getPassword());
+            connectionsOpened.increment();
+            return new PooledTransport(transport, 0, clock.getAsLong());
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private static void applyDefaultTimeouts(Session session, String protocol) {
+        for (String timeout : List.of("connectiontimeout", "timeout", "writetimeout")) {
+            session.getProperties().putIfAbsent("mail." + protocol + "." + timeout, DEFAULT_SOCKET_TIMEOUT_MILLIS);
+        }
+    }
+
+    private void release(PooledTransport pooled) {
+        if (pooled.sent() >= maxMessagesPerConnection) {
+            discard(pooled);
+        } else {
+            idle.offerFirst(pooled);
+        }
+    }
+
+    private void discard(PooledTransport pooled) {
+        try {
+            pooled.transport().close();
+        } catch (MessagingException e) {
+            logger.debug("Failed to close SMTP connection: {}", e.getMessage());
+        } finally {
+            permits.release();
+        }
+    }
+
+    private record PooledTransport(Transport transport, int sent, long lastUsed) {
+        PooledTransport afterSend(long now) {
+            return new PooledTransport(transport, sent + 1, now);
+        }
+    }
+}
@@ -0,0 +1,688 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Header;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.PrematureJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Signs and verifies HS256 access tokens for our fixed claim set without going through jjwt.
+ * Tokens carry the same header and claims jjwt writes for the shared secret, so tokens from either
+ * side verify on the other. Tokens outside that shape (a kid header, nested claim values) are left to jjwt:
+ * {@link #decode} returns null for them.
+ * Each platform thread keeps its own {@link Mac} and scratch buffers, so the hot path only allocates what it returns.
+ * Virtual threads live for a single request, so they borrow them from a small shared pool instead.
+ */
+public final class Hs256TokenCodec {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    // {"alg":"HS256"}, exactly what jjwt writes when no kid is set
+    private static final String HEADER = "eyJhbGciOiJIUzI1NiJ9";
+    private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.US_ASCII);
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final int ENCODED_SIGNATURE_LENGTH = 43;
+    // Our tokens are a few hundred bytes; longer ones are rejected before anything is copied
+    static final int MAX_TOKEN_LENGTH = 4096;
+    // Scratch buffers grown past this, e.g. by a long claim value, are dropped after use
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+
+    private static final byte[] BASE64_URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final int[] BASE64_URL_VALUES = new int[128];
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        Arrays.fill(BASE64_URL_VALUES, -1);
+        for (int i = 0; i < BASE64_URL.length; i++) {
+            BASE64_URL_VALUES[BASE64_URL[i]] = i;
+        }
+    }
+
+    private final Key key;
+    private final ThreadLocal<Scratch> scratch;
+    // Enough for every carrier thread; more concurrent virtual threads create a Scratch and drop it after use
+    private final BlockingQueue<Scratch> virtualThreadPool =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+
+    public Hs256TokenCodec(Key key) {
+        // Fail on construction rather than on the first request if the key cannot be used
+        newMac(key);
+        this.key = key;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(newMac(key)));
+    }
+
+    /**
+     * Whether tokens for this key can go through the codec
+     */
+    public static boolean supports(SigningKey key) {
+        return key != null && key.kid() == null && key.algorithm() == SignatureAlgorithm.HS256;
+    }
+
+    /**
+     * Sign an access token, claims that are null are left out like jjwt does
+     *
+     * @param userId            the user id, written as both userId and sub
+     * @param tokenVersion      the user's token version at issue time
+     * @param issuedAtSeconds   iat, seconds since the epoch
+     * @param expiresAtSeconds  exp, seconds since the epoch
+     * @return the compact JWS
+     */
+    public String encode(String userId, String name, boolean verified, String role, String email, String provider,
+                         int tokenVersion, long issuedAtSeconds, long expiresAtSeconds) {
+        Scratch s = acquire();
+        try {
+            return encode(s, userId, name, verified, role, email, provider, tokenVersion, issuedAtSeconds,
+                    expiresAtSeconds);
+        } finally {
+            release(s);
+        }
+    }
+
+    private static String encode(Scratch s, String userId, String name, boolean verified, String role, String email,
+                                 String provider, int tokenVersion, long issuedAtSeconds, long expiresAtSeconds) {
+        ByteSink json = s.json;
+        json.reset();
+        json.put('{');
+        json.stringField("userId", userId);
+        json.stringField("name", name);
+        json.rawField("isVerified", verified ? "true" : "false");
+        json.stringField("role", role);
+        json.stringField("email", email);
+        json.stringField("provider", provider);
+        json.longField("tokenVersion", tokenVersion);
+        json.stringField("sub", userId);
+        json.longField("iat", issuedAtSeconds);
+        json.longField("exp", expiresAtSeconds);
+        json.put('}');
+
+        ByteSink token = s.token;
+        token.reset();
+        token.put(HEADER_BYTES);
+        token.put('.');
+        token.base64Url(json.buf, 0, json.len);
+        sign(s, token.buf, token.len, s.signature);
+        token.put('.');
+        token.base64Url(s.signature, 0, SIGNATURE_LENGTH);
+        return new String(token.buf, 0, token.len, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Verify a token signed with the shared secret
+     *
+     * @param token the compact JWS
+     * @return the claims, or null when the token is not in the shape this codec handles
+     * @throws MalformedJwtException if the token is longer than {@link #MAX_TOKEN_LENGTH}
+     * @throws SignatureException    if the signature does not match
+     * @throws ExpiredJwtException   if the token has expired
+     * @throws PrematureJwtException if the token is not valid yet
+     */
+    public Claims decode(String token) {
+        if (token == null || !token.startsWith(HEADER) || token.length() <= HEADER.length()
+                || token.charAt(HEADER.length()) != '.') {
+            return null;
+        }
+        if (token.length() > MAX_TOKEN_LENGTH) {
+            throw new MalformedJwtException("JWT exceeds " + MAX_TOKEN_LENGTH + " characters");
+        }
+        int payloadStart = HEADER.length() + 1;
+        int signatureDot = token.indexOf('.', payloadStart);
+        if (signatureDot < 0 || token.length() - signatureDot - 1 != ENCODED_SIGNATURE_LENGTH) {
+            return null;
+        }
+
+        Scratch s = acquire();
+        try {
+            return decode(s, token, payloadStart, signatureDot);
+        } finally {
+            release(s);
+        }
+    }
+
+    private static Claims decode(Scratch s, String token, int payloadStart, int signatureDot) {
+        ByteSink signed = s.token;
+        signed.reset();
+        signed.ensure(signatureDot);
+        for (int i = 0; i < signatureDot; i++) {
+            char c = token.charAt(i);
+            if (c > 127) {
+                return null;
+            }
+            signed.buf[i] = (byte) c;
+        }
+        signed.len = signatureDot;
+
+        if (decodeBase64Url(token, signatureDot + 1, token.length(), s.signature, 0) != SIGNATURE_LENGTH) {
+            return null;
+        }
+        sign(s, signed.buf, signed.len, s.expected);
+        if (!MessageDigest.isEqual(s.expected, s.signature)) {
+            throw new SignatureException("JWT signature does not match locally computed signature. "
+                    + "JWT validity cannot be asserted and should not be trusted.");
+        }
+
+        ByteSink json = s.json;
+        json.reset();
+        json.ensure((signatureDot - payloadStart) * 3 / 4 + 1);
+        int length = decodeBase64Url(token, payloadStart, signatureDot, json.buf, 0);
+        if (length < 0) {
+            return null;
+        }
+        json.len = length;
+        Map<String, Object> values = new FlatJsonReader(json.buf, json.len, s.chars).readObject();
+        if (values == null) {
+            return null;
+        }
+
+        Claims claims = Jwts.claims(values);
+        checkTimes(claims);
+        return claims;
+    }
+
+    private Scratch acquire() {
+        if (!Thread.currentThread().isVirtual()) {
+            return scratch.get();
+        }
+        Scratch s = virtualThreadPool.poll();
+        return s != null ? s : new Scratch(newMac(key));
+    }
+
+    private void release(Scratch s) {
+        s.trim();
+        if (Thread.currentThread().isVirtual()) {
+            virtualThreadPool.offer(s);
+        }
+    }
+
+    private static void checkTimes(Claims claims) {
+        long now = System.currentTimeMillis();
+        Date expiration = claims.getExpiration();
+        if (expiration != null && now > expiration.getTime()) {
+            throw new ExpiredJwtException(header(), claims, "JWT expired at " + expiration.toInstant()
+                    + ". Current time: " + new Date(now).toInstant() + ".");
+        }
+        Date notBefore = claims.getNotBefore();
+        if (notBefore != null && now < notBefore.getTime()) {
+            throw new PrematureJwtException(header(), claims, "JWT must not be accepted before "
+                    + notBefore.toInstant() + ". Current time: " + new Date(now).toInstant() + ".");
+        }
+    }
+
+    private static Header<?> header() {
+        return Jwts.jwsHeader().setAlgorithm(SignatureAlgorithm.HS256.getValue());
+    }
+
+    private static void sign(Scratch s, byte[] data, int length, byte[] output) {
+        Mac mac = s.mac;
+        mac.reset();
+        mac.update(data, 0, length);
+        try {
+            mac.doFinal(output, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException("HMAC output buffer too small", e);
+        }
+    }
+
+    private static Mac newMac(Key key) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Key cannot be used for " + MAC_ALGORITHM, e);
+        }
+    }
+
+    // Decodes unpadded base64url, returns the number of bytes written or -1 if the input is not base64url
+    private static int decodeBase64Url(String source, int from, int to, byte[] output, int offset) {
+        int remainder = (to - from) % 4;
+        if (remainder == 1) {
+            return -1;
+        }
+        int decodedLength = (to - from) / 4 * 3 + (remainder == 0 ? 0 : remainder - 1);
+        if (output.length - offset < decodedLength) {
+            return -1;
+        }
+        int out = offset;
+        int bits = 0;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            int value = c < 128 ? BASE64_URL_VALUES[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            if (++count == 4) {
+                output[out++] = (byte) (bits >> 16);
+                output[out++] = (byte) (bits >> 8);
+                output[out++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 3) {
+            output[out++] = (byte) (bits >> 10);
+            output[out++] = (byte) (bits >> 2);
+        } else if (count == 2) {
+            output[out++] = (byte) (bits >> 4);
+        }
+        return out - offset;
+    }
+
+    private static final class Scratch {
+        private final Mac mac;
+        private final ByteSink json = new ByteSink(512);
+        private final ByteSink token = new ByteSink(1024);
+        private final byte[] signature = new byte[SIGNATURE_LENGTH];
+        private final byte[] expected = new byte[SIGNATURE_LENGTH];
+        private final StringBuilder chars = new StringBuilder(64);
+
+        private Scratch(Mac mac) {
+            this.mac = mac;
+        }
+
+        void trim() {
+            json.trim(512);
+            token.trim(1024);
+            if (chars.capacity() > MAX_RETAINED_CAPACITY) {
+                chars.setLength(0);
+                chars.trimToSize();
+            }
+        }
+    }
+
+    // A growable byte buffer that writes JSON and base64url directly
+    private static final class ByteSink {
+        private byte[] buf;
+        private int len;
+
+        private ByteSink(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        void reset() {
+            len = 0;
+        }
+
+        void trim(int capacity) {
+            if (buf.length > MAX_RETAINED_CAPACITY) {
+                buf = new byte[capacity];
+            }
+            len = 0;
+        }
+
+        void ensure(int extra) {
+            if (len + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+            }
+        }
+
+        void put(char c) {
+            ensure(1);
+            buf[len++] = (byte) c;
+        }
+
+        void put(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, len, bytes.length);
+            len += bytes.length;
+        }
+
+        void ascii(String value) {
+            ensure(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                buf[len++] = (byte) value.charAt(i);
+            }
+        }
+
+        void fieldName(String name) {
+            if (len > 1) {
+                put(',');
+            }
+            put('"');
+            ascii(name);
+            put('"');
+            put(':');
+        }
+
+        void stringField(String name, String value) {
+            if (value == null) {
+                return;
+            }
+            fieldName(name);
+            put('"');
+            jsonString(value);
+            put('"');
+        }
+
+        void rawField(String name, String value) {
+            fieldName(name);
+            ascii(value);
+        }
+
+        void longField(String name, long value) {
+            fieldName(name);
+            ascii(Long.toString(value));
+        }
+
+        // UTF-8 with the escaping Jackson applies by default: quotes, backslashes and control characters
+        void jsonString(String value) {
+            ensure(value.length() * 3);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    ensure(2);
+                    buf[len++] = '\\';
+                    buf[len++] = (byte) c;
+                } else if (c < 0x20) {
+                    ensure(6);
+                    buf[len++] = '\\';
+                    buf[len++] = 'u';
+                    buf[len++] = '0';
+                    buf[len++] = '0';
+                    buf[len++] = HEX[c >> 4];
+                    buf[len++] = HEX[c & 0xF];
+                } else if (c < 0x80) {
+                    ensure(1);
+                    buf[len++] = (byte) c;
+                } else if (c < 0x800) {
+                    ensure(2);
+                    buf[len++] = (byte) (0xC0 | (c >> 6));
+                    buf[len++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    ensure(4);
+                    buf[len++] = (byte) (0xF0 | (codePoint >> 18));
+                    buf[len++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buf[len++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buf[len++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate, encoded as '?' like String.getBytes(UTF_8)
+                    ensure(1);
+                    buf[len++] = '?';
+                } else {
+                    ensure(3);
+                    buf[len++] = (byte) (0xE0 | (c >> 12));
+                    buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buf[len++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        void base64Url(byte[] source, int offset, int length) {
+            ensure((length + 2) / 3 * 4);
+            int i = offset;
+            int end = offset + length;
+            while (end - i >= 3) {
+                int bits = (source[i++] & 0xFF) << 16 | (source[i++] & 0xFF) << 8 | (source[i++] & 0xFF);
+                buf[len++] = BASE64_URL[(bits >> 18) & 0x3F];
+                buf[len++] = BASE64_URL[(bits >> 12) & 0x3F];
+                buf[len++] = BASE64_URL[(bits >> 6) & 0x3F];
+                buf[len++] = BASE64_URL[bits & 0x3F];
+            }
+            int remaining = end - i;
+            if (remaining == 1) {
+                int bits = (source[i] & 0xFF) << 16;
+                buf[len++] = BASE64_URL[(bits >> 18) & 0x3F];
+                buf[len++] = BASE64_URL[(bits >> 12) & 0x3F];
+            } else if (remaining == 2) {
+                int bits = (source[i] & 0xFF) << 16 | (source[i + 1] & 0xFF) << 8;
+                buf[len++] = BASE64_URL[(bits >> 18) & 0x3F];
+                buf[len++] = BASE64_URL[(bits >> 12) & 0x3F];
+                buf[len++] = BASE64_URL[(bits >> 6) & 0x3F];
+            }
+        }
+    }
+
+    /**
+     * Reads a JSON object whose values are strings, numbers, booleans or null.
+     * Anything else makes {@link #readObject()} return null so the token is handed to jjwt.
+     */
+    private static final class FlatJsonReader {
+        private final byte[] buf;
+        private final int end;
+        private final StringBuilder chars;
+        private int pos;
+
+        private FlatJsonReader(byte[] buf, int end, StringBuilder chars) {
+            this.buf = buf;
+            this.end = end;
+            this.chars = chars;
+        }
+
+        Map<String, Object> readObject() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            skipWhitespace();
+            if (!consume('{')) {
+                return null;
+            }
+            skipWhitespace();
+            if (consume('}')) {
+                return atEnd() ? values : null;
+            }
+            while (true) {
+                skipWhitespace();
+                if (!consume('"')) {
+                    return null;
+                }
+                String name = readString();
+                skipWhitespace();
+                if (name == null || !consume(':')) {
+                    return null;
+                }
+                skipWhitespace();
+                if (pos >= end) {
+                    return null;
+                }
+                if (buf[pos] == 'n') {
+                    // jjwt drops claims whose value is null
+                    if (!readLiteral("null")) {
+                        return null;
+                    }
+                } else {
+                    Object value = readValue();
+                    if (value == null) {
+                        return null;
+                    }
+                    values.put(name, value);
+                }
+                skipWhitespace();
+                if (consume('}')) {
+                    return atEnd() ? values : null;
+                }
+                if (!consume(',')) {
+                    return null;
+                }
+            }
+        }
+
+        // A string, number or boolean, null for anything else
+        private Object readValue() {
+            byte b = buf[pos];
+            if (b == '"') {
+                pos++;
+                return readString();
+            }
+            if (b == 't') {
+                return readLiteral("true") ? Boolean.TRUE : null;
+            }
+            if (b == 'f') {
+                return readLiteral("false") ? Boolean.FALSE : null;
+            }
+            if (b == '-' || (b >= '0' && b <= '9')) {
+                return readNumber();
+            }
+            return null;
+        }
+
+        // Called after the opening quote, returns null on malformed input
+        private String readString() {
+            int start = pos;
+            while (pos < end) {
+                byte b = buf[pos];
+                if (b == '"') {
+                    String value = new String(buf, start, pos - start, StandardCharsets.UTF_8);
+                    pos++;
+                    return value;
+                }
+                if (b == '\\') {
+                    return readEscapedString(start);
+                }
+                if (b >= 0 && b < 0x20) {
+                    return null;
+                }
+                pos++;
+            }
+            return null;
+        }
+
+        private String readEscapedString(int start) {
+            StringBuilder out = chars;
+            out.setLength(0);
+            int runStart = start;
+            while (pos < end) {
+                byte b = buf[pos];
+                if (b == '"') {
+                    appendRun(out, runStart, pos);
+                    pos++;
+                    return out.toString();
+                }
+                if (b >= 0 && b < 0x20) {
+                    return null;
+                }
+                if (b != '\\') {
+                    pos++;
+                    continue;
+                }
+                appendRun(out, runStart, pos);
+                if (++pos >= end) {
+                    return null;
+                }
+                byte escaped = buf[pos++];
+                switch (escaped) {
+                    case '"', '\\', '/' -> out.append((char) escaped);
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > end) {
+                            return null;
+                        }
+                        int c = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(buf[pos++], 16);
+                            if (digit < 0) {
+                                return null;
+                            }
+                            c = (c << 4) | digit;
+                        }
+                        out.append((char) c);
+                    }
+                    default -> {
+                        return null;
+                    }
+                }
+                runStart = pos;
+            }
+            return null;
+        }
+
+        private void appendRun(StringBuilder out, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buf[i] < 0) {
+                    // Non-ASCII run, escapes are ASCII so the run holds whole UTF-8 sequences
+                    out.append(new String(buf, i, to - i, StandardCharsets.UTF_8));
+                    return;
+                }
+                out.append((char) buf[i]);
+            }
+        }
+
+        private boolean readLiteral(String literal) {
+            if (pos + literal.length() > end) {
+                return false;
+            }
+            for (int i = 0; i < literal.length(); i++) {
+                if (buf[pos + i] != literal.charAt(i)) {
+                    return false;
+                }
+            }
+            pos += literal.length();
+            return true;
+        }
+
+        // Integers become Integer or Long like Jackson reads them, anything else a Double
+        private Number readNumber() {
+            int start = pos;
+            boolean negative = consume('-');
+            long value = 0;
+            int digits = 0;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos++] - '0');
+                digits++;
+            }
+            if (digits == 0) {
+                return null;
+            }
+            boolean fraction = pos < end && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E');
+            if (fraction || digits > 18) {
+                while (pos < end && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E' || buf[pos] == '+'
+                        || buf[pos] == '-' || (buf[pos] >= '0' && buf[pos] <= '9'))) {
+                    pos++;
+                }
+                if (!fraction) {
+                    // Beyond long precision, leave it to jjwt
+                    return null;
+                }
+                try {
+                    return Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            value = negative ? -value : value;
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        }
+
+        private void skipWhitespace() {
+            while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t' || buf[pos] == '\n' || buf[pos] == '\r')) {
+                pos++;
+            }
+        }
+
+        private boolean consume(char c) {
+            if (pos < end && buf[pos] == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean atEnd() {
+            skipWhitespace();
+            return pos == end;
+        }
+    }
+}
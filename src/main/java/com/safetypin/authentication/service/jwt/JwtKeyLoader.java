@@ -0,0 +1,330 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Reads signing keys from configuration and from the key directory.
+ * <p>
+ * Every {@code <kid>.pem} file in {@code jwt.keys.location} holds a PKCS#8 private key and/or an X.509 public key;
+ * files without a private key are only used for verification. RSA keys sign with RS256 and P-256 keys with ES256.
+ * The active key is {@code jwt.keys.active-kid} when set, otherwise the newest key of the configured algorithm
+ * whose file is older than {@code jwt.keys.activation-delay-seconds}, so every replica has picked up a new
+ * public key before any replica signs with it.
+ * <p>
+ * An empty key directory fails the boot: keys must be provisioned before the replicas start. Only with
+ * {@code jwt.keys.generate-if-missing}, meant for a single local instance, is a key generated and signed with at once.
+ */
+@Component
+public class JwtKeyLoader {
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyLoader.class);
+    private static final Pattern PEM_BLOCK = Pattern.compile(
+            "-----BEGIN ([A-Z ]+)-----([A-Za-z0-9+/=\\s]+)-----END \\1-----");
+    private static final String PEM_SUFFIX = ".pem";
+
+    private final SignatureAlgorithm algorithm;
+    private final String secret;
+    private final boolean legacyHmacEnabled;
+    private final List<SigningKey> configuredKeys;
+    private final Path location;
+    private final String activeKid;
+    private final Duration activationDelay;
+    private final boolean generateIfMissing;
+
+    private volatile String loadedFingerprint;
+    // When a newer key that is still waiting out the activation delay may become active
+    private volatile long pendingActivationAtMillis = Long.MAX_VALUE;
+
+    @Autowired
+    public JwtKeyLoader(@Value("${jwt.signing.algorithm:HS256}") SignatureAlgorithm algorithm,
+                        @Value("${jwt.secret:biggerboysandstolensweethearts}") String secret,
+                        @Value("${jwt.legacy-hmac.enabled:true}") boolean legacyHmacEnabled,
+                        @Value("${jwt.rsa.private-key:}") String rsaPrivateKeyPem,
+                        @Value("${jwt.rsa.public-key:}") String rsaPublicKeyPem,
+                        @Value("${jwt.ec.private-key:}") String ecPrivateKeyPem,
+                        @Value("${jwt.ec.public-key:}") String ecPublicKeyPem,
+                        @Value("${jwt.keys.location:}") String location,
+                        @Value("${jwt.keys.active-kid:}") String activeKid,
+                        @Value("${jwt.keys.activation-delay-seconds:120}") long activationDelaySeconds,
+                        @Value("${jwt.keys.generate-if-missing:false}") boolean generateIfMissing) {
+        this.algorithm = algorithm;
+        this.secret = secret;
+        this.legacyHmacEnabled = legacyHmacEnabled;
+        this.configuredKeys = new ArrayList<>();
+        if (!rsaPrivateKeyPem.isBlank()) {
+            configuredKeys.add(SigningKey.fromKeyPair(
+                    readKeyPair(rsaPrivateKeyPem + rsaPublicKeyPem), SignatureAlgorithm.RS256));
+        }
+        if (!ecPrivateKeyPem.isBlank()) {
+            configuredKeys.add(SigningKey.fromKeyPair(
+                    readKeyPair(ecPrivateKeyPem + ecPublicKeyPem), SignatureAlgorithm.ES256));
+        }
+        this.location = location.isBlank() ? null : Path.of(location);
+        this.activeKid = activeKid.isBlank() ? null : activeKid;
+        this.activationDelay = Duration.ofSeconds(activationDelaySeconds);
+        this.generateIfMissing = generateIfMissing;
+    }
+
+    /**
+     * Read every configured key and pick the active one
+     *
+     * @return the keys to install in the key ring
+     * @throws IllegalStateException if no key can sign with the configured algorithm
+     */
+    public LoadedKeys load() {
+        String fingerprint = fingerprint();
+        List<KeyFile> files = new ArrayList<>();
+        configuredKeys.forEach(key -> files.add(new KeyFile(key, 0L)));
+        files.addAll(readKeyDirectory());
+
+        SigningKey hmacKey = SigningKey.hmac(secret);
+        SigningKey active = algorithm == SignatureAlgorithm.HS256 ? hmacKey : selectActive(files);
+        if (active == null && location != null && activeKid == null && generateIfMissing) {
+            // Skips the activation delay, other replicas could not verify this key yet
+            active = generateKeyFile();
+            files.add(new KeyFile(active, System.currentTimeMillis()));
+            fingerprint = fingerprint();
+        }
+        if (active == null) {
+            throw new IllegalStateException("No " + algorithm + " signing key found"
+                    + (activeKid != null ? " with kid " + activeKid : "")
+                    + (location != null ? " in " + location : "")
+                    + ", provision a <kid>.pem key in jwt.keys.location or configure jwt.rsa / jwt.ec keys"
+                    + " (jwt.keys.generate-if-missing=true generates one, for a single local instance only)");
+        }
+
+        List<SigningKey> verificationKeys = new ArrayList<>();
+        for (KeyFile file : files) {
+            if (!file.key().kid().equals(active.kid())) {
+                verificationKeys.add(file.key().verificationOnly());
+            }
+        }
+        if (active != hmacKey && legacyHmacEnabled) {
+            verificationKeys.add(hmacKey.verificationOnly());
+        }
+        loadedFingerprint = fingerprint;
+        return new LoadedKeys(active, verificationKeys);
+    }
+
+    /**
+     * Whether the key directory changed, or a waiting key became activatable, since the last {@link #load()}
+     */
+    public boolean hasChanged() {
+        return location != null && (System.currentTimeMillis() >= pendingActivationAtMillis
+                || !fingerprint().equals(loadedFingerprint));
+    }
+
+    private SigningKey selectActive(List<KeyFile> files) {
+        List<KeyFile> candidates = files.stream()
+                .filter(file -> file.key().canSign() && file.key().algorithm() == algorithm)
+                .sorted(Comparator.comparingLong(KeyFile::lastModifiedMillis).reversed())
+                .toList();
+        pendingActivationAtMillis = Long.MAX_VALUE;
+        if (activeKid != null) {
+            return candidates.stream()
+                    .map(KeyFile::key)
+                    .filter(key -> key.kid().equals(activeKid))
+                    .findFirst()
+                    .orElse(null);
+        }
+        long activatableBefore = System.currentTimeMillis() - activationDelay.toMillis();
+        KeyFile selected = candidates.stream()
+                .filter(file -> file.lastModifiedMillis() <= activatableBefore)
+                .findFirst()
+                // Nothing old enough yet, e.g. the very first key: better to sign with it than not at all
+                .orElse(candidates.isEmpty() ? null : candidates.get(0));
+        if (selected == null) {
+            return null;
+        }
+        if (candidates.get(0) != selected) {
+            pendingActivationAtMillis = candidates.get(0).lastModifiedMillis() + activationDelay.toMillis();
+        }
+        return selected.key();
+    }
+
+    private List<KeyFile> readKeyDirectory() {
+        if (location == null || !Files.isDirectory(location)) {
+            return List.of();
+        }
+        List<KeyFile> files = new ArrayList<>();
+        for (Path path : listKeyFiles()) {
+            String fileName = path.getFileName().toString();
+            String kid = fileName.substring(0, fileName.length() - PEM_SUFFIX.length());
+            try {
+                KeyPair keyPair = readKeyPair(Files.readString(path, StandardCharsets.US_ASCII));
+                SigningKey key = SigningKey.fromKeyPair(kid, keyPair, algorithmFor(keyPair.getPublic()));
+                files.add(new KeyFile(key, Files.getLastModifiedTime(path).toMillis()));
+            } catch (IOException | RuntimeException e) {
+                logger.error("JwtKeyLoader:: skipping unreadable key file {}: {}", path, e.getMessage());
+            }
+        }
+        return files;
+    }
+
+    private SigningKey generateKeyFile() {
+        try {
+            KeyPairGenerator generator;
+            if (algorithm == SignatureAlgorithm.ES256) {
+                generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+            } else {
+                generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(2048);
+            }
+            KeyPair keyPair = generator.generateKeyPair();
+            SigningKey key = SigningKey.fromKeyPair(keyPair, algorithm);
+            Files.createDirectories(location);
+            Path file = location.resolve(key.kid() + PEM_SUFFIX);
+            Files.writeString(file, toPem("PRIVATE KEY", keyPair.getPrivate().getEncoded())
+                    + toPem("PUBLIC KEY", keyPair.getPublic().getEncoded()), StandardCharsets.US_ASCII);
+            logger.warn("JwtKeyLoader:: no {} signing key found, generated {}", algorithm, file);
+            return key;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not generate a " + algorithm + " signing key", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write a generated signing key to " + location, e);
+        }
+    }
+
+    private String fingerprint() {
+        if (location == null || !Files.isDirectory(location)) {
+            return "";
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        for (Path path : listKeyFiles()) {
+            try {
+                fingerprint.append(path.getFileName()).append(':')
+                        .append(Files.getLastModifiedTime(path).toMillis()).append(':')
+                        .append(Files.size(path)).append(';');
+            } catch (IOException e) {
+                fingerprint.append(path.getFileName()).append(":?;");
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    private List<Path> listKeyFiles() {
+        try (Stream<Path> paths = Files.list(location)) {
+            return paths
+                    .filter(path -> path.getFileName().toString().endsWith(PEM_SUFFIX))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list key directory " + location, e);
+        }
+    }
+
+    private static SignatureAlgorithm algorithmFor(PublicKey publicKey) {
+        if (publicKey instanceof ECPublicKey ec) {
+            if (ec.getParams().getCurve().getField().getFieldSize() != 256) {
+                throw new IllegalArgumentException("Only P-256 EC keys are supported");
+            }
+            return SignatureAlgorithm.ES256;
+        }
+        return SignatureAlgorithm.RS256;
+    }
+
+    /**
+     * Read a key pair from PEM text holding a PKCS#8 private key and/or an X.509 public key.
+     * The public key of an RSA private key is derived when it is not given.
+     *
+     * @return the key pair, with a null private key when the PEM only holds a public key
+     */
+    static KeyPair readKeyPair(String pem) {
+        byte[] privateKeyBytes = null;
+        byte[] publicKeyBytes = null;
+        Matcher matcher = PEM_BLOCK.matcher(pem);
+        while (matcher.find()) {
+            byte[] der = Base64.getMimeDecoder().decode(matcher.group(2));
+            switch (matcher.group(1)) {
+                case "PRIVATE KEY" -> privateKeyBytes = der;
+                case "PUBLIC KEY" -> publicKeyBytes = der;
+                default -> throw new IllegalArgumentException("Unsupported PEM block " + matcher.group(1));
+            }
+        }
+        if (privateKeyBytes == null && publicKeyBytes == null) {
+            throw new IllegalArgumentException("No PEM encoded key found");
+        }
+        try {
+            PrivateKey privateKey = privateKeyBytes == null ? null : readPrivateKey(privateKeyBytes);
+            PublicKey publicKey;
+            if (publicKeyBytes != null) {
+                KeyFactory keyFactory = KeyFactory.getInstance(privateKey != null ? privateKey.getAlgorithm() : guessAlgorithm(publicKeyBytes));
+                publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+            } else if (privateKey instanceof RSAPrivateCrtKey rsa) {
+                publicKey = KeyFactory.getInstance("RSA")
+                        .generatePublic(new RSAPublicKeySpec(rsa.getModulus(), rsa.getPublicExponent()));
+            } else {
+                throw new IllegalArgumentException("A public key is required for " + privateKey.getAlgorithm() + " keys");
+            }
+            return new KeyPair(publicKey, privateKey);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid key: " + e.getMessage(), e);
+        }
+    }
+
+    private static PrivateKey readPrivateKey(byte[] der) throws GeneralSecurityException {
+        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(der);
+        try {
+            return KeyFactory.getInstance("RSA").generatePrivate(spec);
+        } catch (GeneralSecurityException e) {
+            return KeyFactory.getInstance("EC").generatePrivate(spec);
+        }
+    }
+
+    private static String guessAlgorithm(byte[] publicKeyDer) {
+        try {
+            KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(publicKeyDer));
+            return "RSA";
+        } catch (GeneralSecurityException e) {
+            return "EC";
+        }
+    }
+
+    static String toPem(String type, byte[] der) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der)
+                + "\n-----END " + type + "-----\n";
+    }
+
+    /**
+     * @param active           the key new tokens are signed with
+     * @param verificationKeys every other key that is still accepted
+     */
+    public record LoadedKeys(SigningKey active, List<SigningKey> verificationKeys) {
+    }
+
+    private record KeyFile(SigningKey key, long lastModifiedMillis) {
+    }
+}
@@ -0,0 +1,156 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.Key;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The keys access tokens are signed and verified with.
+ * One key is active for signing; verification picks the key named by the token's kid header,
+ * and tokens without a kid are checked against the shared HS256 secret.
+ * Keys are reloaded when the key directory changes, so keys can be rotated without a restart.
+ */
+@Component
+public class JwtKeyRing extends SigningKeyResolverAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private final JwtKeyLoader loader;
+    // Swapped as a whole so a verification never sees a half-updated set of keys
+    private volatile KeySet keys;
+
+    @Autowired
+    public JwtKeyRing(JwtKeyLoader loader) {
+        this.loader = loader;
+        JwtKeyLoader.LoadedKeys loaded = loader.load();
+        update(loaded.active(), loaded.verificationKeys());
+    }
+
+    private JwtKeyRing(SigningKey activeKey, List<SigningKey> verificationKeys) {
+        this.loader = null;
+        this.keys = KeySet.of(activeKey, verificationKeys);
+    }
+
+    /**
+     * Build a key ring from explicit keys
+     *
+     * @param activeKey        the key new tokens are signed with
+     * @param verificationKeys further keys accepted when verifying
+     * @return the key ring
+     */
+    public static JwtKeyRing of(SigningKey activeKey, SigningKey... verificationKeys) {
+        return new JwtKeyRing(activeKey, List.of(verificationKeys));
+    }
+
+    /**
+     * Replace the keys, tokens signed with a key that is no longer listed stop verifying
+     *
+     * @param activeKey        the key new tokens are signed with
+     * @param verificationKeys further keys accepted when verifying
+     */
+    public void update(SigningKey activeKey, Collection<SigningKey> verificationKeys) {
+        KeySet previous = keys;
+        keys = KeySet.of(activeKey, verificationKeys);
+        if (previous == null || !Objects.equals(previous.active().kid(), activeKey.kid())) {
+            logger.info("JwtKeyRing:: signing access tokens with {} (kid {})", activeKey.algorithm(), activeKey.kid());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.keys.reload-interval-ms:30000}",
+            initialDelayString = "${jwt.keys.reload-interval-ms:30000}")
+    public void reloadIfChanged() {
+        if (loader == null || !loader.hasChanged()) {
+            return;
+        }
+        try {
+            JwtKeyLoader.LoadedKeys loaded = loader.load();
+            update(loaded.active(), loaded.verificationKeys());
+            logger.info("JwtKeyRing:: reloaded signing keys, {} verification keys", loaded.verificationKeys().size());
+        } catch (RuntimeException e) {
+            // Keep signing with the current keys rather than failing every request
+            logger.error("JwtKeyRing:: failed to reload signing keys: {}", e.getMessage());
+        }
+    }
+
+    public SigningKey getActiveKey() {
+        return keys.active();
+    }
+
+    /**
+     * The fast codec for tokens signed with the shared HS256 secret
+     *
+     * @return the codec, null when no shared secret is configured
+     */
+    public Hs256TokenCodec legacyCodec() {
+        return keys.legacyCodec();
+    }
+
+    /**
+     * The public keys other services need to verify our tokens offline
+     *
+     * @return JWKs of every asymmetric verification key
+     */
+    public List<Map<String, Object>> publicJwks() {
+        return keys.byKid().values().stream()
+                .filter(SigningKey::isAsymmetric)
+                .map(SigningKey::toJwk)
+                .toList();
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        return resolve(header);
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, String plaintext) {
+        return resolve(header);
+    }
+
+    private Key resolve(JwsHeader header) {
+        String kid = header.getKeyId();
+        KeySet current = keys;
+        SigningKey key = kid == null ? current.legacyHmac() : current.byKid().get(kid);
+        // The algorithm must match the key, otherwise a public key could be abused as an HMAC secret
+        if (key == null || !key.algorithm().getValue().equals(header.getAlgorithm())) {
+            throw new UnsupportedJwtException("Unknown signing key");
+        }
+        return key.verificationKey();
+    }
+
+    private record KeySet(SigningKey active, Map<String, SigningKey> byKid, SigningKey legacyHmac,
+                          Hs256TokenCodec legacyCodec) {
+        static KeySet of(SigningKey active, Collection<SigningKey> verificationKeys) {
+            Map<String, SigningKey> byKid = new LinkedHashMap<>();
+            SigningKey legacy = null;
+            for (SigningKey key : verificationKeys) {
+                if (key.kid() == null) {
+                    legacy = key;
+                } else {
+                    byKid.put(key.kid(), key);
+                }
+            }
+            if (active.kid() == null) {
+                legacy = active;
+            } else {
+                byKid.put(active.kid(), active);
+            }
+            Hs256TokenCodec codec = Hs256TokenCodec.supports(legacy)
+                    ? new Hs256TokenCodec(legacy.verificationKey())
+                    : null;
+            return new KeySet(active, Map.copyOf(byKid), legacy, codec);
+        }
+    }
+}
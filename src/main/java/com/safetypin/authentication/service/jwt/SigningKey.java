@@ -0,0 +1,153 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A key used to sign or verify access tokens.
+ *
+ * @param kid             key id written to the JWT header, null for the legacy shared HMAC secret
+ * @param algorithm       the JWS algorithm this key is used with
+ * @param signingKey      private key or secret, null when the key may only verify
+ * @param verificationKey public key or secret
+ */
+public record SigningKey(String kid, SignatureAlgorithm algorithm, Key signingKey, Key verificationKey) {
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * The shared HS256 secret, tokens signed with it carry no kid so they stay identical to older tokens
+     */
+    public static SigningKey hmac(String secret) {
+        Key key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        return new SigningKey(null, SignatureAlgorithm.HS256, key, key);
+    }
+
+    /**
+     * An RS256 or ES256 key pair, identified by its RFC 7638 JWK thumbprint
+     */
+    public static SigningKey fromKeyPair(KeyPair keyPair, SignatureAlgorithm algorithm) {
+        return fromKeyPair(null, keyPair, algorithm);
+    }
+
+    /**
+     * An RS256 or ES256 key pair with an explicit key id, falls back to the JWK thumbprint when kid is null
+     */
+    public static SigningKey fromKeyPair(String kid, KeyPair keyPair, SignatureAlgorithm algorithm) {
+        if (!algorithm.isRsa() && !algorithm.isEllipticCurve()) {
+            throw new IllegalArgumentException("Key pairs can only be used with RSA or EC algorithms, got " + algorithm);
+        }
+        SigningKey withoutKid = new SigningKey(null, algorithm, keyPair.getPrivate(), keyPair.getPublic());
+        String resolvedKid = kid != null ? kid : withoutKid.thumbprint();
+        return new SigningKey(resolvedKid, algorithm, keyPair.getPrivate(), keyPair.getPublic());
+    }
+
+    public boolean isAsymmetric() {
+        return algorithm.isRsa() || algorithm.isEllipticCurve();
+    }
+
+    public boolean canSign() {
+        return signingKey != null;
+    }
+
+    /**
+     * A copy of this key that can no longer sign, used for retired keys kept only to verify outstanding tokens
+     */
+    public SigningKey verificationOnly() {
+        return new SigningKey(kid, algorithm, null, verificationKey);
+    }
+
+    /**
+     * The public JWK (RFC 7517) for this key
+     *
+     * @return JWK members, never including private material
+     */
+    public Map<String, Object> toJwk() {
+        if (!isAsymmetric()) {
+            throw new IllegalStateException("Symmetric keys must not be published");
+        }
+        Map<String, Object> jwk = requiredJwkMembers();
+        jwk.put("kid", kid);
+        jwk.put("alg", algorithm.getValue());
+        jwk.put("use", "sig");
+        return jwk;
+    }
+
+    // Never print key material
+    @Override
+    public String toString() {
+        return "SigningKey[kid=" + kid + ", algorithm=" + algorithm + ", canSign=" + canSign() + "]";
+    }
+
+    private String thumbprint() {
+        // RFC 7638: members in lexicographic order, no whitespace
+        Map<String, Object> members = requiredJwkMembers();
+        StringBuilder json = new StringBuilder("{");
+        members.keySet().stream().sorted().forEach(name -> {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(name).append("\":\"").append(members.get(name)).append('"');
+        });
+        json.append('}');
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json.toString().getBytes(StandardCharsets.UTF_8));
+            return BASE64_URL.encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Map<String, Object> requiredJwkMembers() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        if (verificationKey instanceof RSAPublicKey rsa) {
+            members.put("kty", "RSA");
+            members.put("n", base64Url(rsa.getModulus(), 0));
+            members.put("e", base64Url(rsa.getPublicExponent(), 0));
+        } else if (verificationKey instanceof ECPublicKey ec) {
+            int size = (ec.getParams().getCurve().getField().getFieldSize() + 7) / 8;
+            members.put("kty", "EC");
+            members.put("crv", curveName(algorithm));
+            members.put("x", base64Url(ec.getW().getAffineX(), size));
+            members.put("y", base64Url(ec.getW().getAffineY(), size));
+        } else {
+            throw new IllegalStateException("Unsupported public key type " + verificationKey.getAlgorithm());
+        }
+        return members;
+    }
+
+    private static String curveName(SignatureAlgorithm algorithm) {
+        return switch (algorithm) {
+            case ES256 -> "P-256";
+            case ES384 -> "P-384";
+            case ES512 -> "P-521";
+            default -> throw new IllegalStateException("Not an EC algorithm: " + algorithm);
+        };
+    }
+
+    // Unsigned big-endian bytes, left padded to size when size > 0
+    private static String base64Url(BigInteger value, int size) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (size > bytes.length) {
+            byte[] padded = new byte[size];
+            System.arraycopy(bytes, 0, padded, size - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return BASE64_URL.encodeToString(bytes);
+    }
+}
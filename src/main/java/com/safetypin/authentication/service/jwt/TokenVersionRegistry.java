@@ -0,0 +1,55 @@
+package com.safetypin.authentication.service.jwt;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The lowest token version still accepted for users whose tokens were revoked recently.
+ * Only users with a revocation younger than the access token lifetime are kept: once that has passed,
+ * every token with an older version has expired on its own and the entry is dropped.
+ */
+@Component
+public class TokenVersionRegistry {
+    // Marks a user whose tokens must never verify again, e.g. a deleted account
+    public static final int REVOKED = Integer.MAX_VALUE;
+
+    private final Map<UUID, Revocation> revocations = new ConcurrentHashMap<>();
+
+    /**
+     * Whether a token with the given version may still be used
+     *
+     * @param userId       the user the token was issued to
+     * @param tokenVersion the version claim of the token, 0 for tokens issued before versions existed
+     * @return false if the user's tokens were revoked after this one was issued
+     */
+    public boolean isCurrent(UUID userId, int tokenVersion) {
+        Revocation revocation = revocations.get(userId);
+        return revocation == null || tokenVersion >= revocation.minVersion();
+    }
+
+    /**
+     * Reject tokens older than minVersion until untilMillis, when the last of them has expired
+     */
+    public void revoke(UUID userId, int minVersion, long untilMillis) {
+        revocations.merge(userId, new Revocation(minVersion, untilMillis), (current, next) -> new Revocation(
+                Math.max(current.minVersion(), next.minVersion()),
+                Math.max(current.untilMillis(), next.untilMillis())));
+    }
+
+    public int size() {
+        return revocations.size();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.prune-interval-ms:60000}")
+    public void pruneExpired() {
+        long now = System.currentTimeMillis();
+        revocations.values().removeIf(revocation -> revocation.untilMillis() < now);
+    }
+
+    private record Revocation(int minVersion, long untilMillis) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.safetypin.authentication.service.jwt;
+
+/**
+ * How much a JWT verification should trust the signed claims.
+ */
+public enum VerificationMode {
+    /**
+     * Build the user from the signed claims only, no database round trip.
+     * Falls back to {@link #AUTHORITATIVE} when the token is older than the configured freshness window.
+     */
+    CLAIMS_ONLY,
+
+    /**
+     * Always load the user from the database, so deleted users and changed roles are seen immediately.
+     */
+    AUTHORITATIVE
+}
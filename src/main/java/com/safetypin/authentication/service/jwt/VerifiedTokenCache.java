@@ -0,0 +1,135 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded cache of tokens whose signature has already been verified.
+ * Entries are keyed by the SHA-256 digest of the token, so raw tokens are never kept in memory,
+ * and are never returned after the token's own expiry time.
+ */
+@Component
+public class VerifiedTokenCache {
+    // Sweep expired entries every this many insertions, so memory is reclaimed even below the size cap
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final Map<TokenDigest, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger insertsSinceSweep = new AtomicInteger();
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public VerifiedTokenCache(MeterRegistry meterRegistry,
+                              @Value("${jwt.cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("jwt_verified_cache_hits")
+                .description("Token verifications answered from the verified token cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("jwt_verified_cache_misses")
+                .description("Token verifications that had to check the signature")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("jwt_verified_cache_evictions")
+                .description("Verified tokens removed from the cache because they expired")
+                .register(meterRegistry);
+        Gauge.builder("jwt_verified_cache_size", entries, Map::size)
+                .description("Number of verified tokens currently cached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Look up the claims of a previously verified token
+     *
+     * @param token the raw JWT
+     * @return the cached claims, or null if the token is unknown or has expired
+     */
+    public Claims get(String token) {
+        TokenDigest digest = TokenDigest.of(token);
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            if (entries.remove(digest, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.claims();
+    }
+
+    /**
+     * Remember a token whose signature has just been verified.
+     * The claims instance is shared between callers and must not be modified.
+     *
+     * @param token  the raw JWT
+     * @param claims the verified claims, must carry an expiration
+     */
+    public void put(String token, Claims claims) {
+        if (maxSize <= 0 || claims.getExpiration() == null) {
+            return;
+        }
+        if (insertsSinceSweep.incrementAndGet() >= SWEEP_INTERVAL || entries.size() >= maxSize) {
+            insertsSinceSweep.set(0);
+            evictExpired();
+        }
+        // Still full of live tokens, skip caching rather than grow past the bound
+        if (entries.size() >= maxSize) {
+            return;
+        }
+        entries.put(TokenDigest.of(token), new Entry(claims, claims.getExpiration().getTime()));
+    }
+
+    /**
+     * Remove every cached token
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.forEach((digest, entry) -> {
+            if (entry.expiresAtMillis() <= now && entries.remove(digest, entry)) {
+                evictions.increment();
+            }
+        });
+    }
+
+    private record Entry(Claims claims, long expiresAtMillis) {
+    }
+
+    private record TokenDigest(long a, long b, long c, long d) {
+        static TokenDigest of(String token) {
+            ByteBuffer hash = ByteBuffer.wrap(SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+            return new TokenDigest(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        }
+    }
+}
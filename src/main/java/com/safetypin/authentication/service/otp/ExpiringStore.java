@@ -0,0 +1,195 @@
+package com.safetypin.authentication.service.otp;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded in-memory map whose entries disappear at their deadline, for short-lived secrets like OTPs.
+ * Deadlines are epoch millis. Each put is filed in a hashed timing wheel by deadline, so a sweep only
+ * touches the entries that are due instead of scanning the whole map; call {@link #sweep()} about once a tick.
+ * Expired entries are invisible to reads even before the sweeper removes them.
+ * <p>
+ * Overflow policy: once maxSize keys are stored, puts of new keys are rejected until entries expire or
+ * are removed. Existing keys can still be overwritten. Under concurrent puts the size may overshoot the
+ * cap by at most the number of writers.
+ */
+public class ExpiringStore<K, V> {
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Deadline<K>>[] wheel;
+    private final long tickMillis;
+    private final int maxSize;
+    private final LongSupplier clock;
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    // Sweepers may be virtual threads, which a contended monitor would pin
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    // Only advanced under the sweep lock
+    private long sweptTick;
+
+    @SuppressWarnings("unchecked")
+    public ExpiringStore(int maxSize, long tickMillis, int wheelSize, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.wheel = new ConcurrentLinkedQueue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.sweptTick = clock.getAsLong() / tickMillis - 1;
+    }
+
+    /**
+     * Store the value until ttlMillis from now, replacing any value stored for the key
+     *
+     * @return false if the key is new and the store is full
+     */
+    public boolean put(K key, V value, long ttlMillis) {
+        Entry<V> entry = new Entry<>(value, clock.getAsLong() + ttlMillis);
+        boolean[] accepted = {true};
+        entries.compute(key, (k, current) -> {
+            if (current == null && entries.size() >= maxSize) {
+                accepted[0] = false;
+                return null;
+            }
+            return entry;
+        });
+        if (!accepted[0]) {
+            rejected.increment();
+            return false;
+        }
+        schedule(key, entry.deadline());
+        return true;
+    }
+
+    /**
+     * @return the value, null if there is none or it has expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null || isExpired(entry, clock.getAsLong()) ? null : entry.value();
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove the key only while its live value matches, so a value is only ever taken once
+     *
+     * @return whether this call removed it
+     */
+    public boolean remove(K key, Predicate<? super V> matches) {
+        long now = clock.getAsLong();
+        boolean[] removed = {false};
+        entries.computeIfPresent(key, (k, current) -> {
+            if (!isExpired(current, now) && matches.test(current.value())) {
+                removed[0] = true;
+                return null;
+            }
+            return current;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Replace the value of a live entry, keeping its deadline
+     */
+    public void update(K key, UnaryOperator<V> update) {
+        long now = clock.getAsLong();
+        entries.computeIfPresent(key, (k, current) -> isExpired(current, now)
+                ? current
+                : new Entry<>(update.apply(current.value()), current.deadline()));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove every entry whose deadline has passed, visiting only the wheel slots of the ticks since the last sweep
+     */
+    public void sweep() {
+        sweepLock.lock();
+        try {
+            long now = clock.getAsLong();
+            // Only ticks that have fully passed, every deadline filed under them is due
+            long lastTick = now / tickMillis - 1;
+            // After a pause longer than a rotation, every slot is due once
+            long fromTick = Math.max(sweptTick + 1, lastTick - wheel.length + 1);
+            for (long tick = fromTick; tick <= lastTick; tick++) {
+                sweepSlot(wheel[(int) (tick % wheel.length)], now);
+            }
+            sweptTick = Math.max(sweptTick, lastTick);
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    public void registerMetrics(MeterRegistry meterRegistry, String name) {
+        Gauge.builder("expiring_store_entries", this, ExpiringStore::size)
+                .description("Entries currently held, including expired ones not yet swept")
+                .tag("store", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("expiring_store_expired_total", expired, LongAdder::sum)
+                .description("Entries removed by the sweeper at their deadline")
+                .tag("store", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("expiring_store_rejected_total", rejected, LongAdder::sum)
+                .description("Puts of new keys rejected because the store was full")
+                .tag("store", name)
+                .register(meterRegistry);
+    }
+
+    private void sweepSlot(ConcurrentLinkedQueue<Deadline<K>> slot, long now) {
+        List<Deadline<K>> due = new ArrayList<>();
+        for (Deadline<K> deadline = slot.poll(); deadline != null; deadline = slot.poll()) {
+            due.add(deadline);
+        }
+        for (Deadline<K> deadline : due) {
+            if (deadline.millis() > now) {
+                // Due in a later rotation, keep it unless the key was overwritten or removed meanwhile
+                Entry<V> current = entries.get(deadline.key());
+                if (current != null && current.deadline() == deadline.millis()) {
+                    slot.add(deadline);
+                }
+                continue;
+            }
+            boolean[] removed = {false};
+            entries.computeIfPresent(deadline.key(), (k, current) -> {
+                if (isExpired(current, now)) {
+                    removed[0] = true;
+                    return null;
+                }
+                return current;
+            });
+            if (removed[0]) {
+                expired.increment();
+            }
+        }
+    }
+
+    private void schedule(K key, long deadline) {
+        wheel[(int) ((deadline / tickMillis) % wheel.length)].add(new Deadline<>(key, deadline));
+    }
+
+    private static boolean isExpired(Entry<?> entry, long now) {
+        return entry.deadline() <= now;
+    }
+
+    private record Entry<V>(V value, long deadline) {
+    }
+
+    private record Deadline<K>(K key, long millis) {
+    }
+}
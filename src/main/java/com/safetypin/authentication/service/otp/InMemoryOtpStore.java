@@ -0,0 +1,99 @@
+package com.safetypin.authentication.service.otp;
+
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps OTPs and reset tokens in bounded {@link ExpiringStore}s of this JVM, only for a single replica
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+    private static final long SWEEP_TICK_MILLIS = 1000;
+    // One rotation covers more than the longest lifetime, so most entries are swept on their first visit
+    private static final int WHEEL_SIZE = 256;
+
+    // Pending OTP and its mail delivery by email
+    private final ExpiringStore<String, PendingOtp> otps;
+    // Email by OTP status handle
+    private final ExpiringStore<String, String> statusHandles;
+    // Email by reset token
+    private final ExpiringStore<String, String> resetTokens;
+
+    @Autowired
+    public InMemoryOtpStore(MeterRegistry meterRegistry, @Value("${otp.store.max-entries:100000}") int maxEntries) {
+        this(meterRegistry, maxEntries, System::currentTimeMillis);
+    }
+
+    public InMemoryOtpStore(MeterRegistry meterRegistry, int maxEntries, LongSupplier clock) {
+        this.otps = new ExpiringStore<>(maxEntries, SWEEP_TICK_MILLIS, WHEEL_SIZE, clock);
+        this.statusHandles = new ExpiringStore<>(maxEntries, SWEEP_TICK_MILLIS, WHEEL_SIZE, clock);
+        this.resetTokens = new ExpiringStore<>(maxEntries, SWEEP_TICK_MILLIS, WHEEL_SIZE, clock);
+        otps.registerMetrics(meterRegistry, "otp");
+        statusHandles.registerMetrics(meterRegistry, "otp_status_handle");
+        resetTokens.registerMetrics(meterRegistry, "reset_token");
+    }
+
+    @Override
+    public boolean putOtp(String email, String otp, String statusHandle, long ttlMillis) {
+        PendingOtp previous = otps.get(email);
+        if (!otps.put(email, new PendingOtp(otp, statusHandle, OtpDeliveryStatus.PENDING), ttlMillis)) {
+            return false;
+        }
+        if (previous != null) {
+            statusHandles.remove(previous.statusHandle());
+        }
+        // Best effort, if this store is full the status reads NONE and the client offers a resend
+        statusHandles.put(statusHandle, email, ttlMillis);
+        return true;
+    }
+
+    @Override
+    public void recordDelivery(String email, String otp, OtpDeliveryStatus status) {
+        otps.update(email, current -> current.otp().equals(otp)
+                ? new PendingOtp(otp, current.statusHandle(), status)
+                : current);
+    }
+
+    @Override
+    public OtpDeliveryStatus getDeliveryStatus(String statusHandle) {
+        String email = statusHandles.get(statusHandle);
+        PendingOtp pending = email == null ? null : otps.get(email);
+        return pending == null || !pending.statusHandle().equals(statusHandle)
+                ? OtpDeliveryStatus.NONE
+                : pending.delivery();
+    }
+
+    @Override
+    public boolean consumeOtp(String email, String otp) {
+        return otps.remove(email, pending -> pending.otp().equals(otp));
+    }
+
+    @Override
+    public boolean putResetToken(String token, String email, long ttlMillis) {
+        return resetTokens.put(token, email, ttlMillis);
+    }
+
+    @Override
+    public boolean consumeResetToken(String token, String email) {
+        return resetTokens.remove(token, email::equals);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${otp.store.sweep-interval-ms:1000}")
+    public void sweepExpired() {
+        otps.sweep();
+        statusHandles.sweep();
+        resetTokens.sweep();
+    }
+
+    private record PendingOtp(String otp, String statusHandle, OtpDeliveryStatus delivery) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.safetypin.authentication.service.otp;
+
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
+import com.safetypin.authentication.repository.OtpCodeRepository;
+import com.safetypin.authentication.repository.PasswordResetTokenRepository;
+import com.safetypin.authentication.security.TokenHashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps OTPs and reset tokens in the application database, shared by every replica.
+ * Each consume is a single conditional delete, so of two replicas verifying the same value only one succeeds.
+ * Reset tokens and OTP status handles are stored as SHA-256 digests, like refresh tokens. Deadlines are epoch millis.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store.type", havingValue = "jdbc")
+public class JdbcOtpStore implements OtpStore {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcOtpStore.class);
+
+    private final OtpCodeRepository otpCodeRepository;
+    private final PasswordResetTokenRepository passwordResetTokenRepository;
+    private final LongSupplier clock;
+
+    @Autowired
+    public JdbcOtpStore(OtpCodeRepository otpCodeRepository,
+                        PasswordResetTokenRepository passwordResetTokenRepository) {
+        this(otpCodeRepository, passwordResetTokenRepository, System::currentTimeMillis);
+    }
+
+    public JdbcOtpStore(OtpCodeRepository otpCodeRepository,
+                        PasswordResetTokenRepository passwordResetTokenRepository, LongSupplier clock) {
+        this.otpCodeRepository = otpCodeRepository;
+        this.passwordResetTokenRepository = passwordResetTokenRepository;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean putOtp(String email, String otp, String statusHandle, long ttlMillis) {
+        long expiresAt = clock.getAsLong() + ttlMillis;
+        String statusHandleHash = TokenHashing.sha256Hex(statusHandle);
+        OtpDeliveryStatus pending = OtpDeliveryStatus.PENDING;
+        // Update first and insert if there was nothing, portable where upsert syntax is not
+        if (otpCodeRepository.replace(email, otp, statusHandleHash, pending, expiresAt) > 0) {
+            return true;
+        }
+        try {
+            otpCodeRepository.insert(email, otp, statusHandleHash, pending, expiresAt);
+        } catch (DataIntegrityViolationException e) {
+            // Another replica inserted first, the latest OTP wins as it would in memory
+            otpCodeRepository.replace(email, otp, statusHandleHash, pending, expiresAt);
+        }
+        return true;
+    }
+
+    @Override
+    public void recordDelivery(String email, String otp, OtpDeliveryStatus status) {
+        otpCodeRepository.updateDeliveryStatus(email, otp, status);
+    }
+
+    @Override
+    public OtpDeliveryStatus getDeliveryStatus(String statusHandle) {
+        return otpCodeRepository.findLiveDeliveryStatus(TokenHashing.sha256Hex(statusHandle), clock.getAsLong())
+                .orElse(OtpDeliveryStatus.NONE);
+    }
+
+    @Override
+    public boolean consumeOtp(String email, String otp) {
+        return otpCodeRepository.deleteLive(email, otp, clock.getAsLong()) == 1;
+    }
+
+    @Override
+    public boolean putResetToken(String token, String email, long ttlMillis) {
+        passwordResetTokenRepository.insert(TokenHashing.sha256Hex(token), email, clock.getAsLong() + ttlMillis);
+        return true;
+    }
+
+    @Override
+    public boolean consumeResetToken(String token, String email) {
+        return passwordResetTokenRepository.deleteLive(TokenHashing.sha256Hex(token), email, clock.getAsLong()) == 1;
+    }
+
+    // Every replica runs this, the deletes are idempotent
+    @Override
+    @Scheduled(fixedDelayString = "${otp.store.jdbc.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        long now = clock.getAsLong();
+        int otps = otpCodeRepository.deleteExpired(now);
+        int resetTokens = passwordResetTokenRepository.deleteExpired(now);
+        if (otps + resetTokens > 0) {
+            logger.debug("Removed {} expired OTPs and {} expired reset tokens", otps, resetTokens);
+        }
+    }
+}
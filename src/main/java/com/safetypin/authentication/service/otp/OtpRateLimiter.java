@@ -0,0 +1,123 @@
+package com.safetypin.authentication.service.otp;
+
+import com.safetypin.authentication.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets in front of OTP mails: one per recipient and one for the whole instance.
+ * Each bucket is a single long, the time at which it will be full again (the generic cell rate algorithm),
+ * updated with compare-and-set. A bucket that is full again carries no state, so the sweep drops it.
+ * Limits are per instance; with several replicas the global budget is multiplied by their number.
+ */
+@Component
+public class OtpRateLimiter {
+    private final ConcurrentHashMap<String, AtomicLong> emailBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong globalBucket = new AtomicLong();
+    private final int emailCapacity;
+    private final long emailIntervalMillis;
+    private final int globalCapacity;
+    private final long globalIntervalMillis;
+    private final LongSupplier clock;
+    private final Counter emailLimited;
+    private final Counter globalLimited;
+
+    @Autowired
+    public OtpRateLimiter(MeterRegistry meterRegistry,
+                          @Value("${otp.rate-limit.per-email.capacity:3}") int emailCapacity,
+                          @Value("${otp.rate-limit.per-email.refill-interval-ms:60000}") long emailIntervalMillis,
+                          @Value("${otp.rate-limit.global.capacity:50}") int globalCapacity,
+                          @Value("${otp.rate-limit.global.refill-interval-ms:200}") long globalIntervalMillis) {
+        this(meterRegistry, emailCapacity, emailIntervalMillis, globalCapacity, globalIntervalMillis,
+                System::currentTimeMillis);
+    }
+
+    public OtpRateLimiter(MeterRegistry meterRegistry, int emailCapacity, long emailIntervalMillis,
+                          int globalCapacity, long globalIntervalMillis, LongSupplier clock) {
+        this.emailCapacity = emailCapacity;
+        this.emailIntervalMillis = emailIntervalMillis;
+        this.globalCapacity = globalCapacity;
+        this.globalIntervalMillis = globalIntervalMillis;
+        this.clock = clock;
+        this.emailLimited = Counter.builder("otp_rate_limited_total")
+                .description("OTP requests rejected by the rate limiter")
+                .tag("scope", "email")
+                .register(meterRegistry);
+        this.globalLimited = Counter.builder("otp_rate_limited_total")
+                .description("OTP requests rejected by the rate limiter")
+                .tag("scope", "global")
+                .register(meterRegistry);
+        Gauge.builder("otp_rate_limit_tracked_emails", emailBuckets, ConcurrentHashMap::size)
+                .description("Recipients whose OTP bucket is not full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take a token from the recipient's bucket and from the global one
+     *
+     * @throws RateLimitExceededException if either bucket is empty, with the time until it has a token again
+     */
+    public void acquire(String email) {
+        long now = clock.getAsLong();
+        AtomicLong emailBucket = emailBuckets.computeIfAbsent(email.toLowerCase(Locale.ROOT), key -> new AtomicLong());
+        long emailWait = tryAcquire(emailBucket, emailCapacity, emailIntervalMillis, now);
+        if (emailWait > 0) {
+            emailLimited.increment();
+            throw new RateLimitExceededException("Too many OTP requests for this email, please try again later",
+                    toRetryAfterSeconds(emailWait));
+        }
+        long globalWait = tryAcquire(globalBucket, globalCapacity, globalIntervalMillis, now);
+        if (globalWait > 0) {
+            // Nothing is sent, so the recipient keeps their token
+            emailBucket.addAndGet(-emailIntervalMillis);
+            globalLimited.increment();
+            throw new RateLimitExceededException("Too many OTP requests, please try again later",
+                    toRetryAfterSeconds(globalWait));
+        }
+    }
+
+    /**
+     * Drop the buckets that have refilled completely, they behave exactly like absent ones.
+     * A token taken between the check and the removal is forgotten, allowing at most one extra mail.
+     */
+    @Scheduled(fixedDelayString = "${otp.rate-limit.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = clock.getAsLong();
+        emailBuckets.values().removeIf(fullAt -> fullAt.get() <= now);
+    }
+
+    int trackedEmails() {
+        return emailBuckets.size();
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the millis until one is available
+     */
+    private static long tryAcquire(AtomicLong fullAt, int capacity, long intervalMillis, long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalMillis;
+            long wait = next - now - intervalMillis * capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private static long toRetryAfterSeconds(long waitMillis) {
+        return Math.max(1, (waitMillis + 999) / 1000);
+    }
+}
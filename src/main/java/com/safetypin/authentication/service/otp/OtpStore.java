@@ -0,0 +1,55 @@
+package com.safetypin.authentication.service.otp;
+
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
+
+/**
+ * Where pending OTPs and password reset tokens live until they are used or expire.
+ * Pick the implementation with otp.store.type: {@code memory} keeps them in this JVM, {@code jdbc} in the
+ * database so any replica can verify what another one issued. Consuming is atomic in both, a value
+ * verifies at most once even when the same request reaches two replicas.
+ */
+public interface OtpStore {
+
+    /**
+     * Store the email's OTP with delivery {@link OtpDeliveryStatus#PENDING}, replacing the previous one
+     *
+     * @param statusHandle the random handle the requester looks up the delivery by
+     * @return false if the store is full
+     */
+    boolean putOtp(String email, String otp, String statusHandle, long ttlMillis);
+
+    /**
+     * Record the delivery outcome, unless the OTP has been replaced meanwhile
+     */
+    void recordDelivery(String email, String otp, OtpDeliveryStatus status);
+
+    /**
+     * @return the delivery of the live OTP stored with the handle, {@link OtpDeliveryStatus#NONE} if it was
+     * used, replaced or expired, or the handle is unknown
+     */
+    OtpDeliveryStatus getDeliveryStatus(String statusHandle);
+
+    /**
+     * Remove the email's OTP if it is live and equals otp
+     *
+     * @return whether this call consumed it
+     */
+    boolean consumeOtp(String email, String otp);
+
+    /**
+     * @return false if the store is full
+     */
+    boolean putResetToken(String token, String email, long ttlMillis);
+
+    /**
+     * Remove the reset token if it is live and was issued for email
+     *
+     * @return whether this call consumed it
+     */
+    boolean consumeResetToken(String token, String email);
+
+    /**
+     * Reclaim expired entries, called on a schedule
+     */
+    void sweepExpired();
+}
@@ -3,6 +3,7 @@ package com.safetypin.authentication.service.passwordreset;
 import com.safetypin.authentication.model.User;
 import com.safetypin.authentication.service.OTPService;
 import com.safetypin.authentication.service.UserService;
+import com.safetypin.authentication.service.email.EmailTemplateType;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -53,7 +54,7 @@ public class PasswordResetContext {
     }
 
     public String generateOTP() {
-        return otpService.generateOTP(email);
+        return otpService.generateOTP(email, EmailTemplateType.OTP_PASSWORD_RESET);
     }
 
     public boolean verifyOTP() {
@@ -3,10 +3,14 @@ package com.safetypin.authentication.config;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,4 +73,23 @@ class AsyncConfigTest {
         assertNotNull(threadPoolExecutor);
         assertInstanceOf(ThreadPoolExecutor.CallerRunsPolicy.class, threadPoolExecutor.getRejectedExecutionHandler());
     }
+
+    @Test
+    void virtualThreads_executorsRunTasksOnVirtualThreadsUpToTheLimit() throws Exception {
+        AsyncConfig config = new AsyncConfig();
+        ReflectionTestUtils.setField(config, "virtualThreads", true);
+
+        SimpleAsyncTaskExecutor email = assertInstanceOf(SimpleAsyncTaskExecutor.class, config.taskExecutor());
+        SimpleAsyncTaskExecutor async = assertInstanceOf(SimpleAsyncTaskExecutor.class, config.asyncExecutor());
+        assertEquals(5, email.getConcurrencyLimit());
+        assertEquals(1000, async.getConcurrencyLimit());
+
+        CompletableFuture<Thread> thread = new CompletableFuture<>();
+        email.execute(() -> thread.complete(Thread.currentThread()));
+        Thread worker = thread.get(5, TimeUnit.SECONDS);
+        assertTrue(worker.isVirtual());
+        assertTrue(worker.getName().startsWith("EmailThread-"));
+        email.close();
+        async.close();
+    }
 }
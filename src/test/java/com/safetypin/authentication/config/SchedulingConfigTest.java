@@ -0,0 +1,49 @@
+package com.safetypin.authentication.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SchedulingConfigTest {
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    @Test
+    void scheduledJobsShareAPoolOfSeveralThreads() {
+        ThreadPoolTaskScheduler scheduler = assertInstanceOf(ThreadPoolTaskScheduler.class, taskScheduler);
+
+        assertEquals(4, scheduler.getScheduledThreadPoolExecutor().getCorePoolSize());
+        assertTrue(scheduler.getThreadNamePrefix().startsWith("scheduling-"));
+    }
+
+    @Test
+    void blockedJobDoesNotHoldBackAnother() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        taskScheduler.schedule(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Instant.now());
+        CompletableFuture<String> other = new CompletableFuture<>();
+        taskScheduler.schedule(() -> other.complete(Thread.currentThread().getName()), Instant.now());
+
+        try {
+            assertTrue(other.get(5, TimeUnit.SECONDS).startsWith("scheduling-"));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -4,12 +4,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.safetypin.authentication.dto.*;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.PendingVerificationException;
+import com.safetypin.authentication.exception.RateLimitExceededException;
+import com.safetypin.authentication.exception.ServiceOverloadedException;
 import com.safetypin.authentication.exception.UserAlreadyExistsException;
 import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.security.AuthenticatedUser;
 import com.safetypin.authentication.service.AuthenticationService;
 import com.safetypin.authentication.service.GoogleAuthService;
 import com.safetypin.authentication.service.JwtService;
+import com.safetypin.authentication.service.jwt.VerificationMode;
 import com.safetypin.authentication.service.RefreshTokenService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -19,16 +23,21 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -74,6 +83,7 @@ class AuthenticationControllerTest {
         String accessToken = jwtService.generateToken(user.getId());
         String refreshToken = "test-refresh-token";
         AuthToken returnToken = new AuthToken(userId, accessToken, refreshToken);
+        returnToken.setOtpStatusHandle("status-handle");
 
         Mockito.when(authenticationService.registerUser(any(RegistrationRequest.class)))
                 .thenReturn(returnToken);
@@ -86,7 +96,8 @@ class AuthenticationControllerTest {
                 .andExpect(jsonPath("$.message").value("OK"))
                 .andExpect(jsonPath("$.data.userId").value(userId.toString()))
                 .andExpect(jsonPath("$.data.accessToken").value(accessToken))
-                .andExpect(jsonPath("$.data.refreshToken").value(refreshToken));
+                .andExpect(jsonPath("$.data.refreshToken").value(refreshToken))
+                .andExpect(jsonPath("$.data.otpStatusHandle").value("status-handle"));
     }
 
     @Test
@@ -202,9 +213,9 @@ class AuthenticationControllerTest {
     @Test
     void testForgotPassword() throws Exception {
         PasswordResetRequest request = new PasswordResetRequest();
-        request.setEmail("email@example.com");
+        request.setEmail("forgot@example.com");
 
-        Mockito.doNothing().when(authenticationService).forgotPassword("email@example.com");
+        Mockito.when(authenticationService.forgotPassword("forgot@example.com")).thenReturn("status-handle");
 
         mockMvc.perform(post("/api/auth/forgot-password")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -212,7 +223,8 @@ class AuthenticationControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true))
                 .andExpect(jsonPath("$.message")
-                        .value("Password reset OTP has been sent to your email"));
+                        .value("Password reset OTP has been sent to your email"))
+                .andExpect(jsonPath("$.data.otpStatusHandle").value("status-handle"));
     }
 
     @Test
@@ -234,6 +246,41 @@ class AuthenticationControllerTest {
                 .andExpect(jsonPath("$.data").doesNotExist());
     }
 
+    @Test
+    void testLoginEmail_PasswordHashingOverloaded() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("busy@example.com");
+        loginRequest.setPassword("password");
+
+        Mockito.when(authenticationService.loginUser("busy@example.com", "password"))
+                .thenThrow(new ServiceOverloadedException("Too many sign-in requests, please try again shortly", 2));
+
+        mockMvc.perform(post("/api/auth/login-email")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Too many sign-in requests, please try again shortly"));
+    }
+
+    @Test
+    void testForgotPassword_RateLimited() throws Exception {
+        PasswordResetRequest request = new PasswordResetRequest();
+        request.setEmail("email@example.com");
+
+        Mockito.doThrow(new RateLimitExceededException("Too many OTP requests for this email, please try again later", 42))
+                .when(authenticationService).forgotPassword("email@example.com");
+
+        mockMvc.perform(post("/api/auth/forgot-password")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "42"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Too many OTP requests for this email, please try again later"));
+    }
+
     @Test
     void testVerifyResetOTP_Success() throws Exception {
         VerifyResetOTPRequest request = new VerifyResetOTPRequest();
@@ -329,6 +376,26 @@ class AuthenticationControllerTest {
                         .value("Invalid or expired reset token. Please request a new OTP."));
     }
 
+    @Test
+    void testResetPassword_PasswordHashingOverloaded() throws Exception {
+        PasswordResetWithOTPRequest request = new PasswordResetWithOTPRequest();
+        request.setEmail("busy-reset@example.com");
+        request.setNewPassword("newPassword123");
+        request.setResetToken("kept-reset-token");
+
+        Mockito.doThrow(new ServiceOverloadedException("Too many sign-in requests, please try again shortly", 3))
+                .when(authenticationService)
+                .resetPassword("busy-reset@example.com", "newPassword123", "kept-reset-token");
+
+        mockMvc.perform(post("/api/auth/reset-password")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Too many sign-in requests, please try again shortly"));
+    }
+
     @Test
     void testRegisterEmail_UserAlreadyExistsException() throws Exception {
         // Prepare registration request
@@ -353,6 +420,26 @@ class AuthenticationControllerTest {
                 .andExpect(jsonPath("$.data").doesNotExist());
     }
 
+    @Test
+    void testRegisterEmail_RateLimited() throws Exception {
+        RegistrationRequest request = new RegistrationRequest();
+        request.setEmail("unverified@example.com");
+        request.setPassword("password");
+        request.setName("Unverified User");
+        request.setBirthdate(LocalDate.now().minusYears(20));
+
+        Mockito.when(authenticationService.registerUser(Mockito.any(RegistrationRequest.class)))
+                .thenThrow(new RateLimitExceededException("Too many OTP requests, please try again later", 1));
+
+        mockMvc.perform(post("/api/auth/register-email")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Too many OTP requests, please try again later"));
+    }
+
     @Test
     void testRegisterEmail_PendingVerificationException() throws Exception {
         // Prepare registration request
@@ -365,7 +452,7 @@ class AuthenticationControllerTest {
         // Mock the service to throw PendingVerificationException
         String errorMessage = "User already exists but is not verified. A new OTP has been sent.";
         Mockito.when(authenticationService.registerUser(Mockito.any(RegistrationRequest.class)))
-                .thenThrow(new PendingVerificationException(errorMessage));
+                .thenThrow(new PendingVerificationException(errorMessage, "status-handle"));
 
         // Perform the POST request to /register-email endpoint
         mockMvc.perform(post("/api/auth/register-email")
@@ -374,7 +461,7 @@ class AuthenticationControllerTest {
                 .andExpect(status().isConflict()) // Expect HTTP 409 Conflict
                 .andExpect(jsonPath("$.success").value(false))
                 .andExpect(jsonPath("$.message").value(errorMessage))
-                .andExpect(jsonPath("$.data").doesNotExist());
+                .andExpect(jsonPath("$.data.otpStatusHandle").value("status-handle"));
     }
 
     @Test
@@ -503,7 +590,7 @@ class AuthenticationControllerTest {
                 .build();
 
         // Mock the service method to return the mocked user response
-        Mockito.when(jwtService.getUserFromJwtToken(validToken)).thenReturn(userResponse);
+        Mockito.when(jwtService.getUserFromJwtToken(validToken, VerificationMode.AUTHORITATIVE)).thenReturn(userResponse);
 
         // Perform the test
         mockMvc.perform(post("/api/auth/verify-jwt")
@@ -522,7 +609,7 @@ class AuthenticationControllerTest {
         String invalidToken = "invalid.jwt.token";
 
         // Mock the service method to throw InvalidCredentialsException
-        Mockito.when(jwtService.getUserFromJwtToken(invalidToken))
+        Mockito.when(jwtService.getUserFromJwtToken(invalidToken, VerificationMode.AUTHORITATIVE))
                 .thenThrow(new InvalidCredentialsException("Invalid token"));
 
         // Perform the test
@@ -534,6 +621,55 @@ class AuthenticationControllerTest {
                 .andExpect(jsonPath("$.data").doesNotExist()); // No data expected in case of error
     }
 
+    @Test
+    void testVerifyJwtTokens_Batch() throws Exception {
+        UUID userId = UUID.randomUUID();
+        UserResponse userResponse = UserResponse.builder()
+                .id(userId)
+                .email("test@example.com")
+                .name("Test User")
+                .build();
+        Map<String, JwtVerificationResult> results = new LinkedHashMap<>();
+        results.put("valid.jwt.token", JwtVerificationResult.valid(userResponse));
+        results.put("invalid.jwt.token", JwtVerificationResult.invalid("Invalid token"));
+        Mockito.when(jwtService.verifyTokens(List.of("valid.jwt.token", "invalid.jwt.token"),
+                VerificationMode.CLAIMS_ONLY)).thenReturn(results);
+
+        mockMvc.perform(post("/api/auth/verify-jwt/batch")
+                        .param("mode", "CLAIMS_ONLY")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new JwtBatchVerificationRequest(
+                                List.of("valid.jwt.token", "invalid.jwt.token")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data['valid.jwt.token'].valid").value(true))
+                .andExpect(jsonPath("$.data['valid.jwt.token'].user.id").value(userId.toString()))
+                .andExpect(jsonPath("$.data['invalid.jwt.token'].valid").value(false))
+                .andExpect(jsonPath("$.data['invalid.jwt.token'].message").value("Invalid token"));
+    }
+
+    @Test
+    void testVerifyJwtTokens_BatchTooLarge() throws Exception {
+        Mockito.when(jwtService.verifyTokens(List.of("a"), VerificationMode.AUTHORITATIVE))
+                .thenThrow(new IllegalArgumentException("At most 500 tokens can be verified at once"));
+
+        mockMvc.perform(post("/api/auth/verify-jwt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new JwtBatchVerificationRequest(List.of("a")))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("At most 500 tokens can be verified at once"));
+    }
+
+    @Test
+    void testVerifyJwtTokens_MissingTokens() throws Exception {
+        mockMvc.perform(post("/api/auth/verify-jwt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("tokens is required"));
+    }
+
     @Test
     void renewRefreshToken_Success() throws Exception {
         UUID userId = UUID.randomUUID();
@@ -566,6 +702,49 @@ class AuthenticationControllerTest {
                 .andExpect(jsonPath("$.message").value("Invalid refresh token"));
     }
 
+    @Test
+    void getOtpStatus_ReturnsDeliveryStatus() throws Exception {
+        Mockito.when(authenticationService.getOtpDeliveryStatus("status-handle"))
+                .thenReturn(OtpDeliveryStatus.FAILED);
+
+        mockMvc.perform(get("/api/auth/otp-status")
+                        .param("handle", "status-handle"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data").value("FAILED"));
+    }
+
+    private static UsernamePasswordAuthenticationToken authenticatedAs(UUID userId) {
+        AuthenticatedUser principal = new AuthenticatedUser(userId, "Test User", "email@example.com",
+                Role.REGISTERED_USER, true, "EMAIL");
+        return new UsernamePasswordAuthenticationToken(principal, "token", principal.authorities());
+    }
+
+    @Test
+    void logoutAll_Success() throws Exception {
+        UUID userId = UUID.randomUUID();
+        Mockito.when(authenticationService.logoutAll(userId)).thenReturn(3);
+
+        mockMvc.perform(post("/api/auth/logout-all")
+                        .with(authentication(authenticatedAs(userId))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.revokedSessions").value(3));
+    }
+
+    @Test
+    void logoutAll_UserNotFound() throws Exception {
+        UUID userId = UUID.randomUUID();
+        Mockito.when(authenticationService.logoutAll(userId))
+                .thenThrow(new IllegalArgumentException("User not found"));
+
+        mockMvc.perform(post("/api/auth/logout-all")
+                        .with(authentication(authenticatedAs(userId))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("User not found"));
+    }
+
     @TestConfiguration
     static class TestConfig {
         @Bean
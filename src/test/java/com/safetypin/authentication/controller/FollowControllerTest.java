@@ -3,8 +3,8 @@ package com.safetypin.authentication.controller;
 import com.safetypin.authentication.dto.*;
 import com.safetypin.authentication.model.Follow;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.security.AuthenticatedUser;
 import com.safetypin.authentication.service.FollowService;
-import com.safetypin.authentication.service.JwtService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,16 +29,12 @@ class FollowControllerTest {
     @Mock
     private FollowService followService;
 
-    @Mock
-    private JwtService jwtService;
-
     @InjectMocks
     private FollowController followController;
 
     private UUID userId;
     private UUID targetUserId;
-    private String authHeader;
-    private UserResponse userResponse;
+    private AuthenticatedUser currentUser;
     private User user1;
     private User user2;
 
@@ -46,12 +42,10 @@ class FollowControllerTest {
     void setUp() {
         userId = UUID.randomUUID();
         targetUserId = UUID.randomUUID();
-        authHeader = "Bearer mock-token";
-
-        userResponse = UserResponse.builder()
+        currentUser = AuthenticatedUser.from(UserResponse.builder()
                 .id(userId)
                 .name("Test User")
-                .build();
+                .build());
 
         user1 = new User();
         user1.setId(UUID.randomUUID());
@@ -69,8 +63,6 @@ class FollowControllerTest {
     @Test
     void followUser_ReturnsCreated() {
         // Arrange
-        when(jwtService.getUserFromJwtToken("mock-token")).thenReturn(userResponse);
-
         // If followUser returns a Follow object, don't use doNothing
         Follow follow = new Follow();
         follow.setFollowerId(userId);
@@ -78,34 +70,29 @@ class FollowControllerTest {
         when(followService.followUser(userId, targetUserId)).thenReturn(follow);
 
         // Act
-        ResponseEntity<Void> response = followController.followUser(targetUserId, authHeader);
+        ResponseEntity<Void> response = followController.followUser(targetUserId, currentUser);
 
         // Assert
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
-        verify(jwtService, times(1)).getUserFromJwtToken("mock-token");
         verify(followService, times(1)).followUser(userId, targetUserId);
     }
 
     @Test
     void unfollowUser_ReturnsNoContent() {
         // Arrange
-        when(jwtService.getUserFromJwtToken("mock-token")).thenReturn(userResponse);
         doNothing().when(followService).unfollowUser(userId, targetUserId);
 
         // Act
-        ResponseEntity<Void> response = followController.unfollowUser(targetUserId, authHeader);
+        ResponseEntity<Void> response = followController.unfollowUser(targetUserId, currentUser);
 
         // Assert
         assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
-        verify(jwtService, times(1)).getUserFromJwtToken("mock-token");
         verify(followService, times(1)).unfollowUser(userId, targetUserId);
     }
 
     @Test
     void getFollowers_ReturnsFollowersList() {
         // Arrange
-        when(jwtService.getUserFromJwtToken("mock-token")).thenReturn(userResponse);
-
         UserFollowResponse user1Response = UserFollowResponse.builder()
                 .userId(user1.getId())
                 .name(user1.getName())
@@ -124,7 +111,7 @@ class FollowControllerTest {
         when(followService.getFollowers(targetUserId, userId)).thenReturn(followerResponses);
 
         // Act
-        ResponseEntity<ApiResponse<List<UserFollowResponse>>> response = followController.getFollowers(targetUserId, authHeader);
+        ResponseEntity<ApiResponse<List<UserFollowResponse>>> response = followController.getFollowers(targetUserId, currentUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -146,15 +133,12 @@ class FollowControllerTest {
         assertEquals(user2.getProfilePicture(), responseData.get(1).getProfilePicture());
         assertFalse(responseData.get(1).isFollowing());
 
-        verify(jwtService, times(1)).getUserFromJwtToken("mock-token");
         verify(followService, times(1)).getFollowers(targetUserId, userId);
     }
 
     @Test
     void getFollowing_ReturnsFollowingList() {
         // Arrange
-        when(jwtService.getUserFromJwtToken("mock-token")).thenReturn(userResponse);
-
         UserFollowResponse user1Response = UserFollowResponse.builder()
                 .userId(user1.getId())
                 .name(user1.getName())
@@ -173,7 +157,7 @@ class FollowControllerTest {
         when(followService.getFollowing(targetUserId, userId)).thenReturn(followingResponses);
 
         // Act
-        ResponseEntity<ApiResponse<List<UserFollowResponse>>> response = followController.getFollowing(targetUserId, authHeader);
+        ResponseEntity<ApiResponse<List<UserFollowResponse>>> response = followController.getFollowing(targetUserId, currentUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -195,20 +179,18 @@ class FollowControllerTest {
         assertEquals(user2.getProfilePicture(), responseData.get(1).getProfilePicture());
         assertFalse(responseData.get(1).isFollowing());
 
-        verify(jwtService, times(1)).getUserFromJwtToken("mock-token");
         verify(followService, times(1)).getFollowing(targetUserId, userId);
     }
 
     @Test
     void getFollowStats_WithAuthHeader_ReturnsStatsWithIsFollowing() {
         // Arrange
-        when(jwtService.getUserFromJwtToken("mock-token")).thenReturn(userResponse);
         when(followService.isFollowing(userId, targetUserId)).thenReturn(true);
         when(followService.getFollowersCount(targetUserId)).thenReturn(5L);
         when(followService.getFollowingCount(targetUserId)).thenReturn(10L);
 
         // Act
-        ResponseEntity<ApiResponse<FollowStats>> response = followController.getFollowStats(targetUserId, authHeader);
+        ResponseEntity<ApiResponse<FollowStats>> response = followController.getFollowStats(targetUserId, currentUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -222,7 +204,6 @@ class FollowControllerTest {
         assertEquals(10L, stats.getFollowingCount());
         assertTrue(stats.isFollowing());
 
-        verify(jwtService, times(1)).getUserFromJwtToken("mock-token");
         verify(followService, times(1)).isFollowing(userId, targetUserId);
         verify(followService, times(1)).getFollowersCount(targetUserId);
         verify(followService, times(1)).getFollowingCount(targetUserId);
@@ -249,35 +230,6 @@ class FollowControllerTest {
         assertEquals(10L, stats.getFollowingCount());
         assertFalse(stats.isFollowing());
 
-        verify(jwtService, never()).getUserFromJwtToken(any());
-        verify(followService, never()).isFollowing(any(), any());
-        verify(followService, times(1)).getFollowersCount(targetUserId);
-        verify(followService, times(1)).getFollowingCount(targetUserId);
-    }
-
-    @Test
-    void getFollowStats_WithInvalidAuthHeader_HandlesException() {
-        // Arrange
-        when(jwtService.getUserFromJwtToken("mock-token")).thenThrow(new RuntimeException("Invalid token"));
-        when(followService.getFollowersCount(targetUserId)).thenReturn(5L);
-        when(followService.getFollowingCount(targetUserId)).thenReturn(10L);
-
-        // Act
-        ResponseEntity<ApiResponse<FollowStats>> response = followController.getFollowStats(targetUserId, authHeader);
-
-        // Assert
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertNotNull(response.getBody());
-        assertEquals("success", response.getBody().getStatus());
-        assertEquals("Follow statistics retrieved successfully", response.getBody().getMessage());
-
-        FollowStats stats = response.getBody().getData();
-        assertNotNull(stats);
-        assertEquals(5L, stats.getFollowersCount());
-        assertEquals(10L, stats.getFollowingCount());
-        assertFalse(stats.isFollowing());
-
-        verify(jwtService, times(1)).getUserFromJwtToken("mock-token");
         verify(followService, never()).isFollowing(any(), any());
         verify(followService, times(1)).getFollowersCount(targetUserId);
         verify(followService, times(1)).getFollowingCount(targetUserId);
@@ -288,10 +240,8 @@ class FollowControllerTest {
     @Test
     void getRecentFollowers_Success() {
         // Arrange
-        String token = "mock-token";
-        String authHeaderWithBearer = "Bearer " + token;
         UUID currentUserId = UUID.randomUUID();
-        UserResponse currentUser = UserResponse.builder().id(currentUserId).build();
+        AuthenticatedUser recentUser = AuthenticatedUser.from(UserResponse.builder().id(currentUserId).build());
 
         FollowerNotificationDTO dto1 = FollowerNotificationDTO.builder()
                 .userId(UUID.randomUUID())
@@ -309,12 +259,11 @@ class FollowControllerTest {
                 .build();
         List<FollowerNotificationDTO> recentFollowers = Arrays.asList(dto1, dto2);
 
-        when(jwtService.getUserFromJwtToken(token)).thenReturn(currentUser);
         when(followService.getRecentFollowers(currentUserId)).thenReturn(recentFollowers);
 
         // Act
         ResponseEntity<List<FollowerNotificationDTO>> response = followController
-                .getRecentFollowers(authHeaderWithBearer);
+                .getRecentFollowers(recentUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -323,31 +272,26 @@ class FollowControllerTest {
         assertEquals(dto1, response.getBody().get(0));
         assertEquals(dto2, response.getBody().get(1));
 
-        verify(jwtService, times(1)).getUserFromJwtToken(token);
         verify(followService, times(1)).getRecentFollowers(currentUserId);
     }
 
     @Test
     void getRecentFollowers_ServiceReturnsEmptyList() {
         // Arrange
-        String token = "mock-token";
-        String authHeaderWithBearer = "Bearer " + token;
         UUID currentUserId = UUID.randomUUID();
-        UserResponse currentUser = UserResponse.builder().id(currentUserId).build();
+        AuthenticatedUser recentUser = AuthenticatedUser.from(UserResponse.builder().id(currentUserId).build());
 
-        when(jwtService.getUserFromJwtToken(token)).thenReturn(currentUser);
         when(followService.getRecentFollowers(currentUserId)).thenReturn(List.of()); // Service returns empty list
 
         // Act
         ResponseEntity<List<FollowerNotificationDTO>> response = followController
-                .getRecentFollowers(authHeaderWithBearer);
+                .getRecentFollowers(recentUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertTrue(response.getBody().isEmpty());
 
-        verify(jwtService, times(1)).getUserFromJwtToken(token);
         verify(followService, times(1)).getRecentFollowers(currentUserId);
     }
 }
\ No newline at end of file
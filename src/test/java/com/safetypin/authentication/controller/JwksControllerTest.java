@@ -0,0 +1,50 @@
+package com.safetypin.authentication.controller;
+
+import com.safetypin.authentication.service.jwt.JwtKeyRing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwksControllerTest {
+
+    @Mock
+    private JwtKeyRing keyRing;
+
+    @InjectMocks
+    private JwksController jwksController;
+
+    private List<Map<String, Object>> jwks;
+
+    @BeforeEach
+    void setUp() {
+        jwks = List.of(Map.of("kty", "RSA", "kid", "key-1", "alg", "RS256", "use", "sig", "n", "abc", "e", "AQAB"));
+    }
+
+    @Test
+    void getJwks_shouldReturnKeysWithCacheHeaders() {
+        when(keyRing.publicJwks()).thenReturn(jwks);
+
+        ResponseEntity<Map<String, List<Map<String, Object>>>> response = jwksController.getJwks();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(jwks, response.getBody().get("keys"));
+        String cacheControl = response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL);
+        assertNotNull(cacheControl);
+        assertTrue(cacheControl.contains("max-age=900"));
+        assertTrue(cacheControl.contains("public"));
+    }
+}
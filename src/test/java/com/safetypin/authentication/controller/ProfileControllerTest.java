@@ -4,7 +4,7 @@ import com.safetypin.authentication.dto.*;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.ResourceNotFoundException;
 import com.safetypin.authentication.model.Role;
-import com.safetypin.authentication.service.JwtService;
+import com.safetypin.authentication.security.AuthenticatedUser;
 import com.safetypin.authentication.service.ProfileService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,29 +32,24 @@ class ProfileControllerTest {
     @Mock
     private ProfileService profileService;
 
-    @Mock
-    private JwtService jwtService;
-
     @InjectMocks
     private ProfileController profileController;
 
     private UUID testUserId;
     private ProfileResponse testProfileResponse;
     private UpdateProfileRequest testUpdateRequest;
-    private String testAuthHeader;
+    private AuthenticatedUser testUser;
 
     @BeforeEach
     void setUp() {
         testUserId = UUID.randomUUID();
-        String testToken = "test-token";
-        testAuthHeader = "Bearer " + testToken;
 
-        // Set up test user response from JWT
-        UserResponse testUserResponse = UserResponse.builder()
+        // Set up the authenticated caller
+        testUser = AuthenticatedUser.from(UserResponse.builder()
                 .id(testUserId)
                 .name("testuser")
                 .email("test@example.com")
-                .build(); // Set up test profile response
+                .build()); // Set up test profile response
         testProfileResponse = ProfileResponse.builder()
                 .id(testUserId)
                 .role(Role.REGISTERED_USER)
@@ -75,10 +70,6 @@ class ProfileControllerTest {
         testUpdateRequest.setDiscord("newuser#5678");
         testUpdateRequest.setProfilePicture("https://example.com/profile.jpg");
         testUpdateRequest.setProfileBanner("https://example.com/banner.jpg");
-
-        // Configure JWT service mock
-        // (lenient since some tests don't parse the token)
-        lenient().when(jwtService.getUserFromJwtToken(testToken)).thenReturn(testUserResponse);
     }
 
     // GET PROFILE TESTS
@@ -89,7 +80,7 @@ class ProfileControllerTest {
         when(profileService.getProfile(testUserId, testUserId)).thenReturn(testProfileResponse);
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfile(testUserId, testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfile(testUserId, testUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -107,7 +98,7 @@ class ProfileControllerTest {
                 .thenThrow(new ResourceNotFoundException("User not found with id " + testUserId));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfile(testUserId, testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfile(testUserId, testUser);
 
         // Assert
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -126,7 +117,7 @@ class ProfileControllerTest {
                 .thenThrow(new RuntimeException(errorMessage));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfile(testUserId, testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfile(testUserId, testUser);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -145,7 +136,7 @@ class ProfileControllerTest {
         when(profileService.getProfile(testUserId, testUserId)).thenReturn(testProfileResponse);
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getMyProfile(testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getMyProfile(testUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -156,26 +147,6 @@ class ProfileControllerTest {
         assertEquals(testProfileResponse, body.getData());
     }
 
-    @Test
-    void getMyProfile_Unauthorized() {
-        // Arrange
-        String invalidToken = "invalid-token";
-        String invalidAuthToken = "Bearer " + invalidToken;
-        when(jwtService.getUserFromJwtToken(invalidToken))
-                .thenThrow(new RuntimeException("Invalid token"));
-
-        // Act
-        ResponseEntity<AuthResponse> response = profileController.getMyProfile(invalidAuthToken);
-
-        // Assert
-        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
-        AuthResponse body = response.getBody();
-        assertNotNull(body);
-        assertFalse(body.isSuccess());
-        assertEquals("Invalid token", body.getMessage());
-        assertNull(body.getData());
-    }
-
     @Test
     void getMyProfile_NotFound() {
         // Arrange
@@ -183,7 +154,7 @@ class ProfileControllerTest {
                 .thenThrow(new ResourceNotFoundException("User not found with id " + testUserId));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getMyProfile(testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getMyProfile(testUser);
 
         // Assert
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -202,7 +173,7 @@ class ProfileControllerTest {
                 .thenThrow(new RuntimeException(errorMessage));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getMyProfile(testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getMyProfile(testUser);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -223,7 +194,7 @@ class ProfileControllerTest {
 
         // Act
         ResponseEntity<AuthResponse> response = profileController.updateMyProfile(testUpdateRequest,
-                testAuthHeader);
+                testUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -234,46 +205,6 @@ class ProfileControllerTest {
         assertEquals(testProfileResponse, body.getData());
     }
 
-    @Test
-    void updateMyProfile_Unauthorized() {
-        // Arrange
-        String errorMessage = "You are not authorized to update this profile";
-        when(profileService.updateProfile(eq(testUserId), any(UpdateProfileRequest.class)))
-                .thenThrow(new InvalidCredentialsException(errorMessage));
-
-        // Act
-        ResponseEntity<AuthResponse> response = profileController.updateMyProfile(testUpdateRequest,
-                testAuthHeader);
-
-        // Assert
-        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
-        AuthResponse body = response.getBody();
-        assertNotNull(body);
-        assertFalse(body.isSuccess());
-        assertEquals(errorMessage, body.getMessage());
-        assertNull(body.getData());
-    }
-
-    @Test
-    void updateMyProfile_WrongToken() {
-        // Arrange
-        String errorMessage = "Token expired";
-        when(profileService.updateProfile(eq(testUserId), any(UpdateProfileRequest.class)))
-                .thenThrow(new InvalidCredentialsException(errorMessage));
-
-        // Act
-        ResponseEntity<AuthResponse> response = profileController.updateMyProfile(testUpdateRequest,
-                testAuthHeader);
-
-        // Assert
-        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
-        AuthResponse body = response.getBody();
-        assertNotNull(body);
-        assertFalse(body.isSuccess());
-        assertEquals(errorMessage, body.getMessage());
-        assertNull(body.getData());
-    }
-
     @Test
     void updateMyProfile_NotFound() {
         // Arrange
@@ -283,7 +214,7 @@ class ProfileControllerTest {
 
         // Act
         ResponseEntity<AuthResponse> response = profileController.updateMyProfile(testUpdateRequest,
-                testAuthHeader);
+                testUser);
 
         // Assert
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -303,7 +234,7 @@ class ProfileControllerTest {
 
         // Act
         ResponseEntity<AuthResponse> response = profileController.updateMyProfile(testUpdateRequest,
-                testAuthHeader);
+                testUser);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -334,7 +265,7 @@ class ProfileControllerTest {
 
         // Act
         ResponseEntity<AuthResponse> response = profileController.updateMyProfile(nameUpdateRequest,
-                testAuthHeader);
+                testUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -389,7 +320,7 @@ class ProfileControllerTest {
         when(profileService.getProfile(profileId, viewerId)).thenReturn(testProfileResponse);
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfile(profileId, testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfile(profileId, testUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -401,16 +332,13 @@ class ProfileControllerTest {
     }
 
     @Test
-    void getProfile_FailedAuthenticationDoesNotAffectOutput() {
-        // Arrange
-        String invalidAuthHeader = "Bearer invalid-token";
+    void getProfile_AnonymousViewer() {
+        // Arrange, a missing or invalid token leaves the principal null
         UUID profileId = UUID.randomUUID();
-        when(jwtService.getUserFromJwtToken("invalid-token"))
-                .thenThrow(new InvalidCredentialsException("Invalid token"));
         when(profileService.getProfile(profileId, null)).thenReturn(testProfileResponse);
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfile(profileId, invalidAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfile(profileId, null);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -445,7 +373,7 @@ class ProfileControllerTest {
         when(profileService.getProfileViews(testUserId)).thenReturn(testViews);
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testUser);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -464,7 +392,7 @@ class ProfileControllerTest {
                 .thenThrow(new InvalidCredentialsException(errorMessage));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testUser);
 
         // Assert
         assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
@@ -483,7 +411,7 @@ class ProfileControllerTest {
                 .thenThrow(new ResourceNotFoundException(errorMessage));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testUser);
 
         // Assert
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -502,7 +430,7 @@ class ProfileControllerTest {
                 .thenThrow(new RuntimeException(errorMessage));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getProfileViews(testUser);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -520,7 +448,7 @@ class ProfileControllerTest {
         when(profileService.getUserRole(testUserId)).thenReturn(Role.PREMIUM_USER);
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getUserRole(testUserId, testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getUserRole(testUserId);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -528,35 +456,16 @@ class ProfileControllerTest {
         assertTrue(response.getBody().isSuccess());
         assertEquals("User role retrieved successfully", response.getBody().getMessage());
         assertEquals("PREMIUM_USER", response.getBody().getData());
-        verify(jwtService).getUserFromJwtToken("test-token");
         verify(profileService).getUserRole(testUserId);
     }
 
-    @Test
-    void getUserRole_Unauthorized() {
-        // Arrange
-        when(jwtService.getUserFromJwtToken(any(String.class)))
-                .thenThrow(new InvalidCredentialsException("Invalid token"));
-
-        // Act
-        ResponseEntity<AuthResponse> response = profileController.getUserRole(testUserId,
-                "Bearer invalid-token");
-
-        // Assert
-        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
-        assertNotNull(response.getBody());
-        assertFalse(response.getBody().isSuccess());
-        assertEquals("Invalid token", response.getBody().getMessage());
-        assertNull(response.getBody().getData());
-    }
-
     @Test
     void getUserRole_NotFound() {
         // Arrange
         when(profileService.getUserRole(testUserId)).thenThrow(new ResourceNotFoundException("User not found"));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getUserRole(testUserId, testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getUserRole(testUserId);
 
         // Assert
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -572,7 +481,7 @@ class ProfileControllerTest {
         when(profileService.getUserRole(testUserId)).thenThrow(new RuntimeException("Some internal error"));
 
         // Act
-        ResponseEntity<AuthResponse> response = profileController.getUserRole(testUserId, testAuthHeader);
+        ResponseEntity<AuthResponse> response = profileController.getUserRole(testUserId);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -9,9 +9,6 @@ import com.safetypin.authentication.service.UserAdminService;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
-import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.client.RestTemplate;
 
 @TestConfiguration
@@ -51,14 +48,4 @@ public class UserAdminControllerTestConfig {
     public RestTemplate restTemplate() {
         return Mockito.mock(RestTemplate.class);
     }
-
-    @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-        http
-                .csrf(AbstractHttpConfigurer::disable)
-                .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/admin/**").hasRole("MODERATOR")
-                        .anyRequest().permitAll());
-        return http.build();
-    }
 }
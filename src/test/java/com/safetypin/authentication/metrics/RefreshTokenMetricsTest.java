@@ -13,6 +13,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Instant;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -38,40 +39,70 @@ class RefreshTokenMetricsTest {
     }
 
     @Test
-    void init_shouldRegisterGaugeAndReportCorrectValue() {
-        // Arrange
-        long expectedTokenCount = 5L;
-        when(refreshTokenRepository.countByExpiryTimeAfter(any(Instant.class))).thenReturn(expectedTokenCount);
+    void init_shouldRegisterGaugeWithoutQueryingDatabase() {
+        refreshTokenMetrics.init();
+        refreshTokenMetrics.tokenCreated(Instant.now().plusSeconds(3600));
 
-        // Act
-        refreshTokenMetrics.init(); // This will register the gauge
-
-        // Assert
         Gauge registeredGauge = meterRegistry.find("refresh_tokens_not_expired_total").gauge();
         assertNotNull(registeredGauge, "Gauge 'refresh_tokens_not_expired_total' should be registered.");
-        assertEquals(expectedTokenCount, registeredGauge.value(), "Gauge should report the count from the repository.");
+        assertEquals(1, registeredGauge.value());
+        assertEquals(1, registeredGauge.value());
+
+        // Scrapes are answered from memory
+        verifyNoInteractions(refreshTokenRepository);
+    }
+
+    @Test
+    void getTotalTokens_shouldFollowCreatesAndDeletes() {
+        Instant expiry = Instant.now().plusSeconds(3600);
+        refreshTokenMetrics.tokenCreated(expiry);
+        refreshTokenMetrics.tokenCreated(expiry.plusSeconds(1));
+        refreshTokenMetrics.tokenCreated(Instant.now().plusSeconds(86400));
+
+        refreshTokenMetrics.tokenDeleted(expiry);
 
-        // Verify that the repository method was called when the gauge value was fetched (implicitly by init and then by value())
-        // The gauge's value function (getTotalTokens) will be called by Micrometer when the gauge is registered
-        // and again when we call registeredGauge.value().
-        // We expect at least one call to countByExpiryTimeAfter due to the gauge's nature.
-        verify(refreshTokenRepository, atLeastOnce()).countByExpiryTimeAfter(any(Instant.class));
+        assertEquals(2, refreshTokenMetrics.getTotalTokens());
     }
 
     @Test
-    void getTotalTokens_shouldReturnCountFromRepository() {
-        long expectedCount = 10L;
-        when(refreshTokenRepository.countByExpiryTimeAfter(any(Instant.class))).thenReturn(expectedCount);
+    void getTotalTokens_shouldDropExpiredBuckets() {
+        refreshTokenMetrics.tokenCreated(Instant.now().minusSeconds(120));
+        refreshTokenMetrics.tokenCreated(Instant.now().plusSeconds(3600));
 
-        double actualCount = refreshTokenMetrics.getTotalTokens();
+        assertEquals(1, refreshTokenMetrics.getTotalTokens());
 
-        assertEquals(expectedCount, actualCount);
-        verify(refreshTokenRepository).countByExpiryTimeAfter(instantCaptor.capture());
+        // Deleting a token that already stopped counting does not push the estimate down
+        refreshTokenMetrics.tokenDeleted(Instant.now().minusSeconds(120));
+        assertEquals(1, refreshTokenMetrics.getTotalTokens());
+    }
 
-        // Verify that Instant.now() was called (approximately)
-        long nowMillis = Instant.now().toEpochMilli();
-        long capturedMillis = instantCaptor.getValue().toEpochMilli();
+    @Test
+    void getTotalTokens_shouldNeverBeNegative() {
+        Instant expiry = Instant.now().plusSeconds(3600);
+        refreshTokenMetrics.tokenCreated(expiry);
+        refreshTokenMetrics.tokenDeleted(expiry);
+        refreshTokenMetrics.tokenDeleted(expiry);
+
+        assertEquals(0, refreshTokenMetrics.getTotalTokens());
+    }
+
+    @Test
+    void reconcile_shouldReplaceEstimateWithDatabaseState() {
+        Instant now = Instant.now();
+        refreshTokenMetrics.tokenCreated(now.plusSeconds(60));
+        long minute = now.plusSeconds(600).getEpochSecond() / 60 + 1;
+        when(refreshTokenRepository.countByExpiryBucketAfter(any(Instant.class)))
+                .thenReturn(List.of(new Object[]{minute, 2L}, new Object[]{minute + 1440, 1L}));
+
+        refreshTokenMetrics.reconcile();
+
+        assertEquals(3, refreshTokenMetrics.getTotalTokens());
+        verify(refreshTokenRepository).countByExpiryBucketAfter(instantCaptor.capture());
         // Allow for a small difference in time due to execution
-        assertEquals(nowMillis, capturedMillis, 1000);
+        assertEquals(Instant.now().toEpochMilli(), instantCaptor.getValue().toEpochMilli(), 1000);
+
+        // Later changes apply on top of the reconciled buckets
+        refreshTokenMetrics.tokenDeleted(now.plusSeconds(600));
+        assertEquals(2, refreshTokenMetrics.getTotalTokens());
     }
-}
\ No newline at end of file
+}
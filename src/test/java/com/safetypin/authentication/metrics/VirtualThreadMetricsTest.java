@@ -0,0 +1,72 @@
+package com.safetypin.authentication.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadMetricsTest {
+    private MeterRegistry meterRegistry;
+    private VirtualThreadMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new VirtualThreadMetrics(meterRegistry, 10);
+        metrics.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        metrics.stop();
+    }
+
+    private long pinnedCount() {
+        return meterRegistry.get("virtual_threads_pinned").timer().count();
+    }
+
+    @Test
+    void pinnedVirtualThread_isCounted() throws InterruptedException {
+        Object monitor = new Object();
+        Thread.ofVirtual().start(() -> {
+            synchronized (monitor) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }).join();
+
+        // Flight recorder streams flush about once a second
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pinnedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertTrue(pinnedCount() >= 1);
+    }
+
+    @Test
+    void virtualThreadBlockingOutsideMonitor_isNotCounted() throws InterruptedException {
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).join();
+
+        Thread.sleep(1500);
+        assertEquals(0, pinnedCount());
+    }
+
+    @Test
+    void carrierParallelism_defaultsToAvailableProcessors() {
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                meterRegistry.get("virtual_threads_carrier_parallelism").gauge().value());
+    }
+}
@@ -0,0 +1,90 @@
+package com.safetypin.authentication.repository;
+
+import com.safetypin.authentication.model.EmailOutboxMessage;
+import com.safetypin.authentication.service.email.EmailTemplateType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class EmailOutboxRepositoryTest {
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private EmailOutboxMessage save(String recipient, Instant nextAttemptAt, Instant expiresAt) {
+        EmailOutboxMessage message = new EmailOutboxMessage();
+        message.setRecipient(recipient);
+        message.setCode("123456");
+        message.setTemplateType(EmailTemplateType.OTP_VERIFICATION);
+        message.setCreatedAt(nextAttemptAt);
+        message.setNextAttemptAt(nextAttemptAt);
+        message.setExpiresAt(expiresAt);
+        return outboxRepository.saveAndFlush(message);
+    }
+
+    @Test
+    void findDue_returnsOnlyDueMessagesOldestFirst() {
+        EmailOutboxMessage later = save("b@example.com", NOW.minusSeconds(1), NOW.plusSeconds(60));
+        EmailOutboxMessage earlier = save("a@example.com", NOW.minusSeconds(5), NOW.plusSeconds(60));
+        save("c@example.com", NOW.plusSeconds(5), NOW.plusSeconds(60));
+
+        List<EmailOutboxMessage> due = outboxRepository.findDue(NOW, PageRequest.of(0, 10));
+
+        assertEquals(List.of(earlier.getId(), later.getId()), due.stream().map(EmailOutboxMessage::getId).toList());
+    }
+
+    @Test
+    void claim_succeedsOnlyOnce() {
+        EmailOutboxMessage message = save("a@example.com", NOW, NOW.plusSeconds(60));
+        Instant leaseUntil = NOW.plusSeconds(60);
+
+        assertEquals(1, outboxRepository.claim(message.getId(), message.getNextAttemptAt(), leaseUntil));
+        assertEquals(0, outboxRepository.claim(message.getId(), message.getNextAttemptAt(), leaseUntil));
+        assertTrue(outboxRepository.findDue(NOW, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void reschedule_updatesAttemptsAndTime() {
+        EmailOutboxMessage message = save("a@example.com", NOW, NOW.plusSeconds(60));
+
+        assertEquals(1, outboxRepository.reschedule(message.getId(), 1, NOW.plusSeconds(2)));
+        entityManager.clear();
+
+        EmailOutboxMessage reloaded = outboxRepository.findById(message.getId()).orElseThrow();
+        assertEquals(1, reloaded.getAttempts());
+        assertEquals(NOW.plusSeconds(2), reloaded.getNextAttemptAt());
+    }
+
+    @Test
+    void deleteByRecipient_removesOnlyTheirMessages() {
+        save("a@example.com", NOW, NOW.plusSeconds(60));
+        save("a@example.com", NOW, NOW.plusSeconds(60));
+        save("b@example.com", NOW, NOW.plusSeconds(60));
+
+        assertEquals(2, outboxRepository.deleteByRecipient("a@example.com"));
+        assertEquals(1, outboxRepository.count());
+    }
+
+    @Test
+    void deleteExpired_andOldestCreatedAt() {
+        save("a@example.com", NOW.minusSeconds(200), NOW.minusSeconds(80));
+        save("b@example.com", NOW.minusSeconds(30), NOW.plusSeconds(90));
+
+        assertEquals(NOW.minusSeconds(200), outboxRepository.findOldestCreatedAt());
+        assertEquals(1, outboxRepository.deleteExpired(NOW));
+        assertEquals(NOW.minusSeconds(30), outboxRepository.findOldestCreatedAt());
+    }
+}
@@ -7,9 +7,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -152,4 +154,43 @@ class FollowRepositoryTest {
         assertTrue(followRepository.existsByFollowerIdAndFollowingId(follower.getId(), followee2.getId()));
         assertTrue(followRepository.existsByFollowerIdAndFollowingId(followee2.getId(), followee1.getId()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void findFollowerDigestCandidates_ReturnsOptedInUsersWithNewFollowers() {
+        // Arrange
+        followee1.setFollowerDigestEnabled(true);
+        followee2.setFollowerDigestEnabled(true);
+        followee2.setFollowerDigestSentAt(LocalDateTime.now().minusMinutes(5));
+        entityManager.flush();
+        LocalDateTime now = LocalDateTime.now().plusSeconds(1);
+        LocalDateTime since = now.minusDays(1);
+
+        // Act
+        List<Object[]> candidates = followRepository.findFollowerDigestCandidates(
+                since, now, since.plusMinutes(30), new UUID(0, 0), PageRequest.of(0, 10));
+
+        // Assert: followee2 got a digest less than a period ago, follower did not opt in
+        assertEquals(1, candidates.size());
+        assertEquals(followee1.getId(), candidates.get(0)[0]);
+        assertEquals("followee1@example.com", candidates.get(0)[1]);
+        assertEquals(2L, ((Number) candidates.get(0)[4]).longValue());
+        assertTrue(followRepository.findFollowerDigestCandidates(
+                since, now, since.plusMinutes(30), followee1.getId(), PageRequest.of(0, 10)).stream()
+                .noneMatch(row -> row[0].equals(followee1.getId())));
+    }
+
+    @Test
+    void findTop3ByFollowingId_ReturnsNewestFollowsInRange() {
+        // Act
+        List<Follow> recent = followRepository
+                .findTop3ByFollowingIdAndCreatedAtAfterAndCreatedAtLessThanEqualOrderByCreatedAtDesc(
+                        followee1.getId(), LocalDateTime.now().minusDays(1), LocalDateTime.now().plusSeconds(1));
+
+        // Assert
+        assertEquals(2, recent.size());
+        assertTrue(followRepository
+                .findTop3ByFollowingIdAndCreatedAtAfterAndCreatedAtLessThanEqualOrderByCreatedAtDesc(
+                        followee1.getId(), LocalDateTime.now().plusSeconds(1), LocalDateTime.now().plusDays(1))
+                .isEmpty());
+    }
+}
@@ -3,12 +3,16 @@ package com.safetypin.authentication.repository;
 import com.safetypin.authentication.model.RefreshToken;
 import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.security.TokenHashing;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
 import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,6 +27,10 @@ class RefreshTokenRepositoryTest {
     private User registeredUser, premiumUser;
     private RefreshToken refreshToken;
 
+    private static byte[] hash(String token) {
+        return TokenHashing.sha256(token);
+    }
+
     @BeforeEach
     void setUp() {
         userRepository.deleteAll();
@@ -46,7 +54,7 @@ class RefreshTokenRepositoryTest {
         // Create Refresh token for first user
         refreshToken = new RefreshToken();
         refreshToken.setUser(registeredUser);
-        refreshToken.setToken("Test-token");
+        refreshToken.setTokenHash(hash("Test-token"));
         refreshToken.setExpiryTime(Instant.now().plusSeconds(60)); // + 60s
         refreshTokenRepository.save(refreshToken);
     }
@@ -56,7 +64,7 @@ class RefreshTokenRepositoryTest {
         // check if id is created when saved
         RefreshToken token = new RefreshToken();
         token.setUser(premiumUser);
-        token.setToken("new-token");
+        token.setTokenHash(hash("new-token"));
         token.setExpiryTime(Instant.now().plusSeconds(60));
 
         RefreshToken savedToken = refreshTokenRepository.save(token);
@@ -69,7 +77,7 @@ class RefreshTokenRepositoryTest {
         // check if token unique when saved to database
         RefreshToken duplicateToken = new RefreshToken();
         duplicateToken.setUser(premiumUser);
-        duplicateToken.setToken("Test-token"); // Duplicate token
+        duplicateToken.setTokenHash(hash("Test-token")); // Duplicate token
         duplicateToken.setExpiryTime(Instant.now().plusSeconds(60));
 
         assertThrows(Exception.class,
@@ -81,7 +89,7 @@ class RefreshTokenRepositoryTest {
         // check if user unique when saved to database
         RefreshToken duplicateToken = new RefreshToken();
         duplicateToken.setUser(registeredUser);
-        duplicateToken.setToken("New-token"); // Duplicate token
+        duplicateToken.setTokenHash(hash("New-token")); // Duplicate token
         duplicateToken.setExpiryTime(Instant.now().plusSeconds(60));
 
         RefreshToken savedToken = refreshTokenRepository.save(duplicateToken);
@@ -92,17 +100,17 @@ class RefreshTokenRepositoryTest {
     @Test
     void testFindByToken_Exists() {
         // Find refreshTokens by the token
-        RefreshToken foundToken = refreshTokenRepository.findByToken("Test-token");
+        RefreshToken foundToken = refreshTokenRepository.findByTokenHash(hash("Test-token"));
 
         assertNotNull(foundToken);
-        assertEquals("Test-token", foundToken.getToken());
+        assertArrayEquals(hash("Test-token"), foundToken.getTokenHash());
         assertEquals(registeredUser.getId(), foundToken.getUser().getId());
     }
 
     @Test
     void testFindByUserId_NotExists() {
         // Find refreshTokens by the token
-        RefreshToken foundToken = refreshTokenRepository.findByToken("1111111Test-token");
+        RefreshToken foundToken = refreshTokenRepository.findByTokenHash(hash("1111111Test-token"));
         assertNull(foundToken);
     }
 
@@ -119,4 +127,111 @@ class RefreshTokenRepositoryTest {
         refreshTokenRepository.deleteAllByExpiryTimeBefore(Instant.now());
         assertTrue(refreshTokenRepository.findById(refreshToken.getId()).isPresent());
     }
+
+    @Test
+    void testFindWithUserByToken_FetchesUser() {
+        RefreshToken foundToken = refreshTokenRepository.findWithUserByTokenHash(hash("Test-token")).orElseThrow();
+
+        assertEquals(registeredUser.getId(), foundToken.getUser().getId());
+        assertEquals("Registered User 1", foundToken.getUser().getName());
+        assertTrue(refreshTokenRepository.findWithUserByTokenHash(hash("unknown-token")).isEmpty());
+    }
+
+    @Test
+    void testDeleteTokenById_OnlyFirstDeleteCounts() {
+        assertEquals(1, refreshTokenRepository.deleteTokenById(refreshToken.getId()));
+        assertEquals(0, refreshTokenRepository.deleteTokenById(refreshToken.getId()));
+        assertNull(refreshTokenRepository.findByTokenHash(hash("Test-token")));
+    }
+
+    private RefreshToken saveToken(String token, Instant expiryTime) {
+        RefreshToken saved = new RefreshToken();
+        saved.setUser(premiumUser);
+        saved.setTokenHash(hash(token));
+        saved.setExpiryTime(expiryTime);
+        return refreshTokenRepository.save(saved);
+    }
+
+    @Test
+    void testFindExpiredIds_OldestFirstAndBounded() {
+        Instant now = Instant.now();
+        RefreshToken oldest = saveToken("expired-1", now.minusSeconds(300));
+        RefreshToken older = saveToken("expired-2", now.minusSeconds(200));
+        saveToken("expired-3", now.minusSeconds(100));
+
+        List<UUID> ids = refreshTokenRepository.findExpiredIds(now, PageRequest.of(0, 2));
+
+        assertEquals(List.of(oldest.getId(), older.getId()), ids);
+    }
+
+    @Test
+    void testDeleteTokensByIdIn_DeletesOnlyGivenTokens() {
+        Instant now = Instant.now();
+        RefreshToken expired = saveToken("expired-1", now.minusSeconds(300));
+        RefreshToken alsoExpired = saveToken("expired-2", now.minusSeconds(200));
+
+        assertEquals(1, refreshTokenRepository.deleteTokensByIdIn(List.of(expired.getId())));
+
+        assertFalse(refreshTokenRepository.existsById(expired.getId()));
+        assertTrue(refreshTokenRepository.existsById(alsoExpired.getId()));
+        assertTrue(refreshTokenRepository.existsById(refreshToken.getId()));
+    }
+
+    @Test
+    void testFindEarliestExpiryTime() {
+        Instant earliest = Instant.now().minusSeconds(300);
+        saveToken("expired-1", earliest);
+
+        assertEquals(earliest.toEpochMilli(), refreshTokenRepository.findEarliestExpiryTime().toEpochMilli());
+
+        refreshTokenRepository.deleteAll();
+        assertNull(refreshTokenRepository.findEarliestExpiryTime());
+    }
+
+    @Test
+    void testFindIdsAndExpiryTimesByUserId_NewestFirst() {
+        Instant now = Instant.now();
+        RefreshToken oldest = saveToken("session-1", now.plusSeconds(100));
+        RefreshToken newest = saveToken("session-2", now.plusSeconds(300));
+
+        List<Object[]> tokens = refreshTokenRepository.findIdsAndExpiryTimesByUserId(premiumUser.getId());
+
+        assertEquals(List.of(newest.getId(), oldest.getId()), tokens.stream().map(row -> row[0]).toList());
+        assertEquals(oldest.getExpiryTime().toEpochMilli(), ((Instant) tokens.get(1)[1]).toEpochMilli());
+    }
+
+    @Test
+    void testDeleteByUserId_DeletesAllTokensOfUser() {
+        saveToken("session-1", Instant.now().plusSeconds(100));
+        saveToken("session-2", Instant.now().plusSeconds(200));
+
+        assertEquals(2, refreshTokenRepository.deleteByUserId(premiumUser.getId()));
+
+        assertTrue(refreshTokenRepository.findIdsAndExpiryTimesByUserId(premiumUser.getId()).isEmpty());
+        assertTrue(refreshTokenRepository.existsById(refreshToken.getId()));
+    }
+
+    @Test
+    void countByExpiryBucketAfter_groupsLiveTokensByMinute() {
+        refreshTokenRepository.deleteAll();
+        Instant minute = Instant.ofEpochSecond((Instant.now().getEpochSecond() / 60 + 10) * 60);
+        for (Instant expiry : List.of(minute, minute.plusSeconds(59).plusMillis(500), minute.plusSeconds(60),
+                Instant.now().minusSeconds(60))) {
+            RefreshToken token = new RefreshToken();
+            token.setUser(registeredUser);
+            token.setTokenHash(hash("token-" + expiry));
+            token.setExpiryTime(expiry);
+            refreshTokenRepository.save(token);
+        }
+
+        List<Object[]> buckets = refreshTokenRepository.countByExpiryBucketAfter(Instant.now());
+
+        long first = minute.getEpochSecond() / 60 + 1;
+        assertEquals(2, buckets.size());
+        for (Object[] bucket : buckets) {
+            long end = ((Number) bucket[0]).longValue();
+            assertEquals(end == first ? 2L : 1L, ((Number) bucket[1]).longValue());
+            assertTrue(end == first || end == first + 1);
+        }
+    }
 }
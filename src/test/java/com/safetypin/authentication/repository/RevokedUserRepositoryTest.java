@@ -0,0 +1,48 @@
+package com.safetypin.authentication.repository;
+
+import com.safetypin.authentication.model.RevokedUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class RevokedUserRepositoryTest {
+
+    @Autowired
+    private RevokedUserRepository revokedUserRepository;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private UUID recentId, oldId;
+
+    @BeforeEach
+    void setUp() {
+        revokedUserRepository.deleteAll();
+        recentId = UUID.randomUUID();
+        oldId = UUID.randomUUID();
+        revokedUserRepository.save(new RevokedUser(recentId, now.minusSeconds(30)));
+        revokedUserRepository.save(new RevokedUser(oldId, now.minusSeconds(3600)));
+    }
+
+    @Test
+    void findByRevokedAtAfter_returnsOnlyRecentTombstones() {
+        List<RevokedUser> recent = revokedUserRepository.findByRevokedAtAfter(now.minusSeconds(600));
+
+        assertEquals(List.of(recentId), recent.stream().map(RevokedUser::getUserId).toList());
+    }
+
+    @Test
+    void deleteRevokedBefore_deletesOnlyExpiredTombstones() {
+        assertEquals(1, revokedUserRepository.deleteRevokedBefore(now.minusSeconds(600)));
+
+        assertTrue(revokedUserRepository.existsById(recentId));
+        assertFalse(revokedUserRepository.existsById(oldId));
+    }
+}
@@ -7,7 +7,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -81,4 +84,28 @@ class UserRepositoryTest {
         List<User> users = userRepository.findAll();
         assertEquals(2, users.size());
     }
+
+    @Test
+    void testLockById() {
+        User user = userRepository.findByEmail("registered@example.com");
+
+        assertEquals(Optional.of(user.getId()), userRepository.lockById(user.getId()));
+        assertTrue(userRepository.lockById(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void testClaimFollowerDigest_OnceUntilReleased() {
+        User user = userRepository.findByEmail("registered@example.com");
+        LocalDateTime now = LocalDateTime.of(2025, 5, 1, 3, 0);
+        LocalDateTime sentBefore = now.minusHours(23);
+
+        assertEquals(1, userRepository.claimFollowerDigest(user.getId(), now, sentBefore));
+        // A second replica in the same run
+        assertEquals(0, userRepository.claimFollowerDigest(user.getId(), now.plusSeconds(1), sentBefore));
+
+        // Only the claim it made is given back
+        assertEquals(0, userRepository.releaseFollowerDigest(user.getId(), now.minusDays(1), null));
+        assertEquals(1, userRepository.releaseFollowerDigest(user.getId(), now, null));
+        assertEquals(1, userRepository.claimFollowerDigest(user.getId(), now, sentBefore));
+    }
 }
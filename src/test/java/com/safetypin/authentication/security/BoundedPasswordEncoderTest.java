@@ -0,0 +1,166 @@
+package com.safetypin.authentication.security;
+
+import com.safetypin.authentication.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private MeterRegistry meterRegistry;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (encoder != null) {
+            encoder.close();
+        }
+    }
+
+    // "slow" takes 600 ms on the fake clock, "block" holds its hashing thread until released
+    private final PasswordEncoder scripted = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if ("slow".contentEquals(rawPassword)) {
+                clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+            } else if ("block".contentEquals(rawPassword)) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "hashed-" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(encode(rawPassword));
+        }
+    };
+
+    private BoundedPasswordEncoder encoder(PasswordEncoder delegate, int threads, int queueCapacity) {
+        encoder = new BoundedPasswordEncoder(delegate, meterRegistry, threads, queueCapacity, 1000, clock::get);
+        return encoder;
+    }
+
+    private CompletableFuture<String> encodeAsync(String password) {
+        return CompletableFuture.supplyAsync(() -> encoder.encode(password));
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("password_hash_queue_depth").gauge().value() < depth
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, meterRegistry.get("password_hash_queue_depth").gauge().value());
+    }
+
+    private double rejected() {
+        return meterRegistry.get("password_hash_rejected_total").counter().count();
+    }
+
+    @Test
+    void encodeAndMatches_delegateOnHashingThreadsAndRecordTimes() {
+        BoundedPasswordEncoder bounded = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), meterRegistry,
+                2, 10, 1000);
+        encoder = bounded;
+
+        String hash = bounded.encode("password");
+
+        assertTrue(bounded.matches("password", hash));
+        assertFalse(bounded.matches("other", hash));
+        assertEquals(1, meterRegistry.get("password_hash_duration").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("password_hash_duration").tag("operation", "matches").timer().count());
+        assertEquals(3, meterRegistry.get("password_hash_queue_wait").timer().count());
+    }
+
+    @Test
+    void encode_delegateFails_rethrowsOnCaller() {
+        encoder(new BCryptPasswordEncoder(4), 1, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(null));
+    }
+
+    @Test
+    void encode_queueFull_rejectsAtOnce() throws Exception {
+        encoder(scripted, 1, 1);
+        CompletableFuture<String> running = encodeAsync("block");
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = encodeAsync("queued");
+        awaitQueueDepth(1);
+
+        ServiceOverloadedException e = assertThrows(ServiceOverloadedException.class, () -> encoder.encode("more"));
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(1.0, rejected());
+
+        release.countDown();
+        assertEquals("hashed-block", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hashed-queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void encode_estimatedWaitPastDeadline_rejectsWithoutQueueing() throws Exception {
+        encoder(scripted, 1, 10);
+        encoder.encode("slow");
+        List<CompletableFuture<String>> waiting = new ArrayList<>();
+        waiting.add(encodeAsync("block"));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        // One 600 ms hash queued is within the 1000 ms deadline, two are not
+        waiting.add(encodeAsync("first"));
+        awaitQueueDepth(1);
+        waiting.add(encodeAsync("second"));
+        awaitQueueDepth(2);
+
+        assertThrows(ServiceOverloadedException.class, () -> encoder.encode("third"));
+        awaitQueueDepth(2);
+
+        release.countDown();
+        for (CompletableFuture<String> future : waiting) {
+            assertTrue(future.get(5, TimeUnit.SECONDS).startsWith("hashed-"));
+        }
+        assertEquals(1.0, rejected());
+    }
+
+    @Test
+    void encode_waitedPastDeadline_isDroppedWhenItsTurnComes() throws Exception {
+        encoder(scripted, 1, 10);
+        CompletableFuture<String> running = encodeAsync("block");
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = encodeAsync("queued");
+        awaitQueueDepth(1);
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        release.countDown();
+
+        assertEquals("hashed-block", running.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceOverloadedException.class, e.getCause());
+        assertEquals(1.0, rejected());
+        assertEquals(1, meterRegistry.get("password_hash_duration").tag("operation", "encode").timer().count());
+    }
+}
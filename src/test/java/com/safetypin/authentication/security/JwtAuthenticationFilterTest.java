@@ -0,0 +1,135 @@
+package com.safetypin.authentication.security;
+
+import com.safetypin.authentication.dto.UserResponse;
+import com.safetypin.authentication.exception.InvalidCredentialsException;
+import com.safetypin.authentication.model.Role;
+import com.safetypin.authentication.service.JwtService;
+import com.safetypin.authentication.service.jwt.VerificationMode;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtAuthenticationFilterTest {
+
+    @Mock
+    private JwtService jwtService;
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockFilterChain filterChain;
+
+    @BeforeEach
+    void setUp() {
+        filter = new JwtAuthenticationFilter(jwtService);
+        request = new MockHttpServletRequest("GET", "/api/profiles/me");
+        filterChain = new MockFilterChain();
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void validToken_SetsAuthenticatedUser() throws Exception {
+        UUID userId = UUID.randomUUID();
+        UserResponse user = UserResponse.builder()
+                .id(userId)
+                .name("Test User")
+                .email("test@example.com")
+                .role(Role.MODERATOR)
+                .isVerified(true)
+                .build();
+        when(jwtService.getUserFromJwtToken("valid-token", VerificationMode.CLAIMS_ONLY)).thenReturn(user);
+        request.addHeader("Authorization", "Bearer valid-token");
+
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        AuthenticatedUser principal = (AuthenticatedUser) authentication.getPrincipal();
+        assertEquals(userId, principal.id());
+        assertEquals("test@example.com", principal.email());
+        assertTrue(principal.verified());
+        assertTrue(authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch("ROLE_MODERATOR"::equals));
+        assertNull(request.getAttribute(JwtAuthenticationFilter.AUTHENTICATION_ERROR_ATTRIBUTE));
+        assertNotNull(filterChain.getRequest());
+    }
+
+    @Test
+    void missingHeader_ContinuesAnonymously() throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNull(request.getAttribute(JwtAuthenticationFilter.AUTHENTICATION_ERROR_ATTRIBUTE));
+        assertNotNull(filterChain.getRequest());
+        verifyNoInteractions(jwtService);
+    }
+
+    @Test
+    void nonBearerHeader_IsIgnored() throws Exception {
+        request.addHeader("Authorization", "Basic dXNlcjpwYXNz");
+
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(jwtService);
+    }
+
+    @Test
+    void malformedToken_RecordsInvalidToken() throws Exception {
+        when(jwtService.getUserFromJwtToken("garbage", VerificationMode.CLAIMS_ONLY))
+                .thenThrow(new MalformedJwtException("bad"));
+        request.addHeader("Authorization", "Bearer garbage");
+
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertEquals("Invalid token", request.getAttribute(JwtAuthenticationFilter.AUTHENTICATION_ERROR_ATTRIBUTE));
+        assertNotNull(filterChain.getRequest());
+    }
+
+    @Test
+    void expiredToken_RecordsTokenExpired() throws Exception {
+        when(jwtService.getUserFromJwtToken("expired", VerificationMode.CLAIMS_ONLY))
+                .thenThrow(new ExpiredJwtException(null, null, "expired"));
+        request.addHeader("Authorization", "Bearer expired");
+
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertEquals("Token expired", request.getAttribute(JwtAuthenticationFilter.AUTHENTICATION_ERROR_ATTRIBUTE));
+    }
+
+    @Test
+    void unknownUser_RecordsServiceMessage() throws Exception {
+        when(jwtService.getUserFromJwtToken("orphan", VerificationMode.CLAIMS_ONLY))
+                .thenThrow(new InvalidCredentialsException("User not found"));
+        request.addHeader("Authorization", "Bearer orphan");
+
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertEquals("User not found", request.getAttribute(JwtAuthenticationFilter.AUTHENTICATION_ERROR_ATTRIBUTE));
+    }
+}
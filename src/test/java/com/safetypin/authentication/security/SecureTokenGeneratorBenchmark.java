@@ -0,0 +1,51 @@
+package com.safetypin.authentication.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of refresh token generation with the shared SecureRandom RefreshTokenService used to have,
+ * against {@link SecureTokenGenerator}. Not run by the test suite. Compare the scores across thread counts,
+ * the shared instance stops scaling after one thread:
+ * <pre>
+ * for t in 1 2 4 8; do
+ *   mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *       -Dexec.args="-cp %classpath org.openjdk.jmh.Main SecureTokenGeneratorBenchmark -t $t"
+ * done
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureTokenGeneratorBenchmark {
+    private static final int TOKEN_BYTES = 87;
+
+    private final SecureRandom shared = new SecureRandom();
+    private final SecureTokenGenerator generator = new SecureTokenGenerator();
+
+    @Benchmark
+    public String sharedSecureRandom() {
+        byte[] randomBytes = new byte[TOKEN_BYTES];
+        shared.nextBytes(randomBytes);
+        return Base64.getEncoder().encodeToString(randomBytes);
+    }
+
+    @Benchmark
+    public String stripedGenerator() {
+        return generator.urlSafeToken(TOKEN_BYTES);
+    }
+}
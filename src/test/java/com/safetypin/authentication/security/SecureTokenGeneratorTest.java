@@ -0,0 +1,92 @@
+package com.safetypin.authentication.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecureTokenGeneratorTest {
+
+    private final SecureTokenGenerator generator = new SecureTokenGenerator(4);
+
+    @Test
+    void stripeCount_shouldRoundUpToPowerOfTwo() {
+        assertEquals(1, new SecureTokenGenerator(1).stripeCount());
+        assertEquals(4, new SecureTokenGenerator(3).stripeCount());
+        assertEquals(8, new SecureTokenGenerator(8).stripeCount());
+    }
+
+    @Test
+    void encodeUrlSafe_shouldMatchJdkEncoderForEveryRemainder() {
+        Random random = new Random(42);
+        for (int length = 0; length < 50; length++) {
+            byte[] src = new byte[length];
+            random.nextBytes(src);
+            byte[] dst = new byte[(length * 4 + 2) / 3];
+
+            SecureTokenGenerator.encodeUrlSafe(src, dst);
+
+            assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(src),
+                    new String(dst, StandardCharsets.US_ASCII), "length " + length);
+        }
+    }
+
+    @Test
+    void urlSafeToken_shouldHaveExpectedLengthAndAlphabet() {
+        String token = generator.urlSafeToken(87);
+
+        assertEquals(116, token.length());
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+        assertEquals(87, Base64.getUrlDecoder().decode(token).length);
+    }
+
+    @Test
+    void numericCode_shouldKeepLeadingZeros() {
+        for (int i = 0; i < 200; i++) {
+            String code = generator.numericCode(6);
+            assertEquals(6, code.length());
+            assertTrue(code.chars().allMatch(Character::isDigit));
+        }
+        assertThrows(IllegalArgumentException.class, () -> generator.numericCode(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.numericCode(10));
+    }
+
+    @Test
+    void urlSafeToken_shouldNotRepeatAcrossThreads() throws Exception {
+        Set<String> tokens = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        tokens.add(generator.urlSafeToken(16));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(4000, tokens.size());
+    }
+
+    @Test
+    void reseed_shouldKeepGenerating() {
+        Set<String> before = new HashSet<>();
+        before.add(generator.urlSafeToken(16));
+
+        generator.reseed();
+
+        assertFalse(before.contains(generator.urlSafeToken(16)));
+    }
+}
@@ -1,13 +1,16 @@
 package com.safetypin.authentication.service;
 
 import com.safetypin.authentication.dto.AuthToken;
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
 import com.safetypin.authentication.dto.RegistrationRequest;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.PendingVerificationException;
+import com.safetypin.authentication.exception.ServiceOverloadedException;
 import com.safetypin.authentication.exception.UserAlreadyExistsException;
 import com.safetypin.authentication.model.RefreshToken;
 import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.service.email.EmailTemplateType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -37,17 +40,18 @@ class AuthenticationServiceTest {
     private OTPService otpService;
 
     @Mock
-    private JwtService jwtService;
+    private TokenIssuanceService tokenIssuanceService;
 
     @Mock
-    private RefreshTokenService refreshTokenService;
+    private TokenRevocationService tokenRevocationService;
 
     private AuthenticationService authenticationService;
 
     @BeforeEach
     void setUp() {
         authenticationService = new AuthenticationService(
-                userService, passwordEncoder, otpService, jwtService, refreshTokenService);
+                userService, passwordEncoder, otpService, tokenIssuanceService,
+                tokenRevocationService);
     }
 
     // registerUser tests
@@ -97,12 +101,15 @@ class AuthenticationServiceTest {
         existingUser.setVerified(false);
 
         when(userService.findByEmail("test@example.com")).thenReturn(Optional.of(existingUser));
+        when(otpService.issueOTP("test@example.com", EmailTemplateType.OTP_VERIFICATION))
+                .thenReturn(new OTPService.IssuedOtp("123456", "status-handle"));
 
-        Exception exception = assertThrows(PendingVerificationException.class,
+        PendingVerificationException exception = assertThrows(PendingVerificationException.class,
                 () -> authenticationService.registerUser(request));
 
         assertEquals("User already exists but is not verified. A new OTP has been sent.", exception.getMessage());
-        verify(otpService, times(1)).generateOTP("test@example.com");
+        assertEquals("status-handle", exception.getOtpStatusHandle());
+        verify(otpService, times(1)).issueOTP("test@example.com", EmailTemplateType.OTP_VERIFICATION);
         verify(userService, never()).save(any(User.class)); // Ensure user is not saved again
     }
 
@@ -128,7 +135,7 @@ class AuthenticationServiceTest {
         verify(userService, never()).findByEmail(anyString());
         verify(userService, never()).save(any(User.class));
         verify(passwordEncoder, never()).encode(anyString());
-        verify(otpService, never()).generateOTP(anyString());
+        verify(otpService, never()).issueOTP(anyString(), any());
     }
 
     @Test
@@ -155,11 +162,9 @@ class AuthenticationServiceTest {
         savedUser.setId(id);
 
         when(userService.save(any(User.class))).thenReturn(savedUser);
-        when(jwtService.generateToken(id)).thenReturn("jwtToken");
-        RefreshToken expectedRefreshToken = new RefreshToken();
-        expectedRefreshToken.setToken("refreshToken");
-        expectedRefreshToken.setUser(savedUser);
-        when(refreshTokenService.createRefreshToken(id)).thenReturn(expectedRefreshToken);
+        when(tokenIssuanceService.issueTokens(savedUser)).thenReturn(new AuthToken(id, "jwtToken", "refreshToken"));
+        when(otpService.issueOTP("test@example.com", EmailTemplateType.OTP_VERIFICATION))
+                .thenReturn(new OTPService.IssuedOtp("123456", "status-handle"));
 
         AuthToken token = authenticationService.registerUser(request);
 
@@ -167,9 +172,10 @@ class AuthenticationServiceTest {
         assertEquals(id, token.getUserId());
         assertEquals("jwtToken", token.getAccessToken());
         assertEquals("refreshToken", token.getRefreshToken());
-        verify(otpService, times(1)).generateOTP("test@example.com");
+        assertEquals("status-handle", token.getOtpStatusHandle());
+        verify(otpService, times(1)).issueOTP("test@example.com", EmailTemplateType.OTP_VERIFICATION);
         verify(userService, times(1)).save(any(User.class));
-        verify(refreshTokenService, times(1)).createRefreshToken(id);
+        verify(tokenIssuanceService, times(1)).issueTokens(savedUser);
     }
 
     // loginUser tests
@@ -220,11 +226,7 @@ class AuthenticationServiceTest {
 
         when(userService.findByEmail("test@example.com")).thenReturn(Optional.of(user));
         when(passwordEncoder.matches("password", "encodedPassword")).thenReturn(true);
-        when(jwtService.generateToken(id)).thenReturn("jwtToken");
-        RefreshToken expectedRefreshToken = new RefreshToken();
-        expectedRefreshToken.setToken("refreshToken");
-        expectedRefreshToken.setUser(user);
-        when(refreshTokenService.createRefreshToken(id)).thenReturn(expectedRefreshToken);
+        when(tokenIssuanceService.issueTokens(user)).thenReturn(new AuthToken(id, "jwtToken", "refreshToken"));
 
         AuthToken token = authenticationService.loginUser("test@example.com", "password");
 
@@ -296,9 +298,10 @@ class AuthenticationServiceTest {
         user.setProvider("EMAIL");
 
         when(userService.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(otpService.generateOTP("test@example.com")).thenReturn("123456");
+        when(otpService.issueOTP("test@example.com", EmailTemplateType.OTP_PASSWORD_RESET))
+                .thenReturn(new OTPService.IssuedOtp("123456", "status-handle"));
 
-        assertDoesNotThrow(() -> authenticationService.forgotPassword("test@example.com"));
+        assertEquals("status-handle", authenticationService.forgotPassword("test@example.com"));
     }
 
     @Test
@@ -412,7 +415,7 @@ class AuthenticationServiceTest {
 
         authenticationService.resetPassword("test@example.com", "newPassword", "valid-token");
 
-        verify(userService).save(user);
+        verify(tokenRevocationService).revokeTokens(user);
         assertEquals("newEncodedPassword", user.getPassword());
     }
 
@@ -431,6 +434,24 @@ class AuthenticationServiceTest {
         verify(userService, never()).save(any(User.class));
     }
 
+    @Test
+    void testResetPassword_OverloadedKeepsResetToken() {
+        User user = new User();
+        user.setEmail("test@example.com");
+        user.setProvider("EMAIL");
+
+        when(userService.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(passwordEncoder.encode("newPassword"))
+                .thenThrow(new ServiceOverloadedException("Too many sign-in requests, please try again shortly", 2));
+
+        assertThrows(ServiceOverloadedException.class,
+                () -> authenticationService.resetPassword("test@example.com", "newPassword", "valid-token"));
+
+        // The token is still there for the retry
+        verify(otpService, never()).verifyResetToken(anyString(), anyString());
+        verify(tokenRevocationService, never()).revokeTokens(any(User.class));
+    }
+
     @Test
     void testResetPassword_NullToken() {
         User user = new User();
@@ -449,19 +470,9 @@ class AuthenticationServiceTest {
     void testRenewRefreshToken_Success() {
         String oldRefreshToken = "validRefreshToken";
         UUID userId = UUID.randomUUID();
-        User user = new User();
-        user.setId(userId);
 
-        RefreshToken existingToken = new RefreshToken();
-        existingToken.setToken(oldRefreshToken);
-        existingToken.setUser(user);
-
-        when(refreshTokenService.getAndVerifyRefreshToken(oldRefreshToken)).thenReturn(Optional.of(existingToken));
-        when(jwtService.generateToken(userId)).thenReturn("newAccessToken");
-
-        RefreshToken newRefreshToken = new RefreshToken();
-        newRefreshToken.setToken("newRefreshToken");
-        when(refreshTokenService.createRefreshToken(userId)).thenReturn(newRefreshToken);
+        when(tokenIssuanceService.rotateTokens(oldRefreshToken))
+                .thenReturn(Optional.of(new AuthToken(userId, "newAccessToken", "newRefreshToken")));
 
         AuthToken authToken = authenticationService.renewRefreshToken(oldRefreshToken);
 
@@ -470,14 +481,14 @@ class AuthenticationServiceTest {
         assertEquals("newAccessToken", authToken.getAccessToken());
         assertEquals("newRefreshToken", authToken.getRefreshToken());
 
-        verify(refreshTokenService).deleteRefreshToken(oldRefreshToken);
+        verify(tokenIssuanceService).rotateTokens(oldRefreshToken);
     }
 
     @Test
     void testRenewRefreshToken_InvalidToken() {
         String invalidRefreshToken = "invalidToken";
 
-        when(refreshTokenService.getAndVerifyRefreshToken(invalidRefreshToken)).thenReturn(Optional.empty());
+        when(tokenIssuanceService.rotateTokens(invalidRefreshToken)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(InvalidCredentialsException.class,
                 () -> authenticationService.renewRefreshToken(invalidRefreshToken));
@@ -485,4 +496,36 @@ class AuthenticationServiceTest {
     }
 
     // Add missing methods for other functionality if needed
-}
\ No newline at end of file
+
+    // logoutAll tests
+
+    @Test
+    void testLogoutAll_Success() {
+        User user = new User();
+        UUID userId = UUID.randomUUID();
+        user.setId(userId);
+        when(userService.findById(userId)).thenReturn(Optional.of(user));
+        when(tokenRevocationService.revokeAllSessions(user)).thenReturn(4);
+
+        assertEquals(4, authenticationService.logoutAll(userId));
+        verify(tokenRevocationService).revokeAllSessions(user);
+    }
+
+    @Test
+    void testLogoutAll_UserNotFound() {
+        UUID userId = UUID.randomUUID();
+        when(userService.findById(userId)).thenReturn(Optional.empty());
+
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> authenticationService.logoutAll(userId));
+        assertEquals("User not found", exception.getMessage());
+        verifyNoInteractions(tokenRevocationService);
+    }
+
+    @Test
+    void testGetOtpDeliveryStatus_DelegatesToOtpService() {
+        when(otpService.getDeliveryStatus("status-handle")).thenReturn(OtpDeliveryStatus.PENDING);
+
+        assertEquals(OtpDeliveryStatus.PENDING, authenticationService.getOtpDeliveryStatus("status-handle"));
+    }
+}
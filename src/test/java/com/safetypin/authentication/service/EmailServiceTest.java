@@ -3,9 +3,12 @@ package com.safetypin.authentication.service;
 import com.icegreen.greenmail.configuration.GreenMailConfiguration;
 import com.icegreen.greenmail.junit5.GreenMailExtension;
 import com.icegreen.greenmail.store.FolderException;
+import com.icegreen.greenmail.util.GreenMailUtil;
 import com.icegreen.greenmail.util.ServerSetup;
+import com.safetypin.authentication.service.email.EmailTemplateType;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -43,7 +46,7 @@ class EmailServiceTest {
     @Test
     void testSendOTPMail_Success() throws MessagingException, IOException, ExecutionException, InterruptedException {
         String otp = "123456";
-        CompletableFuture<Boolean> future = emailService.sendOTPMail("username@test.com", otp);
+        CompletableFuture<Boolean> future = emailService.sendOTPMail("username@test.com", otp, EmailTemplateType.OTP_VERIFICATION);
         boolean status = future.get();
         assertTrue(status);
 
@@ -51,7 +54,23 @@ class EmailServiceTest {
         assertEquals(1, receivedMessages.length);
         MimeMessage receivedMessage = receivedMessages[0];
         assertTrue(receivedMessage.getSubject().contains("OTP"));
-        assertTrue(receivedMessage.getContent().toString().contains(otp));
+        assertTrue(GreenMailUtil.getBody(receivedMessage).contains(otp));
+    }
+
+    @Test
+    void testSendOTPMail_PasswordResetTemplate() throws Exception {
+        CompletableFuture<Boolean> future = emailService.sendOTPMail("username@test.com", "654321",
+                EmailTemplateType.OTP_PASSWORD_RESET);
+        assertTrue(future.get());
+
+        MimeMessage receivedMessage = greenMail.getReceivedMessages()[0];
+        assertEquals("Password reset OTP for SafetyPin", receivedMessage.getSubject());
+        MimeMultipart body = (MimeMultipart) receivedMessage.getContent();
+        assertEquals(2, body.getCount());
+        assertTrue(body.getBodyPart(0).isMimeType("text/plain"));
+        assertTrue(body.getBodyPart(1).isMimeType("text/html"));
+        assertTrue(body.getBodyPart(1).getContent().toString().contains("reset your SafetyPin password"));
+        assertTrue(body.getBodyPart(1).getContent().toString().contains("654321"));
     }
 
     @Test
@@ -59,7 +78,7 @@ class EmailServiceTest {
         greenMail.stop();
 
         String otp = "123456";
-        CompletableFuture<Boolean> future = emailService.sendOTPMail("username@test.com", otp);
+        CompletableFuture<Boolean> future = emailService.sendOTPMail("username@test.com", otp, EmailTemplateType.OTP_VERIFICATION);
         boolean status = future.get();
         assertFalse(status);
     }
@@ -0,0 +1,264 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.model.Follow;
+import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.repository.FollowRepository;
+import com.safetypin.authentication.repository.UserRepository;
+import com.safetypin.authentication.service.email.EmailOutbox;
+import com.safetypin.authentication.service.email.EmailTemplateType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FollowerDigestServiceTest {
+    private static final LocalDateTime NIGHT = LocalDateTime.of(2025, 5, 1, 3, 0);
+
+    @Mock
+    private FollowRepository followRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private EmailOutbox emailOutbox;
+
+    private MeterRegistry meterRegistry;
+    // Runs the mails on the calling thread unless a test holds them back
+    private Executor executor = Runnable::run;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private FollowerDigestService service(LocalDateTime now, String start, String end) {
+        return service(now, ZoneOffset.UTC, start, end);
+    }
+
+    // now in UTC, the zone follow times are written in
+    private FollowerDigestService service(LocalDateTime now, ZoneId windowZone, String start, String end) {
+        Clock clock = Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        return new FollowerDigestService(followRepository, userRepository, emailService, emailOutbox, meterRegistry,
+                executor, clock, windowZone, LocalTime.parse(start), LocalTime.parse(end));
+    }
+
+    private static Object[] candidate(UUID id, String email, long count) {
+        return new Object[]{id, email, "Bob", null, count};
+    }
+
+    private void stubClaim(UUID userId, LocalDateTime now) {
+        when(userRepository.claimFollowerDigest(userId, now, now.minusHours(24).plusMinutes(30))).thenReturn(1);
+    }
+
+    private void stubFollower(UUID userId, String name) {
+        User follower = new User();
+        follower.setId(UUID.randomUUID());
+        follower.setName(name);
+        Follow follow = new Follow();
+        follow.setFollowerId(follower.getId());
+        follow.setFollowingId(userId);
+        when(followRepository.findTop3ByFollowingIdAndCreatedAtAfterAndCreatedAtLessThanEqualOrderByCreatedAtDesc(
+                eq(userId), any(), any())).thenReturn(List.of(follow));
+        when(userRepository.findAllById(List.of(follower.getId()))).thenReturn(List.of(follower));
+    }
+
+    @Test
+    void sendNextBatch_outsideWindow_sendsNothing() {
+        FollowerDigestService digests = service(NIGHT.withHour(12), "02:00", "05:00");
+
+        assertEquals(0, digests.sendNextBatch());
+        verifyNoInteractions(followRepository, emailService, emailOutbox);
+    }
+
+    @Test
+    void sendNextBatch_windowAcrossMidnight_runsAfterMidnight() {
+        FollowerDigestService digests = service(NIGHT.withHour(1), "23:00", "04:00");
+        when(followRepository.findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        assertEquals(0, digests.sendNextBatch());
+        verify(followRepository).findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void sendNextBatch_mailsQueued_skipsRun() {
+        FollowerDigestService digests = service(NIGHT, "02:00", "05:00");
+        when(emailOutbox.getDepth()).thenReturn(3L);
+
+        assertEquals(0, digests.sendNextBatch());
+        verifyNoInteractions(followRepository, emailService);
+    }
+
+    @Test
+    void sendNextBatch_sendsDigestAndMarksUser() throws MessagingException {
+        FollowerDigestService digests = service(NIGHT, "02:00", "05:00");
+        UUID userId = UUID.randomUUID();
+        List<Object[]> candidates = new ArrayList<>();
+        candidates.add(candidate(userId, "bob@example.com", 4));
+        when(followRepository.findFollowerDigestCandidates(eq(NIGHT.minusHours(24)), eq(NIGHT),
+                eq(NIGHT.minusHours(24).plusMinutes(30)), any(), any(Pageable.class))).thenReturn(candidates);
+        stubClaim(userId, NIGHT);
+        stubFollower(userId, "Alice");
+
+        assertEquals(1, digests.sendNextBatch());
+
+        verify(emailService).sendMail("bob@example.com", EmailTemplateType.FOLLOWER_DIGEST,
+                Map.of("name", "Bob", "followers", "Alice and 3 others"));
+        verify(userRepository, never()).releaseFollowerDigest(any(), any(), any());
+        assertEquals(1.0, meterRegistry.get("follower_digest_sent_total").counter().count());
+    }
+
+    @Test
+    void sendNextBatch_windowZoneDiffers_periodStaysInFollowTimeZone() {
+        // 20:00 UTC is 03:00 in Jakarta, inside the window there
+        LocalDateTime utcEvening = NIGHT.withHour(20);
+        FollowerDigestService digests = service(utcEvening, ZoneId.of("Asia/Jakarta"), "02:00", "05:00");
+        UUID userId = UUID.randomUUID();
+        List<Object[]> candidates = new ArrayList<>();
+        candidates.add(candidate(userId, "bob@example.com", 1));
+        when(followRepository.findFollowerDigestCandidates(eq(utcEvening.minusHours(24)), eq(utcEvening),
+                eq(utcEvening.minusHours(24).plusMinutes(30)), any(), any(Pageable.class))).thenReturn(candidates);
+        stubClaim(userId, utcEvening);
+        stubFollower(userId, "Alice");
+
+        assertEquals(1, digests.sendNextBatch());
+
+        // Stored as UTC local time, a Jakarta time would hide the next seven hours of follows
+        verify(userRepository).claimFollowerDigest(userId, utcEvening, utcEvening.minusHours(24).plusMinutes(30));
+        verify(followRepository)
+                .findTop3ByFollowingIdAndCreatedAtAfterAndCreatedAtLessThanEqualOrderByCreatedAtDesc(
+                        userId, utcEvening.minusHours(24), utcEvening);
+    }
+
+    @Test
+    void sendNextBatch_windowZoneDiffers_outsideWindowThere() {
+        // 03:00 UTC is 10:00 in Jakarta
+        FollowerDigestService digests = service(NIGHT, ZoneId.of("Asia/Jakarta"), "02:00", "05:00");
+
+        assertEquals(0, digests.sendNextBatch());
+        verifyNoInteractions(followRepository, emailService, emailOutbox);
+    }
+
+    @Test
+    void sendNextBatch_continuesAfterLastUserOfPreviousBatch() {
+        FollowerDigestService digests = service(NIGHT, "02:00", "05:00");
+        UUID userId = UUID.randomUUID();
+        List<Object[]> candidates = new ArrayList<>();
+        candidates.add(candidate(userId, "bob@example.com", 1));
+        when(followRepository.findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(candidates, List.of());
+        stubClaim(userId, NIGHT);
+        stubFollower(userId, "Alice");
+
+        digests.sendNextBatch();
+        digests.sendNextBatch();
+
+        verify(followRepository).findFollowerDigestCandidates(any(), any(), any(), eq(userId), any(Pageable.class));
+    }
+
+    @Test
+    void sendNextBatch_sendFails_countsFailureAndGivesClaimBack() throws MessagingException {
+        FollowerDigestService digests = service(NIGHT, "02:00", "05:00");
+        UUID userId = UUID.randomUUID();
+        List<Object[]> candidates = new ArrayList<>();
+        candidates.add(candidate(userId, "bob@example.com", 1));
+        when(followRepository.findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(candidates);
+        stubClaim(userId, NIGHT);
+        stubFollower(userId, "Alice");
+        doThrow(new MessagingException("down")).when(emailService).sendMail(anyString(), any(), any());
+
+        digests.sendNextBatch();
+
+        // Back to no digest sent, so the next window tries again
+        verify(userRepository).releaseFollowerDigest(userId, NIGHT, null);
+        assertEquals(1.0, meterRegistry.get("follower_digest_failed_total").counter().count());
+        assertEquals(0.0, meterRegistry.get("follower_digest_sent_total").counter().count());
+    }
+
+    @Test
+    void sendNextBatch_claimedByAnotherReplica_skipsUser() throws MessagingException {
+        FollowerDigestService digests = service(NIGHT, "02:00", "05:00");
+        UUID taken = UUID.randomUUID();
+        UUID free = UUID.randomUUID();
+        List<Object[]> candidates = new ArrayList<>();
+        candidates.add(candidate(taken, "taken@example.com", 1));
+        candidates.add(candidate(free, "bob@example.com", 1));
+        when(followRepository.findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(candidates);
+        when(userRepository.claimFollowerDigest(eq(taken), any(), any())).thenReturn(0);
+        stubClaim(free, NIGHT);
+        stubFollower(free, "Alice");
+
+        assertEquals(1, digests.sendNextBatch());
+
+        verify(emailService, never()).sendMail(eq("taken@example.com"), any(), any());
+        verify(emailService).sendMail(eq("bob@example.com"), any(), any());
+    }
+
+    @Test
+    void sendNextBatch_previousBatchStillSending_skipsRun() throws MessagingException {
+        List<Runnable> held = new ArrayList<>();
+        executor = held::add;
+        FollowerDigestService digests = service(NIGHT, "02:00", "05:00");
+        UUID userId = UUID.randomUUID();
+        List<Object[]> candidates = new ArrayList<>();
+        candidates.add(candidate(userId, "bob@example.com", 1));
+        when(followRepository.findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(candidates, List.of());
+        stubClaim(userId, NIGHT);
+        stubFollower(userId, "Alice");
+
+        // The mail is handed off, the scheduler thread does not wait for it
+        assertEquals(1, digests.sendNextBatch());
+        verify(emailService, never()).sendMail(anyString(), any(), any());
+        assertEquals(0, digests.sendNextBatch());
+        verify(followRepository, times(1)).findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class));
+
+        held.forEach(Runnable::run);
+        verify(emailService).sendMail(eq("bob@example.com"), any(), any());
+        digests.sendNextBatch();
+        verify(followRepository, times(2)).findFollowerDigestCandidates(any(), any(), any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void describeFollowers_namesUpToThreeAndCountsTheRest() {
+        assertEquals("Alice", FollowerDigestService.describeFollowers(List.of("Alice"), 1));
+        assertEquals("Alice and Bob", FollowerDigestService.describeFollowers(List.of("Alice", "Bob"), 2));
+        assertEquals("Alice, Bob and Carol",
+                FollowerDigestService.describeFollowers(List.of("Alice", "Bob", "Carol"), 3));
+        // The third follower has since deleted their account
+        assertEquals("Alice, Bob and 1 other", FollowerDigestService.describeFollowers(List.of("Alice", "Bob"), 3));
+        assertEquals("Alice, Bob and 8 others",
+                FollowerDigestService.describeFollowers(List.of("Alice", "Bob", "Carol"), 10));
+        assertEquals("Someone", FollowerDigestService.describeFollowers(List.of(), 1));
+        assertEquals("5 people", FollowerDigestService.describeFollowers(List.of(), 5));
+    }
+}
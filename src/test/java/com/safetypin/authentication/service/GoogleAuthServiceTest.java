@@ -14,7 +14,6 @@ import com.safetypin.authentication.dto.GoogleAuthDTO;
 import com.safetypin.authentication.exception.ApiException;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.exception.UserAlreadyExistsException;
-import com.safetypin.authentication.model.RefreshToken;
 import com.safetypin.authentication.model.User;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -58,10 +57,7 @@ class GoogleAuthServiceTest {
     private UserService userService;
 
     @Mock
-    private JwtService jwtService;
-
-    @Mock
-    private RefreshTokenService refreshTokenService;
+    private TokenIssuanceService tokenIssuanceService;
 
     @Mock
     private GoogleIdToken idToken;
@@ -158,13 +154,9 @@ class GoogleAuthServiceTest {
         savedUser.setId(testUserId);
         when(userService.save(any(User.class))).thenReturn(savedUser);
 
-        // Mock JWT generation
-        when(jwtService.generateToken(any(UUID.class))).thenReturn("test-jwt-token");
-
-        // Mock refresh token creation
-        RefreshToken mockRefreshToken = new RefreshToken();
-        mockRefreshToken.setToken(testRefreshToken);
-        when(refreshTokenService.createRefreshToken(any(UUID.class))).thenReturn(mockRefreshToken);
+        // Mock token issuance
+        when(tokenIssuanceService.issueTokens(any(User.class)))
+                .thenReturn(new AuthToken(testUserId, "test-jwt-token", testRefreshToken));
 
         // Execute
         AuthToken result = googleAuthService.authenticate(googleAuthDTO);
@@ -176,8 +168,7 @@ class GoogleAuthServiceTest {
         assertEquals(testRefreshToken, result.getRefreshToken());
         verify(userService).findByEmail("test@example.com");
         verify(userService).save(any(User.class));
-        verify(jwtService).generateToken(testUserId);
-        verify(refreshTokenService).createRefreshToken(testUserId);
+        verify(tokenIssuanceService).issueTokens(argThat(user -> testUserId.equals(user.getId())));
     }
 
     @Test
@@ -192,13 +183,9 @@ class GoogleAuthServiceTest {
         existingUser.setProvider("GOOGLE");
         when(userService.findByEmail("test@example.com")).thenReturn(Optional.of(existingUser));
 
-        // Mock JWT generation
-        when(jwtService.generateToken(any(UUID.class))).thenReturn("test-jwt-token");
-
-        // Mock refresh token creation
-        RefreshToken mockRefreshToken = new RefreshToken();
-        mockRefreshToken.setToken(testRefreshToken);
-        when(refreshTokenService.createRefreshToken(any(UUID.class))).thenReturn(mockRefreshToken);
+        // Mock token issuance
+        when(tokenIssuanceService.issueTokens(any(User.class)))
+                .thenReturn(new AuthToken(testUserId, "test-jwt-token", testRefreshToken));
 
         // Execute
         AuthToken result = googleAuthService.authenticate(googleAuthDTO);
@@ -210,8 +197,7 @@ class GoogleAuthServiceTest {
         assertEquals(testRefreshToken, result.getRefreshToken());
         verify(userService).findByEmail("test@example.com");
         verify(userService, never()).save(any(User.class));
-        verify(jwtService).generateToken(testUserId);
-        verify(refreshTokenService).createRefreshToken(testUserId);
+        verify(tokenIssuanceService).issueTokens(argThat(user -> testUserId.equals(user.getId())));
     }
 
     @Test
@@ -862,13 +848,9 @@ class GoogleAuthServiceTest {
         savedUser.setId(testUserId);
         when(userService.save(any(User.class))).thenReturn(savedUser);
 
-        // Mock JWT generation
-        when(jwtService.generateToken(any(UUID.class))).thenReturn("test-jwt-token");
-
-        // Mock refresh token creation
-        RefreshToken mockRefreshToken = new RefreshToken();
-        mockRefreshToken.setToken(testRefreshToken);
-        when(refreshTokenService.createRefreshToken(any(UUID.class))).thenReturn(mockRefreshToken);
+        // Mock token issuance
+        when(tokenIssuanceService.issueTokens(any(User.class)))
+                .thenReturn(new AuthToken(testUserId, "test-jwt-token", testRefreshToken));
 
         // Execute
         AuthToken result = googleAuthService.authenticate(googleAuthDTO);
@@ -879,7 +861,7 @@ class GoogleAuthServiceTest {
         assertEquals("test-jwt-token", result.getAccessToken());
         assertEquals(testRefreshToken, result.getRefreshToken());
         verify(userService).save(any(User.class));
-        verify(refreshTokenService).createRefreshToken(testUserId);
+        verify(tokenIssuanceService).issueTokens(argThat(user -> testUserId.equals(user.getId())));
     }
 
     @Test
@@ -960,13 +942,9 @@ class GoogleAuthServiceTest {
         savedUser.setId(testUserId);
         when(userService.save(any(User.class))).thenReturn(savedUser);
 
-        // Mock JWT generation
-        when(jwtService.generateToken(any(UUID.class))).thenReturn("test-jwt-token");
-
-        // Mock refresh token creation
-        RefreshToken mockRefreshToken = new RefreshToken();
-        mockRefreshToken.setToken(testRefreshToken);
-        when(refreshTokenService.createRefreshToken(any(UUID.class))).thenReturn(mockRefreshToken);
+        // Mock token issuance
+        when(tokenIssuanceService.issueTokens(any(User.class)))
+                .thenReturn(new AuthToken(testUserId, "test-jwt-token", testRefreshToken));
 
         // Execute
         AuthToken result = googleAuthService.authenticate(googleAuthDTO);
@@ -994,7 +972,7 @@ class GoogleAuthServiceTest {
         // Create a special test class that overrides fetchUserData
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1024,7 +1002,7 @@ class GoogleAuthServiceTest {
             // Create a special test class that overrides fetchUserData to test the error path
             class TestService extends GoogleAuthService {
                 public TestService() {
-                    super(userService, jwtService, refreshTokenService);
+                    super(userService, tokenIssuanceService);
                 }
 
                 @Override
@@ -1067,7 +1045,7 @@ class GoogleAuthServiceTest {
             // Create a special test class that overrides fetchUserData
             class TestService extends GoogleAuthService {
                 public TestService() {
-                    super(userService, jwtService, refreshTokenService);
+                    super(userService, tokenIssuanceService);
                 }
 
                 @Override
@@ -1119,7 +1097,7 @@ class GoogleAuthServiceTest {
         // Create a subclass that overrides the method to test
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1151,7 +1129,7 @@ class GoogleAuthServiceTest {
         // Create a subclass that overrides the method to throw an exception
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1181,7 +1159,7 @@ class GoogleAuthServiceTest {
         // Create a subclass that overrides the method to test
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1218,7 +1196,7 @@ class GoogleAuthServiceTest {
         // Create a subclass that overrides the method to throw an exception
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1245,7 +1223,7 @@ class GoogleAuthServiceTest {
         // Create a subclass that simulates HTTPS proxy configuration
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1302,7 +1280,7 @@ class GoogleAuthServiceTest {
         // Create a subclass that simulates HTTP proxy configuration
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1358,7 +1336,7 @@ class GoogleAuthServiceTest {
         // Create a subclass that simulates no proxy configuration
         class TestService extends GoogleAuthService {
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1494,7 +1472,7 @@ class GoogleAuthServiceTest {
             private final Logger logger = (Logger) LoggerFactory.getLogger(GoogleAuthService.class);
 
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1570,7 +1548,7 @@ class GoogleAuthServiceTest {
             private final Logger logger = (Logger) LoggerFactory.getLogger(GoogleAuthService.class);
 
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1647,7 +1625,7 @@ class GoogleAuthServiceTest {
             private final Logger logger = (Logger) LoggerFactory.getLogger(GoogleAuthService.class);
 
             public TestService() {
-                super(userService, jwtService, refreshTokenService);
+                super(userService, tokenIssuanceService);
             }
 
             @Override
@@ -1983,7 +1961,7 @@ class GoogleAuthServiceTest {
     @Test
     void testDirectOpenProxyConnection() throws Exception {
         // Create a real GoogleAuthService instance
-        GoogleAuthService service = new GoogleAuthService(userService, jwtService, refreshTokenService);
+        GoogleAuthService service = new GoogleAuthService(userService, tokenIssuanceService);
 
         // Create test URL 
         URL testUrl = URI.create("https://example.com").toURL();
@@ -4,13 +4,24 @@ import com.safetypin.authentication.dto.UserResponse;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
 import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.service.jwt.JwtKeyRing;
+import com.safetypin.authentication.service.jwt.SigningKey;
+import com.safetypin.authentication.service.jwt.TokenVersionRegistry;
+import com.safetypin.authentication.service.jwt.VerifiedTokenCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -32,7 +43,8 @@ class JwtServiceRS256Test {
 
         // Create JwtService instance with the test key pair
         String secretKey = "justanormalsecretkeyfortestingnothingsuspicioushere";
-        jwtService = new JwtService(secretKey, userService);
+        jwtService = new JwtService(JwtKeyRing.of(SigningKey.hmac(secretKey)), userService,
+                new VerifiedTokenCache(new SimpleMeterRegistry(), 100), new TokenVersionRegistry());
 
         // Create a proper mock for User
         mockUser = mock(User.class);
@@ -123,4 +135,75 @@ class JwtServiceRS256Test {
         // Verify userService was called exactly once after clearing invocations
         verify(userService, times(1)).findById(userId);
     }
+
+    private static KeyPair generateRsaKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private static KeyPair generateEcKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    private JwtService jwtServiceSigningWith(SigningKey activeKey, SigningKey... verificationKeys) {
+        return new JwtService(JwtKeyRing.of(activeKey, verificationKeys), userService,
+                new VerifiedTokenCache(new SimpleMeterRegistry(), 100), new TokenVersionRegistry());
+    }
+
+    private static String header(String token) {
+        return new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))));
+    }
+
+    @Test
+    void generateToken_withRsaKey_shouldSignWithRS256AndKid() throws Exception {
+        SigningKey rsaKey = SigningKey.fromKeyPair(generateRsaKeyPair(), SignatureAlgorithm.RS256);
+        JwtService rsaJwtService = jwtServiceSigningWith(rsaKey);
+        when(userService.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(mockUser.getRole()).thenReturn(Role.REGISTERED_USER);
+
+        String token = rsaJwtService.generateToken(userId);
+
+        assertTrue(header(token).contains("\"alg\":\"RS256\""));
+        assertTrue(header(token).contains("\"kid\":\"" + rsaKey.kid() + "\""));
+        assertEquals(userId.toString(), rsaJwtService.parseToken(token).getSubject());
+    }
+
+    @Test
+    void generateToken_withEcKey_shouldSignWithES256() throws Exception {
+        SigningKey ecKey = SigningKey.fromKeyPair(generateEcKeyPair(), SignatureAlgorithm.ES256);
+        JwtService ecJwtService = jwtServiceSigningWith(ecKey);
+        when(userService.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(mockUser.getRole()).thenReturn(Role.REGISTERED_USER);
+
+        String token = ecJwtService.generateToken(userId);
+
+        assertTrue(header(token).contains("\"alg\":\"ES256\""));
+        assertEquals(userId.toString(), ecJwtService.parseToken(token).getSubject());
+    }
+
+    @Test
+    void parseToken_afterSwitchingToRsa_shouldStillAcceptHmacTokens() throws Exception {
+        when(userService.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(mockUser.getRole()).thenReturn(Role.REGISTERED_USER);
+        String hmacToken = jwtService.generateToken(userId);
+
+        SigningKey hmacKey = SigningKey.hmac("justanormalsecretkeyfortestingnothingsuspicioushere");
+        SigningKey rsaKey = SigningKey.fromKeyPair(generateRsaKeyPair(), SignatureAlgorithm.RS256);
+        JwtService rsaJwtService = jwtServiceSigningWith(rsaKey, hmacKey);
+
+        assertEquals(userId.toString(), rsaJwtService.parseToken(hmacToken).getSubject());
+    }
+
+    @Test
+    void parseToken_shouldRejectTokenSignedWithUnknownKey() throws Exception {
+        when(userService.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(mockUser.getRole()).thenReturn(Role.REGISTERED_USER);
+        SigningKey otherKey = SigningKey.fromKeyPair(generateRsaKeyPair(), SignatureAlgorithm.RS256);
+        String foreignToken = jwtServiceSigningWith(otherKey).generateToken(userId);
+
+        assertThrows(JwtException.class, () -> jwtService.parseToken(foreignToken));
+    }
 }
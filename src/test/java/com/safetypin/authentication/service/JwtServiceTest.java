@@ -1,21 +1,38 @@
 package com.safetypin.authentication.service;
 
+import com.safetypin.authentication.dto.JwtVerificationResult;
 import com.safetypin.authentication.dto.UserResponse;
 import com.safetypin.authentication.exception.InvalidCredentialsException;
+import com.safetypin.authentication.model.Role;
 import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.service.jwt.VerificationMode;
+import com.safetypin.authentication.service.jwt.JwtKeyRing;
+import com.safetypin.authentication.service.jwt.SigningKey;
+import com.safetypin.authentication.service.jwt.TokenVersionRegistry;
+import com.safetypin.authentication.service.jwt.VerifiedTokenCache;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,13 +44,16 @@ class JwtServiceTest {
     @Mock
     private UserService userService;
     private JwtService jwtService;
+    private TokenVersionRegistry tokenVersionRegistry;
 
     @BeforeEach
     void setUp() {
 
         // Create JwtService instance with the mocked UserService and test key pair
         String secretKey = "justanormalsecretkeyfortestingnothingsuspicioushere";
-        jwtService = new JwtService(secretKey, userService);
+        tokenVersionRegistry = new TokenVersionRegistry();
+        jwtService = new JwtService(JwtKeyRing.of(SigningKey.hmac(secretKey)), userService,
+                new VerifiedTokenCache(new SimpleMeterRegistry(), 100), tokenVersionRegistry);
     }
 
     @Test
@@ -63,6 +83,16 @@ class JwtServiceTest {
         assertFalse(claims.getExpiration().before(new Date()));
     }
 
+    @Test
+    void generateToken_forLoadedUser_shouldNotQueryDatabase() {
+        String token = jwtService.generateToken(user(userId, "Loaded User"));
+
+        Claims claims = jwtService.parseToken(token);
+        assertEquals(userId.toString(), claims.getSubject());
+        assertEquals("Loaded User", claims.get("name"));
+        verifyNoInteractions(userService);
+    }
+
     @Test
     void parseToken_shouldDecodeValidToken() {
         // Setup mock user for token generation
@@ -160,7 +190,8 @@ class JwtServiceTest {
 
         // Create a new JwtService instance with a spy to mock parseToken
         JwtService spyJwtService = spy(
-                new JwtService("justanormalsecretkeyfortestingnothingsuspicioushere", userService));
+                new JwtService(JwtKeyRing.of(SigningKey.hmac("justanormalsecretkeyfortestingnothingsuspicioushere")), userService,
+                        new VerifiedTokenCache(new SimpleMeterRegistry(), 100), new TokenVersionRegistry()));
         doReturn(mockClaims).when(spyJwtService).parseToken(token);
 
         // Verify exception is thrown
@@ -170,4 +201,210 @@ class JwtServiceTest {
 
         assertEquals("Token expired", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getUserFromJwtToken_claimsOnly_shouldNotQueryDatabase() {
+        User user = new User();
+        user.setId(userId);
+        user.setName("Claims User");
+        user.setEmail("claims@example.com");
+        user.setProvider("EMAIL");
+        user.setRole(Role.MODERATOR);
+        user.setVerified(true);
+        when(userService.findById(userId)).thenReturn(Optional.of(user));
+
+        String token = jwtService.generateToken(userId);
+        clearInvocations(userService);
+
+        UserResponse result = jwtService.getUserFromJwtToken(token, VerificationMode.CLAIMS_ONLY);
+
+        assertEquals(userId, result.getId());
+        assertEquals("Claims User", result.getName());
+        assertEquals("claims@example.com", result.getEmail());
+        assertEquals("EMAIL", result.getProvider());
+        assertEquals(Role.MODERATOR, result.getRole());
+        assertTrue(result.isVerified());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void getUserFromJwtToken_claimsOnly_shouldFallBackToDatabaseForStaleToken() {
+        when(userService.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(mockUser.getRole()).thenReturn(Role.REGISTERED_USER);
+        when(mockUser.generateUserResponse()).thenReturn(mockUserResponse);
+        String token = jwtService.generateToken(userId);
+
+        // Pretend the token was issued 5 seconds ago with a 1 second freshness window
+        ReflectionTestUtils.setField(jwtService, "claimsOnlyMaxAgeSeconds", 1L);
+        Claims staleClaims = Jwts.claims(new HashMap<>(jwtService.parseToken(token)));
+        staleClaims.setIssuedAt(new Date(System.currentTimeMillis() - 5000));
+        JwtService spyJwtService = spy(jwtService);
+        doReturn(staleClaims).when(spyJwtService).parseToken(token);
+        clearInvocations(userService);
+
+        UserResponse result = spyJwtService.getUserFromJwtToken(token, VerificationMode.CLAIMS_ONLY);
+
+        assertSame(mockUserResponse, result);
+        verify(userService).findById(userId);
+    }
+
+    @Test
+    void parseToken_shouldAnswerRepeatedVerificationsFromCache() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(new SimpleMeterRegistry(), 100);
+        JwtService cachingJwtService = new JwtService(
+                JwtKeyRing.of(SigningKey.hmac("justanormalsecretkeyfortestingnothingsuspicioushere")), userService, cache,
+                new TokenVersionRegistry());
+        when(userService.findById(userId)).thenReturn(Optional.of(mockUser));
+        when(mockUser.getRole()).thenReturn(Role.REGISTERED_USER);
+        String token = cachingJwtService.generateToken(userId);
+
+        Claims first = cachingJwtService.parseToken(token);
+        Claims second = cachingJwtService.parseToken(token);
+
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+    }
+
+    private User user(UUID id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setEmail(name.toLowerCase().replace(' ', '.') + "@example.com");
+        user.setProvider("EMAIL");
+        user.setRole(Role.REGISTERED_USER);
+        user.setVerified(true);
+        return user;
+    }
+
+    @Test
+    void verifyTokens_shouldLoadAllUsersWithOneQuery() {
+        UUID otherUserId = UUID.randomUUID();
+        User first = user(userId, "First User");
+        User second = user(otherUserId, "Second User");
+        when(userService.findById(userId)).thenReturn(Optional.of(first));
+        when(userService.findById(otherUserId)).thenReturn(Optional.of(second));
+        String firstToken = jwtService.generateToken(userId);
+        String secondToken = jwtService.generateToken(otherUserId);
+        // A second session of the same user
+        String firstAgain = Jwts.builder()
+                .setSubject(userId.toString())
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(Keys.hmacShaKeyFor(
+                        "justanormalsecretkeyfortestingnothingsuspicioushere".getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+        clearInvocations(userService);
+        when(userService.findAllById(anyList())).thenReturn(List.of(first, second));
+
+        Map<String, JwtVerificationResult> results = jwtService.verifyTokens(
+                List.of(firstToken, secondToken, firstAgain, firstToken, "invalid.token.string"),
+                VerificationMode.AUTHORITATIVE);
+
+        assertEquals(List.of(firstToken, secondToken, firstAgain, "invalid.token.string"),
+                List.copyOf(results.keySet()));
+        assertEquals("First User", results.get(firstToken).getUser().getName());
+        assertEquals("Second User", results.get(secondToken).getUser().getName());
+        assertEquals(userId, results.get(firstAgain).getUser().getId());
+        assertFalse(results.get("invalid.token.string").isValid());
+        assertEquals("Invalid token", results.get("invalid.token.string").getMessage());
+        verify(userService).findAllById(List.of(userId, otherUserId));
+        verify(userService, never()).findById(any());
+    }
+
+    @Test
+    void verifyTokens_shouldReportMissingUsersAndExpiredTokens() {
+        when(userService.findById(userId)).thenReturn(Optional.of(user(userId, "Deleted User")));
+        String token = jwtService.generateToken(userId);
+        String expired = Jwts.builder()
+                .setSubject(userId.toString())
+                .setExpiration(new Date(System.currentTimeMillis() - 60000))
+                .signWith(Keys.hmacShaKeyFor(
+                        "justanormalsecretkeyfortestingnothingsuspicioushere".getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+        when(userService.findAllById(anyList())).thenReturn(List.of());
+
+        Map<String, JwtVerificationResult> results = jwtService.verifyTokens(
+                List.of(token, expired), VerificationMode.AUTHORITATIVE);
+
+        assertEquals("User not found", results.get(token).getMessage());
+        assertEquals("Token expired", results.get(expired).getMessage());
+        assertNull(results.get(expired).getUser());
+    }
+
+    @Test
+    void verifyTokens_claimsOnly_shouldNotQueryDatabase() {
+        when(userService.findById(userId)).thenReturn(Optional.of(user(userId, "Claims User")));
+        String token = jwtService.generateToken(userId);
+        clearInvocations(userService);
+
+        Map<String, JwtVerificationResult> results = jwtService.verifyTokens(
+                List.of(token), VerificationMode.CLAIMS_ONLY);
+
+        assertTrue(results.get(token).isValid());
+        assertEquals("Claims User", results.get(token).getUser().getName());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void verifyTokens_shouldRejectOversizedBatch() {
+        ReflectionTestUtils.setField(jwtService, "batchMaxSize", 2);
+        List<String> tokens = List.of("a", "b", "c");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> jwtService.verifyTokens(tokens, VerificationMode.AUTHORITATIVE));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void getUserFromJwtToken_claimsOnly_shouldRejectRevokedTokenWithoutQuery() {
+        String token = jwtService.generateToken(user(userId, "Revoked User"));
+        tokenVersionRegistry.revoke(userId, 1, System.currentTimeMillis() + 60_000);
+
+        InvalidCredentialsException e = assertThrows(InvalidCredentialsException.class,
+                () -> jwtService.getUserFromJwtToken(token, VerificationMode.CLAIMS_ONLY));
+
+        assertEquals("Token revoked", e.getMessage());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void getUserFromJwtToken_shouldAcceptTokensIssuedAfterRevocation() {
+        User user = user(userId, "Fresh User");
+        user.setTokenVersion(1);
+        tokenVersionRegistry.revoke(userId, 1, System.currentTimeMillis() + 60_000);
+        String token = jwtService.generateToken(user);
+
+        UserResponse result = jwtService.getUserFromJwtToken(token, VerificationMode.CLAIMS_ONLY);
+
+        assertEquals(userId, result.getId());
+    }
+
+    @Test
+    void getUserFromJwtToken_authoritative_shouldRejectTokenOlderThanStoredVersion() {
+        // Revoked on another instance, this registry has not seen it
+        String token = jwtService.generateToken(user(userId, "Moved On"));
+        User stored = user(userId, "Moved On");
+        stored.setTokenVersion(2);
+        when(userService.findById(userId)).thenReturn(Optional.of(stored));
+
+        InvalidCredentialsException e = assertThrows(InvalidCredentialsException.class,
+                () -> jwtService.getUserFromJwtToken(token, VerificationMode.AUTHORITATIVE));
+
+        assertEquals("Token revoked", e.getMessage());
+    }
+
+    @Test
+    void verifyTokens_shouldReportRevokedTokens() {
+        UUID otherId = UUID.randomUUID();
+        String revoked = jwtService.generateToken(user(userId, "Revoked User"));
+        String valid = jwtService.generateToken(user(otherId, "Valid User"));
+        tokenVersionRegistry.revoke(userId, TokenVersionRegistry.REVOKED, System.currentTimeMillis() + 60_000);
+
+        Map<String, JwtVerificationResult> results = jwtService.verifyTokens(
+                List.of(revoked, valid), VerificationMode.CLAIMS_ONLY);
+
+        assertFalse(results.get(revoked).isValid());
+        assertEquals("Token revoked", results.get(revoked).getMessage());
+        assertTrue(results.get(valid).isValid());
+        verifyNoInteractions(userService);
+    }
+}
@@ -1,30 +1,47 @@
 package com.safetypin.authentication.service;
 
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
 import com.safetypin.authentication.exception.OTPException;
+import com.safetypin.authentication.exception.RateLimitExceededException;
+import com.safetypin.authentication.security.SecureTokenGenerator;
+import com.safetypin.authentication.service.email.EmailDeliveryEvent;
+import com.safetypin.authentication.service.email.EmailOutbox;
+import com.safetypin.authentication.service.email.EmailTemplateType;
+import com.safetypin.authentication.service.otp.InMemoryOtpStore;
+import com.safetypin.authentication.service.otp.OtpRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.time.LocalDateTime;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class OTPServiceTest {
-    @InjectMocks
     private OTPService otpService;
 
     @Mock
-    private EmailService emailService;
+    private EmailOutbox emailOutbox;
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private MeterRegistry meterRegistry;
+    private InMemoryOtpStore otpStore;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        otpStore = new InMemoryOtpStore(meterRegistry, 3, clock::get);
+        otpService = new OTPService(emailOutbox, new SecureTokenGenerator(1), otpStore,
+                new OtpRateLimiter(meterRegistry, 2, 60_000, 100, 1, clock::get));
+    }
 
     /**
      * Helper method to generate an OTP different from the input
@@ -39,20 +56,19 @@ class OTPServiceTest {
 
     @Test
     void testGenerateOTP() {
-        when(emailService.sendOTPMail(anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(true));
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
         String generatedOTP = otpService.generateOTP(email);
 
         assertNotNull(generatedOTP, "Generated OTP should not be null");
         assertEquals(6, generatedOTP.length(), "OTP should be 6 digits long");
+        assertTrue(generatedOTP.chars().allMatch(Character::isDigit), "OTP should only contain digits");
     }
 
     @Test
     void testVerifyOTPWrongOtp() {
-        when(emailService.sendOTPMail(anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(true));
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
         String generatedOTP = otpService.generateOTP(email);
@@ -66,8 +82,7 @@ class OTPServiceTest {
 
     @Test
     void testMultipleOTPGenerations() {
-        when(emailService.sendOTPMail(anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(true));
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
         String firstOTP = otpService.generateOTP(email);
@@ -78,8 +93,7 @@ class OTPServiceTest {
 
     @Test
     void testVerifyOTPAfterSecondGeneration() {
-        when(emailService.sendOTPMail(anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(true));
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
         String firstOTP = otpService.generateOTP(email);
@@ -94,8 +108,7 @@ class OTPServiceTest {
 
     @Test
     void testVerifyOTPMultipleTimes() {
-        when(emailService.sendOTPMail(anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(true));
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
         String otp = otpService.generateOTP(email);
@@ -119,35 +132,19 @@ class OTPServiceTest {
     }
 
     @Test
-    void testOTPExpiration() throws Exception {
-        when(emailService.sendOTPMail(anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(true));
+    void testOTPExpiration() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
-        String otp = otpService.generateOTP(email);
+        OTPService.IssuedOtp issued = otpService.issueOTP(email, EmailTemplateType.OTP_VERIFICATION);
 
-        // Access the private otpStorage field via reflection.
-        java.lang.reflect.Field otpStorageField = OTPService.class.getDeclaredField("otpStorage");
-        otpStorageField.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        ConcurrentHashMap<String, Object> otpStorage = (ConcurrentHashMap<String, Object>) otpStorageField.get(otpService);
-
-        // Retrieve the current OTPDetails instance.
-        Object oldOtpDetails = otpStorage.get(email);
-        assertNotNull(oldOtpDetails, "OTPDetails instance should exist");
-
-        // Use reflection to get the private constructor of OTPDetails.
-        Class<?> otpDetailsClass = oldOtpDetails.getClass();
-        Constructor<?> constructor = otpDetailsClass.getDeclaredConstructor(String.class, LocalDateTime.class);
-        constructor.setAccessible(true);
-        // Create a new OTPDetails instance with an expired time (3 minutes ago).
-        Object expiredOtpDetails = constructor.newInstance(otp, LocalDateTime.now().minusMinutes(3));
-        // Replace the old OTPDetails with the expired one.
-        otpStorage.put(email, expiredOtpDetails);
+        // 3 minutes later
+        clock.addAndGet(180_000);
 
         // Now verification should fail because the OTP is expired.
-        boolean result = otpService.verifyOTP(email, otp);
+        boolean result = otpService.verifyOTP(email, issued.otp());
         assertFalse(result, "The OTP should be expired and verification should fail");
+        assertEquals(OtpDeliveryStatus.NONE, otpService.getDeliveryStatus(issued.statusHandle()));
     }
 
     @Test
@@ -158,59 +155,74 @@ class OTPServiceTest {
     }
 
     @Test
-    void testGenerateOTPEmailServiceReturnsFalse() {
-        // Mock email service to return false
-        when(emailService.sendOTPMail(anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(false));
+    void testGenerateOTPMailFailed() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
+        OTPService.IssuedOtp issued = otpService.issueOTP(email, EmailTemplateType.OTP_VERIFICATION);
+        otpService.onEmailDelivery(
+                new EmailDeliveryEvent(email, issued.otp(), EmailTemplateType.OTP_VERIFICATION, false));
 
-        // Verify that OTPException is thrown
-        OTPException exception = assertThrows(OTPException.class, () -> {
-            otpService.generateOTP(email);
-        }, "Should throw OTPException when email service returns false");
-
-        assertEquals("Failed to send OTP", exception.getMessage());
+        // The OTP stays valid, the client is told to ask for a new mail
+        assertEquals(OtpDeliveryStatus.FAILED, otpService.getDeliveryStatus(issued.statusHandle()));
+        assertTrue(otpService.verifyOTP(email, issued.otp()));
     }
 
     @Test
-    void testGenerateOTPInterruptedException() {
-        // Mock email service to throw InterruptedException
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-        future.completeExceptionally(new InterruptedException("Test interrupted"));
-        when(emailService.sendOTPMail(anyString(), anyString())).thenReturn(future);
+    void testGenerateOTPReturnsBeforeMailIsSent() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
+        OTPService.IssuedOtp issued = otpService.issueOTP(email, EmailTemplateType.OTP_VERIFICATION);
+        assertEquals(OtpDeliveryStatus.PENDING, otpService.getDeliveryStatus(issued.statusHandle()));
+        verify(emailOutbox).enqueue(email, issued.otp(), EmailTemplateType.OTP_VERIFICATION, 120_000);
 
-        // Verify that OTPException is thrown
-        OTPException exception = assertThrows(OTPException.class, () -> {
-            otpService.generateOTP(email);
-        }, "Should throw OTPException when InterruptedException occurs");
+        otpService.onEmailDelivery(
+                new EmailDeliveryEvent(email, issued.otp(), EmailTemplateType.OTP_VERIFICATION, true));
+        assertEquals(OtpDeliveryStatus.SENT, otpService.getDeliveryStatus(issued.statusHandle()));
+    }
 
-        assertTrue(exception.getMessage().contains("Failed to send OTP"));
+    @Test
+    void testGenerateOTPMailQueueFull() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(false);
 
-        // Verify that thread was interrupted
-        assertTrue(Thread.currentThread().isInterrupted(), "Thread should be interrupted");
+        String email = "user@example.com";
+        OTPException exception = assertThrows(OTPException.class, () -> otpService.generateOTP(email));
 
-        // Clear the interrupted status for other tests
-        Thread.interrupted();
+        assertTrue(exception.getMessage().contains("Failed to send OTP"));
     }
 
     @Test
-    void testGenerateOTPExecutionException() {
-        // Mock email service to throw ExecutionException
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-        future.completeExceptionally(new ExecutionException("Test execution failed", new RuntimeException("Email service error")));
-        when(emailService.sendOTPMail(anyString(), anyString())).thenReturn(future);
+    void testDeliveryOfReplacedOTPIsIgnored() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
 
         String email = "user@example.com";
+        OTPService.IssuedOtp first = otpService.issueOTP(email, EmailTemplateType.OTP_VERIFICATION);
+        OTPService.IssuedOtp second = otpService.issueOTP(email, EmailTemplateType.OTP_VERIFICATION);
+        assumeFalse(first.otp().equals(second.otp()));
+
+        // The first mail failing late says nothing about the OTP that replaced it
+        otpService.onEmailDelivery(
+                new EmailDeliveryEvent(email, first.otp(), EmailTemplateType.OTP_VERIFICATION, false));
+        assertEquals(OtpDeliveryStatus.PENDING, otpService.getDeliveryStatus(second.statusHandle()));
+        assertEquals(OtpDeliveryStatus.NONE, otpService.getDeliveryStatus(first.statusHandle()));
+        otpService.onEmailDelivery(
+                new EmailDeliveryEvent(email, second.otp(), EmailTemplateType.OTP_VERIFICATION, true));
+        assertEquals(OtpDeliveryStatus.SENT, otpService.getDeliveryStatus(second.statusHandle()));
+    }
 
-        // Verify that OTPException is thrown
-        OTPException exception = assertThrows(OTPException.class, () -> {
-            otpService.generateOTP(email);
-        }, "Should throw OTPException when ExecutionException occurs");
+    @Test
+    void testDeliveryStatusWithoutOTP() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
+        String email = "user@example.com";
 
-        assertTrue(exception.getMessage().contains("Failed to send OTP"));
+        assertEquals(OtpDeliveryStatus.NONE, otpService.getDeliveryStatus("unknown-handle"));
+
+        OTPService.IssuedOtp issued = otpService.issueOTP(email, EmailTemplateType.OTP_VERIFICATION);
+        // The address itself is not a handle
+        assertEquals(OtpDeliveryStatus.NONE, otpService.getDeliveryStatus(email));
+        otpService.verifyOTP(email, issued.otp());
+        assertEquals(OtpDeliveryStatus.NONE, otpService.getDeliveryStatus(issued.statusHandle()));
     }
 
     @Test
@@ -223,7 +235,7 @@ class OTPServiceTest {
     }
 
     @Test
-    void testVerifyResetToken_Success() throws Exception {
+    void testVerifyResetToken_Success() {
         String email = "test@example.com";
         String resetToken = otpService.generateResetToken(email);
 
@@ -231,13 +243,8 @@ class OTPServiceTest {
         assertTrue(isValid, "Reset token should be valid");
 
         // Verify that the token has been removed after verification
-        Field resetTokenStorageField = OTPService.class.getDeclaredField("resetTokenStorage");
-        resetTokenStorageField.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        ConcurrentHashMap<String, Object> resetTokenStorage =
-                (ConcurrentHashMap<String, Object>) resetTokenStorageField.get(otpService);
-
-        assertFalse(resetTokenStorage.containsKey(resetToken), "Token should be removed after verification");
+        assertFalse(otpService.verifyResetToken(resetToken, email), "Token should be removed after verification");
+        assertEquals(0, meterRegistry.get("expiring_store_entries").tag("store", "reset_token").gauge().value());
     }
 
     @Test
@@ -250,37 +257,57 @@ class OTPServiceTest {
     }
 
     @Test
-    void testVerifyResetToken_Expired() throws Exception {
+    void testVerifyResetToken_Expired() {
         String email = "test@example.com";
         String resetToken = otpService.generateResetToken(email);
 
-        // Access the private resetTokenStorage field via reflection
-        Field resetTokenStorageField = OTPService.class.getDeclaredField("resetTokenStorage");
-        resetTokenStorageField.setAccessible(true);
-        @SuppressWarnings("unchecked")
-        ConcurrentHashMap<String, Object> resetTokenStorage =
-                (ConcurrentHashMap<String, Object>) resetTokenStorageField.get(otpService);
-
-        // Get the ResetTokenDetails class
-        Object tokenDetails = resetTokenStorage.get(resetToken);
-        assertNotNull(tokenDetails, "Token details should exist");
-
-        // Find the class and constructor of ResetTokenDetails
-        Class<?> resetTokenDetailsClass = tokenDetails.getClass();
-        Constructor<?> constructor = resetTokenDetailsClass.getDeclaredConstructor(String.class, LocalDateTime.class);
-        constructor.setAccessible(true);
-
-        // Create a new ResetTokenDetails instance with an expired time (4 minutes ago)
-        Object expiredTokenDetails = constructor.newInstance(email, LocalDateTime.now().minusMinutes(4));
-
-        // Replace the original token details with the expired one
-        resetTokenStorage.put(resetToken, expiredTokenDetails);
+        // 4 minutes later
+        clock.addAndGet(240_000);
 
         // Verify that the token is now expired
         boolean isValid = otpService.verifyResetToken(resetToken, email);
         assertFalse(isValid, "Reset token should be expired");
     }
 
+    @Test
+    void testSweepReclaimsAbandonedEntries() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
+        otpService.generateOTP("abandoned1@example.com");
+        otpService.generateOTP("abandoned2@example.com");
+        otpService.generateResetToken("abandoned1@example.com");
+
+        clock.addAndGet(60_000);
+        otpStore.sweepExpired();
+        assertEquals(2, meterRegistry.get("expiring_store_entries").tag("store", "otp").gauge().value());
+
+        clock.addAndGet(200_000);
+        otpStore.sweepExpired();
+
+        assertEquals(0, meterRegistry.get("expiring_store_entries").tag("store", "otp").gauge().value());
+        assertEquals(0, meterRegistry.get("expiring_store_entries").tag("store", "reset_token").gauge().value());
+        assertEquals(2, meterRegistry.get("expiring_store_expired_total").tag("store", "otp").functionCounter().count());
+    }
+
+    @Test
+    void testGenerateOTPStoreFull() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
+        otpService.generateOTP("user1@example.com");
+        otpService.generateOTP("user2@example.com");
+        otpService.generateOTP("user3@example.com");
+
+        OTPException exception = assertThrows(OTPException.class,
+                () -> otpService.generateOTP("user4@example.com"));
+        assertEquals("Too many pending verifications, please try again later", exception.getMessage());
+        // Pending users can still ask for a new OTP
+        assertNotNull(otpService.generateOTP("user1@example.com"));
+        assertEquals(1, meterRegistry.get("expiring_store_rejected_total").tag("store", "otp").functionCounter().count());
+
+        // Room again once the old ones expire
+        clock.addAndGet(180_000);
+        otpStore.sweepExpired();
+        assertNotNull(otpService.generateOTP("user4@example.com"));
+    }
+
     @Test
     void testVerifyResetToken_NotFound() {
         String nonExistentToken = "non-existent-token";
@@ -289,4 +316,20 @@ class OTPServiceTest {
         boolean isValid = otpService.verifyResetToken(nonExistentToken, email);
         assertFalse(isValid, "Verification should fail for non-existent token");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGenerateOTPRateLimited() {
+        when(emailOutbox.enqueue(anyString(), anyString(), any(), anyLong())).thenReturn(true);
+        String email = "user@example.com";
+        otpService.generateOTP(email);
+        String lastOtp = otpService.generateOTP(email);
+
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> otpService.generateOTP(email));
+
+        assertEquals(60, e.getRetryAfterSeconds());
+        verify(emailOutbox, times(2)).enqueue(anyString(), anyString(), any(), anyLong());
+        // The limited request did not replace the OTP that was sent
+        assertTrue(otpService.verifyOTP(email, lastOtp));
+    }
+}
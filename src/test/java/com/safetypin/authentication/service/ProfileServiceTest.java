@@ -372,6 +372,25 @@ class ProfileServiceTest {
             verify(userService, times(1)).save(any(User.class));
         }
 
+        @Test
+        void updateProfile_WithFollowerDigestEnabled_UpdatesOptIn() {
+            // Arrange
+            when(userService.findById(userId)).thenReturn(Optional.of(testUser));
+            when(userService.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            UpdateProfileRequest request = new UpdateProfileRequest();
+            request.setFollowerDigestEnabled(true);
+
+            // Act
+            profileService.updateProfile(userId, request);
+
+            // Assert
+            ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
+            verify(userService).save(userCaptor.capture());
+            assertTrue(userCaptor.getValue().isFollowerDigestEnabled());
+            assertEquals("testtwitter", userCaptor.getValue().getTwitter());
+        }
+
         @Test
         void updateProfile_WithNameField_UpdatesUserName() {
             // Arrange
@@ -0,0 +1,103 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.model.RefreshToken;
+import com.safetypin.authentication.model.Role;
+import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.repository.RefreshTokenRepository;
+import com.safetypin.authentication.repository.UserRepository;
+import com.safetypin.authentication.security.TokenHashing;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Import(RefreshTokenHashMigration.class)
+class RefreshTokenHashMigrationTest {
+
+    @Autowired
+    private RefreshTokenHashMigration migration;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    // DDL is not rolled back with the test transaction
+    @AfterEach
+    void dropLegacyColumn() {
+        jdbcTemplate.execute("ALTER TABLE refresh_tokens DROP COLUMN IF EXISTS token");
+    }
+
+    private UUID insertLegacyToken(UUID userId, String token) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO refresh_tokens (id, token, user_id, expiry_time) VALUES (?, ?, ?, ?)",
+                id, token, userId, Timestamp.from(Instant.now().plusSeconds(60)));
+        return id;
+    }
+
+    @Test
+    void migrate_withoutLegacyColumn_doesNothing() {
+        assertDoesNotThrow(migration::migrate);
+    }
+
+    @Test
+    void migrate_withNullableLegacyColumn_doesNotAlterTable() {
+        jdbcTemplate.execute("ALTER TABLE refresh_tokens ADD COLUMN token VARCHAR(255)");
+        JdbcTemplate spiedTemplate = spy(jdbcTemplate);
+
+        new RefreshTokenHashMigration(spiedTemplate).migrate();
+
+        verify(spiedTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void migrate_failsStartupWhenConstraintCannotBeDropped() {
+        jdbcTemplate.execute("ALTER TABLE refresh_tokens ADD COLUMN token VARCHAR(255) NOT NULL DEFAULT ''");
+        JdbcTemplate spiedTemplate = spy(jdbcTemplate);
+        doThrow(new DataAccessResourceFailureException("lock timeout")).when(spiedTemplate).execute(anyString());
+
+        RefreshTokenHashMigration failing = new RefreshTokenHashMigration(spiedTemplate);
+
+        assertThrows(IllegalStateException.class, failing::migrate);
+    }
+
+    @Test
+    void migrate_hashesPlaintextTokens() {
+        // Schema as it was before tokens were hashed
+        jdbcTemplate.execute("ALTER TABLE refresh_tokens ADD COLUMN token VARCHAR(255) NOT NULL DEFAULT ''");
+        User user = new User();
+        user.setEmail("legacy@example.com");
+        user.setName("Legacy User");
+        user.setRole(Role.REGISTERED_USER);
+        user = userRepository.saveAndFlush(user);
+        UUID firstId = insertLegacyToken(user.getId(), "legacy-token-1");
+        insertLegacyToken(user.getId(), "legacy-token-2");
+
+        migration.migrate();
+
+        RefreshToken migrated = refreshTokenRepository.findByTokenHash(
+                TokenHashing.sha256("legacy-token-1"));
+        assertNotNull(migrated);
+        assertEquals(firstId, migrated.getId());
+        assertNotNull(refreshTokenRepository.findByTokenHash(TokenHashing.sha256("legacy-token-2")));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM refresh_tokens WHERE token IS NOT NULL", Integer.class));
+        // Rows created from now on carry no plaintext at all
+        jdbcTemplate.update("INSERT INTO refresh_tokens (id, token_hash, user_id, expiry_time) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID(), TokenHashing.sha256("new-token"), user.getId(),
+                Timestamp.from(Instant.now().plusSeconds(60)));
+    }
+}
@@ -0,0 +1,125 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenPurgerTest {
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private MeterRegistry meterRegistry;
+    private RefreshTokenPurger purger;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        purger = new RefreshTokenPurger(refreshTokenRepository, meterRegistry);
+        ReflectionTestUtils.setField(purger, "batchSize", 2);
+        ReflectionTestUtils.setField(purger, "maxBatches", 3);
+        ReflectionTestUtils.setField(purger, "pauseMillis", 0L);
+    }
+
+    private static List<UUID> ids(int count) {
+        return Stream.generate(UUID::randomUUID).limit(count).toList();
+    }
+
+    private double purgedTotal() {
+        return meterRegistry.get("refresh_tokens_purged_total").counter().count();
+    }
+
+    @Test
+    void purgeExpired_nothingExpired_deletesNothing() {
+        when(refreshTokenRepository.findExpiredIds(any(Instant.class), any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, purger.purgeExpired());
+
+        verify(refreshTokenRepository, never()).deleteTokensByIdIn(anyList());
+        assertEquals(0, purgedTotal());
+        assertEquals(0, meterRegistry.get("refresh_tokens_purge_lag_seconds").gauge().value());
+    }
+
+    @Test
+    void purgeExpired_stopsAfterAShortBatch() {
+        List<UUID> first = ids(2);
+        List<UUID> second = ids(1);
+        when(refreshTokenRepository.findExpiredIds(any(Instant.class), any(Pageable.class)))
+                .thenReturn(first, second);
+        when(refreshTokenRepository.deleteTokensByIdIn(first)).thenReturn(2);
+        when(refreshTokenRepository.deleteTokensByIdIn(second)).thenReturn(1);
+
+        assertEquals(3, purger.purgeExpired());
+
+        verify(refreshTokenRepository, times(2)).findExpiredIds(any(Instant.class), any(Pageable.class));
+        assertEquals(3, purgedTotal());
+    }
+
+    @Test
+    void purgeExpired_boundedByMaxBatches_reportsLag() {
+        when(refreshTokenRepository.findExpiredIds(any(Instant.class), any(Pageable.class)))
+                .thenAnswer(invocation -> ids(2));
+        when(refreshTokenRepository.deleteTokensByIdIn(anyList())).thenReturn(2);
+        when(refreshTokenRepository.findEarliestExpiryTime()).thenReturn(Instant.now().minusSeconds(600));
+
+        assertEquals(6, purger.purgeExpired());
+
+        verify(refreshTokenRepository, times(3)).deleteTokensByIdIn(anyList());
+        assertEquals(6, purgedTotal());
+        assertTrue(purger.getLagSeconds() >= 600);
+        assertEquals(purger.getLagSeconds(), meterRegistry.get("refresh_tokens_purge_lag_seconds").gauge().value());
+    }
+
+    @Test
+    void purgeExpired_countsRowsActuallyDeleted() {
+        // Another instance may have deleted some of the batch first
+        when(refreshTokenRepository.findExpiredIds(any(Instant.class), any(Pageable.class))).thenReturn(ids(1));
+        when(refreshTokenRepository.deleteTokensByIdIn(anyList())).thenReturn(0);
+
+        assertEquals(0, purger.purgeExpired());
+        assertEquals(0, purgedTotal());
+    }
+
+    @Test
+    void purgeExpired_unexpiredTokensOnly_noLag() {
+        when(refreshTokenRepository.findExpiredIds(any(Instant.class), any(Pageable.class))).thenReturn(List.of());
+        when(refreshTokenRepository.findEarliestExpiryTime()).thenReturn(Instant.now().plusSeconds(600));
+
+        purger.purgeExpired();
+
+        assertEquals(0, purger.getLagSeconds());
+    }
+
+    @Test
+    void purgeExpired_interrupted_stopsEarly() {
+        ReflectionTestUtils.setField(purger, "pauseMillis", 10L);
+        when(refreshTokenRepository.findExpiredIds(any(Instant.class), any(Pageable.class)))
+                .thenAnswer(invocation -> ids(2));
+        when(refreshTokenRepository.deleteTokensByIdIn(anyList())).thenReturn(2);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(2, purger.purgeExpired());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
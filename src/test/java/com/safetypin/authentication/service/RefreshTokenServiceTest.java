@@ -1,22 +1,32 @@
 package com.safetypin.authentication.service;
 
+import com.safetypin.authentication.metrics.RefreshTokenMetrics;
 import com.safetypin.authentication.model.RefreshToken;
 import com.safetypin.authentication.model.User;
 import com.safetypin.authentication.repository.RefreshTokenRepository;
 import com.safetypin.authentication.repository.UserRepository;
+import com.safetypin.authentication.security.SecureTokenGenerator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import static com.safetypin.authentication.security.TokenHashing.sha256;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +38,9 @@ class RefreshTokenServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private RefreshTokenMetrics refreshTokenMetrics;
+
     private RefreshTokenService refreshTokenService;
 
     private User testUser;
@@ -36,7 +49,8 @@ class RefreshTokenServiceTest {
 
     @BeforeEach
     void setUp() {
-        refreshTokenService = new RefreshTokenService(refreshTokenRepository, userRepository);
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, userRepository, refreshTokenMetrics,
+                new SecureTokenGenerator(1));
 
         // Setup test user
         userId = UUID.randomUUID();
@@ -59,141 +73,222 @@ class RefreshTokenServiceTest {
     }
 
     @Test
-    void createRefreshToken_Success() {
-        // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(testRefreshToken);
+    void createRefreshToken_ForLoadedUser_SkipsUserLookup() {
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        RefreshToken result = refreshTokenService.createRefreshToken(testUser);
+
+        assertEquals(testUser, result.getUser());
+        assertTrue(result.getToken().length() > 40);
+        // Sent back as a query parameter, so only URL-safe characters
+        assertTrue(result.getToken().matches("[A-Za-z0-9_-]+"));
+        // Only the digest is stored
+        assertArrayEquals(sha256(result.getToken()), result.getTokenHash());
+        assertTrue(result.getExpiryTime().isAfter(Instant.now()));
+        verify(refreshTokenMetrics).tokenCreated(result.getExpiryTime());
+        verify(userRepository, never()).findById(any());
+    }
 
-        // Act
-        RefreshToken result = refreshTokenService.createRefreshToken(userId);
+    private static Object[] row(UUID id, Instant expiryTime) {
+        return new Object[]{id, expiryTime};
+    }
 
-        // Assert
-        assertNotNull(result);
-        assertEquals(testRefreshToken, result);
+    private List<Object[]> sessions(int count) {
+        Instant now = Instant.now();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(row(UUID.randomUUID(), now.plusSeconds(86400 - i * 600L)));
+        }
+        return rows;
+    }
 
-        // Verify token is created with correct properties
-        ArgumentCaptor<RefreshToken> tokenCaptor = ArgumentCaptor.forClass(RefreshToken.class);
-        verify(refreshTokenRepository).save(tokenCaptor.capture());
+    @Test
+    void createRefreshToken_UnderSessionLimit_EvictsNothing() {
+        when(refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId)).thenReturn(sessions(9));
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        RefreshToken capturedToken = tokenCaptor.getValue();
-        assertNotNull(capturedToken.getToken());
-        // Check that token length is greater than 40 characters
-        assertTrue(capturedToken.getToken().length() > 40,
-                "Token should be longer than 40 characters for security reasons");
-        assertEquals(testUser, capturedToken.getUser());
-        assertNotNull(capturedToken.getExpiryTime());
-        assertTrue(capturedToken.getExpiryTime().isAfter(Instant.now()));
+        refreshTokenService.createRefreshToken(testUser);
+
+        verify(refreshTokenRepository, never()).deleteTokensByIdIn(any());
+        verify(refreshTokenMetrics, never()).tokenDeleted(any());
     }
 
     @Test
-    void createRefreshToken_UserNotFound() {
-        // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+    void createRefreshToken_AtSessionLimit_EvictsOldestBeforeInsert() {
+        ReflectionTestUtils.setField(refreshTokenService, "maxTokensPerUser", 3);
+        List<Object[]> sessions = sessions(4);
+        List<UUID> oldest = List.of((UUID) sessions.get(2)[0], (UUID) sessions.get(3)[0]);
+        when(refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId)).thenReturn(sessions);
+        when(refreshTokenRepository.deleteTokensByIdIn(oldest)).thenReturn(2);
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        refreshTokenService.createRefreshToken(testUser);
+
+        // Keeps the two newest, the new token makes three
+        var inOrder = inOrder(userRepository, refreshTokenRepository);
+        inOrder.verify(userRepository).lockById(userId);
+        inOrder.verify(refreshTokenRepository).findIdsAndExpiryTimesByUserId(userId);
+        inOrder.verify(refreshTokenRepository).deleteTokensByIdIn(oldest);
+        inOrder.verify(refreshTokenRepository).save(any(RefreshToken.class));
+        verify(refreshTokenMetrics).tokenDeleted((Instant) sessions.get(2)[1]);
+        verify(refreshTokenMetrics).tokenDeleted((Instant) sessions.get(3)[1]);
+    }
 
-        // Act & Assert
-        IllegalArgumentException exception = assertThrows(
-                IllegalArgumentException.class,
-                () -> refreshTokenService.createRefreshToken(userId)
+    @Test
+    void createRefreshToken_SingleSessionLimit_DeletesAllPrevious() {
+        ReflectionTestUtils.setField(refreshTokenService, "maxTokensPerUser", 1);
+        List<Object[]> sessions = sessions(2);
+        List<UUID> ids = sessions.stream().map(row -> (UUID) row[0]).toList();
+        when(refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId)).thenReturn(sessions);
+        when(refreshTokenRepository.deleteTokensByIdIn(ids)).thenReturn(2);
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        );
+        refreshTokenService.createRefreshToken(testUser);
 
-        assertEquals("User not found", exception.getMessage());
-        verify(refreshTokenRepository, never()).save(any());
+        verify(refreshTokenRepository).deleteTokensByIdIn(ids);
     }
 
     @Test
-    void createRefreshToken_TokenAlreadyExists() {
-        // Arrange
-        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
-        when(refreshTokenRepository.save(any(RefreshToken.class))).thenReturn(newTestRefreshToken);
+    void createRefreshToken_NoSessionLimit_SkipsEviction() {
+        ReflectionTestUtils.setField(refreshTokenService, "maxTokensPerUser", 0);
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        // Act
-        RefreshToken result = refreshTokenService.createRefreshToken(userId);
+        refreshTokenService.createRefreshToken(testUser);
 
-        // Assert
-        assertNotNull(result);
-        assertEquals(newTestRefreshToken, result);
-        assertNotEquals(testRefreshToken, result);
+        verify(refreshTokenRepository, never()).findIdsAndExpiryTimesByUserId(any());
+        verify(refreshTokenRepository, never()).deleteTokensByIdIn(any());
+    }
 
-        // Verify token is created with correct properties
-        ArgumentCaptor<RefreshToken> tokenCaptor = ArgumentCaptor.forClass(RefreshToken.class);
-        verify(refreshTokenRepository).save(tokenCaptor.capture());
+    @Test
+    void createRotatedRefreshToken_SkipsEviction() {
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        RefreshToken result = refreshTokenService.createRotatedRefreshToken(testUser);
 
-        RefreshToken capturedToken = tokenCaptor.getValue();
-        assertNotNull(capturedToken.getToken());
-        // Check that token length is greater than 40 characters
-        assertTrue(capturedToken.getToken().length() > 40,
-                "Token should be longer than 40 characters for security reasons");
-        assertEquals(testUser, capturedToken.getUser());
-        assertNotNull(capturedToken.getExpiryTime());
-        assertTrue(capturedToken.getExpiryTime().isAfter(Instant.now()));
+        assertEquals(testUser, result.getUser());
+        verify(refreshTokenMetrics).tokenCreated(result.getExpiryTime());
+        verify(refreshTokenRepository, never()).findIdsAndExpiryTimesByUserId(any());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
-    void deleteRefreshToken_TokenExists() {
-        // Arrange
-        String token = "token-to-delete";
-        RefreshToken tokenToDelete = new RefreshToken();
-        tokenToDelete.setToken(token);
+    void deleteAllRefreshTokens_DeletesInOneStatement() {
+        List<Object[]> sessions = sessions(3);
+        when(refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId)).thenReturn(sessions);
+        when(refreshTokenRepository.deleteByUserId(userId)).thenReturn(3);
 
-        when(refreshTokenRepository.findByToken(token)).thenReturn(tokenToDelete);
+        assertEquals(3, refreshTokenService.deleteAllRefreshTokens(userId));
+        verify(refreshTokenRepository, never()).delete(any());
+        verify(refreshTokenMetrics, times(3)).tokenDeleted(any());
+    }
 
-        // Act
-        refreshTokenService.deleteRefreshToken(token);
+    @Test
+    void deleteAllRefreshTokens_ConcurrentChange_LeavesEstimateToReconcile() {
+        when(refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId)).thenReturn(sessions(3));
+        when(refreshTokenRepository.deleteByUserId(userId)).thenReturn(2);
 
-        // Assert
-        verify(refreshTokenRepository).delete(tokenToDelete);
+        assertEquals(2, refreshTokenService.deleteAllRefreshTokens(userId));
+        verify(refreshTokenMetrics, never()).tokenDeleted(any());
     }
 
     @Test
-    void deleteRefreshToken_TokenNotFound() {
+    void evictionAndLogoutAll_lowerActiveTokenGauge() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RefreshTokenMetrics metrics = new RefreshTokenMetrics(refreshTokenRepository, meterRegistry);
+        metrics.init();
+        RefreshTokenService service = new RefreshTokenService(refreshTokenRepository, userRepository, metrics,
+                new SecureTokenGenerator(1));
+        ReflectionTestUtils.setField(service, "maxTokensPerUser", 2);
+        List<Object[]> sessions = new ArrayList<>();
+        when(refreshTokenRepository.findIdsAndExpiryTimesByUserId(userId))
+                .thenAnswer(invocation -> new ArrayList<>(sessions));
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> {
+            RefreshToken token = invocation.getArgument(0);
+            token.setId(UUID.randomUUID());
+            sessions.add(0, row(token.getId(), token.getExpiryTime()));
+            return token;
+        });
+        when(refreshTokenRepository.deleteTokensByIdIn(any())).thenAnswer(invocation -> {
+            List<UUID> ids = invocation.getArgument(0);
+            sessions.removeIf(row -> ids.contains(row[0]));
+            return ids.size();
+        });
+        when(refreshTokenRepository.deleteByUserId(userId)).thenAnswer(invocation -> {
+            int deleted = sessions.size();
+            sessions.clear();
+            return deleted;
+        });
+        Gauge gauge = meterRegistry.get("refresh_tokens_not_expired_total").gauge();
+
+        for (int i = 0; i < 4; i++) {
+            service.createRefreshToken(testUser);
+        }
+        // Two logins were evicted by the session limit
+        assertEquals(2.0, gauge.value());
+
+        service.deleteAllRefreshTokens(userId);
+        assertEquals(0.0, gauge.value());
+    }
+
+    @Test
+    void consumeRefreshToken_ValidToken() {
         // Arrange
-        String token = "non-existent-token";
-        when(refreshTokenRepository.findByToken(token)).thenReturn(null);
+        when(refreshTokenRepository.findWithUserByTokenHash(sha256("test-token")))
+                .thenReturn(Optional.of(testRefreshToken));
+        when(refreshTokenRepository.deleteTokenById(testRefreshToken.getId())).thenReturn(1);
 
         // Act
-        refreshTokenService.deleteRefreshToken(token);
+        Optional<User> result = refreshTokenService.consumeRefreshToken("test-token");
 
         // Assert
-        verify(refreshTokenRepository, never()).delete(any());
+        assertTrue(result.isPresent());
+        assertEquals(testUser, result.get());
+        verify(refreshTokenRepository, never()).findByTokenHash(any());
+        verify(refreshTokenMetrics).tokenDeleted(testRefreshToken.getExpiryTime());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
-    void getAndVerifyRefreshToken_ValidToken() {
+    void consumeRefreshToken_TokenNotFound() {
         // Arrange
-        when(refreshTokenRepository.findByToken("test-token")).thenReturn(testRefreshToken);
+        when(refreshTokenRepository.findWithUserByTokenHash(sha256("unknown-token"))).thenReturn(Optional.empty());
 
         // Act
-        Optional<RefreshToken> result = refreshTokenService.getAndVerifyRefreshToken("test-token");
+        Optional<User> result = refreshTokenService.consumeRefreshToken("unknown-token");
 
         // Assert
-        assertTrue(result.isPresent());
-        assertEquals(testRefreshToken, result.get());
+        assertTrue(result.isEmpty());
+        verify(refreshTokenRepository, never()).deleteTokenById(any());
     }
 
     @Test
-    void getAndVerifyRefreshToken_TokenNotFound() {
-        // Arrange
-        when(refreshTokenRepository.findByToken("invalid-token")).thenReturn(null);
+    void consumeRefreshToken_ConcurrentReplay() {
+        // Arrange: another request deleted the token between the read and the delete
+        when(refreshTokenRepository.findWithUserByTokenHash(sha256("test-token")))
+                .thenReturn(Optional.of(testRefreshToken));
+        when(refreshTokenRepository.deleteTokenById(testRefreshToken.getId())).thenReturn(0);
 
         // Act
-        Optional<RefreshToken> result = refreshTokenService.getAndVerifyRefreshToken("invalid-token");
+        Optional<User> result = refreshTokenService.consumeRefreshToken("test-token");
 
-        // Assert
-        assertFalse(result.isPresent());
+        // Assert: the other request already counted the delete
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(refreshTokenMetrics);
     }
 
     @Test
-    void getAndVerifyRefreshToken_ExpiredToken() {
+    void consumeRefreshToken_ExpiredToken() {
         // Arrange
-        testRefreshToken.setExpiryTime(Instant.now().minusSeconds(3600)); // Expired 1 hour ago
-        when(refreshTokenRepository.findByToken("test-token")).thenReturn(testRefreshToken);
+        testRefreshToken.setExpiryTime(Instant.now().minusSeconds(3600));
+        when(refreshTokenRepository.findWithUserByTokenHash(sha256("test-token")))
+                .thenReturn(Optional.of(testRefreshToken));
+        when(refreshTokenRepository.deleteTokenById(testRefreshToken.getId())).thenReturn(1);
 
         // Act
-        Optional<RefreshToken> result = refreshTokenService.getAndVerifyRefreshToken("test-token");
+        Optional<User> result = refreshTokenService.consumeRefreshToken("test-token");
 
-        // Assert
-        assertFalse(result.isPresent());
-        verify(refreshTokenRepository).delete(testRefreshToken);
+        // Assert: the expired token is removed but yields nothing
+        assertTrue(result.isEmpty());
+        verify(refreshTokenRepository).deleteTokenById(testRefreshToken.getId());
     }
-}
\ No newline at end of file
+}
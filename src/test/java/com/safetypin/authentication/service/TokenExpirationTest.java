@@ -36,10 +36,10 @@ class TokenExpirationTest {
     private OTPService otpService;
 
     @Mock
-    private JwtService jwtService;
+    private TokenIssuanceService tokenIssuanceService;
 
     @Mock
-    private RefreshTokenService refreshTokenService;
+    private TokenRevocationService tokenRevocationService;
 
 
     @BeforeEach
@@ -51,7 +51,7 @@ class TokenExpirationTest {
     void testExpiredTokenThrowsCorrectException() {
         // Create a special test-only version of AuthenticationService
         TestAuthenticationService testService = new TestAuthenticationService(
-                userService, passwordEncoder, otpService, jwtService);
+                userService, passwordEncoder, otpService, tokenIssuanceService);
 
         // Create a UUID for our test
         UUID userId = UUID.randomUUID();
@@ -77,8 +77,8 @@ class TokenExpirationTest {
         public TestAuthenticationService(UserService userService,
                                          PasswordEncoder passwordEncoder,
                                          OTPService otpService,
-                                         JwtService jwtService) {
-            super(userService, passwordEncoder, otpService, jwtService, refreshTokenService);
+                                         TokenIssuanceService tokenIssuanceService) {
+            super(userService, passwordEncoder, otpService, tokenIssuanceService, tokenRevocationService);
         }
 
         // This method simulates the token expiration check portion of getUserFromJwtToken
@@ -0,0 +1,85 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.dto.AuthToken;
+import com.safetypin.authentication.model.RefreshToken;
+import com.safetypin.authentication.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenIssuanceServiceTest {
+
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    private TokenIssuanceService tokenIssuanceService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        tokenIssuanceService = new TokenIssuanceService(jwtService, refreshTokenService);
+        user = new User();
+        user.setId(UUID.randomUUID());
+    }
+
+    private RefreshToken refreshToken(String token) {
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setToken(token);
+        refreshToken.setUser(user);
+        return refreshToken;
+    }
+
+    @Test
+    void issueTokens_shouldUseLoadedUser() {
+        when(jwtService.generateToken(user)).thenReturn("access-token");
+        when(refreshTokenService.createRefreshToken(user)).thenReturn(refreshToken("refresh-token"));
+
+        AuthToken tokens = tokenIssuanceService.issueTokens(user);
+
+        assertEquals(user.getId(), tokens.getUserId());
+        assertEquals("access-token", tokens.getAccessToken());
+        assertEquals("refresh-token", tokens.getRefreshToken());
+        // No second or third lookup of a user the caller already holds
+        verify(jwtService, never()).generateToken(any(UUID.class));
+    }
+
+    @Test
+    void rotateTokens_shouldConsumeOldTokenThenIssueNewPair() {
+        when(refreshTokenService.consumeRefreshToken("old-refresh-token")).thenReturn(Optional.of(user));
+        when(jwtService.generateToken(user)).thenReturn("access-token");
+        when(refreshTokenService.createRotatedRefreshToken(user)).thenReturn(refreshToken("new-refresh-token"));
+
+        Optional<AuthToken> tokens = tokenIssuanceService.rotateTokens("old-refresh-token");
+
+        assertTrue(tokens.isPresent());
+        assertEquals("new-refresh-token", tokens.get().getRefreshToken());
+        InOrder inOrder = inOrder(refreshTokenService);
+        inOrder.verify(refreshTokenService).consumeRefreshToken("old-refresh-token");
+        inOrder.verify(refreshTokenService).createRotatedRefreshToken(user);
+        // Rotation cannot add a session, so the session limit is not checked
+        verify(refreshTokenService, never()).createRefreshToken(any(User.class));
+    }
+
+    @Test
+    void rotateTokens_shouldIssueNothingForUnusableToken() {
+        when(refreshTokenService.consumeRefreshToken("replayed")).thenReturn(Optional.empty());
+
+        assertTrue(tokenIssuanceService.rotateTokens("replayed").isEmpty());
+        verifyNoInteractions(jwtService);
+        verify(refreshTokenService, never()).createRotatedRefreshToken(any(User.class));
+    }
+}
@@ -0,0 +1,151 @@
+package com.safetypin.authentication.service;
+
+import com.safetypin.authentication.model.RevokedUser;
+import com.safetypin.authentication.model.User;
+import com.safetypin.authentication.repository.RevokedUserRepository;
+import com.safetypin.authentication.repository.UserRepository;
+import com.safetypin.authentication.service.jwt.TokenVersionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RevokedUserRepository revokedUserRepository;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private TokenVersionRegistry tokenVersionRegistry;
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        tokenVersionRegistry = new TokenVersionRegistry();
+        tokenRevocationService = new TokenRevocationService(userRepository, revokedUserRepository,
+                tokenVersionRegistry, refreshTokenService, eventPublisher);
+    }
+
+    // Delivers the published revocation the way the listener does once the transaction has committed
+    private void commit() {
+        ArgumentCaptor<TokensRevokedEvent> event = ArgumentCaptor.forClass(TokensRevokedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        tokenRevocationService.onTokensRevoked(event.getValue());
+    }
+
+    private static User user(int tokenVersion) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+
+    @Test
+    void revokeTokens_shouldBumpVersionSaveAndRejectOlderTokens() {
+        User user = user(0);
+        when(userRepository.save(user)).thenReturn(user);
+
+        User saved = tokenRevocationService.revokeTokens(user);
+
+        assertEquals(1, saved.getTokenVersion());
+        assertNotNull(saved.getTokensRevokedAt());
+        verify(userRepository).save(user);
+        commit();
+        assertFalse(tokenVersionRegistry.isCurrent(user.getId(), 0));
+        assertTrue(tokenVersionRegistry.isCurrent(user.getId(), 1));
+    }
+
+    @Test
+    void revokeAllSessions_shouldDeleteRefreshTokensAndRevokeAccessTokens() {
+        User user = user(2);
+        when(refreshTokenService.deleteAllRefreshTokens(user.getId())).thenReturn(5);
+        when(userRepository.save(user)).thenReturn(user);
+
+        assertEquals(5, tokenRevocationService.revokeAllSessions(user));
+
+        assertEquals(3, user.getTokenVersion());
+        commit();
+        assertFalse(tokenVersionRegistry.isCurrent(user.getId(), 2));
+        assertTrue(tokenVersionRegistry.isCurrent(user.getId(), 3));
+    }
+
+    @Test
+    void revokeTokens_shouldNotRejectTokensBeforeCommit() {
+        User user = user(0);
+        when(userRepository.save(user)).thenReturn(user);
+
+        tokenRevocationService.revokeTokens(user);
+
+        // A rollback never delivers the event, so the old tokens stay valid
+        assertTrue(tokenVersionRegistry.isCurrent(user.getId(), 0));
+    }
+
+    @Test
+    void revokeDeletedUser_shouldStoreTombstoneAndRejectEveryToken() {
+        UUID userId = UUID.randomUUID();
+
+        tokenRevocationService.revokeDeletedUser(userId);
+
+        ArgumentCaptor<RevokedUser> tombstone = ArgumentCaptor.forClass(RevokedUser.class);
+        verify(revokedUserRepository).save(tombstone.capture());
+        assertEquals(userId, tombstone.getValue().getUserId());
+        assertTrue(tokenVersionRegistry.isCurrent(userId, 5));
+        commit();
+        assertFalse(tokenVersionRegistry.isCurrent(userId, 5));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void loadRecentRevocations_shouldRestoreRevocationsAfterRestart() {
+        User user = user(3);
+        user.setTokensRevokedAt(Instant.now().minusSeconds(30));
+        when(userRepository.findByTokensRevokedAtAfter(any(Instant.class))).thenReturn(List.of(user));
+
+        tokenRevocationService.loadRecentRevocations();
+
+        assertFalse(tokenVersionRegistry.isCurrent(user.getId(), 2));
+        assertTrue(tokenVersionRegistry.isCurrent(user.getId(), 3));
+    }
+
+    @Test
+    void loadRecentRevocations_shouldRejectUsersDeletedOnAnotherInstance() {
+        UUID userId = UUID.randomUUID();
+        when(revokedUserRepository.findByRevokedAtAfter(any(Instant.class)))
+                .thenReturn(List.of(new RevokedUser(userId, Instant.now().minusSeconds(30))));
+
+        tokenRevocationService.loadRecentRevocations();
+
+        assertFalse(tokenVersionRegistry.isCurrent(userId, 7));
+    }
+
+    @Test
+    void pruneDeletedUsers_shouldDeleteTombstonesOlderThanTokenLifetime() {
+        Instant before = Instant.now().minusMillis(JwtService.EXPIRATION_TIME);
+
+        tokenRevocationService.pruneDeletedUsers();
+
+        ArgumentCaptor<Instant> cutoff = ArgumentCaptor.forClass(Instant.class);
+        verify(revokedUserRepository).deleteRevokedBefore(cutoff.capture());
+        assertFalse(cutoff.getValue().isBefore(before));
+    }
+}
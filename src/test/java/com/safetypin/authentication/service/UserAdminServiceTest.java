@@ -53,6 +53,8 @@ class UserAdminServiceTest {
     private RestTemplate restTemplate;
     @Mock
     private JwtService jwtService;
+    @Mock
+    private TokenRevocationService tokenRevocationService;
     @InjectMocks
     private UserAdminService userAdminService;
     private UUID moderatorId;
@@ -102,6 +104,7 @@ class UserAdminServiceTest {
         verify(followRepository).deleteByFollowerId(targetUserId);
         verify(followRepository).deleteByFollowingId(targetUserId);
         verify(userRepository).delete(targetUser);
+        verify(tokenRevocationService).revokeDeletedUser(targetUserId);
         verify(restTemplate).exchange(
                 contains("/posts/delete/" + targetUserId),
                 eq(HttpMethod.DELETE),
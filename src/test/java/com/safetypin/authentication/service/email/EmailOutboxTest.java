@@ -0,0 +1,244 @@
+package com.safetypin.authentication.service.email;
+
+import com.safetypin.authentication.model.EmailOutboxMessage;
+import com.safetypin.authentication.repository.EmailOutboxRepository;
+import com.safetypin.authentication.service.EmailService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxTest {
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private MeterRegistry meterRegistry;
+    private EmailOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        outbox = new EmailOutbox(outboxRepository, emailService, eventPublisher, meterRegistry);
+        ReflectionTestUtils.setField(outbox, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outbox, "maxPending", 2);
+    }
+
+    private EmailOutboxMessage message(int attempts) {
+        EmailOutboxMessage message = new EmailOutboxMessage();
+        message.setId(UUID.randomUUID());
+        message.setRecipient("user@example.com");
+        message.setCode("123456");
+        message.setTemplateType(EmailTemplateType.OTP_VERIFICATION);
+        message.setAttempts(attempts);
+        message.setCreatedAt(Instant.now());
+        message.setNextAttemptAt(Instant.now());
+        message.setExpiresAt(Instant.now().plusSeconds(120));
+        return message;
+    }
+
+    private void due(EmailOutboxMessage message) {
+        when(outboxRepository.findDue(any(Instant.class), any(Pageable.class))).thenReturn(List.of(message));
+        when(outboxRepository.claim(eq(message.getId()), eq(message.getNextAttemptAt()), any(Instant.class)))
+                .thenReturn(1);
+    }
+
+    private double counter(String name, String... tags) {
+        return meterRegistry.get(name).tags(tags).counter().count();
+    }
+
+    @Test
+    void enqueue_replacesQueuedMailsForRecipient() {
+        assertTrue(outbox.enqueue("user@example.com", "123456", EmailTemplateType.OTP_PASSWORD_RESET, 120_000));
+
+        ArgumentCaptor<EmailOutboxMessage> saved = ArgumentCaptor.forClass(EmailOutboxMessage.class);
+        verify(outboxRepository).deleteByRecipient("user@example.com");
+        verify(outboxRepository).save(saved.capture());
+        EmailOutboxMessage message = saved.getValue();
+        assertEquals("123456", message.getCode());
+        assertEquals(EmailTemplateType.OTP_PASSWORD_RESET, message.getTemplateType());
+        assertEquals(0, message.getAttempts());
+        assertEquals(Duration.ofMillis(120_000), Duration.between(message.getCreatedAt(), message.getExpiresAt()));
+    }
+
+    @Test
+    void enqueue_refusedWhenOutboxIsFull() {
+        when(outboxRepository.count()).thenReturn(2L);
+        outbox.dispatch();
+
+        assertFalse(outbox.enqueue("user@example.com", "123456", EmailTemplateType.OTP_VERIFICATION, 120_000));
+        verify(outboxRepository, never()).save(any());
+        assertEquals(2, meterRegistry.get("email_outbox_depth").gauge().value());
+    }
+
+    @Test
+    void dispatch_deletesSentMailAndPublishesDelivery() {
+        EmailOutboxMessage message = message(0);
+        due(message);
+        when(emailService.sendOTPMail("user@example.com", "123456", EmailTemplateType.OTP_VERIFICATION))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        assertEquals(1, outbox.dispatch());
+
+        verify(outboxRepository).deleteMessageById(message.getId());
+        verify(eventPublisher).publishEvent(
+                new EmailDeliveryEvent("user@example.com", "123456", EmailTemplateType.OTP_VERIFICATION, true));
+        assertEquals(1, counter("email_outbox_sent_total"));
+    }
+
+    @Test
+    void dispatch_skipsMailClaimedByAnotherDispatcher() {
+        EmailOutboxMessage message = message(0);
+        when(outboxRepository.findDue(any(Instant.class), any(Pageable.class))).thenReturn(List.of(message));
+        when(outboxRepository.claim(eq(message.getId()), any(Instant.class), any(Instant.class))).thenReturn(0);
+
+        assertEquals(0, outbox.dispatch());
+
+        verifyNoInteractions(emailService);
+    }
+
+    @Test
+    void dispatch_reschedulesFailedMailWithBackoff() {
+        EmailOutboxMessage message = message(0);
+        due(message);
+        when(emailService.sendOTPMail(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+
+        Instant before = Instant.now();
+        assertEquals(0, outbox.dispatch());
+
+        ArgumentCaptor<Instant> retryAt = ArgumentCaptor.forClass(Instant.class);
+        verify(outboxRepository).reschedule(eq(message.getId()), eq(1), retryAt.capture());
+        long delay = Duration.between(before, retryAt.getValue()).toMillis();
+        // First retry waits between half and all of the 2s base
+        assertTrue(delay >= 999 && delay <= 2_100, "delay " + delay);
+        verify(outboxRepository, never()).deleteMessageById(any());
+        verifyNoInteractions(eventPublisher);
+        assertEquals(1, counter("email_outbox_retries_total"));
+    }
+
+    @Test
+    void dispatch_treatsRejectedAndFailedSendsAsFailures() {
+        EmailOutboxMessage message = message(0);
+        due(message);
+        when(emailService.sendOTPMail(any(), any(), any())).thenThrow(new TaskRejectedException("full"));
+
+        outbox.dispatch();
+
+        verify(outboxRepository).reschedule(eq(message.getId()), eq(1), any(Instant.class));
+    }
+
+    @Test
+    void dispatch_givesUpAfterMaxAttempts() {
+        EmailOutboxMessage message = message(2);
+        due(message);
+        when(emailService.sendOTPMail(any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("smtp down")));
+
+        outbox.dispatch();
+
+        verify(outboxRepository).deleteMessageById(message.getId());
+        verify(outboxRepository, never()).reschedule(any(), anyInt(), any());
+        verify(eventPublisher).publishEvent(
+                new EmailDeliveryEvent("user@example.com", "123456", EmailTemplateType.OTP_VERIFICATION, false));
+        assertEquals(1, counter("email_outbox_dropped_total", "reason", "max_attempts"));
+    }
+
+    @Test
+    void dispatch_givesUpWhenRetryWouldComeAfterExpiry() {
+        EmailOutboxMessage message = message(0);
+        message.setExpiresAt(Instant.now().plusMillis(500));
+        due(message);
+        when(emailService.sendOTPMail(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(false));
+
+        outbox.dispatch();
+
+        verify(outboxRepository).deleteMessageById(message.getId());
+    }
+
+    @Test
+    void dispatch_deletesEachSentMailWhenRecordingAnotherFails() {
+        EmailOutboxMessage first = message(0);
+        EmailOutboxMessage second = message(0);
+        when(outboxRepository.findDue(any(Instant.class), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(outboxRepository.claim(any(), any(), any(Instant.class))).thenReturn(1);
+        when(emailService.sendOTPMail(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(true));
+        when(outboxRepository.deleteMessageById(first.getId()))
+                .thenThrow(new DataAccessResourceFailureException("connection reset"));
+
+        assertEquals(1, outbox.dispatch());
+
+        // The second code does not stay in the table because the first delete failed
+        verify(outboxRepository).deleteMessageById(second.getId());
+    }
+
+    @Test
+    void dispatch_dropsExpiredMailsAndReportsBacklog() {
+        when(outboxRepository.deleteExpired(any(Instant.class))).thenReturn(4);
+        when(outboxRepository.count()).thenReturn(7L);
+        when(outboxRepository.findOldestCreatedAt()).thenReturn(Instant.now().minusSeconds(30));
+
+        outbox.dispatch();
+
+        assertEquals(4, counter("email_outbox_dropped_total", "reason", "expired"));
+        assertEquals(7, meterRegistry.get("email_outbox_depth").gauge().value());
+        assertEquals(30, meterRegistry.get("email_outbox_oldest_age_seconds").gauge().value(), 1);
+    }
+
+    @Test
+    void dispatch_reschedulesSendStillRunningWhenLeaseEnds() {
+        ReflectionTestUtils.setField(outbox, "leaseMillis", 50L);
+        EmailOutboxMessage message = message(0);
+        due(message);
+        // A send hung on a dead connection never completes
+        when(emailService.sendOTPMail(any(), any(), any())).thenReturn(new CompletableFuture<>());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals(0, outbox.dispatch()));
+
+        verify(outboxRepository).reschedule(eq(message.getId()), eq(1), any(Instant.class));
+    }
+
+    @Test
+    void refreshBacklog_updatesDepthWithoutDispatch() {
+        when(outboxRepository.count()).thenReturn(2L);
+
+        outbox.refreshBacklog();
+
+        assertFalse(outbox.enqueue("user@example.com", "123456", EmailTemplateType.OTP_VERIFICATION, 120_000));
+        verify(outboxRepository, never()).findDue(any(), any());
+    }
+
+    @Test
+    void backoff_doublesUpToMaxWithJitter() {
+        for (int i = 0; i < 50; i++) {
+            long third = outbox.backoff(3).toMillis();
+            assertTrue(third >= 4_000 && third <= 8_000, "third " + third);
+            long capped = outbox.backoff(40).toMillis();
+            assertTrue(capped >= 30_000 && capped <= 60_000, "capped " + capped);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.safetypin.authentication.service.email;
+
+import jakarta.mail.BodyPart;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailTemplateTest {
+    private static final String HTML = "<p>&copy; {{year}}</p><b>{{code}}</b>";
+    private static final String TEXT = "Code: {{code}}\n(c) {{year}}";
+
+    private final AtomicLong clock = new AtomicLong(
+            ZonedDateTime.of(2025, 12, 31, 23, 59, 59, 0, ZoneOffset.UTC).toInstant().toEpochMilli());
+
+    private EmailTemplate template(String subject, String html, String text) {
+        return new EmailTemplate(subject, html, text, List.of(EmailTemplate.CODE), clock::get, ZoneOffset.UTC);
+    }
+
+    private static Map<String, String> code(String code) {
+        return Map.of(EmailTemplate.CODE, code);
+    }
+
+    @Test
+    void render_splicesCodeAndYear() {
+        EmailTemplate template = template("Subject", HTML, TEXT);
+
+        assertEquals("<p>&copy; 2025</p><b>123456</b>", template.renderHtml(code("123456")));
+        assertEquals("Code: 123456\n(c) 2025", template.renderText(code("123456")));
+    }
+
+    @Test
+    void render_picksUpNewYear() {
+        EmailTemplate template = template("Subject", HTML, TEXT);
+        template.renderHtml(code("1"));
+
+        clock.addAndGet(1_000);
+
+        assertEquals("<p>&copy; 2026</p><b>1</b>", template.renderHtml(code("1")));
+    }
+
+    @Test
+    void constructor_rejectsMissingOrUnknownPlaceholders() {
+        assertThrows(IllegalArgumentException.class, () -> template("Subject", "<p>no code</p>", TEXT));
+        assertThrows(IllegalArgumentException.class, () -> template("Subject", HTML, "{{code}} {{name}}"));
+    }
+
+    @Test
+    void render_fillsEveryPlaceholderAndEscapesHtml() {
+        EmailTemplate template = new EmailTemplate("Subject", "<p>{{name}}: {{followers}} ({{name}})</p>",
+                "{{name}}: {{followers}}", List.of("name", "followers"), clock::get, ZoneOffset.UTC);
+        Map<String, String> values = Map.of("name", "Bob", "followers", "<b>Alice</b> & Carol");
+
+        assertEquals("<p>Bob: &lt;b&gt;Alice&lt;/b&gt; &amp; Carol (Bob)</p>", template.renderHtml(values));
+        assertEquals("Bob: <b>Alice</b> & Carol", template.renderText(values));
+        assertThrows(IllegalArgumentException.class, () -> template.renderText(Map.of("name", "Bob")));
+    }
+
+    @Test
+    void writeTo_buildsAlternativeParts() throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+
+        template("OTP Code", HTML, TEXT).writeTo(message, code("123456"));
+        message.saveChanges();
+
+        assertEquals("OTP Code", message.getSubject());
+        MimeMultipart body = (MimeMultipart) message.getContent();
+        BodyPart text = body.getBodyPart(0);
+        BodyPart html = body.getBodyPart(1);
+        assertTrue(text.isMimeType("text/plain"));
+        assertTrue(html.isMimeType("text/html"));
+        assertEquals("7bit", text.getHeader("Content-Transfer-Encoding")[0]);
+        assertEquals("<p>&copy; 2025</p><b>123456</b>", html.getContent());
+    }
+
+    @Test
+    void writeTo_leavesEncodingOfNonAsciiBodiesToJavaMail() throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+
+        template("Kode OTP é", "<p>© {{year}}</p>{{code}}", TEXT).writeTo(message, code("123456"));
+        message.saveChanges();
+
+        MimeMultipart body = (MimeMultipart) message.getContent();
+        assertEquals("7bit", body.getBodyPart(0).getHeader("Content-Transfer-Encoding")[0]);
+        assertNotEquals("7bit", body.getBodyPart(1).getHeader("Content-Transfer-Encoding")[0]);
+        assertEquals("Kode OTP é", message.getSubject());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        assertTrue(out.toString(StandardCharsets.US_ASCII).contains("=?UTF-8?"));
+    }
+}
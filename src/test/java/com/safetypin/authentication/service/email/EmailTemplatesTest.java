@@ -0,0 +1,29 @@
+package com.safetypin.authentication.service.email;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Year;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailTemplatesTest {
+
+    @Test
+    void loadsEveryTemplateIntoTheLayout() {
+        EmailTemplates templates = new EmailTemplates();
+
+        for (EmailTemplateType type : EmailTemplateType.values()) {
+            EmailTemplate template = templates.get(type);
+            Map<String, String> values = new HashMap<>();
+            type.getSlots().forEach(slot -> values.put(slot, "123456"));
+            String html = template.renderHtml(values);
+            assertTrue(html.startsWith("<!DOCTYPE html>"), type.name());
+            assertTrue(html.contains("123456"), type.name());
+            assertTrue(html.contains("&copy; " + Year.now().getValue()), type.name());
+            assertFalse(html.contains("{{"), type.name());
+            assertTrue(template.renderText(values).contains("123456"), type.name());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.safetypin.authentication.service.email;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmtpTransportPoolTest {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPoolTest.class);
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(new ServerSetup(2526, "127.0.0.1", "smtp"))
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("username", "secret123"));
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private JavaMailSenderImpl mailSender;
+    private MeterRegistry meterRegistry;
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(2526);
+        mailSender.setUsername("username");
+        mailSender.setPassword("secret123");
+        Properties props = mailSender.getJavaMailProperties();
+        props.put("mail.smtp.auth", "true");
+        meterRegistry = new SimpleMeterRegistry();
+        pool = newPool(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    private SmtpTransportPool newPool(int maxMessagesPerConnection) {
+        return new SmtpTransportPool(mailSender, meterRegistry, true, 2, maxMessagesPerConnection, 60_000, 5_000,
+                1_000, clock::get);
+    }
+
+    private MimeMessage message(int i) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        message.setFrom(new InternetAddress("noreply@safetyp.in"));
+        message.setRecipients(MimeMessage.RecipientType.TO, "user" + i + "@test.com");
+        message.setSubject("OTP " + i);
+        message.setText("Your code is " + i);
+        return message;
+    }
+
+    // Drops every open connection, like a server closing idle clients
+    private void restartServer() {
+        greenMail.reset();
+        greenMail.setUser("username", "username", "secret123");
+    }
+
+    private double connectionsOpened() {
+        return meterRegistry.get("smtp_pool_connections_opened_total").counter().count();
+    }
+
+    @Test
+    void send_reusesConnection() throws Exception {
+        pool.send(message(1));
+        pool.send(message(2));
+
+        assertEquals(2, greenMail.getReceivedMessages().length);
+        assertEquals(1.0, connectionsOpened());
+        assertEquals(1, pool.idleConnections());
+    }
+
+    @Test
+    void send_replacesConnectionAfterMaxMessages() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            pool.send(message(i));
+        }
+
+        assertEquals(4, greenMail.getReceivedMessages().length);
+        assertEquals(2.0, connectionsOpened());
+    }
+
+    @Test
+    void send_retriesOnNewConnectionWhenServerDroppedIt() throws Exception {
+        pool.send(message(1));
+        restartServer();
+
+        pool.send(message(2));
+
+        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(2.0, connectionsOpened());
+    }
+
+    @Test
+    void send_validatesConnectionAfterIdle() throws Exception {
+        pool.send(message(1));
+        restartServer();
+        clock.addAndGet(5_000);
+
+        pool.send(message(2));
+
+        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(2.0, connectionsOpened());
+    }
+
+    @Test
+    void send_replacesConnectionThatHangsOnNoop() throws Exception {
+        try (FreezingProxy proxy = new FreezingProxy(2526)) {
+            mailSender.setPort(proxy.port());
+            mailSender.getJavaMailProperties().put("mail.smtp.timeout", "500");
+            pool.send(message(1));
+            // The server stops answering on the open connection without closing it
+            proxy.freezeOpenConnections();
+            clock.addAndGet(5_000);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pool.send(message(2)));
+
+            assertEquals(2, greenMail.getReceivedMessages().length);
+            assertEquals(2.0, connectionsOpened());
+        }
+    }
+
+    @Test
+    void send_defaultsUnsetSocketTimeouts() throws Exception {
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "2000");
+
+        pool.send(message(1));
+
+        Properties session = mailSender.getSession().getProperties();
+        assertEquals("2000", session.getProperty("mail.smtp.timeout"));
+        assertEquals(SmtpTransportPool.DEFAULT_SOCKET_TIMEOUT_MILLIS, session.getProperty("mail.smtp.connectiontimeout"));
+        assertEquals(SmtpTransportPool.DEFAULT_SOCKET_TIMEOUT_MILLIS, session.getProperty("mail.smtp.writetimeout"));
+    }
+
+    @Test
+    void send_failsWhenServerIsDown() throws Exception {
+        greenMail.stop();
+
+        assertThrows(MessagingException.class, () -> pool.send(message(1)));
+        assertEquals(0, pool.idleConnections());
+    }
+
+    @Test
+    void evictIdle_closesOnlyConnectionsIdlePastTimeout() throws Exception {
+        pool.send(message(1));
+        clock.addAndGet(59_999);
+        pool.evictIdle();
+        assertEquals(1, pool.idleConnections());
+
+        clock.addAndGet(1);
+        pool.evictIdle();
+        assertEquals(0, pool.idleConnections());
+    }
+
+    @Test
+    void throughput_pooledVersusConnectionPerMail() throws Exception {
+        int mails = 200;
+        // Warm up class loading and the server
+        mailSender.send(message(-1));
+        pool.send(message(-2));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < mails; i++) {
+            mailSender.send(message(i));
+        }
+        double unpooledPerSecond = mails / ((System.nanoTime() - start) / 1e9);
+
+        SmtpTransportPool throughputPool = newPool(Integer.MAX_VALUE);
+        start = System.nanoTime();
+        for (int i = 0; i < mails; i++) {
+            throughputPool.send(message(i));
+        }
+        double pooledPerSecond = mails / ((System.nanoTime() - start) / 1e9);
+        throughputPool.close();
+
+        logger.info("GreenMail throughput: {} mails/s with a connection per mail, {} mails/s pooled",
+                Math.round(unpooledPerSecond), Math.round(pooledPerSecond));
+        assertEquals(2 * mails + 2, greenMail.getReceivedMessages().length);
+    }
+
+    /**
+     * Forwards TCP connections to a local port. Frozen connections stay open but nothing gets through anymore,
+     * like a peer that vanished without closing the socket.
+     */
+    private static final class FreezingProxy implements AutoCloseable {
+        private final ServerSocket server;
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private final List<AtomicBoolean> frozen = new CopyOnWriteArrayList<>();
+
+        FreezingProxy(int targetPort) throws IOException {
+            server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread.ofVirtual().start(() -> {
+                try {
+                    while (true) {
+                        Socket client = server.accept();
+                        Socket target = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                        AtomicBoolean connectionFrozen = new AtomicBoolean();
+                        sockets.add(client);
+                        sockets.add(target);
+                        frozen.add(connectionFrozen);
+                        pump(client, target, connectionFrozen);
+                        pump(target, client, connectionFrozen);
+                    }
+                } catch (IOException e) {
+                    // Closed
+                }
+            });
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        void freezeOpenConnections() {
+            frozen.forEach(connectionFrozen -> connectionFrozen.set(true));
+        }
+
+        private static void pump(Socket from, Socket to, AtomicBoolean connectionFrozen) {
+            Thread.ofVirtual().start(() -> {
+                byte[] buffer = new byte[8192];
+                try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                        if (!connectionFrozen.get()) {
+                            out.write(buffer, 0, read);
+                            out.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    // Either side closed
+                }
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Hs256TokenCodecTest {
+
+    private static final String SECRET = "justanormalsecretkeyfortestingnothingsuspicioushere";
+
+    private SigningKey key;
+    private Hs256TokenCodec codec;
+    private JwtParser jjwtParser;
+
+    @BeforeEach
+    void setUp() {
+        key = SigningKey.hmac(SECRET);
+        codec = new Hs256TokenCodec(key.signingKey());
+        jjwtParser = Jwts.parserBuilder().setSigningKey(key.verificationKey()).build();
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private String jjwtToken(Map<String, Object> claims, String subject, long expiresAtMillis) {
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(subject)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(expiresAtMillis))
+                .signWith(key.signingKey(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Test
+    void encode_shouldBeVerifiableByJjwt() {
+        String userId = UUID.randomUUID().toString();
+        long iat = nowSeconds();
+
+        String token = codec.encode(userId, "Test User", true, "MODERATOR", "test@example.com", "EMAIL", 3,
+                iat, iat + 600);
+
+        Claims claims = jjwtParser.parseClaimsJws(token).getBody();
+        assertEquals(userId, claims.getSubject());
+        assertEquals(userId, claims.get("userId"));
+        assertEquals("Test User", claims.get("name"));
+        assertEquals(Boolean.TRUE, claims.get("isVerified"));
+        assertEquals("MODERATOR", claims.get("role"));
+        assertEquals("test@example.com", claims.get("email"));
+        assertEquals("EMAIL", claims.get("provider"));
+        assertEquals(3, claims.get("tokenVersion"));
+        assertEquals(iat * 1000, claims.getIssuedAt().getTime());
+        assertEquals((iat + 600) * 1000, claims.getExpiration().getTime());
+    }
+
+    @Test
+    void encode_shouldUseTheSameHeaderAsJjwt() {
+        String codecToken = codec.encode("id", "name", false, null, null, null, 0, nowSeconds(), nowSeconds() + 60);
+        String jjwt = jjwtToken(new HashMap<>(), "id", System.currentTimeMillis() + 60_000);
+
+        assertEquals(jjwt.substring(0, jjwt.indexOf('.')), codecToken.substring(0, codecToken.indexOf('.')));
+    }
+
+    @Test
+    void encode_shouldLeaveOutNullClaims() {
+        String token = codec.encode("id", null, false, null, null, null, 0, nowSeconds(), nowSeconds() + 60);
+
+        Claims claims = jjwtParser.parseClaimsJws(token).getBody();
+        assertFalse(claims.containsKey("name"));
+        assertFalse(claims.containsKey("role"));
+        assertFalse(claims.containsKey("email"));
+        assertEquals(Boolean.FALSE, claims.get("isVerified"));
+    }
+
+    @Test
+    void encodeAndDecode_shouldRoundTripEscapedAndNonAsciiNames() {
+        String name = "Zoë \"Q\" \\ Müller\n\t😀 名前";
+        long iat = nowSeconds();
+        String token = codec.encode("id", name, true, "REGISTERED_USER", null, null, 0, iat, iat + 60);
+
+        assertEquals(name, jjwtParser.parseClaimsJws(token).getBody().get("name"));
+        assertEquals(name, codec.decode(token).get("name"));
+    }
+
+    @Test
+    void decode_shouldReadTokensSignedByJjwt() {
+        String userId = UUID.randomUUID().toString();
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("userId", userId);
+        claims.put("name", "Jjwt \"User\" é");
+        claims.put("isVerified", true);
+        claims.put("role", "PREMIUM_USER");
+        claims.put("email", "jjwt@example.com");
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        String token = jjwtToken(claims, userId, expiresAt);
+
+        Claims decoded = codec.decode(token);
+
+        assertNotNull(decoded);
+        Claims expected = jjwtParser.parseClaimsJws(token).getBody();
+        assertEquals(expected, decoded);
+        assertEquals(userId, decoded.getSubject());
+        assertEquals(Boolean.TRUE, decoded.get("isVerified", Boolean.class));
+        assertEquals(expected.getExpiration(), decoded.getExpiration());
+    }
+
+    @Test
+    void decode_shouldRejectTamperedSignature() {
+        String token = codec.encode("id", "name", true, "MODERATOR", null, null, 0, nowSeconds(), nowSeconds() + 60);
+        char last = token.charAt(token.length() - 2);
+        String tampered = token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A') + token.charAt(token.length() - 1);
+
+        assertThrows(SignatureException.class, () -> codec.decode(tampered));
+    }
+
+    @Test
+    void decode_shouldRejectTamperedPayload() {
+        String token = codec.encode("id", "name", true, "REGISTERED_USER", null, null, 0, nowSeconds(), nowSeconds() + 60);
+        String forged = codec.encode("id", "name", true, "MODERATOR", null, null, 0, nowSeconds(), nowSeconds() + 60);
+        String[] original = token.split("\\.");
+        String[] other = forged.split("\\.");
+
+        String spliced = original[0] + "." + other[1] + "." + original[2];
+
+        assertThrows(SignatureException.class, () -> codec.decode(spliced));
+    }
+
+    @Test
+    void decode_shouldRejectTokensFromAnotherSecret() {
+        Hs256TokenCodec otherCodec = new Hs256TokenCodec(
+                SigningKey.hmac("anothersecretkeythatisalsolongenoughforhs256signing").signingKey());
+        String token = otherCodec.encode("id", "name", true, null, null, null, 0, nowSeconds(), nowSeconds() + 60);
+
+        assertThrows(SignatureException.class, () -> codec.decode(token));
+    }
+
+    @Test
+    void decode_shouldRejectExpiredTokens() {
+        long iat = nowSeconds() - 120;
+        String token = codec.encode("id", "name", true, null, null, null, 0, iat, iat + 60);
+
+        ExpiredJwtException e = assertThrows(ExpiredJwtException.class, () -> codec.decode(token));
+        assertEquals("id", e.getClaims().getSubject());
+    }
+
+    @Test
+    void decode_shouldLeaveOtherShapesToJjwt() throws Exception {
+        SigningKey rsa = SigningKey.fromKeyPair(
+                java.security.KeyPairGenerator.getInstance("RSA").generateKeyPair(), SignatureAlgorithm.RS256);
+        String withKid = Jwts.builder()
+                .setSubject("id")
+                .setHeaderParam("kid", rsa.kid())
+                .signWith(rsa.signingKey(), SignatureAlgorithm.RS256)
+                .compact();
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("address", Map.of("city", "Depok"));
+        String nestedToken = jjwtToken(nested, "id", System.currentTimeMillis() + 60_000);
+
+        assertNull(codec.decode(withKid));
+        assertNull(codec.decode(nestedToken));
+        assertNull(codec.decode("invalid.token.string"));
+        assertNull(codec.decode(""));
+        assertNull(codec.decode(null));
+        // The nested token is still valid, jjwt reads it
+        assertNotNull(jjwtParser.parseClaimsJws(nestedToken).getBody().get("address"));
+    }
+
+    @Test
+    void decode_shouldRejectOversizedTokensBeforeCheckingTheSignature() {
+        String token = "eyJhbGciOiJIUzI1NiJ9." + "A".repeat(Hs256TokenCodec.MAX_TOKEN_LENGTH) + "."
+                + "B".repeat(43);
+
+        assertThrows(MalformedJwtException.class, () -> codec.decode(token));
+    }
+
+    @Test
+    void encodeAndDecode_shouldWorkOnVirtualThreads() throws Exception {
+        String userId = UUID.randomUUID().toString();
+        Callable<Claims> roundTrip = () -> codec.decode(codec.encode(userId, "Virtual", true, "REGISTERED_USER",
+                "virtual@example.com", "EMAIL", 1, nowSeconds(), nowSeconds() + 60));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Claims>> results = executor.invokeAll(Collections.nCopies(100, roundTrip));
+            for (Future<Claims> result : results) {
+                assertEquals(userId, result.get().getSubject());
+            }
+        }
+    }
+
+    @Test
+    void supports_shouldOnlyAcceptTheSharedHs256Secret() throws Exception {
+        SigningKey rsa = SigningKey.fromKeyPair(
+                java.security.KeyPairGenerator.getInstance("RSA").generateKeyPair(), SignatureAlgorithm.RS256);
+
+        assertTrue(Hs256TokenCodec.supports(key));
+        assertFalse(Hs256TokenCodec.supports(rsa));
+        assertFalse(Hs256TokenCodec.supports(null));
+    }
+}
@@ -0,0 +1,224 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyLoaderTest {
+
+    private static final String SECRET = "justanormalsecretkeyfortestingnothingsuspicioushere";
+
+    @TempDir
+    Path keyDirectory;
+
+    private KeyPair rsaKeyPair;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        rsaKeyPair = rsaGenerator.generateKeyPair();
+    }
+
+    private JwtKeyLoader loader(SignatureAlgorithm algorithm, String activeKid, long activationDelaySeconds) {
+        return loader(algorithm, activeKid, activationDelaySeconds, false);
+    }
+
+    private JwtKeyLoader loader(SignatureAlgorithm algorithm, String activeKid, long activationDelaySeconds,
+                                boolean generateIfMissing) {
+        return new JwtKeyLoader(algorithm, SECRET, true, "", "", "", "",
+                keyDirectory.toString(), activeKid, activationDelaySeconds, generateIfMissing);
+    }
+
+    private Path writeKey(String kid, KeyPair keyPair, boolean withPrivateKey, Instant lastModified) throws Exception {
+        String pem = JwtKeyLoader.toPem("PUBLIC KEY", keyPair.getPublic().getEncoded());
+        if (withPrivateKey) {
+            pem = JwtKeyLoader.toPem("PRIVATE KEY", keyPair.getPrivate().getEncoded()) + pem;
+        }
+        Path file = keyDirectory.resolve(kid + ".pem");
+        Files.writeString(file, pem, StandardCharsets.US_ASCII);
+        Files.setLastModifiedTime(file, FileTime.from(lastModified));
+        return file;
+    }
+
+    private static List<String> kids(List<SigningKey> keys) {
+        return keys.stream().map(SigningKey::kid).toList();
+    }
+
+    @Test
+    void load_shouldSignWithSecretForHs256() {
+        JwtKeyLoader.LoadedKeys keys = loader(SignatureAlgorithm.HS256, "", 0).load();
+
+        assertEquals(SignatureAlgorithm.HS256, keys.active().algorithm());
+        assertNull(keys.active().kid());
+        assertTrue(keys.verificationKeys().isEmpty());
+    }
+
+    @Test
+    void load_shouldUseKeyFromDirectoryAndKeepLegacySecret() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+
+        JwtKeyLoader.LoadedKeys keys = loader(SignatureAlgorithm.RS256, "", 120).load();
+
+        assertEquals("key-1", keys.active().kid());
+        assertEquals(rsaKeyPair.getPublic(), keys.active().verificationKey());
+        assertEquals(1, keys.verificationKeys().size());
+        assertEquals(SignatureAlgorithm.HS256, keys.verificationKeys().get(0).algorithm());
+    }
+
+    @Test
+    void load_shouldWaitForActivationDelayBeforeSigningWithNewKey() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        writeKey("key-2", rsaGenerator.generateKeyPair(), true, Instant.now());
+
+        JwtKeyLoader.LoadedKeys keys = loader(SignatureAlgorithm.RS256, "", 120).load();
+
+        assertEquals("key-1", keys.active().kid());
+        assertTrue(kids(keys.verificationKeys()).contains("key-2"));
+        assertTrue(keys.verificationKeys().stream().noneMatch(SigningKey::canSign));
+    }
+
+    @Test
+    void load_shouldSignWithNewestKeyOnceActivationDelayPassed() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        writeKey("key-2", rsaGenerator.generateKeyPair(), true, Instant.now().minusSeconds(600));
+
+        JwtKeyLoader.LoadedKeys keys = loader(SignatureAlgorithm.RS256, "", 120).load();
+
+        assertEquals("key-2", keys.active().kid());
+        assertTrue(kids(keys.verificationKeys()).contains("key-1"));
+    }
+
+    @Test
+    void load_shouldPreferConfiguredActiveKid() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        writeKey("key-2", rsaGenerator.generateKeyPair(), true, Instant.now().minusSeconds(600));
+
+        JwtKeyLoader.LoadedKeys keys = loader(SignatureAlgorithm.RS256, "key-1", 120).load();
+
+        assertEquals("key-1", keys.active().kid());
+    }
+
+    @Test
+    void load_shouldFailWhenActiveKidIsMissing() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        JwtKeyLoader loader = loader(SignatureAlgorithm.RS256, "key-9", 120);
+
+        assertThrows(IllegalStateException.class, loader::load);
+    }
+
+    @Test
+    void load_shouldFailWhenDirectoryIsEmpty() throws Exception {
+        JwtKeyLoader loader = loader(SignatureAlgorithm.ES256, "", 120);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, loader::load);
+        assertTrue(e.getMessage().contains(keyDirectory.toString()));
+        try (var files = Files.list(keyDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void load_shouldGenerateAndPersistKeyWhenDirectoryIsEmptyAndGenerationEnabled() throws Exception {
+        JwtKeyLoader.LoadedKeys first = loader(SignatureAlgorithm.ES256, "", 120, true).load();
+        JwtKeyLoader.LoadedKeys second = loader(SignatureAlgorithm.ES256, "", 120, true).load();
+
+        assertEquals(SignatureAlgorithm.ES256, first.active().algorithm());
+        assertTrue(Files.exists(keyDirectory.resolve(first.active().kid() + ".pem")));
+        // A restart keeps signing with the same key instead of invalidating every token
+        assertEquals(first.active().kid(), second.active().kid());
+    }
+
+    @Test
+    void load_shouldOnlyVerifyWithPublicKeyFiles() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        writeKey("other-service", ecGenerator.generateKeyPair(), false, Instant.now().minusSeconds(3600));
+
+        JwtKeyLoader.LoadedKeys keys = loader(SignatureAlgorithm.RS256, "", 120).load();
+
+        SigningKey published = keys.verificationKeys().stream()
+                .filter(key -> "other-service".equals(key.kid()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(SignatureAlgorithm.ES256, published.algorithm());
+        assertFalse(published.canSign());
+    }
+
+    @Test
+    void load_shouldSkipUnreadableKeyFiles() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        Files.writeString(keyDirectory.resolve("broken.pem"), "not a key");
+
+        JwtKeyLoader.LoadedKeys keys = loader(SignatureAlgorithm.RS256, "", 120).load();
+
+        assertEquals("key-1", keys.active().kid());
+        assertFalse(kids(keys.verificationKeys()).contains("broken"));
+    }
+
+    @Test
+    void hasChanged_shouldDetectNewKeyFiles() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        JwtKeyLoader loader = loader(SignatureAlgorithm.RS256, "", 120);
+        loader.load();
+        assertFalse(loader.hasChanged());
+
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        writeKey("key-2", rsaGenerator.generateKeyPair(), true, Instant.now());
+
+        assertTrue(loader.hasChanged());
+        loader.load();
+        assertFalse(loader.hasChanged());
+    }
+
+    @Test
+    void hasChanged_shouldReportPendingKeyOnceActivatable() throws Exception {
+        writeKey("key-1", rsaKeyPair, true, Instant.now().minusSeconds(3600));
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        // Written 119 seconds ago, activatable within a second
+        writeKey("key-2", rsaGenerator.generateKeyPair(), true, Instant.now().minusSeconds(119));
+        JwtKeyLoader loader = loader(SignatureAlgorithm.RS256, "", 120);
+
+        assertEquals("key-1", loader.load().active().kid());
+        Thread.sleep(1500);
+
+        assertTrue(loader.hasChanged());
+        assertEquals("key-2", loader.load().active().kid());
+        assertFalse(loader.hasChanged());
+    }
+
+    @Test
+    void readKeyPair_shouldDeriveRsaPublicKey() {
+        KeyPair keyPair = JwtKeyLoader.readKeyPair(
+                JwtKeyLoader.toPem("PRIVATE KEY", rsaKeyPair.getPrivate().getEncoded()));
+
+        assertEquals(rsaKeyPair.getPublic(), keyPair.getPublic());
+    }
+
+    @Test
+    void readKeyPair_shouldRejectTextWithoutKey() {
+        assertThrows(IllegalArgumentException.class, () -> JwtKeyLoader.readKeyPair("nothing here"));
+    }
+}
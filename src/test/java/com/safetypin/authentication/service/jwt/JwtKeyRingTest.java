@@ -0,0 +1,154 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.UnsupportedJwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtKeyRingTest {
+
+    private static final String SECRET = "justanormalsecretkeyfortestingnothingsuspicioushere";
+    private KeyPair rsaKeyPair;
+    private KeyPair ecKeyPair;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        rsaKeyPair = rsaGenerator.generateKeyPair();
+        KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        ecKeyPair = ecGenerator.generateKeyPair();
+    }
+
+    private JwtKeyRing ring(SignatureAlgorithm algorithm, boolean legacyHmacEnabled) {
+        return new JwtKeyRing(new JwtKeyLoader(algorithm, SECRET, legacyHmacEnabled,
+                JwtKeyLoader.toPem("PRIVATE KEY", rsaKeyPair.getPrivate().getEncoded()),
+                JwtKeyLoader.toPem("PUBLIC KEY", rsaKeyPair.getPublic().getEncoded()),
+                JwtKeyLoader.toPem("PRIVATE KEY", ecKeyPair.getPrivate().getEncoded()),
+                JwtKeyLoader.toPem("PUBLIC KEY", ecKeyPair.getPublic().getEncoded()),
+                "", "", 0, false));
+    }
+
+    private static JwsHeader header(String alg, String kid) {
+        JwsHeader header = Jwts.jwsHeader();
+        header.setAlgorithm(alg);
+        header.setKeyId(kid);
+        return header;
+    }
+
+    @Test
+    void constructor_shouldSelectConfiguredAlgorithm() {
+        assertEquals(SignatureAlgorithm.HS256, ring(SignatureAlgorithm.HS256, true).getActiveKey().algorithm());
+        assertEquals(SignatureAlgorithm.RS256, ring(SignatureAlgorithm.RS256, true).getActiveKey().algorithm());
+        assertEquals(SignatureAlgorithm.ES256, ring(SignatureAlgorithm.ES256, true).getActiveKey().algorithm());
+    }
+
+    @Test
+    void constructor_shouldRejectAlgorithmWithoutKey() {
+        assertThrows(IllegalStateException.class, () -> ring(SignatureAlgorithm.PS256, true));
+    }
+
+    @Test
+    void publicJwks_shouldPublishAsymmetricKeysOnly() {
+        JwtKeyRing ring = ring(SignatureAlgorithm.RS256, true);
+
+        List<Map<String, Object>> jwks = ring.publicJwks();
+
+        assertEquals(2, jwks.size());
+        assertTrue(jwks.stream().anyMatch(jwk -> "RSA".equals(jwk.get("kty"))));
+        assertTrue(jwks.stream().anyMatch(jwk -> "EC".equals(jwk.get("kty"))));
+    }
+
+    @Test
+    void resolveSigningKey_shouldUseKidAndLegacySecret() {
+        JwtKeyRing ring = ring(SignatureAlgorithm.RS256, true);
+        String kid = ring.getActiveKey().kid();
+
+        assertEquals(rsaKeyPair.getPublic(), ring.resolveSigningKey(header("RS256", kid), "payload"));
+        assertNotNull(ring.resolveSigningKey(header("HS256", null), "payload"));
+    }
+
+    @Test
+    void resolveSigningKey_shouldRejectAlgorithmMismatch() {
+        JwtKeyRing ring = ring(SignatureAlgorithm.RS256, true);
+        String kid = ring.getActiveKey().kid();
+
+        JwsHeader header = header("HS256", kid);
+        assertThrows(UnsupportedJwtException.class, () -> ring.resolveSigningKey(header, "payload"));
+    }
+
+    @Test
+    void resolveSigningKey_shouldRejectLegacySecretWhenDisabled() {
+        JwtKeyRing ring = ring(SignatureAlgorithm.RS256, false);
+
+        JwsHeader header = header("HS256", null);
+        assertThrows(UnsupportedJwtException.class, () -> ring.resolveSigningKey(header, "payload"));
+    }
+
+    @Test
+    void resolveSigningKey_shouldRejectUnknownKid() {
+        JwtKeyRing ring = JwtKeyRing.of(SigningKey.hmac(SECRET));
+
+        JwsHeader header = header("RS256", "unknown");
+        assertThrows(UnsupportedJwtException.class, () -> ring.resolveSigningKey(header, "payload"));
+    }
+
+    @Test
+    void update_shouldSwapActiveKeyAndKeepOldKeyForVerification() {
+        SigningKey oldKey = SigningKey.fromKeyPair("old", rsaKeyPair, SignatureAlgorithm.RS256);
+        SigningKey newKey = SigningKey.fromKeyPair("new", ecKeyPair, SignatureAlgorithm.ES256);
+        JwtKeyRing ring = JwtKeyRing.of(oldKey);
+
+        ring.update(newKey, List.of(oldKey.verificationOnly()));
+
+        assertEquals("new", ring.getActiveKey().kid());
+        assertEquals(rsaKeyPair.getPublic(), ring.resolveSigningKey(header("RS256", "old"), "payload"));
+        assertEquals(ecKeyPair.getPublic(), ring.resolveSigningKey(header("ES256", "new"), "payload"));
+    }
+
+    @Test
+    void reloadIfChanged_shouldOnlyReloadWhenLoaderReportsChange() {
+        SigningKey first = SigningKey.fromKeyPair("first", rsaKeyPair, SignatureAlgorithm.RS256);
+        SigningKey second = SigningKey.fromKeyPair("second", rsaKeyPair, SignatureAlgorithm.RS256);
+        JwtKeyLoader loader = mock(JwtKeyLoader.class);
+        when(loader.load())
+                .thenReturn(new JwtKeyLoader.LoadedKeys(first, List.of()))
+                .thenReturn(new JwtKeyLoader.LoadedKeys(second, List.of(first.verificationOnly())));
+        JwtKeyRing ring = new JwtKeyRing(loader);
+
+        when(loader.hasChanged()).thenReturn(false);
+        ring.reloadIfChanged();
+        assertEquals("first", ring.getActiveKey().kid());
+
+        when(loader.hasChanged()).thenReturn(true);
+        ring.reloadIfChanged();
+        assertEquals("second", ring.getActiveKey().kid());
+        verify(loader, times(2)).load();
+    }
+
+    @Test
+    void reloadIfChanged_shouldKeepCurrentKeysWhenReloadFails() {
+        SigningKey first = SigningKey.fromKeyPair("first", rsaKeyPair, SignatureAlgorithm.RS256);
+        JwtKeyLoader loader = mock(JwtKeyLoader.class);
+        when(loader.load())
+                .thenReturn(new JwtKeyLoader.LoadedKeys(first, List.of()))
+                .thenThrow(new IllegalStateException("No RS256 signing key found"));
+        when(loader.hasChanged()).thenReturn(true);
+        JwtKeyRing ring = new JwtKeyRing(loader);
+
+        assertDoesNotThrow(ring::reloadIfChanged);
+        assertEquals("first", ring.getActiveKey().kid());
+    }
+}
@@ -0,0 +1,91 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SigningKeyTest {
+
+    private static KeyPair rsaKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    @Test
+    void hmac_shouldHaveNoKidAndNotBePublished() {
+        SigningKey key = SigningKey.hmac("justanormalsecretkeyfortestingnothingsuspicioushere");
+
+        assertNull(key.kid());
+        assertEquals(SignatureAlgorithm.HS256, key.algorithm());
+        assertFalse(key.isAsymmetric());
+        assertThrows(IllegalStateException.class, key::toJwk);
+    }
+
+    @Test
+    void fromKeyPair_shouldUseStableThumbprintAsKid() throws Exception {
+        KeyPair keyPair = rsaKeyPair();
+
+        SigningKey first = SigningKey.fromKeyPair(keyPair, SignatureAlgorithm.RS256);
+        SigningKey second = SigningKey.fromKeyPair(keyPair, SignatureAlgorithm.RS256);
+
+        assertNotNull(first.kid());
+        assertEquals(43, first.kid().length()); // base64url SHA-256
+        assertEquals(first.kid(), second.kid());
+    }
+
+    @Test
+    void fromKeyPair_shouldRejectHmacAlgorithm() throws Exception {
+        KeyPair keyPair = rsaKeyPair();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SigningKey.fromKeyPair(keyPair, SignatureAlgorithm.HS256));
+    }
+
+    @Test
+    void toJwk_forRsaKey_shouldContainPublicMembersOnly() throws Exception {
+        SigningKey key = SigningKey.fromKeyPair("rsa-1", rsaKeyPair(), SignatureAlgorithm.RS256);
+
+        Map<String, Object> jwk = key.toJwk();
+
+        assertEquals("RSA", jwk.get("kty"));
+        assertEquals("rsa-1", jwk.get("kid"));
+        assertEquals("RS256", jwk.get("alg"));
+        assertEquals("sig", jwk.get("use"));
+        assertEquals("AQAB", jwk.get("e"));
+        assertNotNull(jwk.get("n"));
+        assertFalse(jwk.containsKey("d"));
+    }
+
+    @Test
+    void toJwk_forEcKey_shouldContainPaddedCoordinates() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        SigningKey key = SigningKey.fromKeyPair(generator.generateKeyPair(), SignatureAlgorithm.ES256);
+
+        Map<String, Object> jwk = key.toJwk();
+
+        assertEquals("EC", jwk.get("kty"));
+        assertEquals("P-256", jwk.get("crv"));
+        assertEquals(43, ((String) jwk.get("x")).length()); // 32 bytes
+        assertEquals(43, ((String) jwk.get("y")).length());
+    }
+
+    @Test
+    void verificationOnly_shouldDropSigningKey() throws Exception {
+        SigningKey key = SigningKey.fromKeyPair(rsaKeyPair(), SignatureAlgorithm.RS256);
+
+        SigningKey verificationOnly = key.verificationOnly();
+
+        assertTrue(key.canSign());
+        assertFalse(verificationOnly.canSign());
+        assertEquals(key.kid(), verificationOnly.kid());
+        assertFalse(verificationOnly.toString().contains("Private"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.safetypin.authentication.service.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenVersionRegistryTest {
+
+    private final TokenVersionRegistry registry = new TokenVersionRegistry();
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void isCurrent_shouldAcceptEveryVersionWithoutRevocation() {
+        assertTrue(registry.isCurrent(userId, 0));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void revoke_shouldRejectOlderVersionsOnly() {
+        registry.revoke(userId, 2, System.currentTimeMillis() + 60_000);
+
+        assertFalse(registry.isCurrent(userId, 0));
+        assertFalse(registry.isCurrent(userId, 1));
+        assertTrue(registry.isCurrent(userId, 2));
+        assertTrue(registry.isCurrent(UUID.randomUUID(), 0));
+    }
+
+    @Test
+    void revoke_shouldNeverLowerTheMinimumVersion() {
+        long until = System.currentTimeMillis() + 60_000;
+        registry.revoke(userId, 3, until);
+        registry.revoke(userId, 1, until);
+
+        assertFalse(registry.isCurrent(userId, 2));
+    }
+
+    @Test
+    void revoked_shouldRejectEveryVersion() {
+        registry.revoke(userId, TokenVersionRegistry.REVOKED, System.currentTimeMillis() + 60_000);
+
+        assertFalse(registry.isCurrent(userId, 1000));
+    }
+
+    @Test
+    void pruneExpired_shouldDropRevocationsOlderThanTheTokenLifetime() {
+        UUID recentUser = UUID.randomUUID();
+        registry.revoke(userId, 1, System.currentTimeMillis() - 1);
+        registry.revoke(recentUser, 1, System.currentTimeMillis() + 60_000);
+
+        registry.pruneExpired();
+
+        assertEquals(1, registry.size());
+        assertTrue(registry.isCurrent(userId, 0));
+        assertFalse(registry.isCurrent(recentUser, 0));
+    }
+}
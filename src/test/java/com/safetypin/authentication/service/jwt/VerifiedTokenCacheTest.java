@@ -0,0 +1,91 @@
+package com.safetypin.authentication.service.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private VerifiedTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new VerifiedTokenCache(meterRegistry, 2);
+    }
+
+    private Claims claimsExpiringIn(long millis) {
+        return Jwts.claims()
+                .setSubject("user")
+                .setExpiration(new Date(System.currentTimeMillis() + millis));
+    }
+
+    @Test
+    void get_shouldReturnNullAndCountMissForUnknownToken() {
+        assertNull(cache.get("unknown"));
+        assertEquals(1.0, meterRegistry.get("jwt_verified_cache_misses").counter().count());
+    }
+
+    @Test
+    void get_shouldReturnCachedClaimsAndCountHit() {
+        Claims claims = claimsExpiringIn(60_000);
+        cache.put("token", claims);
+
+        assertSame(claims, cache.get("token"));
+        assertEquals(1.0, meterRegistry.get("jwt_verified_cache_hits").counter().count());
+        assertEquals(1.0, meterRegistry.get("jwt_verified_cache_size").gauge().value());
+    }
+
+    @Test
+    void get_shouldEvictExpiredToken() {
+        cache.put("token", claimsExpiringIn(-1_000));
+
+        assertNull(cache.get("token"));
+        assertEquals(0, cache.size());
+        assertEquals(1.0, meterRegistry.get("jwt_verified_cache_evictions").counter().count());
+    }
+
+    @Test
+    void put_shouldNotGrowPastMaxSize() {
+        cache.put("a", claimsExpiringIn(60_000));
+        cache.put("b", claimsExpiringIn(60_000));
+        cache.put("c", claimsExpiringIn(60_000));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("c"));
+    }
+
+    @Test
+    void put_shouldMakeRoomByEvictingExpiredTokens() {
+        cache.put("a", claimsExpiringIn(-1_000));
+        cache.put("b", claimsExpiringIn(60_000));
+        cache.put("c", claimsExpiringIn(60_000));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("c"));
+        assertEquals(1.0, meterRegistry.get("jwt_verified_cache_evictions").counter().count());
+    }
+
+    @Test
+    void put_shouldIgnoreClaimsWithoutExpiration() {
+        cache.put("token", Jwts.claims().setSubject("user"));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void clear_shouldRemoveAllEntries() {
+        cache.put("token", claimsExpiringIn(60_000));
+        cache.clear();
+
+        assertNull(cache.get("token"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.safetypin.authentication.service.otp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringStoreTest {
+    private static final long TICK = 1000;
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private ExpiringStore<String, String> store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ExpiringStore<>(3, TICK, 8, clock::get);
+    }
+
+    @Test
+    void get_hidesExpiredEntriesBeforeTheSweep() {
+        store.put("key", "value", 5_000);
+        assertEquals("value", store.get("key"));
+
+        clock.addAndGet(5_000);
+
+        assertNull(store.get("key"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void sweep_removesEntriesOnceTheirTickHasPassed() {
+        store.put("short", "value", 1_500);
+        store.put("long", "value", 5_000);
+
+        clock.addAndGet(1_999);
+        store.sweep();
+        assertNull(store.get("short"));
+        assertEquals(2, store.size(), "the deadline tick has not fully passed yet");
+
+        clock.addAndGet(1);
+        store.sweep();
+        assertEquals(1, store.size());
+        assertEquals("value", store.get("long"));
+    }
+
+    @Test
+    void sweep_keepsEntriesDueInALaterRotation() {
+        // 8 slots of 1s, so 20s wraps around the wheel twice
+        store.put("key", "value", 20_000);
+
+        for (int second = 1; second < 20; second++) {
+            clock.addAndGet(TICK);
+            store.sweep();
+            assertEquals("value", store.get("key"), "second " + second);
+        }
+        clock.addAndGet(2 * TICK);
+        store.sweep();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void sweep_afterALongPause_visitsEverySlot() {
+        store.put("a", "value", 1_000);
+        store.put("b", "value", 4_000);
+
+        clock.addAndGet(60_000);
+        store.sweep();
+
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void put_overwriteMovesTheDeadline() {
+        store.put("key", "old", 2_000);
+        clock.addAndGet(1_000);
+        store.put("key", "new", 10_000);
+
+        clock.addAndGet(3_000);
+        store.sweep();
+
+        assertEquals("new", store.get("key"));
+    }
+
+    @Test
+    void put_rejectsNewKeysWhenFull() {
+        assertTrue(store.put("a", "1", 10_000));
+        assertTrue(store.put("b", "2", 10_000));
+        assertTrue(store.put("c", "3", 10_000));
+
+        assertFalse(store.put("d", "4", 10_000));
+        assertNull(store.get("d"));
+        // Existing keys can still be replaced
+        assertTrue(store.put("a", "5", 10_000));
+
+        store.remove("b");
+        assertTrue(store.put("d", "4", 10_000));
+    }
+
+    @Test
+    void remove_takesAMatchingValueOnlyOnce() {
+        store.put("key", "value", 10_000);
+
+        assertFalse(store.remove("key", "other"::equals));
+        assertTrue(store.remove("key", "value"::equals));
+        assertFalse(store.remove("key", "value"::equals));
+    }
+
+    @Test
+    void update_keepsTheDeadline() {
+        store.put("key", "value", 2_000);
+        store.update("key", value -> value + "-updated");
+        assertEquals("value-updated", store.get("key"));
+
+        clock.addAndGet(3_000);
+        store.sweep();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void registerMetrics_reportsSizeExpiriesAndRejections() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        store.registerMetrics(registry, "test");
+        store.put("a", "1", 1_000);
+        store.put("b", "2", 1_000);
+        store.put("c", "3", 1_000);
+        store.put("d", "4", 1_000);
+
+        assertEquals(3, registry.get("expiring_store_entries").tag("store", "test").gauge().value());
+        assertEquals(1, registry.get("expiring_store_rejected_total").tag("store", "test").functionCounter().count());
+
+        clock.addAndGet(2_000);
+        store.sweep();
+
+        assertEquals(0, registry.get("expiring_store_entries").tag("store", "test").gauge().value());
+        assertEquals(3, registry.get("expiring_store_expired_total").tag("store", "test").functionCounter().count());
+    }
+}
@@ -0,0 +1,110 @@
+package com.safetypin.authentication.service.otp;
+
+import com.safetypin.authentication.dto.OtpDeliveryStatus;
+import com.safetypin.authentication.repository.OtpCodeRepository;
+import com.safetypin.authentication.repository.PasswordResetTokenRepository;
+import com.safetypin.authentication.security.TokenHashing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class JdbcOtpStoreTest {
+
+    @Autowired
+    private OtpCodeRepository otpCodeRepository;
+
+    @Autowired
+    private PasswordResetTokenRepository passwordResetTokenRepository;
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private JdbcOtpStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new JdbcOtpStore(otpCodeRepository, passwordResetTokenRepository, clock::get);
+    }
+
+    @Test
+    void consumeOtp_onlyOnceAndOnlyWhenMatching() {
+        assertTrue(store.putOtp("user@example.com", "123456", "handle-1", 120_000));
+
+        assertFalse(store.consumeOtp("user@example.com", "654321"));
+        assertTrue(store.consumeOtp("user@example.com", "123456"));
+        assertFalse(store.consumeOtp("user@example.com", "123456"));
+    }
+
+    @Test
+    void putOtp_replacesThePreviousOtp() {
+        store.putOtp("user@example.com", "111111", "handle-1", 120_000);
+        store.recordDelivery("user@example.com", "111111", OtpDeliveryStatus.SENT);
+        store.putOtp("user@example.com", "222222", "handle-2", 120_000);
+
+        assertEquals(OtpDeliveryStatus.NONE, store.getDeliveryStatus("handle-1"));
+        assertEquals(OtpDeliveryStatus.PENDING, store.getDeliveryStatus("handle-2"));
+        assertFalse(store.consumeOtp("user@example.com", "111111"));
+        assertTrue(store.consumeOtp("user@example.com", "222222"));
+    }
+
+    @Test
+    void recordDelivery_ignoresReplacedOtp() {
+        store.putOtp("user@example.com", "111111", "handle-1", 120_000);
+        store.putOtp("user@example.com", "222222", "handle-2", 120_000);
+
+        store.recordDelivery("user@example.com", "111111", OtpDeliveryStatus.FAILED);
+        assertEquals(OtpDeliveryStatus.PENDING, store.getDeliveryStatus("handle-2"));
+
+        store.recordDelivery("user@example.com", "222222", OtpDeliveryStatus.SENT);
+        assertEquals(OtpDeliveryStatus.SENT, store.getDeliveryStatus("handle-2"));
+    }
+
+    @Test
+    void expiredOtp_isNeitherVisibleNorConsumable() {
+        store.putOtp("user@example.com", "123456", "handle-1", 120_000);
+        clock.addAndGet(120_000);
+
+        assertEquals(OtpDeliveryStatus.NONE, store.getDeliveryStatus("handle-1"));
+        assertFalse(store.consumeOtp("user@example.com", "123456"));
+    }
+
+    @Test
+    void getDeliveryStatus_onlyByTheHandleStoredWithTheOtp() {
+        store.putOtp("user@example.com", "123456", "handle-1", 120_000);
+
+        assertEquals(OtpDeliveryStatus.NONE, store.getDeliveryStatus("user@example.com"));
+        assertEquals(OtpDeliveryStatus.NONE, store.getDeliveryStatus("unknown-handle"));
+        assertEquals(OtpDeliveryStatus.PENDING, store.getDeliveryStatus("handle-1"));
+        assertEquals(TokenHashing.sha256Hex("handle-1"),
+                otpCodeRepository.findById("user@example.com").orElseThrow().getStatusHandleHash());
+    }
+
+    @Test
+    void consumeResetToken_checksEmailAndStoresOnlyTheDigest() {
+        store.putResetToken("reset-token", "user@example.com", 180_000);
+
+        assertFalse(store.consumeResetToken("reset-token", "other@example.com"));
+        assertFalse(passwordResetTokenRepository.existsById("reset-token"));
+        assertTrue(passwordResetTokenRepository.existsById(TokenHashing.sha256Hex("reset-token")));
+        assertTrue(store.consumeResetToken("reset-token", "user@example.com"));
+        assertFalse(store.consumeResetToken("reset-token", "user@example.com"));
+    }
+
+    @Test
+    void sweepExpired_deletesOnlyExpiredRows() {
+        store.putOtp("old@example.com", "111111", "handle-1", 1_000);
+        store.putOtp("new@example.com", "222222", "handle-2", 120_000);
+        store.putResetToken("old-token", "old@example.com", 1_000);
+        clock.addAndGet(60_000);
+
+        store.sweepExpired();
+
+        assertEquals(1, otpCodeRepository.count());
+        assertEquals(0, passwordResetTokenRepository.count());
+        assertTrue(store.consumeOtp("new@example.com", "222222"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.safetypin.authentication.service.otp;
+
+import com.safetypin.authentication.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OtpRateLimiterTest {
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private MeterRegistry meterRegistry;
+    private OtpRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // 3 per email, one more every minute; 5 overall, one more every second
+        limiter = new OtpRateLimiter(meterRegistry, 3, 60_000, 5, 1_000, clock::get);
+    }
+
+    @Test
+    void acquire_allowsBurstThenLimitsEmail() {
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("user@example.com");
+        }
+
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> limiter.acquire("user@example.com"));
+        assertEquals(60, e.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("otp_rate_limited_total").tag("scope", "email").counter().count());
+    }
+
+    @Test
+    void acquire_refillsOneTokenPerInterval() {
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("user@example.com");
+        }
+        clock.addAndGet(59_000);
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> limiter.acquire("user@example.com"));
+        assertEquals(1, e.getRetryAfterSeconds());
+
+        clock.addAndGet(1_000);
+        assertDoesNotThrow(() -> limiter.acquire("user@example.com"));
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("user@example.com"));
+    }
+
+    @Test
+    void acquire_ignoresEmailCase() {
+        limiter.acquire("User@Example.com");
+        limiter.acquire("user@example.com");
+        limiter.acquire("USER@EXAMPLE.COM");
+
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("user@example.com"));
+    }
+
+    @Test
+    void acquire_limitsAllEmailsTogether() {
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire("user" + i + "@example.com");
+        }
+
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> limiter.acquire("other@example.com"));
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("otp_rate_limited_total").tag("scope", "global").counter().count());
+
+        // The recipient was not charged for the rejected request
+        clock.addAndGet(3_000);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("other@example.com");
+        }
+    }
+
+    @Test
+    void sweep_dropsOnlyRefilledBuckets() {
+        limiter.acquire("old@example.com");
+        clock.addAndGet(30_000);
+        limiter.acquire("new@example.com");
+        clock.addAndGet(30_000);
+
+        limiter.sweep();
+
+        assertEquals(1, limiter.trackedEmails());
+        assertEquals(1.0, meterRegistry.get("otp_rate_limit_tracked_emails").gauge().value());
+    }
+}
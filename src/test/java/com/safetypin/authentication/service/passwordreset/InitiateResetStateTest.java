@@ -3,6 +3,7 @@ package com.safetypin.authentication.service.passwordreset;
 import com.safetypin.authentication.model.User;
 import com.safetypin.authentication.service.OTPService;
 import com.safetypin.authentication.service.UserService;
+import com.safetypin.authentication.service.email.EmailTemplateType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -49,7 +50,7 @@ class InitiateResetStateTest {
 
         context.setEmail(email);
         when(userService.findByEmail(email)).thenReturn(Optional.of(testUser));
-        when(otpService.generateOTP(email)).thenReturn(otp);
+        when(otpService.generateOTP(email, EmailTemplateType.OTP_PASSWORD_RESET)).thenReturn(otp);
 
         // Act
         Object result = initiateResetState.handle(context);
@@ -57,7 +58,7 @@ class InitiateResetStateTest {
         // Assert
         assertNull(result);
         verify(userService).findByEmail(email);
-        verify(otpService).generateOTP(email);
+        verify(otpService).generateOTP(email, EmailTemplateType.OTP_PASSWORD_RESET);
     }
 
     @Test
@@ -73,7 +74,7 @@ class InitiateResetStateTest {
 
         assertEquals("Password reset is only available for email-registered users.", exception.getMessage());
         verify(userService).findByEmail(email);
-        verify(otpService, never()).generateOTP(anyString());
+        verify(otpService, never()).generateOTP(anyString(), any());
     }
 
     @Test
@@ -93,6 +94,6 @@ class InitiateResetStateTest {
 
         assertEquals("Password reset is only available for email-registered users.", exception.getMessage());
         verify(userService).findByEmail(email);
-        verify(otpService, never()).generateOTP(anyString());
+        verify(otpService, never()).generateOTP(anyString(), any());
     }
 }
\ No newline at end of file
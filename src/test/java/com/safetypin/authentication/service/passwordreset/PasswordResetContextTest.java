@@ -3,6 +3,7 @@ package com.safetypin.authentication.service.passwordreset;
 import com.safetypin.authentication.model.User;
 import com.safetypin.authentication.service.OTPService;
 import com.safetypin.authentication.service.UserService;
+import com.safetypin.authentication.service.email.EmailTemplateType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -76,14 +77,14 @@ class PasswordResetContextTest {
     void testGenerateOTP() {
         // Arrange
         context.setEmail("test@example.com");
-        when(otpService.generateOTP("test@example.com")).thenReturn("123456");
+        when(otpService.generateOTP("test@example.com", EmailTemplateType.OTP_PASSWORD_RESET)).thenReturn("123456");
 
         // Act
         String otp = context.generateOTP();
 
         // Assert
         assertEquals("123456", otp);
-        verify(otpService).generateOTP("test@example.com");
+        verify(otpService).generateOTP("test@example.com", EmailTemplateType.OTP_PASSWORD_RESET);
     }
 
     @Test